@@ -1457,6 +1457,10 @@ public interface OptionConstants {
   public static final BooleanOption SHOW_PATH_WARNINGS = 
     new BooleanOption("show.path.warnings", Boolean.FALSE);
   
+  /** Whether to compile only the changed files and the files that depend on them */
+  public static final BooleanOption INCREMENTAL_COMPILE = 
+    new BooleanOption("incremental.compile", Boolean.FALSE);
+  
   /** Default compiler to use
     * Stores the name of the compiler to use, set by changing the selection in
     * the ForcedChoiceOption created by COMPILER_PREFERENCE_CONTROL.evaluate()
@@ -1604,6 +1608,16 @@ public interface OptionConstants {
   /** The command-line arguments to be passed to the Slave JVM. */
   public static final StringOption SLAVE_JVM_ARGS = new StringOption("slave.jvm.args", "");
   
+  /** The number of Slave JVMs kept running in the background, ready to replace the Slave JVM on a reset.  Each one
+    * costs as much memory as an idle Slave JVM, including the JVM that JShell launches for it (about 125 MB resident
+    * on a 64-bit JDK 17), and may grow up to the Slave JVM's maximum heap. */
+  public static final NonNegativeIntegerOption SLAVE_JVM_STANDBY_COUNT =
+    new NonNegativeIntegerOption("slave.jvm.standby.count", 1);
+  
+  /** Whether a reset proceeds without waiting for the old Slave JVM to exit. */
+  public static final BooleanOption SLAVE_JVM_QUIT_IN_BACKGROUND =
+    new BooleanOption("slave.jvm.quit.in.background", Boolean.TRUE);
+  
   /* Possible maximum heap sizes. */
   public static final ArrayList<String> heapSizeChoices = HeapSizeChoices.evaluate();
   static class HeapSizeChoices {
@@ -47,19 +47,16 @@ import edu.rice.cs.util.text.SwingDocument;
 
 import java.awt.EventQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Set;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.SortedMap;
-import java.util.StringTokenizer;
-import java.util.TreeMap;
 import javax.swing.ProgressMonitor;
 import javax.swing.text.AbstractDocument;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
 import javax.swing.text.Position;
+import javax.swing.text.Segment;
 
 import static edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelStates.*;
 
@@ -89,10 +86,12 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     new HashSet<String>(edu.rice.cs.drjava.model.compiler.JavacCompiler.JAVA_KEYWORDS);
   /** A set of Java primitive types. */
   protected static final HashSet<String> _primTypes = _makePrimTypes();
+  /** _primTypes, for highlighting. */
+  private static final WordTable PRIM_TYPE_TABLE = new WordTable(_primTypes);
+  /** Whether each ASCII character is one of the delimiters. */
+  private static final boolean[] DELIMITER_TABLE = _makeDelimiterTable();
   /** The default indent setting. */
   protected volatile int _indent = 2;
-  /** Initial number of elements in _queryCache (see below). */
-  private static final int INIT_CACHE_SIZE = 0x10000;  // 16**4 = 16384 
   /** Constant specifying how large pos must be before incremental analysis is applied in posInBlockComment */
   public static final int POS_THRESHOLD = 10000; 
 //  /** Constant specifying how large pos must be before incremental analysis is applied in posInParenPhrase */
@@ -112,15 +111,25 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * purposes. */
   protected volatile int _currentLocation = 0;
   
-  /* The fields _queryCache, _offsetToQueries, and _cacheModified function as an extension of the reduced model. 
-   * When enabled in blockIndent, this data structure caches calls to the reduced model to speed up indent performance.
-   * Must be cleared every time the document is changed.  Use by calling _checkCache, _storeInCache, and _clearCache.
-   * When _queryCache = null, the cache is disabled.
+  /* The field _queryCache functions as an extension of the reduced model.  It caches calls to the reduced model to 
+   * speed up indenting and typing.  Must be selectively cleared every time the document is changed, which the commands
+   * that update the reduced model do.  Use by calling _checkCache, _storeInCache, and _clearCache.
    */
-  private volatile HashMap<Query, Object> _queryCache;
+  private final QueryCache _queryCache = new QueryCache();
   
-  /** Records the set of queries (as a list) for each offset. */
-  private volatile SortedMap<Integer, List<Query>> _offsetToQueries;
+  /* The highlight spans of each line (see getHighlightSpans), indexed by line number; null where they have not been
+   * computed since the last change at or before that line.  Entries at and after _lineSpansEnd are all null.  Like
+   * _queryCache, must be selectively cleared every time the document is changed.  Only accessed in the event thread.
+   */
+  private int[][] _lineSpans = new int[0][];
+  private int _lineSpansEnd = 0;
+  
+  /** Scratch space for computing the highlight spans of a line. */
+  private int[] _spanBuffer = new int[32];
+  private final Segment _lineText = new Segment();
+  
+  /** _keywords, for highlighting; replaced whenever the keywords change. */
+  private volatile WordTable _keywordTable = new WordTable(_keywords);
   
   /** The instance of the indent decision tree used by Definitions documents. */
   private volatile Indenter _indenter;
@@ -146,8 +155,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   protected AbstractDJDocument(Indenter indenter) { 
     _indenter = indenter;
-    _queryCache = null;
-    _offsetToQueries = null;
     _initNewIndenter();
 //     System.err.println("AbstractDJDocument constructor with indent level " + indenter.getIndentLevel() 
 //    + " invoked on " + this);
@@ -220,6 +227,8 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   public void setKeywords(Set<String> keywords) {
     _keywords.clear();
     _keywords.addAll(keywords);
+    _keywordTable = new WordTable(_keywords);
+    Utilities.invokeLater(new Runnable() { public void run() { _clearHighlightSpans(0); } });
   }
   
   /** Create a set of Java/GJ primitive types for special coloring.
@@ -234,117 +243,168 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     return prims;
   }
   
+  /** Create a table of the ASCII characters that are delimiters.
+    * @return the table, indexed by character
+    */
+  private static boolean[] _makeDelimiterTable() {
+    boolean[] table = new boolean[128];
+    for (int i = 0; i < delimiters.length(); i++) { table[delimiters.charAt(i)] = true; }
+    return table;
+  }
+  
   /** Return all highlight status info for text between start and end. This should collapse adjoining blocks with the
-    * same status into one.  ONLY runs in the event thread.  Perturbs _currentLocation to improve performance.
+    * same status into one.  ONLY runs in the event thread.  Built from the cached spans of each line in the range
+    * (see getHighlightSpans).
     */
   public ArrayList<HighlightStatus> getHighlightStatus(int start, int end) {
     
     assert EventQueue.isDispatchThread();
     
     if (start == end) return new ArrayList<HighlightStatus>(0);
-    ArrayList<HighlightStatus> v;
-    
-    setCurrentLocation(start);
-    /* Now ask reduced model for highlight status for chars till end */
-    v = _reduced.getHighlightStatus(start, end - start);
-    
-    /* Go through and find any NORMAL blocks. Within them check for keywords. */
-    for (int i = 0; i < v.size(); i++) {
-      HighlightStatus stat = v.get(i);
-      if (stat.getState() == HighlightStatus.NORMAL) i = _highlightKeywords(v, i);
+    ArrayList<HighlightStatus> v = new ArrayList<HighlightStatus>();
+    
+    int pos = start;
+    while (pos < end) {
+      int[] spans = getHighlightSpans(pos);
+      for (int i = 2; i < spans.length; i += 3) {
+        int location = Math.max(spans[i], start);
+        int spanEnd = Math.min(spans[i] + spans[i + 1], end);
+        if (location >= spanEnd) continue;
+        int state = spans[i + 2];
+        int last = v.size() - 1;
+        if (last >= 0 && v.get(last).getState() == state) {
+          // adjoining block with the same status (e.g., a comment spanning several lines)
+          location = v.get(last).getLocation();
+          v.set(last, new HighlightStatus(location, spanEnd - location, state));
+        }
+        else v.add(new HighlightStatus(location, spanEnd - location, state));
+      }
+      if (spans[1] <= pos) break;
+      pos = spans[1];
     }
-    
-    /* bstoler: Previously we moved back to the old location. This implementation choice severely slowed down 
-     * rendering when scrolling because parts are rendered in order. Thus, if old location is 0, but now we've
-     * scrolled to display 100000-100100, if we keep jumping back to 0 after getting every bit of highlight, it 
-     * slows stuff down incredibly. */
-    //setCurrentLocation(oldLocation);
     return v;
   }
   
-  /** Distinguishes keywords from normal text in the given HighlightStatus element. Specifically, it looks to see
-    * if the given text contains a keyword. If it does, it splits the HighlightStatus block into separate blocks
-    * so that each keyword has its own block. This process identifies all keywords in the given block.
-    * Note that the given block must have state NORMAL.  Only runs in the event thread.
-    * @param v Vector with highlight info
-    * @param i Index of the single HighlightStatus to check for keywords in
-    * @return the index into the vector of the last processed element
+  /** Returns the highlight spans of the line containing offset.  The first two elements of the returned array are the
+    * start and end offsets of the line (the end includes the newline, if any); they are followed by a (location, 
+    * length, state) triple for each block of the line, where state is one of the HighlightStatus constants.  The 
+    * result is cached until the text at or before the end of the line changes, and must not be modified.  ONLY runs
+    * in the event thread.  Perturbs _currentLocation (on a cache miss) to improve performance.
+    * @param offset an offset in the document
+    * @return the packed highlight spans of the line containing offset
     */
-  private int _highlightKeywords(ArrayList<HighlightStatus> v, int i) {
-    // Basically all non-alphanumeric chars are delimiters
-    final HighlightStatus original = v.get(i);
-    final String text;
-    
-    
-    try { text = getText(original.getLocation(), original.getLength()); }
-    catch (BadLocationException e) { throw new UnexpectedException(e); }
-    
-    // Because this text is not quoted or commented, we can use the simpler tokenizer StringTokenizer. We have 
-    // to return delimiters as tokens so we can keep track of positions in the original string.
-    StringTokenizer tokenizer = new StringTokenizer(text, delimiters, true);
+  public int[] getHighlightSpans(int offset) {
     
-    // start and length of the text that has not yet been put back into the vector.
-    int start = original.getLocation();
-    int length = 0;
+    assert EventQueue.isDispatchThread();
     
-    // Remove the old element from the vector.
-    v.remove(i);
+    Element root = getDefaultRootElement();
+    int line = root.getElementIndex(offset);
+    Element lineElement = root.getElement(line);
+    int lineStart = lineElement.getStartOffset();
+    int lineEnd = Math.min(lineElement.getEndOffset(), getLength());
     
-    // Index where we are in the vector. It's the location we would insert new things into.
-    int index = i;
+    if (line < _lineSpansEnd) {
+      int[] spans = _lineSpans[line];
+      if (spans != null && spans[0] == lineStart && spans[1] == lineEnd) return spans;
+    }
+    else if (line >= _lineSpans.length) {
+      _lineSpans = Arrays.copyOf(_lineSpans, Math.max(line + 1, 2 * _lineSpans.length));
+    }
     
-    boolean process;
-    int state = 0;
-    while (tokenizer.hasMoreTokens()) {
-      String token = tokenizer.nextToken();
-      
-      //first check to see if we need highlighting
-      process = false;
-      if (_isType(token)) {
-        //right now keywords incl prim types, so must put this first
-        state = HighlightStatus.TYPE;
-        process = true;
-      } 
-      else if (_keywords.contains(token)) {
-        state = HighlightStatus.KEYWORD;
-        process = true;
-      } 
-      else if (_isNum(token)) {
-        state = HighlightStatus.NUMBER;
-        process = true;
-      }
+    int[] spans = _computeHighlightSpans(lineStart, lineEnd);
+    _lineSpans[line] = spans;
+    _lineSpansEnd = Math.max(_lineSpansEnd, line + 1);
+    return spans;
+  }
+  
+  /** Discards the cached highlight spans of the line containing offset and all following lines.  Only the text before
+    * offset is unchanged, so the number of the line containing offset is the same before and after the change.
+    * @param offset the offset of the change
+    */
+  private void _clearHighlightSpans(int offset) {
+    if (_lineSpansEnd == 0) return;
+    int line = (offset <= 0) ? 0 : getDefaultRootElement().getElementIndex(offset);
+    if (line < _lineSpansEnd) {
+      Arrays.fill(_lineSpans, line, _lineSpansEnd, null);
+      _lineSpansEnd = line;
+    }
+  }
+  
+  /** Computes the highlight spans of the line [lineStart, lineEnd) in the format described by getHighlightSpans.  Asks
+    * the reduced model for the status of the line, and then finds the keywords, types, and numbers in its NORMAL 
+    * blocks.  Only runs in the event thread.
+    */
+  private int[] _computeHighlightSpans(int lineStart, int lineEnd) {
+    int[] spans = _spanBuffer;
+    spans[0] = lineStart;
+    spans[1] = lineEnd;
+    int size = 2;
+    if (lineEnd > lineStart) {
+      setCurrentLocation(lineStart);
+      ArrayList<HighlightStatus> blocks = _reduced.getHighlightStatus(lineStart, lineEnd - lineStart);
+      Segment text = _lineText;
+      try { getText(lineStart, lineEnd - lineStart, text); }
+      catch (BadLocationException e) { throw new UnexpectedException(e); }
+      final WordTable keywords = _keywordTable;
       
-      if (process) {
-        // first check if we had any text before the token
-        if (length != 0) {
-          HighlightStatus newStat = new HighlightStatus(start, length, original.getState());
-          v.add(index, newStat);
-          index++;
-          start += length;
-          length = 0;
+      for (HighlightStatus block: blocks) {
+        int state = block.getState();
+        if (state != HighlightStatus.NORMAL) {
+          spans = _addSpan(spans, size, block.getLocation(), block.getLength(), state);
+          size += 3;
+          continue;
+        }
+        // Split NORMAL blocks at every keyword, type, and number.  As with StringTokenizer, every delimiter is a token
+        // of its own (and none is ever highlighted), and every maximal run of other characters is a word.
+        int blockEnd = block.getLocation() + block.getLength();
+        int normalStart = block.getLocation();  // start of the NORMAL text not yet added
+        int pos = normalStart;
+        while (pos < blockEnd) {
+          int i = text.offset + pos - lineStart;
+          char ch = text.array[i];
+          if (ch < DELIMITER_TABLE.length && DELIMITER_TABLE[ch]) {
+            pos++;
+            continue;
+          }
+          int wordStart = pos;
+          while (pos < blockEnd) {
+            ch = text.array[text.offset + pos - lineStart];
+            if (ch < DELIMITER_TABLE.length && DELIMITER_TABLE[ch]) break;
+            pos++;
+          }
+          int wordState;
+          //right now keywords incl prim types, so must check types first
+          if (_isType(text.array, i, pos - wordStart)) wordState = HighlightStatus.TYPE;
+          else if (keywords.contains(text.array, i, pos - wordStart)) wordState = HighlightStatus.KEYWORD;
+          else if (_isNum(text.array, i, pos - wordStart)) wordState = HighlightStatus.NUMBER;
+          else continue;
+          
+          if (wordStart > normalStart) {
+            spans = _addSpan(spans, size, normalStart, wordStart - normalStart, HighlightStatus.NORMAL);
+            size += 3;
+          }
+          spans = _addSpan(spans, size, wordStart, pos - wordStart, wordState);
+          size += 3;
+          normalStart = pos;
+        }
+        if (blockEnd > normalStart) {
+          spans = _addSpan(spans, size, normalStart, blockEnd - normalStart, HighlightStatus.NORMAL);
+          size += 3;
         }
-        
-        // Now pull off the keyword
-        int keywordLength = token.length();
-        v.add(index, new HighlightStatus(start, keywordLength, state));
-        index++;
-        // Move start to the end of the keyword
-        start += keywordLength;
-      }
-      else {
-        // This is not a keyword, so just keep accumulating length
-        length += token.length();
       }
     }
-    // Now check if there was any text left after the keywords.
-    if (length != 0) {
-      HighlightStatus newStat = new HighlightStatus(start, length, original.getState());
-      v.add(index, newStat);
-      index++;
-      length = 0;
-    }
-    // return one before because we need to point to the last one we inserted
-    return index - 1;
+    _spanBuffer = spans;
+    return Arrays.copyOf(spans, size);
+  }
+  
+  /** Stores a (location, length, state) triple at index size of spans, growing spans if necessary. 
+    * @return spans, or the larger array that replaces it */
+  private static int[] _addSpan(int[] spans, int size, int location, int length, int state) {
+    if (size + 3 > spans.length) spans = Arrays.copyOf(spans, 2 * spans.length + 3);
+    spans[size] = location;
+    spans[size + 1] = length;
+    spans[size + 2] = state;
+    return spans;
   }
   
   /** Checks to see if the current string is a number
@@ -417,16 +477,137 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     }
   }
   
-  /** Checks to see if the current string is a type. A type is assumed to be 
+  /** Checks to see if the given word is a number.  Agrees with _isNum(String) on every word that contains none of the
+    * delimiters, without allocating anything.
+    * @param text the characters containing the word
+    * @param offset the index of the first character of the word
+    * @param length the length of the word
+    * @return true if the word is a number
+    */
+  static boolean _isNum(char[] text, int offset, int length) {
+    if (length == 0) return false;
+    int end = offset + length;
+    if (_isFloatingPoint(text, offset, end)) return true;
+    
+    // An integer, possibly followed by 'l' or 'L', and possibly octal, hexadecimal, or binary; see _isNum(String)
+    int begin = offset;
+    int radix = 10;
+    int bits = 32;
+    if (end - begin > 1) {
+      char ch = text[end - 1];
+      if ((ch == 'l') || (ch == 'L')) {
+        --end;
+        bits = 64;
+      }
+      if (end - begin > 1 && text[offset] == '0') {
+        ++begin;
+        radix = 8;
+        if (end - begin > 1) {
+          ch = text[offset + 1];
+          if ((ch == 'x') || (ch == 'X')) {
+            ++begin;
+            radix = 16;
+          }
+          else if ((ch == 'b') || (ch == 'B')) {
+            ++begin;
+            radix = 2;
+          }
+        }
+      }
+    }
+    
+    // Underscores are ignored; the remaining digits must represent a value of at most the given number of bits
+    long value = 0;
+    long limit = Long.divideUnsigned(-1L, radix);
+    boolean hasDigits = false;
+    for (int i = begin; i < end; i++) {
+      char ch = text[i];
+      if (ch == '_') continue;
+      int digit = Character.digit(ch, radix);
+      if (digit < 0 || Long.compareUnsigned(value, limit) > 0) return false;
+      value *= radix;
+      if (Long.compareUnsigned(value + digit, value) < 0) return false;
+      value += digit;
+      hasDigits = true;
+    }
+    return hasDigits && (bits == 64 || (value >>> 32) == 0);
+  }
+  
+  /** @return true if Double.parseDouble accepts the word on [begin, end), which contains none of the delimiters */
+  private static boolean _isFloatingPoint(char[] text, int begin, int end) {
+    int i = begin;
+    if (end - begin > 2 && text[i] == '0' && (text[i + 1] == 'x' || text[i + 1] == 'X')) {
+      // hexadecimal significand and binary exponent
+      i += 2;
+      int digitsStart = i;
+      while (i < end && Character.digit(text[i], 16) >= 0 && text[i] < 128) i++;
+      if (i == digitsStart || i == end || (text[i] != 'p' && text[i] != 'P')) return false;
+      i++;
+      return _isExponentAndSuffix(text, i, end);
+    }
+    int digitsStart = i;
+    while (i < end && text[i] >= '0' && text[i] <= '9') i++;
+    if (i == digitsStart) return false;
+    if (i < end && (text[i] == 'e' || text[i] == 'E')) return _isExponentAndSuffix(text, i + 1, end);
+    return i == end || (i == end - 1 && _isFloatSuffix(text[i]));
+  }
+  
+  /** @return true if [begin, end) consists of decimal digits followed by an optional float type suffix */
+  private static boolean _isExponentAndSuffix(char[] text, int begin, int end) {
+    int i = begin;
+    while (i < end && text[i] >= '0' && text[i] <= '9') i++;
+    if (i == begin) return false;
+    return i == end || (i == end - 1 && _isFloatSuffix(text[i]));
+  }
+  
+  private static boolean _isFloatSuffix(char ch) { return ch == 'f' || ch == 'F' || ch == 'd' || ch == 'D'; }
+  
+  /** Checks to see if the given word is a type. A type is assumed to be 
    * a primitive type OR anything else that begins with a capitalized character
-   * @param x the string to check
-   * @return true if x is a type; false otherwise
+   * @param text the characters containing the word
+   * @param offset the index of the first character of the word
+   * @param length the length of the word, which is positive
+   * @return true if the word is a type; false otherwise
    */
-  private boolean _isType(String x) {
-    if (_primTypes.contains(x)) return true;
+  private static boolean _isType(char[] text, int offset, int length) {
+    return Character.isUpperCase(text[offset]) || PRIM_TYPE_TABLE.contains(text, offset, length);
+  }
+  
+  /** An immutable set of words that can be searched for a sequence of characters without creating a String; uses
+    * open addressing with linear probing in a table that is at most half full. */
+  private static final class WordTable {
+    private final char[][] _words;
+    
+    public WordTable(Set<String> words) {
+      _words = new char[Integer.highestOneBit(2 * words.size() + 1) * 2][];
+      int mask = _words.length - 1;
+      for (String w: words) {
+        char[] chars = w.toCharArray();
+        int i = _hash(chars, 0, chars.length) & mask;
+        while (_words[i] != null) i = (i + 1) & mask;
+        _words[i] = chars;
+      }
+    }
+    
+    /** @return true if the characters on [offset, offset + length) in text form one of the words */
+    public boolean contains(char[] text, int offset, int length) {
+      int mask = _words.length - 1;
+      for (int i = _hash(text, offset, length) & mask; _words[i] != null; i = (i + 1) & mask) {
+        char[] w = _words[i];
+        if (w.length == length) {
+          int j = 0;
+          while (j < length && w[j] == text[offset + j]) j++;
+          if (j == length) return true;
+        }
+      }
+      return false;
+    }
     
-    try { return Character.isUpperCase(x.charAt(0)); } 
-    catch (IndexOutOfBoundsException e) { return false; }
+    private static int _hash(char[] text, int offset, int length) {
+      int h = 0;
+      for (int i = offset; i < offset + length; i++) h = 31 * h + text[i];
+      return h ^ (h >>> 16);
+    }
   }
   
   /** Returns whether the given text only has spaces. 
@@ -684,8 +865,11 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     
     setCurrentLocation(origPos);    // Restore the state of the reduced model;
     
-    if (i == text.length()) reducedPos = -1; // No matching char was found
-    _storeInCache(key, reducedPos, reducedPos);
+    if (i == text.length()) {  // No matching char was found
+      reducedPos = -1;
+      _storeInCache(key, reducedPos, Integer.MAX_VALUE);  // Any change to the document invalidates this result!
+    }
+    else _storeInCache(key, reducedPos, reducedPos);  // Cached answer depends only on text(0:reducedPos]
     // Return position of matching char or ERROR_INDEX (-1)     
     return reducedPos;  
   }
@@ -917,10 +1101,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    * @param key Name of the method and arguments
    * @return the object in the cache associated with key; null if not in the cache.
    */
-  protected Object _checkCache(final Query key) {
-    if (_queryCache == null) return null;
-    return _queryCache.get(key); 
-  }
+  protected Object _checkCache(final Query key) { return _queryCache.get(key); }
   
   /** Stores the given result in the helper method cache. 
    * Query classes define equality structurally.
@@ -932,44 +1113,21 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    *                unchanged, the query should return the same answer.
    */
   protected void _storeInCache(final Query query, final Object answer, final int offset) {
-    if (_queryCache == null) return;
-    _queryCache.put(query, answer);
-    _addToOffsetsToQueries(query, offset);
+    _queryCache.put(query, answer, offset);
   }
   
   /** Clears the memozing cache of queries with offset {@literal >=} than 
-   * specified value.  Should be called every time the document is modified. 
+   * specified value, and the highlight spans of the lines from the one containing offset onward.  Should be called 
+   * every time the document is modified.  Takes amortized constant time; see {@link QueryCache}.
    * @param offset the offset beyond which to clear
    */
-  protected void _clearCache(int offset) {
-    if (_queryCache == null) return;
-    
-    if (offset <= 0) {
-      _queryCache.clear();
-      _offsetToQueries.clear();
-      return;
-    }
-    // The Integer[] copy of the key set is required to avoid ConcurrentModifiationExceptions.  Ugh!
-    Integer[] deadOffsets = _offsetToQueries.tailMap(offset).keySet().toArray(new Integer[0]);
-    for (int i: deadOffsets) {
-      for (Query query: _offsetToQueries.get(i)) _queryCache.remove(query);  // remove query entry from cache
-      _offsetToQueries.remove(i);   // remove query bucket for i from offsetToQueries table
-    }
+  protected void _clearCache(int offset) { 
+    _queryCache.invalidate(offset); 
+    _clearHighlightSpans(offset);
   }
   
-  /** Add {@literal <query,offset>} pair to _offsetToQueries map. 
-   * Assumes lock on _queryCache is already held.
-   * @param query the query
-   * @param offset the offset
-   */
-  private void _addToOffsetsToQueries(final Query query, final int offset) {
-    List<Query> selectedQueries = _offsetToQueries.get(offset);
-    if (selectedQueries == null) {
-      selectedQueries = new LinkedList<Query>();
-      _offsetToQueries.put(offset, selectedQueries);
-    }
-    selectedQueries.add(query);
-  }
+  /** @return the query cache, whose hit and miss counters show how effective it is. */
+  public QueryCache getQueryCache() { return _queryCache; }
   
   /** Default indentation - uses OTHER flag and no progress indicator.  Assume write lock is already held.
     * @param selStart the offset of the initial character of the region to indent
@@ -1038,10 +1196,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   private void _indentBlock(final int start, final int end, Indenter.IndentReason reason, ProgressMonitor pm)
     throws OperationCanceledException, BadLocationException {
     
-    // Set up the query cache;
-    _queryCache = new HashMap<Query, Object>(INIT_CACHE_SIZE);
-    _offsetToQueries = new TreeMap<Integer, List<Query>>();
-    
     // Keep marker at the end. This Position will be the correct endpoint no matter how we change 
     // the doc doing the indentLine calls.
     final Position endPos = this.createUnwrappedPosition(end);
@@ -1068,10 +1222,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       // location yet. That happens at the top of the loop, after we check if we're past the end. 
       walker += _reduced.getDistToNextNewline() + 1;
     }
-    
-    // disable the query cache
-    _queryCache = null;
-    _offsetToQueries = null;
   }
   
   /** Indents a line using the Indenter.  Public ONLY for testing purposes. 
@@ -1788,8 +1938,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       final int length = chng.getLength();
       final String str = getText(offset, length);
       
-      if (length > 0) _clearCache(offset);    // Selectively clear the query cache
-      
       Runnable doCommand = 
         (length == 1) ? new CharInsertCommand(offset, str.charAt(0)) : new InsertCommand(offset, str);
       RemoveCommand undoCommand = new UninsertCommand(offset, length, str);
@@ -1825,8 +1973,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       final String removedText = getText(offset, length);
       super.removeUpdate(chng);
       
-      if (length > 0) _clearCache(offset);  // Selectively clear the query cache
-      
       Runnable doCommand = new RemoveCommand(offset, length, removedText);
       Runnable undoCommand = new UnremoveCommand(offset, removedText);
       
@@ -1916,9 +2062,11 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _text = text;
     }
     
-    /** Inserts chars in reduced model and moves location to end of insert; cache has already been cleared. */
+    /** Inserts chars in reduced model and moves location to end of insert.  Runs both for the original edit and for
+      * undo/redo, so it selectively clears the query cache. */
     public void run() {
       
+      if (_text.length() > 0) _clearCache(_offset);
       _reduced.move(_offset - _currentLocation);  
       int len = _text.length();
       // Record any change to line numbering
@@ -1956,9 +2104,10 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _ch = ch;
     }
     
-    /** Inserts chars in reduced model and moves location to end of insert; cache has already been cleared. */
+    /** Inserts char in reduced model and moves location to end of insert; selectively clears the query cache. */
     public void run() {
       
+      _clearCache(_offset);
       _reduced.move(_offset - _currentLocation);  
       if (_ch == newline) _numLinesChanged(_offset);  // record change to line numbering
       _addCharToReducedModel(_ch);
@@ -1978,8 +2127,9 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _removedText = removedText;
     }
     
-    /** Removes chars from reduced model; cache has already been selectively cleared. */
+    /** Removes chars from reduced model; selectively clears the query cache. */
     public void run() {
+      if (_length > 0) _clearCache(_offset);
       setCurrentLocation(_offset);
       if (_removedText.indexOf(newline) >= 0) _numLinesChanged(_offset);  // record change to line numbering
       _reduced.delete(_length);    
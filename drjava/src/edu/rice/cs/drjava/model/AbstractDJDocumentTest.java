@@ -151,4 +151,31 @@ public class AbstractDJDocumentTest extends DrJavaTestCase {
     assertTrue(AbstractDJDocument._isNum("12.3e2D"));
     assertTrue(AbstractDJDocument._isNum("12.34e2D"));
   }
+  
+  /** Tests that the classifier used for highlighting agrees with _isNum(String) on words without delimiters. */
+  public void testIsNumChars() {
+    String[] words = { "0", "7", "09", "0_7", "1_000", "1__", "_1", "___", "0x", "0b", "0b101", "0b2", "0xFFl", 
+      "0x1p3", "0X1P3d", "0x1p", "0xp3", "1e5", "1e", "e5", "1E5f", "1f", "1fd", "1d", "12L", "12lL", "4294967295", 
+      "4294967296", "18446744073709551615L", "18446744073709551616L", "0xFFFFFFFFFFFFFFFFL", "0777777777777777777777L",
+      "1000000000000000000000L", "x1", "if", "\u0661\u0662" };
+    for (String w: words) { assertEquals(w, AbstractDJDocument._isNum(w), _isNumChars(w)); }
+    
+    // every word of up to four characters from a small alphabet
+    char[] alphabet = "019_xXbBeEfFdDlLpPa".toCharArray();
+    char[] word = new char[4];
+    for (int length = 1; length <= word.length; length++) {
+      int count = (int) Math.pow(alphabet.length, length);
+      for (int n = 0; n < count; n++) {
+        for (int i = 0, m = n; i < length; i++, m /= alphabet.length) { word[i] = alphabet[m % alphabet.length]; }
+        String w = new String(word, 0, length);
+        assertEquals(w, AbstractDJDocument._isNum(w), _isNumChars(w));
+      }
+    }
+  }
+  
+  /** Calls _isNum(char[], int, int) on w, surrounded by other characters. */
+  private static boolean _isNumChars(String w) {
+    char[] text = ("9x " + w + " 1").toCharArray();
+    return AbstractDJDocument._isNum(text, 3, w.length());
+  }
 }
@@ -61,8 +61,15 @@ import java.util.List;
 import java.util.Vector;
 import java.util.WeakHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.event.UndoableEditListener;
 import javax.swing.text.AttributeSet;
@@ -82,6 +89,7 @@ import edu.rice.cs.drjava.config.OptionEvent;
 import edu.rice.cs.drjava.config.OptionListener;
 import edu.rice.cs.drjava.model.cache.DCacheAdapter;
 import edu.rice.cs.drjava.model.cache.DDReconstructor;
+import edu.rice.cs.drjava.model.cache.TextImage;
 import edu.rice.cs.drjava.model.cache.DocumentCache ;
 import edu.rice.cs.drjava.model.compiler.CompilerModel;
 import edu.rice.cs.drjava.model.debug.Breakpoint;
@@ -1392,12 +1400,20 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     
     //        SHOW_GETDOC = true;
     
-    LinkedList<File> filesNotFound = new LinkedList<File>();
-    LinkedList<OpenDefinitionsDocument> filesOpened = new LinkedList<OpenDefinitionsDocument>();
     for (final File f: files) {
       if (f == null) throw new IOException("File name returned from FileSelector is null");
+    }
+    
+    long start = System.nanoTime();
+    final List<Pair<File, String>> resolved = _resolveFiles(files);
+    long resolvedTime = System.nanoTime();
+    
+    LinkedList<File> filesNotFound = new LinkedList<File>();
+    LinkedList<OpenDefinitionsDocument> filesOpened = new LinkedList<OpenDefinitionsDocument>();
+    for (int i = 0; i < files.length; i++) {
+      final File f = files[i];
       try {
-        OpenDefinitionsDocument d = _rawOpenFile(IOUtil.attemptCanonicalFile(f));
+        OpenDefinitionsDocument d = _rawOpenFile(resolved.get(i).first(), resolved.get(i).second());
         //always return last opened Doc
         retDocs.add(d);
         filesOpened.add(d);
@@ -1411,10 +1427,9 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
       }
       catch(FileNotFoundException e) { filesNotFound.add(f); }
     }
+    long registeredTime = System.nanoTime();
     
-    for (final OpenDefinitionsDocument d: filesOpened) {
-      _completeOpenFile(d); // contains view-related calls
-    }
+    _completeOpenFiles(filesOpened); // contains view-related calls
     //        SHOW_GETDOC = false;
     if (filesNotFound.size() > 0)
       _notifier.filesNotFound( filesNotFound.toArray( new File[filesNotFound.size()] ) );
@@ -1426,9 +1441,63 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
       }
     }
     
+    long end = System.nanoTime();
+    _log.log("Opened " + files.length + " files: resolve " + (resolvedTime - start) / 1000000 + " ms, register " +
+             (registeredTime - resolvedTime) / 1000000 + " ms, navigator " + (end - registeredTime) / 1000000 + " ms");
     return retDocs.toArray(new OpenDefinitionsDocument[0]);
   }
   
+  /** Maximum number of threads used to resolve the files of a single open request. */
+  private static final int OPEN_FILES_THREADS = Math.min(8, Runtime.getRuntime().availableProcessors());
+  
+  /** Canonicalizes files and reads the package name of each file that is not a DocFile, which is the disk-bound part
+    * of opening a file.  Large batches are resolved in parallel; none of this work touches the model.  The package
+    * name is null for a DocFile (its package comes from the project file) and for a file that could not be read; 
+    * _rawOpenFile handles both cases as before.
+    * @param files the files to resolve
+    * @return a (canonical file, package name) pair for each file, in the same order as files
+    */
+  private static List<Pair<File, String>> _resolveFiles(final File[] files) {
+    final List<Pair<File, String>> resolved = new ArrayList<Pair<File, String>>(files.length);
+    if (files.length < 2 * OPEN_FILES_THREADS) {
+      for (File f: files) resolved.add(_resolveFile(f));
+      return resolved;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(OPEN_FILES_THREADS, new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "Resolve Opened Files");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    try {
+      List<Future<Pair<File, String>>> futures = new ArrayList<Future<Pair<File, String>>>(files.length);
+      for (final File f: files) {
+        futures.add(pool.submit(new Callable<Pair<File, String>>() {
+          public Pair<File, String> call() { return _resolveFile(f); }
+        }));
+      }
+      for (Future<Pair<File, String>> future: futures) {
+        try { resolved.add(future.get()); }
+        catch (ExecutionException e) { throw new UnexpectedException(e.getCause()); }
+        catch (InterruptedException e) { throw new UnexpectedException(e); }
+      }
+    }
+    finally { pool.shutdown(); }
+    return resolved;
+  }
+  
+  /** Resolves a single file for _resolveFiles.
+    * @param f the file to resolve
+    * @return the canonical file paired with its package name, or with null if the package was not read
+    */
+  private static Pair<File, String> _resolveFile(File f) {
+    File file = IOUtil.attemptCanonicalFile(f);
+    if (file instanceof DocFile || ! file.isFile()) return Pair.make(file, null);
+    try { return Pair.make(file, DefinitionsDocument.getPackageName(new StringReader(FileOps.readFileAsSwingText(file)))); }
+    catch (IOException e) { return Pair.make(file, null); }
+  }
+  
   
   //----------------------- End ILoadDocuments Methods -----------------------//
   
@@ -2723,8 +2792,9 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     
 //     private boolean _modifiedSinceSave;
     
-    /** Cached String image of document as last read from or written to disk; initially null */
-    private volatile String _image;
+    /** Cached image of document as last read from or written to disk; initially null.  Compressed by the document
+      * cache when the document is evicted, and reset to null if the cache discards it. */
+    private volatile TextImage _image;
     private volatile File _file;
     private volatile long _timestamp;
     
@@ -2758,6 +2828,21 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     
     private volatile DrJavaBook _book;
     
+    /** The outline (package and class names) of the current text, or null if an edit has made it stale.  Kept across
+      * evictions from the document cache, so queries about names never reconstruct the document. */
+    private volatile DocumentOutline _outline = null;
+    
+    /** The number of edits made to this document, used to discard an outline computed concurrently with an edit. */
+    private volatile int _edits = 0;
+    
+    /** Invalidates _outline on every edit.  A DocumentUIListener, so the document cache keeps it across 
+      * reconstructions. */
+    private final DocumentUIListener _outlineListener = new DocumentUIListener() {
+      public void insertUpdate(DocumentEvent e) { _outlineChanged(); }
+      public void removeUpdate(DocumentEvent e) { _outlineChanged(); }
+      public void changedUpdate(DocumentEvent e) { }
+    };
+    
     /** Standard constructor for a document read from a file.  Initializes this ODD's DD.  Assumes that f exists.
       * @param f file describing DefinitionsDocument to manage; should be in canonical form
       */
@@ -2785,6 +2870,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
 //        System.err.println("Registering " + this);
         _cacheAdapter = _cache.register(this, ddr);
       } catch(IllegalStateException e) { throw new UnexpectedException(e); }
+      addDocumentListener(_outlineListener);
       
       /* The following table is not affected by the inconsistency between hashCode and equals in StaticDocumentRegion, because
        * BrowserDocumentRegion is NOT a subclass of StaticDocumentRegion. */
@@ -2897,14 +2983,45 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
      * @throws ClassNameNotFoundException if no top level class name found.
      */
     public String getFirstTopLevelClassName() throws ClassNameNotFoundException {
-      return getDocument().getFirstTopLevelClassName();
+      return _getOutline().getFirstTopLevelClassName();
     }
     
     /** @return the name of the main (public) class, if any.
      * @throws ClassNameNotFoundException if no top level class name found.
      */
     public String getMainClassName() throws ClassNameNotFoundException {
-      return getDocument().getMainClassName();
+      return _getOutline().getMainClassName();
+    }
+    
+    /** Returns the outline of the current text of this document, computing it if an edit has made the cached outline
+      * stale.  A document that is not resident in the document cache is outlined from a scratch copy of its text, 
+      * which neither reconstructs it nor evicts any other document.
+      * @return the outline of this document
+      */
+    private DocumentOutline _getOutline() {
+      DocumentOutline outline = _outline;
+      if (outline != null) return outline;
+      
+      final int edits = _edits;
+      if (_cacheAdapter.isReady()) outline = DocumentOutline.of(getDocument());
+      else {
+        DefinitionsDocument scratch = new DefinitionsDocument(_notifier);
+        try {
+          _editorKit.read(new StringReader(getText()), scratch, 0);
+          outline = DocumentOutline.of(scratch);
+        }
+        catch(IOException e) { throw new UnexpectedException(e); }  // reading from a String
+        catch(BadLocationException e) { throw new UnexpectedException(e); }
+        finally { scratch.close(); }
+      }
+      if (edits == _edits) _outline = outline;
+      return outline;
+    }
+    
+    /** Discards the outline after an edit. */
+    private void _outlineChanged() {
+      _edits++;
+      _outline = null;
     }
     
     /** @return the name of this file, or "(Untitled)" if no file. */
@@ -2980,7 +3097,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     public void setPackage(String name)   { _packageName = name; }
     
     /**  @return the name of the package currently embedded in document. */
-    public String getPackageNameFromDocument() { return getDocument().getPackageName(); }
+    public String getPackageNameFromDocument() { return _getOutline().getPackageName(); }
     
     
     /** Originally designed to allow undoManager to set the current document to be modified whenever an undo
@@ -3080,18 +3197,40 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
         
         // Returns the text for this document as a String; assert never returns null;
         public String getText() {
-          String image = _image;
-          if (image != null) return image;
+          TextImage image = _image;
+          if (image != null) return image.getText();
           
-          // Document has not yet been read from disk; read it and set _image before returning text.
+          // Document has not yet been read from disk (or its text was discarded); read it.  The text is not kept in
+          // _image: an uncompressed copy would sit outside the DocumentCache's warm tier, which never discards it, so
+          // scanning every document (compiling, finding tests, Find All) would pin the text of all cold documents.
           // Synchronization on this was eliminated because it does not prevent the returned string from becoming 
           // inconsistent with _doc/_file in the presence of huge scheduling delays.  Of course, all getText operations 
           // can return stale data in the presence of such delays. 
-          try { image = FileOps.readFileAsSwingText(_file); }
-          catch(IOException e) {  image = ""; }  
-//          System.err.println("Returning image '" + image + " for file " + _file);
+          String text;
+          try { text = FileOps.readFileAsSwingText(_file); }
+          catch(IOException e) {  text = ""; }  
+//          System.err.println("Returning image '" + text + " for file " + _file);
+          return text;
+        }
+        
+        public int getLength() {
+          TextImage image = _image;
+          if (image != null) return image.length();
+          return getText().length();
+        }
+        
+        public int compressText() {
+          TextImage image = _image;
+          if (image == null) return 0;
+          image = image.compress();
           _image = image;
-          return _image;
+          return image.size();
+        }
+        
+        public boolean discardText() {
+          if (isUntitled() || ! _file.exists() || _file.lastModified() != _timestamp) return false;
+          _image = null;
+          return true;
         }
         
         public DefinitionsDocument make() throws IOException, BadLocationException, FileMovedException {
@@ -3107,7 +3246,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
           _editorKit.read(new StringReader(image), newDefDoc, 0);
           //  Set document property to write out document using newLine conventions of the host platform.
           newDefDoc.putProperty(DefaultEditorKit.EndOfLineStringProperty, StringOps.EOL);
-          _log.log("Reading from image for " + _file + " containing " + _image.length() + " chars");    
+          _log.log("Reading from image for " + _file + " containing " + image.length() + " chars");    
           
           _loc = Math.min(_loc, image.length()); // make sure not past end
           _loc = Math.max(_loc, 0); // make sure not less than 0
@@ -3144,11 +3283,12 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
           // Save document image.  Note: this could be optimized to eliminate redundant updates to _image
           String text = doc.getText();
           if (text.length() > 0) {
-            _image = text;  
+            _image = TextImage.of(text);  
 //            _log.log("Saving image containing " + _image.length() + " chars for " + _file);
           }
           _loc = doc.getCurrentLocation();
           _list = doc.getDocumentListeners();
+          if (_outline == null) _outline = DocumentOutline.of(doc);  // answer name queries without reconstruction
           _finalListeners = doc.getFinalizationListeners ();
           
           // save offsets of all positions
@@ -3470,7 +3610,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
       if (isUntitled()) return FileOps.NULL_FILE;
       
       String className;
-      try { className = getDocument().getQualifiedClassName(); }
+      try { className = getQualifiedClassName(); }
       catch (ClassNameNotFoundException cnnfe) {
         _log.log("_locateClassFile() failed for " + this + " because getQualifedClassName returned ClassNotFound");
         return FileOps.NULL_FILE;  /* No source class name */ 
@@ -3822,7 +3962,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     public int _getOffset(int lineNum) { return getDocument()._getOffset(lineNum); }
     
     public String getQualifiedClassName() throws ClassNameNotFoundException {
-      return getDocument().getQualifiedClassName();
+      return _getOutline().getQualifiedClassName();
     }
     
     public String getQualifiedClassName(int pos) throws ClassNameNotFoundException {
@@ -4110,8 +4250,16 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
    * @param path the path to the file for which to find the relative path
    */
   public String fixPathForNavigator(String path) throws IOException {
+    return _fixPathForNavigator(path, getProjectRoot().getCanonicalPath());
+  }
+  
+  /** Extracts the relative path from rootPath to the parent of the file identified by path.
+   * @param path the canonical path to the file for which to find the relative path
+   * @param rootPath the canonical path of the project root
+   * @return the relative path, or "" if the file lies outside the project root
+   */
+  private static String _fixPathForNavigator(String path, String rootPath) {
     String parent = path.substring(0, path.lastIndexOf(File.separator ));
-    String rootPath = getProjectRoot().getCanonicalPath();
     
     if (! parent.equals(rootPath) && ! parent.startsWith(rootPath + File.separator))
       /** it's an external file, so don't give it a path */
@@ -4129,7 +4277,19 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
    * @throws IOException if an IO operation fails
    * @throws AlreadyOpenException if the file is already open
    */
-  private OpenDefinitionsDocument _rawOpenFile(File file) throws IOException, AlreadyOpenException{
+  private OpenDefinitionsDocument _rawOpenFile(File file) throws IOException, AlreadyOpenException {
+    return _rawOpenFile(file, null);
+  }
+  
+  /** Creates an OpenDefinitionsDocument for a file whose package name may already be known.  Like 
+   * _rawOpenFile(File), but uses packageName instead of reading the file when file is not a DocFile.
+   * @param file the file to open
+   * @param packageName the package name declared in file, or null if it must be read from the document
+   * @return the newly-opened document
+   * @throws IOException if an IO operation fails
+   * @throws AlreadyOpenException if the file is already open
+   */
+  private OpenDefinitionsDocument _rawOpenFile(File file, String packageName) throws IOException, AlreadyOpenException {
     OpenDefinitionsDocument openDoc = _getOpenDocument(file);
     if (openDoc != null) throw new AlreadyOpenException(openDoc); // handled in MainFrame.openFile(...)
     final ConcreteOpenDefDoc doc = _createOpenDefinitionsDocument(file);
@@ -4146,7 +4306,8 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     }
     else {
 //      Utilities.show("Opened a file " + file.getName() + " that is not a DocFile");
-      doc.setPackage(doc.getPackageNameFromDocument()); // get the package name from the file; forces file to be read
+      if (packageName != null) doc.setPackage(packageName); // already read from the file; the document stays unloaded
+      else doc.setPackage(doc.getPackageNameFromDocument()); // get the package name from the file; forces file to be read
     }
     return doc;
   }
@@ -4174,12 +4335,38 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     synchronized(_documentsRepos) { _documentsRepos.put(doc.getRawFile(), doc); }
   }
   
+  /** Adds a batch of documents just opened from (canonical) files to the navigator.  Equivalent to calling
+    * addDocToNavigator on each document, except that the project root is resolved once for the whole batch
+    * instead of once per document; in flat file mode, resolving it scans every open document.
+    * @param docs the documents to add to the navigator
+    */
+  private void _addDocsToNavigator(List<OpenDefinitionsDocument> docs) {
+    String rootPath;
+    try { rootPath = getProjectRoot().getCanonicalPath(); }
+    catch(IOException e) { rootPath = null; }
+    for (OpenDefinitionsDocument doc: docs) {
+      if (rootPath == null) _documentNavigator.addDocument(doc);
+      else _documentNavigator.addDocument(doc, _fixPathForNavigator(doc.getRawFile().getPath(), rootPath));
+    }
+    synchronized(_documentsRepos) {
+      for (OpenDefinitionsDocument doc: docs) _documentsRepos.put(doc.getRawFile(), doc);
+    }
+  }
+  
   /** Add a document to the classpath for the slave JVM. Does nothing here 
    * because there is no slave JVM.  Overridden in DefaultGlobalModel. 
    * @param doc the doc to be added
    */
   protected void addDocToClassPath(OpenDefinitionsDocument doc) { }
   
+  /** Adds a batch of documents to the classpath for the slave JVM.  Calls addDocToClassPath on each document here;
+   * overridden in DefaultGlobalModel to add each source root only once.
+   * @param docs the docs to be added
+   */
+  protected void addDocsToClassPath(List<OpenDefinitionsDocument> docs) {
+    for (OpenDefinitionsDocument doc: docs) addDocToClassPath(doc);
+  }
+  
   /** Creates a document from a file.
    * @param file File to read document from
    * @return openened document
@@ -4196,7 +4383,26 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
   private void _completeOpenFile(OpenDefinitionsDocument d) {
     addDocToNavigator(d);
     addDocToClassPath(d);
-    
+    _checkProjectChanged(d);
+    _notifier.fileOpened(d);
+  }
+  
+  /** Completes opening a batch of documents created by _rawOpenFile, registering them with the navigator and the
+   * classpath in bulk before notifying listeners.
+   * @param docs the documents to complete
+   */
+  private void _completeOpenFiles(List<OpenDefinitionsDocument> docs) {
+    if (docs.isEmpty()) return;
+    _addDocsToNavigator(docs);
+    addDocsToClassPath(docs);
+    for (OpenDefinitionsDocument d: docs) _checkProjectChanged(d);
+    for (OpenDefinitionsDocument d: docs) _notifier.fileOpened(d);
+  }
+  
+  /** Marks the project as changed if d lies in the project path but is not yet part of the project.
+   * @param d a newly opened document
+   */
+  private void _checkProjectChanged(OpenDefinitionsDocument d) {
     try {
       File f = d.getFile();
       if (! inProject(f) && inProjectPath(d)) setProjectChanged(true);
@@ -4204,8 +4410,6 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     catch(FileMovedException fme) {
       /** project is not modified in this case */
     }
-    
-    _notifier.fileOpened(d);
   }
   
 //  private static class BackUpFileOptionListener implements OptionListener<Boolean> {
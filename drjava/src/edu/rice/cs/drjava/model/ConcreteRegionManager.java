@@ -142,7 +142,7 @@ public class ConcreteRegionManager<R extends OrderedDocumentRegion> extends
      * other region because it is empty.) tail is sorted by [endOffset, 
      * startOffset]; tail may be empty. 
      */
-    if (tail.size() == 0) return null;
+    if (tail.isEmpty()) return null;
     R r = tail.first();
     
     if (r.getStartOffset() <= offset) return r;
@@ -170,7 +170,7 @@ public class ConcreteRegionManager<R extends OrderedDocumentRegion> extends
      * r.getLineStart() > offset.  tail may be empty. 
      */
     // TODO: this comment is not true?
-    if (tail.size() == 0) return null;
+    if (tail.isEmpty()) return null;
     
     // Find the first and last regions whose bounds (using line boundaries) contain offset
     Iterator<R> it = tail.iterator();
@@ -302,6 +302,39 @@ public class ConcreteRegionManager<R extends OrderedDocumentRegion> extends
    * @param region the StaticDocumentRegion to be inserted into the manager
    */
   public void addRegion(final R region) {
+    // only notify if the region was actually added
+    if (_addToSet(region)) {
+      // notify.  invokeLater unnecessary if it only runs in the event thread
+      _lock.startRead();
+      try { for (RegionManagerListener<R> l: _listeners) { l.regionAdded(region); } } 
+      finally { _lock.endRead(); }
+    }
+  }
+  
+  /** Add the supplied regions to the manager, notifying each listener once for the whole batch.  Only runs in event
+    * thread after initialization.
+    * @param regions the regions to be inserted into the manager
+    */
+  public void addRegions(Iterable<? extends R> regions) {
+    ArrayList<R> added = new ArrayList<R>();
+    for (R r: regions) { if (_addToSet(r)) added.add(r); }
+    if (added.isEmpty()) return;
+    
+    _lock.startRead();
+    try {
+      for (RegionManagerListener<R> l: _listeners) {
+        if (l instanceof RegionManagerBatchListener) ((RegionManagerBatchListener<R>) l).regionsAdded(added);
+        else for (R r: added) l.regionAdded(r);
+      }
+    } 
+    finally { _lock.endRead(); }
+  }
+  
+  /** Inserts region in the RegionSet for its document, creating the set if necessary.
+    * @param region the region to be inserted
+    * @return true if region was not already present
+    */
+  private boolean _addToSet(final R region) {
     final OpenDefinitionsDocument odd = region.getDocument();
     RegionSet<R> docRegions = _regions.get(odd);
     if (docRegions == null) { 
@@ -329,14 +362,7 @@ public class ConcreteRegionManager<R extends OrderedDocumentRegion> extends
     }
     
     assert _documents.contains(odd);
-    
-    // only notify if the region was actually added
-    if (! alreadyPresent) {
-      // notify.  invokeLater unnecessary if it only runs in the event thread
-      _lock.startRead();
-      try { for (RegionManagerListener<R> l: _listeners) { l.regionAdded(region); } } 
-      finally { _lock.endRead(); }
-    }
+    return ! alreadyPresent;
   }
   
   /** Remove the given IDocumentRegion from the manager.  If any document's 
@@ -346,23 +372,32 @@ public class ConcreteRegionManager<R extends OrderedDocumentRegion> extends
    */
   public void removeRegion(final R region) {
 //    System.err.println("ConcreteRegionManager.removeRegion(" + region + ") called");
+    // only notify if the region was actually removed
+    if (_removeFromSet(region)) _notifyRegionRemoved(region);
+  }
+  
+  /** Removes region from the RegionSet for its document, dropping the document once its last region is gone.
+    * @param region the region to be removed
+    * @return true if region was present
+    */
+  private boolean _removeFromSet(final R region) {
     OpenDefinitionsDocument doc = region.getDocument();
     RegionSet<R> docRegions = _regions.get(doc);
 //    System.err.println("doc regions for " + doc + " = " + docRegions);
-    if (docRegions == null) return;  // since region is not stored in this region manager, exit!
+    if (docRegions == null) return false;  // since region is not stored in this region manager, exit!
     final boolean wasRemoved = docRegions.remove(region);  // remove the region from the manager
     if (docRegions.isEmpty()) {
       _documents.remove(doc);
       _regions.remove(doc);
     }
-    
-    // only notify if the region was actually removed
-    if (wasRemoved) _notifyRegionRemoved(region);
+    return wasRemoved;
   }
   
-  /** Invoke {@link #removeRegion} on all of the given regions. */
+  /** Remove all of the given regions, notifying each listener once for the whole batch. */
   public void removeRegions(Iterable<? extends R> regions) {
-    for (R r: regions) removeRegion(r);
+    ArrayList<R> removed = new ArrayList<R>();
+    for (R r: regions) { if (_removeFromSet(r)) removed.add(r); }
+    _notifyRegionsRemoved(removed);
   }
   
   private void _notifyRegionRemoved(final R region) {
@@ -371,6 +406,18 @@ public class ConcreteRegionManager<R extends OrderedDocumentRegion> extends
     finally { _lock.endRead(); }
   }
   
+  private void _notifyRegionsRemoved(final List<R> regions) {
+    if (regions.isEmpty()) return;
+    _lock.startRead();
+    try {
+      for (RegionManagerListener<R> l: _listeners) {
+        if (l instanceof RegionManagerBatchListener) ((RegionManagerBatchListener<R>) l).regionsRemoved(regions);
+        else for (R r: regions) l.regionRemoved(r);
+      }
+    } 
+    finally { _lock.endRead(); }
+  }
+  
   /** Remove the specified document from _documents and _regions (removing all 
    * of its contained regions). 
    */
@@ -383,12 +430,9 @@ public class ConcreteRegionManager<R extends OrderedDocumentRegion> extends
     if (found) {
       final RegionSet<R> regions = _regions.get(doc);
 //      System.err.println("Before removal, regions = " + regions);
-      // The following ugly loop is dictated by the "fail fast" semantics of Java iterators
-      while (! regions.isEmpty()) {
-        R r = regions.first();
-        regions.remove(r);  
-        _notifyRegionRemoved(r);
-      }
+      final ArrayList<R> removed = new ArrayList<R>(regions);
+      regions.clear();
+      _notifyRegionsRemoved(removed);
 //      System.err.println("After removal, regions = " + regions);
     }
   }
@@ -439,7 +483,7 @@ public class ConcreteRegionManager<R extends OrderedDocumentRegion> extends
   
   /** Tells the manager to remove all regions. */
   public void clearRegions() {
-    for (R r: getRegions()) removeRegion(r);
+    removeRegions(getRegions());
 //    final ArrayList<R> regions = getRegions();
 ////    System.err.println("ConcreteRegionManager.clearRegions() called with regions = " + regions);
 //// Notify all listeners for this manager that all regions are being removed; listener access _regions and _documents
@@ -481,7 +525,7 @@ public class ConcreteRegionManager<R extends OrderedDocumentRegion> extends
     
     /* Get the tailSet consisting of the ordered set of regions >= firstRegion. */
     SortedSet<R> tail = getTailSet(firstRegion);
-    if (tail.size() == 0) return; // tail can be empty if firstRegion is a constructed StaticDocumentRegion
+    if (tail.isEmpty()) return; // tail can be empty if firstRegion is a constructed StaticDocumentRegion
     
     List<R> toBeRemoved = new ArrayList<R>();  // nonsense to avoid concurrent modification exception
     for (R region: tail) {
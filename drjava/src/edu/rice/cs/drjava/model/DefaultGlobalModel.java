@@ -33,10 +33,12 @@ import java.awt.EventQueue;
 
 import java.io.*;
 
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Vector;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import edu.rice.cs.drjava.DrJava;
@@ -599,7 +601,7 @@ public class DefaultGlobalModel extends AbstractGlobalModel {
       String tempClassName = null;
       
       if (qualifiedClassName == null)
-        tempClassName = getDocument().getQualifiedClassName();
+        tempClassName = getQualifiedClassName();
       else
         tempClassName = qualifiedClassName;
       
@@ -758,6 +760,29 @@ public class DefaultGlobalModel extends AbstractGlobalModel {
     }
   }
   
+  /** Adds the source roots for docs to the interactions classpath, visiting each distinct root only once.  Opening a
+    * project or folder usually yields many documents sharing a few roots, and each addition is a call into the
+    * interpreter JVM.
+    * @param docs the documents to add to the classpath
+    */
+  protected void addDocsToClassPath(List<OpenDefinitionsDocument> docs) {
+    Set<File> projectRoots = new LinkedHashSet<File>();
+    Set<File> externalRoots = new LinkedHashSet<File>();
+    for (OpenDefinitionsDocument doc: docs) {
+      try {
+        File sourceRoot = doc.getSourceRoot();
+        if (doc.isAuxiliaryFile()) { projectRoots.add(sourceRoot); }
+        else { externalRoots.add(sourceRoot); }
+      }
+      catch (InvalidPackageException e) {
+        // Invalid package-- don't add it to classpath
+      }
+    }
+    for (File root: projectRoots) { _interactionsModel.addProjectFilesClassPath(root); }
+    for (File root: externalRoots) { _interactionsModel.addExternalFilesClassPath(root); }
+    if (! projectRoots.isEmpty() || ! externalRoots.isEmpty()) setClassPathChanged(true);
+  }
+  
   private void _setupDebugger() {
     _jvm.setDebugModel(_debugger.callback());
     
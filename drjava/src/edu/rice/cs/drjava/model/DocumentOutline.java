@@ -0,0 +1,106 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import edu.rice.cs.drjava.model.definitions.ClassNameNotFoundException;
+import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
+
+/** The package and top-level class names declared in the text of a definitions document.  These are the structural
+  * queries that compiling, testing, running and class file lookup make for every open document, so ConcreteOpenDefDoc
+  * keeps the outline of its current text and answers them without touching (or reconstructing) its 
+  * DefinitionsDocument.  The names are computed by the DefinitionsDocument methods of the same names, so an outline
+  * answers exactly as the document would, including the ClassNameNotFoundException when there is no such class.
+  * Immutable.
+  */
+class DocumentOutline {
+  
+  private final String _packageName;
+  
+  /** The name of the main class, or null if _mainClassError describes why there is none. */
+  private final String _mainClassName;
+  private final ClassNameNotFoundException _mainClassError;
+  
+  /** The name of the first top-level class, or null if _firstClassError describes why there is none. */
+  private final String _firstClassName;
+  private final ClassNameNotFoundException _firstClassError;
+  
+  private DocumentOutline(String packageName, String mainClassName, ClassNameNotFoundException mainClassError,
+                          String firstClassName, ClassNameNotFoundException firstClassError) {
+    _packageName = packageName;
+    _mainClassName = mainClassName;
+    _mainClassError = mainClassError;
+    _firstClassName = firstClassName;
+    _firstClassError = firstClassError;
+  }
+  
+  /** @param doc the document to outline; only executes in the event thread
+    * @return the outline of the current text of doc 
+    */
+  static DocumentOutline of(DefinitionsDocument doc) {
+    String mainClassName = null;
+    ClassNameNotFoundException mainClassError = null;
+    try { mainClassName = doc.getMainClassName(); }
+    catch (ClassNameNotFoundException e) { mainClassError = e; }
+    
+    String firstClassName = null;
+    ClassNameNotFoundException firstClassError = null;
+    try { firstClassName = doc.getFirstTopLevelClassName(); }
+    catch (ClassNameNotFoundException e) { firstClassError = e; }
+    
+    return new DocumentOutline(doc.getPackageName(), mainClassName, mainClassError, firstClassName, firstClassError);
+  }
+  
+  /** @return the name of the declared package, or "" if there is no well-formed package statement */
+  public String getPackageName() { return _packageName; }
+  
+  /** @return the name of the only public top-level class, or of the first top-level class if none is public
+    * @throws ClassNameNotFoundException if the document declares no top-level class
+    */
+  public String getMainClassName() throws ClassNameNotFoundException {
+    if (_mainClassName == null) throw _mainClassError;
+    return _mainClassName;
+  }
+  
+  /** @return the name of the first top-level class
+    * @throws ClassNameNotFoundException if the document declares no top-level class
+    */
+  public String getFirstTopLevelClassName() throws ClassNameNotFoundException {
+    if (_firstClassName == null) throw _firstClassError;
+    return _firstClassName;
+  }
+  
+  /** @return the main class name qualified by the package name
+    * @throws ClassNameNotFoundException if the document declares no top-level class
+    */
+  public String getQualifiedClassName() throws ClassNameNotFoundException {
+    if (_packageName == null || _packageName.equals("")) return getMainClassName();
+    return _packageName + "." + getMainClassName();
+  }
+}
@@ -2,9 +2,13 @@ package edu.rice.cs.drjava.model;
 
 import edu.rice.cs.drjava.DrJavaTestCase;
 import edu.rice.cs.util.UnexpectedException;
+import edu.rice.cs.util.swing.Utilities;
 import edu.rice.cs.plt.io.IOUtil;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Position;
 
@@ -192,4 +196,125 @@ public class DocumentRegionTest extends DrJavaTestCase {
     assertTrue("No region found", rm.getRegionsOverlapping(_doc, 2, 5).size() == 0);
     assertTrue("No region found", rm.getRegionsOverlapping(_doc, 5, 8).size() == 0);
   }
+  
+  /** Records the notifications sent by a RegionManager. */
+  private static class RecordingListener implements RegionManagerListener<StaticDocumentRegion> {
+    final List<StaticDocumentRegion> added = new ArrayList<StaticDocumentRegion>();
+    final List<StaticDocumentRegion> changed = new ArrayList<StaticDocumentRegion>();
+    final List<StaticDocumentRegion> removed = new ArrayList<StaticDocumentRegion>();
+    public void regionAdded(StaticDocumentRegion r) { added.add(r); }
+    public void regionChanged(StaticDocumentRegion r) { changed.add(r); }
+    public void regionRemoved(StaticDocumentRegion r) { removed.add(r); }
+  }
+  
+  /** Records the batches sent by a RegionManager. */
+  private static class RecordingBatchListener extends RecordingListener 
+    implements RegionManagerBatchListener<StaticDocumentRegion> {
+    int addedBatches = 0;
+    int removedBatches = 0;
+    public void regionsAdded(List<StaticDocumentRegion> rs) { addedBatches++; added.addAll(rs); }
+    public void regionsRemoved(List<StaticDocumentRegion> rs) { removedBatches++; removed.addAll(rs); }
+  }
+  
+  /** Tests that batch operations notify batch listeners once and other listeners once per region. 
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public void testBatchNotification() throws BadLocationException {
+    _doc.insertString(0, DOCUMENT_TEXT, null);
+    RegionManager<StaticDocumentRegion> rm = new ConcreteRegionManager<StaticDocumentRegion>();
+    RecordingListener plain = new RecordingListener();
+    RecordingBatchListener batch = new RecordingBatchListener();
+    rm.addListener(plain);
+    rm.addListener(batch);
+    
+    StaticDocumentRegion r1 = new StaticDocumentRegion(_doc, 7, 12);
+    StaticDocumentRegion r2 = new StaticDocumentRegion(_doc, 13, 16);
+    StaticDocumentRegion r3 = new StaticDocumentRegion(_doc, 0, 6);
+    rm.addRegions(Arrays.asList(r1, r2, r3, new StaticDocumentRegion(_doc, 7, 12)));
+    assertEquals("duplicate region ignored", 3, rm.getRegionCount());
+    assertEquals(Arrays.asList(r1, r2, r3), plain.added);
+    assertEquals(Arrays.asList(r1, r2, r3), batch.added);
+    assertEquals("one batch", 1, batch.addedBatches);
+    assertSame(r1, rm.getRegionAt(_doc, 8));
+    
+    rm.removeRegions(Arrays.asList(r2, r3));
+    assertEquals(Arrays.asList(r2, r3), plain.removed);
+    assertEquals("one batch", 1, batch.removedBatches);
+    assertEquals(1, rm.getRegionCount());
+    
+    rm.addRegions(Arrays.asList(r2, r3));
+    rm.removeRegions(_doc);
+    assertEquals("one batch", 2, batch.removedBatches);
+    assertEquals(5, batch.removed.size());
+    assertTrue(rm.getDocuments().isEmpty());
+  }
+  
+  /** Tests that an edit only reports the regions it touches, plus the regions following it when lines move.
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public void testEditNotifiesTouchedRegions() throws BadLocationException {
+    _doc.insertString(0, DOCUMENT_TEXT, null);
+    ConcreteRegionManager<StaticDocumentRegion> rm = new ConcreteRegionManager<StaticDocumentRegion>();
+    rm.requireNotification();
+    RecordingListener l = new RecordingListener();
+    rm.addListener(l);
+    
+    int barStart = DOCUMENT_TEXT.indexOf("bar()");
+    StaticDocumentRegion r1 = new StaticDocumentRegion(_doc, 7, 12);  // "class"
+    StaticDocumentRegion r2 = new StaticDocumentRegion(_doc, 13, 16);  // "Foo"
+    StaticDocumentRegion r3 = new StaticDocumentRegion(_doc, barStart, barStart + 3);  // "bar"
+    rm.addRegions(Arrays.asList(r1, r2, r3));
+    
+    _doc.insertString(9, "x", null);
+    assertEquals("insertion within a line", Arrays.asList(r1, r2), l.changed);
+    
+    l.changed.clear();
+    _doc.insertString(0, "\n", null);
+    assertEquals("insertion of a line", Arrays.asList(r1, r2, r3), l.changed);
+    
+    l.changed.clear();
+    _doc.remove(r2.getStartOffset() + 1, 1);
+    Utilities.clearEventQueue();
+    assertEquals("removal within a line", Arrays.asList(r1, r2), l.changed);
+    assertEquals("Fo", _doc.getText(r2.getStartOffset(), r2.getEndOffset() - r2.getStartOffset()));
+    
+    l.changed.clear();
+    _doc.remove(r1.getStartOffset(), r2.getEndOffset() - r1.getStartOffset());  // collapses r1 and r2
+    Utilities.clearEventQueue();
+    assertEquals("removal of regions", Arrays.asList(r1, r2), l.changed);
+    assertEquals("collapsed regions coalesce", 2, rm.getRegions(_doc).size());
+    assertSame(r3, rm.getRegionAt(_doc, r3.getStartOffset()));
+  }
+  
+  /** Tests that an edit outside a region's bounds but on its line reports the region, whose label shows the line.
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public void testEditOnSameLineNotifiesRegion() throws BadLocationException {
+    _doc.insertString(0, DOCUMENT_TEXT, null);
+    ConcreteRegionManager<StaticDocumentRegion> rm = new ConcreteRegionManager<StaticDocumentRegion>();
+    rm.requireNotification();
+    RecordingListener l = new RecordingListener();
+    rm.addListener(l);
+    
+    int barStart = DOCUMENT_TEXT.indexOf("bar()");
+    StaticDocumentRegion r2 = new StaticDocumentRegion(_doc, 13, 16);  // "Foo"
+    StaticDocumentRegion r3 = new StaticDocumentRegion(_doc, barStart, barStart + 3);  // "bar"
+    rm.addRegions(Arrays.asList(r2, r3));
+    
+    _doc.insertString(0, "x", null);
+    assertEquals("insertion before the region on its line", Arrays.asList(r2), l.changed);
+    
+    l.changed.clear();
+    _doc.insertString(_doc.getText().indexOf("bar()") + 5, " ", null);
+    assertEquals("insertion after the region on its line", Arrays.asList(r3), l.changed);
+    
+    l.changed.clear();
+    _doc.remove(0, 1);
+    Utilities.clearEventQueue();
+    assertEquals("removal before the region on its line", Arrays.asList(r2), l.changed);
+    
+    l.changed.clear();
+    _doc.insertString(_doc.getText().indexOf("{"), " ", null);
+    assertEquals("insertion on a line without regions", Arrays.<StaticDocumentRegion>asList(), l.changed);
+  }
 }
@@ -29,6 +29,7 @@
 package edu.rice.cs.drjava.model;   
 
 import edu.rice.cs.plt.lambda.Runnable1;
+import edu.rice.cs.plt.lambda.Thunk;
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.swing.DocumentIterator;
 import edu.rice.cs.util.swing.Utilities;
@@ -68,6 +69,8 @@ public class FindReplaceMachine {
   private volatile DocumentIterator _docIterator;          // An iterator of open documents; _doc is current
   private volatile SingleDisplayModel _model;
   private volatile Component _frame;
+  /** Trigram signatures of the searched documents, used to skip documents that cannot contain _findWord. */
+  private final TrigramIndex _index = new TrigramIndex();
   
   /** Standard Constructor. Creates new machine to perform find/replace operations on documents.  Only called ONCE in
     * initializing FindReplacePanel.  Search/replace commands reuse this machine for each subsequent search/replace
@@ -96,6 +99,9 @@ public class FindReplaceMachine {
     setIgnoreTestCases(false);
   }
   
+  /** @return the index used to skip documents; for testing purposes. */
+  TrigramIndex getIndex() { return _index; }
+  
   public void cleanUp() {
     _docIterator = null;
     setFindWord("");
@@ -412,6 +418,7 @@ public class FindReplaceMachine {
     assert EventQueue.isDispatchThread() || Utilities.TEST_MODE;
 
     if (! _searchSelectionOnly) {
+      if (! _index.mayContain(_doc, _findWord)) return 0;  // avoids loading a virtualized document
       _selectionRegion = new MovingDocumentRegion(_doc, 0, _doc.getLength(), _doc._getLineStartPos(0),
                                                   _doc._getLineEndPos(_doc.getLength()));
     }
@@ -494,7 +501,11 @@ public class FindReplaceMachine {
     assert EventQueue.isDispatchThread() || Utilities.TEST_MODE;
 
     // search from current position to "end" of document ("end" is start if searching backward)
-    _log.log("_findNextInDoc([" + doc.getText() + "], " + start + ", " + len + ", " + searchAll + ")");
+    _log.log(new Thunk<String>() {
+      public String value() {
+        return "_findNextInDoc([" + doc.getText() + "], " + start + ", " + len + ", " + searchAll + ")";
+      }
+    });
     FindResult fr = _findNextInDocSegment(doc, start, len);
     if (fr.getFoundOffset() >= 0 || searchAll) return fr;
     
@@ -670,7 +681,9 @@ public class FindReplaceMachine {
     
     assert EventQueue.isDispatchThread() || Utilities.TEST_MODE;
 
-    _log.log("_findNextInOtherDocs(" + startDoc.getText() + ", " + start + ", " + len + ")");
+    _log.log(new Thunk<String>() {
+      public String value() { return "_findNextInOtherDocs(" + startDoc.getText() + ", " + start + ", " + len + ")"; }
+    });
     
     boolean allWrapped = false;
     // _doc may be null if the next document isn't found and the user didn't want to continue!
@@ -688,11 +701,11 @@ public class FindReplaceMachine {
 //      else setPosition(_doc.getLength());
         
         
-        // find next match in _doc
-        FindResult fr;
-        fr = _findNextInDocSegment(_doc, 0, _doc.getLength(), false, allWrapped); 
-        
-        if (fr.getFoundOffset() >= 0) return fr;
+        // find next match in _doc, unless the index shows there is none
+        if (_index.mayContain(_doc, _findWord)) {
+          FindResult fr = _findNextInDocSegment(_doc, 0, _doc.getLength(), false, allWrapped); 
+          if (fr.getFoundOffset() >= 0) return fr;
+        }
       }
 //      System.err.println("Advancing from '" + _doc.getText() + "' to next doc");        
       // _doc may be null if the next document isn't found and the user didn't want to continue!
@@ -394,6 +394,57 @@ public class FindReplaceMachineTest extends DrJavaTestCase {
 //    System.err.println("testSearchesDoNotRepeatWhenChangingDirection completed");
   }
   
+  /** Tests that documents whose trigram signatures exclude the find word are skipped, and that signatures follow
+    * later edits.
+    * @throws BadLocationException if attempts to reference an invalid location
+    */
+  public void testIndexSkipsDocuments() throws BadLocationException {
+    _doc.insertString(0, EVIL_TEXT, null);
+    _docPrev.insertString(0, EVIL_TEXT_PREV, null);
+    _docNext.insertString(0, EVIL_TEXT_NEXT, null);
+    TrigramIndex index = _frm.getIndex();
+    assertFalse(index.mayContain(_doc, "evilnext"));
+    assertTrue(index.mayContain(_docNext, "EvilNext"));
+    assertTrue("short words are not filtered", index.mayContain(_doc, "zq"));
+    
+    _initFrm(0);
+    _frm.setFindWord("evilnext");
+    _frm.setMatchCase(false);
+    _frm.setSearchBackwards(false);
+    _frm.setSearchAllDocuments(true);
+    _testFindNextSucceeds(_frm, 16, 16, _docNext);
+    
+    int builds = index.getBuildCount();
+    _docPrev.insertString(4, " evilnext", null);  // signature is updated from the insertion event
+    _docPrev.remove(0, 4);
+    _docPrev.insertString(0, "x", null);
+    assertTrue(index.mayContain(_docPrev, "evilnext"));
+    assertTrue("junction of removal is indexed", index.mayContain(_docPrev, "x evil"));
+    assertEquals("no rebuild for small edits", builds, index.getBuildCount());
+    
+    _frm.setReplaceWord("monkey");
+    replaceAll();
+    assertEquals("Hear no monkey, see no monkey, speak no monkey.", _docNext.getText());
+    assertEquals("x monkey no evilprev, see no evilprev, speak no evilprev.", _docPrev.getText());
+    assertEquals(EVIL_TEXT, _doc.getText());
+  }
+  
+  /** Tests that the trigram index folds case the way the search does, so no document that matches is skipped.
+    * @throws BadLocationException if attempts to reference an invalid location
+    */
+  public void testIndexFoldsCaseLikeSearch() throws BadLocationException {
+    _doc.insertString(0, "\u03bf\u03b4\u03bf\u03c2 \u0130stanbul", null);  // a Greek word ending in a final sigma
+    TrigramIndex index = _frm.getIndex();
+    assertTrue("capital sigma", index.mayContain(_doc, "\u039f\u0394\u039f\u03a3"));
+    assertTrue("dotted capital I", index.mayContain(_doc, "i\u0307stan"));
+    assertFalse(index.mayContain(_doc, "istanbul"));
+    
+    _initFrm(0);
+    _frm.setFindWord("\u039f\u0394\u039f\u03a3");
+    _frm.setMatchCase(false);
+    _testFindNextSucceeds(_frm, 0, 4);
+  }
+  
   /** This test addresses feature request #784514 Find/Replace in all Open Files. 
    * @throws BadLocationException if attempts to reference an invalid location
    */
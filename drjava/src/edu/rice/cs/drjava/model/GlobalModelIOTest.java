@@ -35,6 +35,7 @@ import javax.swing.text.BadLocationException;
 
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.config.OptionConstants;
+import edu.rice.cs.drjava.model.definitions.InvalidPackageException;
 import edu.rice.cs.drjava.model.repl.*;
 import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.util.FileOps;
@@ -516,6 +517,41 @@ public final class GlobalModelIOTest extends GlobalModelTestCase implements Opti
     _log.log("testOpenMultipleNonexistentFiles completed");
   }
   
+  /** Opens a batch of files large enough to be resolved in parallel, and checks that each document gets the package
+    * declared in its file without being loaded, and that the documents are registered in order.
+    * @throws IOException if an IO operation fails
+    */
+  public void testOpenLargeBatchOfFiles() throws IOException, OperationCanceledException, AlreadyOpenException,
+    InvalidPackageException {
+    final File srcDir = new File(_tempDir, "src");
+    final File[] files = new File[40];
+    for (int i = 0; i < files.length; i++) {
+      final String pkg = (i % 2 == 0) ? "even" : "odd";
+      final File dir = new File(srcDir, pkg);
+      dir.mkdirs();
+      files[i] = new File(dir, "C" + i + ".java");
+      IOUtil.writeStringToFile(files[i], "/* C" + i + " */\npackage " + pkg + ";\nclass C" + i + " { }\n");
+    }
+    
+    TestListener listener = new TestIOListener();
+    _model.addListener(listener);
+    OpenDefinitionsDocument[] docs = _model.openFiles(new FileOpenSelector() {
+      public File[] getFiles() { return files; }
+    });
+    listener.assertOpenCount(files.length);
+    listener.assertCloseCount(1);  // closed Untitled document
+    assertEquals("Number of docs returned", files.length, docs.length);
+    for (int i = 0; i < files.length; i++) {
+      assertEquals("file of doc " + i, IOUtil.attemptCanonicalFile(files[i]), docs[i].getRawFile());
+      assertEquals("package of doc " + i, (i % 2 == 0) ? "even" : "odd", docs[i].getPackageName());
+      assertFalse("doc " + i + " is not loaded", docs[i].isReady());
+      assertEquals("source root of doc " + i, IOUtil.attemptCanonicalFile(srcDir), docs[i].getSourceRoot());
+    }
+    assertEquals("document count", files.length, _model.getDocumentCount());
+    
+    _log.log("testOpenLargeBatchOfFiles completed");
+  }
+  
   /** Error checking for openening multiple files checks for null and an array w/null. */
   public void testOpenMultipleFilesError() {
     
@@ -0,0 +1,196 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/** A memoizing cache for {@link Query} answers in a document.  Each answer is stored with the offset bounding the
+  * right edge of the text on which it depends; an edit at offset {@code o} invalidates every answer whose offset is 
+  * {@literal >=} {@code o}.  Invalidation is lazy: an edit only records its offset in a stack of (edit number, offset)
+  * pairs whose offsets increase from bottom to top (an edit makes every entry at or above its offset redundant), so the
+  * smallest offset edited since an answer was stored is found by binary search.  Stale answers are dropped when they
+  * are looked up, or all at once when the edit stack or the table fills up.  Thus an edit costs amortized constant 
+  * time and a lookup costs O(log n) in the number of recorded edits.
+  * 
+  * Synchronized because queries may run under the document's read lock in several threads at once.
+  */
+public class QueryCache {
+  
+  /** The default maximum number of entries. */
+  public static final int DEFAULT_MAX_SIZE = 0x10000;  // 16**4 = 65536
+  
+  /** The number of edits recorded before the table is swept and the edit stack is reset. */
+  private static final int MAX_EDITS = 1024;
+  
+  private static class Entry {
+    final Object _answer;
+    final int _offset;
+    final long _stamp;
+    Entry(Object answer, int offset, long stamp) {
+      _answer = answer;
+      _offset = offset;
+      _stamp = stamp;
+    }
+  }
+  
+  private final int _maxSize;
+  private final HashMap<Query, Entry> _table;
+  
+  /** The number of edits made; entries are stamped with the value at the time they are stored. */
+  private long _stamp;
+  /** The stack of edits that may still invalidate entries: stamps and offsets both strictly increase. */
+  private final long[] _editStamps;
+  private final int[] _editOffsets;
+  private int _editCount;
+  
+  private long _hits;
+  private long _misses;
+  private long _stale;
+  
+  /** Creates a cache with the default maximum size. */
+  public QueryCache() { this(DEFAULT_MAX_SIZE); }
+  
+  /** @param maxSize the number of entries beyond which stale entries are swept (and, if that is not enough, the 
+    *        whole cache is cleared)
+    */
+  public QueryCache(int maxSize) {
+    _maxSize = maxSize;
+    _table = new HashMap<Query, Entry>();
+    _editStamps = new long[MAX_EDITS];
+    _editOffsets = new int[MAX_EDITS];
+    _stamp = 0;
+    _editCount = 0;
+  }
+  
+  /** @param key the query
+    * @return the cached answer for key, or null if there is no valid cached answer.
+    */
+  public synchronized Object get(Query key) {
+    Entry e = _table.get(key);
+    if (e == null) { _misses++; return null; }
+    if (_isStale(e)) {
+      _table.remove(key);
+      _stale++;
+      _misses++;
+      return null;
+    }
+    _hits++;
+    return e._answer;
+  }
+  
+  /** Stores an answer.
+    * @param query the query
+    * @param answer the answer
+    * @param offset the offset bounding the right edge of the text on which the answer depends; if text(0:offset) in 
+    *        the document is unchanged, the query should return the same answer.
+    */
+  public synchronized void put(Query query, Object answer, int offset) {
+    _table.put(query, new Entry(answer, offset, _stamp));
+    if (_table.size() > _maxSize) {
+      _sweep();
+      if (_table.size() > _maxSize / 2) _table.clear();
+    }
+  }
+  
+  /** Invalidates the answers depending on text at or beyond offset.  Should be called every time the document is 
+    * modified.
+    * @param offset the offset of the modification
+    */
+  public synchronized void invalidate(int offset) {
+    if (offset <= 0) { clear(); return; }
+    if (_table.isEmpty()) return;  // no entry can be stale; the edit stack is already empty
+    
+    _stamp++;
+    while (_editCount > 0 && _editOffsets[_editCount - 1] >= offset) _editCount--;
+    if (_editCount == MAX_EDITS) _sweep();
+    _editStamps[_editCount] = _stamp;
+    _editOffsets[_editCount] = offset;
+    _editCount++;
+  }
+  
+  /** Discards all entries. */
+  public synchronized void clear() {
+    _table.clear();
+    _editCount = 0;
+  }
+  
+  /** @return the number of entries, including stale entries that have not yet been discarded. */
+  public synchronized int size() { return _table.size(); }
+  
+  /** @return the number of lookups that found a valid answer. */
+  public synchronized long getHits() { return _hits; }
+  
+  /** @return the number of lookups that did not find a valid answer. */
+  public synchronized long getMisses() { return _misses; }
+  
+  /** @return the number of lookups that found an answer invalidated by an edit. */
+  public synchronized long getStaleMisses() { return _stale; }
+  
+  /** @return the fraction of lookups that found a valid answer, or 0 if there have been no lookups. */
+  public synchronized double getHitRate() {
+    long total = _hits + _misses;
+    return (total == 0) ? 0.0 : ((double) _hits) / total;
+  }
+  
+  /** Resets the hit and miss counters. */
+  public synchronized void resetStatistics() {
+    _hits = 0;
+    _misses = 0;
+    _stale = 0;
+  }
+  
+  public synchronized String toString() {
+    return "QueryCache[size=" + _table.size() + ", hits=" + _hits + ", misses=" + _misses + ", stale=" + _stale + "]";
+  }
+  
+  /** @return true if an edit made after e was stored is at or before e's offset. */
+  private boolean _isStale(Entry e) {
+    // find the first edit made after e was stored; it has the smallest offset of all such edits
+    int lo = 0;
+    int hi = _editCount;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (_editStamps[mid] > e._stamp) hi = mid;
+      else lo = mid + 1;
+    }
+    return lo < _editCount && _editOffsets[lo] <= e._offset;
+  }
+  
+  /** Discards all stale entries and empties the edit stack. */
+  private void _sweep() {
+    if (_editCount == 0) return;
+    Iterator<Map.Entry<Query, Entry>> i = _table.entrySet().iterator();
+    while (i.hasNext()) {
+      if (_isStale(i.next().getValue())) i.remove();
+    }
+    _editCount = 0;
+  }
+}
@@ -0,0 +1,84 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the suffix invalidation and the counters of QueryCache.
+  * @version $Id$
+  */
+public class QueryCacheTest extends DrJavaTestCase {
+  
+  public void testInvalidatesSuffix() {
+    QueryCache cache = new QueryCache();
+    for (int i = 0; i < 100; i++) cache.put(new Query.LineStartPos(i), i, i);
+    cache.invalidate(50);
+    for (int i = 0; i < 50; i++) assertEquals("valid " + i, i, cache.get(new Query.LineStartPos(i)));
+    for (int i = 50; i < 100; i++) assertNull("stale " + i, cache.get(new Query.LineStartPos(i)));
+    assertEquals(50, cache.getHits());
+    assertEquals(50, cache.getMisses());
+    assertEquals(50, cache.getStaleMisses());
+    assertEquals(0.5, cache.getHitRate(), 0.0);
+  }
+  
+  public void testLaterEditsDoNotAffectNewerEntries() {
+    QueryCache cache = new QueryCache();
+    cache.put(new Query.LineStartPos(10), 10, 10);
+    cache.invalidate(40);
+    cache.invalidate(5);   // invalidates the entry at 10
+    cache.put(new Query.LineStartPos(20), 20, 20);
+    cache.invalidate(30);  // after the entry at 20
+    assertNull(cache.get(new Query.LineStartPos(10)));
+    assertEquals(20, cache.get(new Query.LineStartPos(20)));
+    cache.invalidate(20);
+    assertNull(cache.get(new Query.LineStartPos(20)));
+    cache.put(new Query.LineStartPos(1), 1, 1);
+    cache.invalidate(0);
+    assertNull(cache.get(new Query.LineStartPos(1)));
+  }
+  
+  /** Many increasing edits overflow the edit stack, which sweeps the stale entries. */
+  public void testManyEdits() {
+    QueryCache cache = new QueryCache();
+    for (int i = 0; i < 5000; i++) {
+      cache.put(new Query.LineStartPos(i), i, i);
+      cache.invalidate(i + 1);
+    }
+    for (int i = 0; i < 5000; i++) assertEquals(i, cache.get(new Query.LineStartPos(i)));
+    cache.invalidate(2500);
+    assertNull(cache.get(new Query.LineStartPos(2500)));
+    assertEquals(2499, cache.get(new Query.LineStartPos(2499)));
+  }
+  
+  public void testBoundedSize() {
+    QueryCache cache = new QueryCache(100);
+    for (int i = 0; i < 1000; i++) cache.put(new Query.LineStartPos(i), i, i);
+    assertTrue(cache.size() <= 100);
+  }
+}
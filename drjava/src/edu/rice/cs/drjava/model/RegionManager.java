@@ -78,6 +78,11 @@ public interface RegionManager<R extends IDocumentRegion> {
    */
   public void addRegion(R region);
 
+  /** Add the supplied DocumentRegions to the manager as a single batch.
+   *  @param regions the DocumentRegions to be inserted into the manager
+   */
+  public void addRegions(Iterable<? extends R> regions);
+
   /** Remove the given StaticDocumentRegion from the manager.
    *  @param region the StaticDocumentRegion to be removed.
    */
@@ -36,11 +36,16 @@
 
 package edu.rice.cs.drjava.model;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
 import java.util.TreeSet;
 
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.text.Element;
 
 import edu.rice.cs.util.swing.Utilities;
 
@@ -74,7 +79,7 @@ public class RegionSet<R extends IDocumentRegion> extends TreeSet<R> {
 
       if (this._docListener != null) return;
 
-      OpenDefinitionsDocument odd = region.getDocument();
+      final OpenDefinitionsDocument odd = region.getDocument();
 
       /* Listen on changes to the document, as these may affect the region. */
       final RegionSet<R> thisRef = this;
@@ -84,48 +89,35 @@ public class RegionSet<R extends IDocumentRegion> extends TreeSet<R> {
           /* Insertion can't cause positions to flip */
           /* But we should still notify the RegionManager, if requested. */
           if (thisRef._manager != null) {
-            for (R region : thisRef) {
-              thisRef._manager.notifyChangedRegion((OrderedDocumentRegion)region);
-            }
+            int offset = e.getOffset();
+            int lineEnd = _lineEnd(odd, offset + e.getLength());
+            List<R> touched = thisRef._touching(odd, _lineStart(odd, offset), lineEnd, false);
+            thisRef._notifyChanged(odd, touched, lineEnd, _linesChanged(e));
           }
         }
 
         public void removeUpdate(DocumentEvent e) {
 
-          final DocumentEvent finalE = e;
+          final int offset = e.getOffset();
+          final boolean linesChanged = _linesChanged(e);
           Utilities.invokeLater(new Runnable() { 
 
             public void run() {
 
-              /* Removal can cause positions to flip, but only need to worry if the removed portion is within the bounds
-               * of one or more regions. 
-               */
-              boolean requireRebalance = false;
-              for (R region : thisRef) {
-                if (region.getStartOffset() <= finalE.getOffset() &&
-                  finalE.getOffset() <= region.getEndOffset()) {
-                     requireRebalance = true;
-                     break;
-                }
-              }
-
-              /* Brute-force re-balance; can be relatively expensive if there are many regions, but in practice runs
-               * infrequently enough so as to be unnoticeable. Note: this code can probably be made ore efficient 
-               * because the region set to be rebalanced is almost in balance already.  Not worth the complication.
+              /* Removal can cause positions to flip, but only for the regions whose bounds contain the removed 
+               * portion, which has collapsed to offset.  Those regions are taken out of the set and re-inserted; all
+               * other regions keep their relative order because their positions shift uniformly.
                */
-              if (requireRebalance) {
-                @SuppressWarnings("unchecked")
-                RegionSet<R> thisCopy = (RegionSet<R>)thisRef.clone();
-                thisRef.clear();
-                thisRef.addAll(thisCopy);
-              }
-
-              /* Notify the RegionManager, if requested. */
-              if (thisRef._manager != null) {
-                for (R region : thisRef) {
-                  thisRef._manager.notifyChangedRegion((OrderedDocumentRegion)region);
-                }
-              }
+              List<R> touched = thisRef._touching(odd, offset, offset, true);
+              thisRef.addAll(touched);
+
+              /* Notify the RegionManager, if requested, of the regions on the edited line, and of the touched regions
+               * that were dropped because they collapsed onto an equal region. */
+              if (thisRef._manager == null) return;
+              int lineEnd = _lineEnd(odd, offset);
+              List<R> changed = thisRef._touching(odd, _lineStart(odd, offset), lineEnd, false);
+              for (R region : touched) { if (thisRef.floor(region) != region) changed.add(region); }
+              thisRef._notifyChanged(odd, changed, lineEnd, linesChanged);
             }
            });
         }
@@ -138,6 +130,81 @@ public class RegionSet<R extends IDocumentRegion> extends TreeSet<R> {
       odd.addDocumentListener(_docListener);
     }
 
+    /** @param e a document event
+      * @return true if e inserted or removed line breaks, changing the line numbers of the text following it
+      */
+    private static boolean _linesChanged(DocumentEvent e) {
+      return e.getChange(e.getDocument().getDefaultRootElement()) != null;
+    }
+
+    /** @param odd a document
+      * @param pos an offset in odd, which is clamped to the document
+      * @return the offset of the start of the line containing pos
+      */
+    private static int _lineStart(OpenDefinitionsDocument odd, int pos) {
+      Element root = odd.getDefaultRootElement();
+      return root.getElement(root.getElementIndex(Math.min(pos, odd.getLength()))).getStartOffset();
+    }
+
+    /** @param odd a document
+      * @param pos an offset in odd, which is clamped to the document
+      * @return the offset of the end of the line containing pos (the offset of its newline, or the document length)
+      */
+    private static int _lineEnd(OpenDefinitionsDocument odd, int pos) {
+      Element root = odd.getDefaultRootElement();
+      return root.getElement(root.getElementIndex(Math.min(pos, odd.getLength()))).getEndOffset() - 1;
+    }
+
+    /** Finds the regions whose bounds [start, end] intersect [from, to].  For OrderedDocumentRegions, which are sorted
+      * by end offset, only the regions ending at or after from are visited.
+      * @param odd the document holding the regions in this set
+      * @param from the left end of the interval
+      * @param to the right end of the interval
+      * @param remove whether the regions found should also be removed from this set
+      * @return the regions found, in set order
+      */
+    @SuppressWarnings("unchecked")
+    private List<R> _touching(OpenDefinitionsDocument odd, int from, int to, boolean remove) {
+      List<R> touched = new ArrayList<R>();
+      if (isEmpty()) return touched;
+      
+      boolean ordered = first() instanceof OrderedDocumentRegion;
+      SortedSet<R> candidates = 
+        ordered ? tailSet((R) new StaticDocumentRegion(odd, 0, Math.min(from, odd.getLength()))) : this;
+      Iterator<R> it = candidates.iterator();
+      while (it.hasNext()) {
+        R region = it.next();
+        if (region.getStartOffset() > to) {
+          if (ordered) break;  // regions are disjoint, so all remaining regions start after to
+          continue;
+        }
+        if (region.getEndOffset() < from) continue;
+        touched.add(region);
+        if (remove) it.remove();
+      }
+      return touched;
+    }
+
+    /** Notifies the manager, if any, that the touched regions changed.  The touched regions are those on the lines
+      * containing the edit, not just those containing it, since a region's label shows its whole line.  If the line
+      * structure of the document changed, the regions starting after offset are also reported, since their line 
+      * numbers moved.
+      * @param odd the document holding the regions in this set
+      * @param touched the regions on the lines containing the edit
+      * @param offset the end of the last line containing the edit
+      * @param linesChanged whether the edit inserted or removed line breaks
+      */
+    private void _notifyChanged(OpenDefinitionsDocument odd, List<R> touched, int offset, boolean linesChanged) {
+      if (_manager == null) return;
+      List<R> changed = new ArrayList<R>(touched);
+      if (linesChanged) {
+        for (R region : _touching(odd, offset + 1, Integer.MAX_VALUE, false)) {
+          if (region.getStartOffset() > offset) changed.add(region);
+        }
+      }
+      for (R region : changed) _manager.notifyChangedRegion((OrderedDocumentRegion)region);
+    }
+
     /** Adds an input region to the set. Also sets up a listener on the document to which the region belongs, if this
       * is the first time an add method is being called.
       * @param region the region to add
@@ -0,0 +1,150 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model;
+
+import edu.rice.cs.drjava.model.definitions.DocumentUIListener;
+import edu.rice.cs.util.UnexpectedException;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/** A conservative index of the character trigrams in open documents, used by FindReplaceMachine to skip documents that
+  * cannot contain the find word without searching (or reconstructing) them.  Each document has a fixed-size bitmap
+  * signature in which every trigram of its lower-cased text sets one bit.  The signature is kept up to date from
+  * document events: an insertion adds the trigrams overlapping the inserted text, and a removal adds the trigrams 
+  * spanning the junction.  Removed trigrams are never cleared, so the signature is always a superset of the trigrams 
+  * in the text; it is rebuilt from the text once enough characters have been removed that it may have become 
+  * imprecise.  Thus {@link #mayContain} never returns a false negative.  Only used in the event thread.
+  * <p>
+  * FindReplaceMachine ignores case by comparing {@code String.toLowerCase} of the text and the word, which is not the
+  * same as lower-casing each character: it may change the length of the text (U+0130 becomes "i\u0307"), and the
+  * lower case of a capital sigma depends on whether it ends a word.  So trigrams are taken from the 
+  * {@code String.toLowerCase} of the text and the word, and each character is further folded with
+  * {@code Character.toLowerCase(Character.toUpperCase(c))}, which maps both lower-case sigmas to the same character
+  * (so the index need not know the context of a capital sigma at the edge of an edit).</p>
+  */
+class TrigramIndex {
+  
+  /** The number of bits in each document signature. */
+  static final int SIGNATURE_BITS = 1 << 16;
+  
+  /** The shortest word that the index can filter. */
+  static final int MIN_WORD_LENGTH = 3;
+  
+  private final Map<OpenDefinitionsDocument, Signature> _signatures = new WeakHashMap<OpenDefinitionsDocument, Signature>();
+  
+  private volatile int _builds = 0;
+  
+  /** @param doc a document
+    * @param word the word to search for; matched regardless of case
+    * @return false if doc certainly does not contain word; true if it may contain it
+    */
+  public boolean mayContain(OpenDefinitionsDocument doc, String word) {
+    word = word.toLowerCase();
+    if (word.length() < MIN_WORD_LENGTH) return true;
+    Signature sig = _signatures.get(doc);
+    if (sig == null) {
+      sig = new Signature();
+      _signatures.put(doc, sig);
+      sig.build(doc.getText());
+      doc.addDocumentListener(sig);  // a DocumentUIListener, so the document cache keeps it across reconstructions
+    }
+    else if (sig._length != doc.getLength() || sig._removed > sig._length / 2 + 1024) sig.build(doc.getText());
+    
+    for (int i = 0; i + MIN_WORD_LENGTH <= word.length(); i++) {
+      if (! sig.get(_hash(word, i))) return false;
+    }
+    return true;
+  }
+  
+  /** @return the number of times a signature has been built from the full text of a document. */
+  public int getBuildCount() { return _builds; }
+  
+  /** @return the bit in a signature for the trigram starting at text[i], where text is already lower-cased. */
+  private static int _hash(String text, int i) {
+    int h = (_fold(text.charAt(i)) << 16) ^ (_fold(text.charAt(i + 1)) << 8) ^ (_fold(text.charAt(i + 2)) * 0x9E3779B1);
+    h *= 0x9E3779B1;
+    return h >>> (32 - 16);  // the top 16 bits; SIGNATURE_BITS == 1 << 16
+  }
+  
+  private static char _fold(char c) { return Character.toLowerCase(Character.toUpperCase(c)); }
+  
+  /** The trigram signature of one document. */
+  private class Signature implements DocumentUIListener {
+    private final long[] _bits = new long[SIGNATURE_BITS / 64];
+    /** The length of the document text the signature describes. */
+    private volatile int _length;
+    /** The number of characters removed since the signature was built. */
+    private volatile int _removed;
+    
+    boolean get(int bit) { return (_bits[bit >>> 6] & (1L << bit)) != 0; }
+    
+    void build(String text) {
+      Arrays.fill(_bits, 0L);
+      _add(text);
+      _length = text.length();
+      _removed = 0;
+      _builds++;
+    }
+    
+    private void _add(String text) {
+      text = text.toLowerCase();
+      for (int i = 0; i + MIN_WORD_LENGTH <= text.length(); i++) {
+        int bit = _hash(text, i);
+        _bits[bit >>> 6] |= 1L << bit;
+      }
+    }
+    
+    /** Adds the trigrams of doc that overlap [from, to). */
+    private void _addAround(Document doc, int from, int to) {
+      int len = doc.getLength();
+      int start = Math.max(0, from - (MIN_WORD_LENGTH - 1));
+      int end = Math.min(len, to + (MIN_WORD_LENGTH - 1));
+      try { _add(doc.getText(start, end - start)); }
+      catch (BadLocationException e) { throw new UnexpectedException(e); }
+      _length = len;
+    }
+    
+    public void insertUpdate(DocumentEvent e) {
+      _addAround(e.getDocument(), e.getOffset(), e.getOffset() + e.getLength());
+    }
+    
+    public void removeUpdate(DocumentEvent e) {
+      _removed += e.getLength();
+      _addAround(e.getDocument(), e.getOffset(), e.getOffset());
+    }
+    
+    public void changedUpdate(DocumentEvent e) { }
+  }
+}
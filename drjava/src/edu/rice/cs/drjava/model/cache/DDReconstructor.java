@@ -59,4 +59,18 @@ public interface DDReconstructor {
   
   /** @return the string text for document that has been kicked out; null otherwise. */
   public String getText();
+  
+  /** @return the length of the text returned by getText(), if possible without inflating or reading it. */
+  public int getLength();
+  
+  /** Compresses the saved text of a document that has been kicked out of the cache (the warm tier).
+    * @return the approximate number of bytes of heap used by the saved text afterwards
+    */
+  public int compressText();
+  
+  /** Discards the saved text of a document that has been kicked out of the cache (the cold tier), provided that the 
+    * text can be read again from its file because the file has not been modified since the text was read or saved.
+    * @return true if the text was discarded
+    */
+  public boolean discardText();
 }
@@ -31,6 +31,7 @@ package edu.rice.cs.drjava.model.cache;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.IOException;
 
 import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
@@ -57,6 +58,13 @@ import edu.rice.cs.plt.iter.IterUtil;
   * active queue had already reached maximum size, it deletes the last document in the queue to keep the queue from
   * growing larger than its maximum size.
   * <p>
+  * The resident queue (the hot tier) is bounded by the estimated number of bytes its documents occupy rather than by
+  * the number of documents, although a limit on the number can also be set.  When a document is evicted, its 
+  * reconstructor compresses the saved text, and the document joins the warm queue, which is bounded by the number of 
+  * compressed bytes.  When the warm queue overflows, the oldest documents whose files are unchanged on disk drop their 
+  * saved text altogether (the cold tier); it is read again from the file when it is next needed.  The cache counts 
+  * hits and warm and cold reconstructions, and the time spent reconstructing documents.
+  * <p>
   * The resident queue only contains documents that have not been modified since their last save (except in the process
   * of responding to notification that a document has been modified).  When a document is modified for the first time, 
   * it is immediately removed from the resident queue and marked as UNMANAGED by its document manager.  An
@@ -73,21 +81,55 @@ public class DocumentCache {
   /** Log file. */
   private static final Log _log = new Log("DocumentCache.txt", false);
   
-  private static final int INIT_CACHE_SIZE = 32;
+  /** By default, the number of resident documents is not limited; only their size is. */
+  private static final int INIT_CACHE_SIZE = Integer.MAX_VALUE;
+  
+  /** A rough estimate of the heap used by a resident document per character: the text itself, the element structure
+    * of the Swing document, and the reduced model. */
+  static final int BYTES_PER_RESIDENT_CHAR = 16;
+  
+  /** The default bound on the estimated size of the resident documents. */
+  public static final long DEFAULT_MAX_RESIDENT_BYTES = 64L << 20;  // 64 MB
+  
+  /** The default bound on the size of the compressed text of warm documents. */
+  public static final long DEFAULT_MAX_WARM_BYTES = 32L << 20;  // 32 MB
   
   /** invariant {@code _residentQueue.size() <= CACHE_SIZE} */
   private volatile int CACHE_SIZE;
   
+  /** invariant {@code _residentBytes <= _maxResidentBytes || _residentQueue.size() <= 1} */
+  private volatile long _maxResidentBytes;
+  
+  /** The bound on _warmBytes, except for documents whose text cannot be discarded. */
+  private volatile long _maxWarmBytes;
+  
   /** Data structure representing the queue of resident unmodified documents. */
   private final LinkedHashSet<DocManager> _residentQueue;
   
+  /** The estimated size of the documents in _residentQueue. */
+  private volatile long _residentBytes = 0;
+  
+  /** The queue of evicted documents that still hold (compressed) text, least recently evicted first. */
+  private final LinkedHashSet<DocManager> _warmQueue;
+  
+  /** The size of the compressed text of the documents in _warmQueue. */
+  private volatile long _warmBytes = 0;
+  
+  private final AtomicLong _hits = new AtomicLong(0);
+  private final AtomicLong _warmMisses = new AtomicLong(0);
+  private final AtomicLong _coldMisses = new AtomicLong(0);
+  private final AtomicLong _reconstructNanos = new AtomicLong(0);
+  
   private final Object _cacheLock = new Object();
   
   /* General constructor.  Not currently used except when called by default constructor. */
   public DocumentCache(int size) {
 //    Utilities.showDebug("DocumentCache created with size = " + size);
     CACHE_SIZE = size;
+    _maxResidentBytes = DEFAULT_MAX_RESIDENT_BYTES;
+    _maxWarmBytes = DEFAULT_MAX_WARM_BYTES;
     _residentQueue = new LinkedHashSet<DocManager>();
+    _warmQueue = new LinkedHashSet<DocManager>();
   }
   
   /* Default constructor; uses default cache size. */
@@ -119,13 +161,81 @@ public class DocumentCache {
       int diff = _residentQueue.size() - CACHE_SIZE;
       if (diff > 0) {
         Iterable<DocManager> toRemove = IterUtil.snapshot(IterUtil.truncate(_residentQueue, diff));
-        for (DocManager dm : toRemove) { _residentQueue.remove(dm); dm.kickOut(); }
+        for (DocManager dm : toRemove) dm.remove();
       }
     }
   }
   
+  /** Changes the bound on the estimated size of the unmodified resident documents.  The most recently used document
+    * stays resident even if it alone exceeds the bound.
+    * @param bytes the new bound
+    */
+  public void setMaxResidentBytes(long bytes) {
+    if (bytes <= 0) throw new IllegalArgumentException("Cannot set the resident size to zero or less.");
+    synchronized(_cacheLock) {
+      _maxResidentBytes = bytes;
+      _trimResidentQueue();
+    }
+  }
+  
+  /** Changes the bound on the size of the compressed text of evicted documents.
+    * @param bytes the new bound; 0 discards the text of every evicted document that can be read again from its file
+    */
+  public void setMaxWarmBytes(long bytes) {
+    if (bytes < 0) throw new IllegalArgumentException("Cannot set the warm size to less than zero.");
+    synchronized(_cacheLock) {
+      _maxWarmBytes = bytes;
+      _trimWarmQueue();
+    }
+  }
+  
   public int getCacheSize() { return CACHE_SIZE; }
   public int getNumInCache() { return _residentQueue.size(); }
+  public long getMaxResidentBytes() { return _maxResidentBytes; }
+  public long getMaxWarmBytes() { return _maxWarmBytes; }
+  
+  /** @return the estimated size of the unmodified resident documents */
+  public long getResidentBytes() { return _residentBytes; }
+  
+  /** @return the number of evicted documents that still hold their compressed text */
+  public int getNumWarm() { synchronized(_cacheLock) { return _warmQueue.size(); } }
+  
+  /** @return the size of the compressed text of the evicted documents */
+  public long getWarmBytes() { return _warmBytes; }
+  
+  /** @return the number of requests for a document that found it resident */
+  public long getHitCount() { return _hits.get(); }
+  
+  /** @return the number of documents reconstructed from text held in memory */
+  public long getWarmMissCount() { return _warmMisses.get(); }
+  
+  /** @return the number of documents reconstructed by reading their files */
+  public long getColdMissCount() { return _coldMisses.get(); }
+  
+  /** @return the total time spent reconstructing documents, in nanoseconds */
+  public long getReconstructTime() { return _reconstructNanos.get(); }
+  
+  /** Evicts the least recently used documents until the resident queue is within its bounds.  Assumes _cacheLock is
+    * already held. */
+  private void _trimResidentQueue() {
+    while (_residentQueue.size() > CACHE_SIZE || (_residentBytes > _maxResidentBytes && _residentQueue.size() > 1)) {
+      IterUtil.first(_residentQueue).remove();
+    }
+  }
+  
+  /** Discards the text of the least recently evicted documents, where possible, until the warm queue is within its 
+    * bound.  Assumes _cacheLock is already held. */
+  private void _trimWarmQueue() {
+    Iterator<DocManager> i = _warmQueue.iterator();
+    while (_warmBytes > _maxWarmBytes && i.hasNext()) {
+      DocManager dm = i.next();
+      if (dm._rec.discardText()) {
+        i.remove();
+        _warmBytes -= dm._warmSize;
+        _log.log("Discarded text of " + dm);
+      }
+    }
+  }
   
   public String toString() { return _residentQueue.toString(); }
   
@@ -155,6 +265,11 @@ public class DocumentCache {
     private volatile int _stat; // I know, this is not very OO
     private volatile DefinitionsDocument _doc;
     
+    /** The estimated size of _doc when it entered the resident queue. */
+    private volatile long _residentSize = 0;
+    /** The size of the saved text when this entered the warm queue. */
+    private volatile long _warmSize = 0;
+    
     /** Instantiates a manager for the documents that are produced by the given document reconstructor.
      * @param rec The reconstructor used to create the document
      * @param isUntitled true if the document is untitled; false otherwise
@@ -175,6 +290,12 @@ public class DocumentCache {
      * @return the newly-created document
      */
     private DefinitionsDocument makeDocument() {
+      if (_warmQueue.remove(this)) {
+        _warmBytes -= _warmSize;
+        _warmMisses.incrementAndGet();
+      }
+      else _coldMisses.incrementAndGet();
+      long start = System.nanoTime();
       try { // _doc is not in memory
         _doc = _rec.make();
         assert _doc != null;
@@ -185,6 +306,7 @@ public class DocumentCache {
       }
       catch(IOException e) { throw new UnexpectedException(e); }
       catch(BadLocationException e) { throw new UnexpectedException(e); }      
+      finally { _reconstructNanos.addAndGet(System.nanoTime() - start); }
 //        Utilities.showDebug("Document " + _doc + " reconstructed; _stat = " + _stat);
 //      System.err.println("Making document for " + this);
       if (_stat == NOT_IN_QUEUE) add();       // add this to queue 
@@ -202,9 +324,9 @@ public class DocumentCache {
       
 //      The following double-check idiom is safe in Java 1.4 and later JVMs provided that _doc is volatile.
       final DefinitionsDocument doc = _doc;  // create a snapshot of _doc
-      if (doc != null) return doc;  
+      if (doc != null) { _hits.incrementAndGet(); return doc; }
       synchronized(_cacheLock) { // lock the cache so that this DocManager's state can be updated
-        if (_doc != null) return _doc;  // _doc may have changed since test outside of _cacheLock
+        if (_doc != null) { _hits.incrementAndGet(); return _doc; }  // _doc may have changed since test outside of _cacheLock
         return makeDocument();
       }
     }
@@ -213,7 +335,7 @@ public class DocumentCache {
       * to be loaded. */
     public int getLength() {
       final DefinitionsDocument doc = _doc;  // create a snapshot of _doc
-      if (doc == null /* || ! doc.isModifiedSinceSave()*/) return _rec.getText().length();
+      if (doc == null /* || ! doc.isModifiedSinceSave()*/) return _rec.getLength();
       return doc.getLength();
     }
     
@@ -246,14 +368,15 @@ public class DocumentCache {
     public void close() {
 //      Utilities.showDebug("close() called on " + this);
       synchronized(_cacheLock) {
-        _residentQueue.remove(this);
+        _removeFromQueue();
+        if (_warmQueue.remove(this)) _warmBytes -= _warmSize;
         closingKickOut();
       }
     }
     
     public void documentModified() {
       synchronized(_cacheLock) { 
-        _residentQueue.remove(this); // remove modified document from queue if present
+        _removeFromQueue(); // remove modified document from queue if present
         _stat = UNMANAGED;
       }
     }
@@ -280,18 +403,26 @@ public class DocumentCache {
 //      Utilities.showDebug("add " + this + " to the QUEUE\n" + "QUEUE = " + _residentQueue);
 //      System.err.println("adding " + this + " to the QUEUE\n" + "QUEUE = " + _residentQueue);
       if (! _residentQueue.contains(this)) {
+        final DefinitionsDocument doc = _doc;
+        _residentSize = (long) BYTES_PER_RESIDENT_CHAR * ((doc != null) ? doc.getLength() : _rec.getLength());
         _residentQueue.add(this);
+        _residentBytes += _residentSize;
         _stat = IN_QUEUE;
       }
-      if (_residentQueue.size() > CACHE_SIZE) IterUtil.first(_residentQueue).remove();
+      _trimResidentQueue();
     }
     
     /** Removes this DocManager from the queue and sets status to NOT_IN_QUEUE.  Assumes _cacheLock is already held. */
     private void remove() { 
-      _residentQueue.remove(this);
+      _removeFromQueue();
       kickOut();
     }
     
+    /** Removes this DocManager from the queue, if present.  Assumes _cacheLock is already held. */
+    private void _removeFromQueue() {
+      if (_residentQueue.remove(this)) _residentBytes -= _residentSize;
+    }
+    
     /* All of the following private methods presume that _cacheLock is held */
     private boolean isUnmanagedOrUntitled() { return (_stat & 0x1) != 0; }  // tests if _stat is odd
     
@@ -320,6 +451,14 @@ public class DocumentCache {
         _doc = null;
       }
       _stat = NOT_IN_QUEUE;
+      if (! isClosing) {
+        /* move the saved text to the warm tier */
+        if (_warmQueue.remove(this)) _warmBytes -= _warmSize;
+        _warmSize = _rec.compressText();
+        _warmQueue.add(this);
+        _warmBytes += _warmSize;
+        _trimWarmQueue();
+      }
     }
     
     public String toString() { return "DocManager for " + _rec.toString() + "[stat = " + _stat + "]"; } 
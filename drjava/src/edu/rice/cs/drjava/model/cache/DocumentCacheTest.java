@@ -30,6 +30,7 @@ package edu.rice.cs.drjava.model.cache;
 
 import edu.rice.cs.drjava.DrJavaTestCase;
 import edu.rice.cs.drjava.model.*;
+import edu.rice.cs.drjava.model.definitions.ClassNameNotFoundException;
 import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
 import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.util.FileOpenSelector;
@@ -529,6 +530,84 @@ public class DocumentCacheTest extends DrJavaTestCase {
   }
   private int _memLeakCounter;
   
+  /** Tests that the resident queue is bounded by size and that evicted documents move to the warm and cold tiers.
+    * @throws BadLocationException if attempts to reference an invalid location
+    * @throws IOException if an IO operation fails
+    */
+  public void testTiers() throws BadLocationException, IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) sb.append("// line ").append(i).append('\n');
+    String text = sb.toString();
+    
+    _cache.setCacheSize(100);
+    _cache.setMaxResidentBytes(2L * DocumentCache.BYTES_PER_RESIDENT_CHAR * text.length());
+    OpenDefinitionsDocument[] docs = new OpenDefinitionsDocument[4];
+    for (int i = 0; i < docs.length; i++) {
+      File f = tempFile(i);
+      IOUtil.writeStringToFile(f, text);
+      docs[i] = openFile(f);
+      docs[i].getCurrentLine();  // forces document to be read into memory
+    }
+    assertEquals("two documents fit in the resident queue", 2, _cache.getNumInCache());
+    assertEquals("the others are warm", 2, _cache.getNumWarm());
+    assertTrue("warm text is compressed", _cache.getWarmBytes() < text.length());
+    assertEquals(text.length(), docs[0].getLength());
+    assertEquals(text, docs[0].getText());
+    
+    _cache.setMaxWarmBytes(0);
+    assertEquals("unmodified files go cold", 0, _cache.getNumWarm());
+    assertEquals(text, docs[1].getText());
+    
+    _cache.setMaxWarmBytes(DocumentCache.DEFAULT_MAX_WARM_BYTES);
+    long cold = _cache.getColdMissCount();
+    long hits = _cache.getHitCount();
+    docs[1].getCurrentLine();  // evicts docs[2], which becomes warm
+    assertEquals("cold document is reread", cold + 1, _cache.getColdMissCount());
+    docs[1].getCurrentLine();
+    assertTrue("resident document is a hit", _cache.getHitCount() > hits);
+    assertEquals(1, _cache.getNumWarm());
+    
+    long warm = _cache.getWarmMissCount();
+    docs[2].getCurrentLine();
+    assertEquals("warm document is reconstructed from memory", warm + 1, _cache.getWarmMissCount());
+    assertEquals(text, docs[2].getText());
+    assertTrue(_cache.getReconstructTime() > 0);
+  }
+  
+  public void testNameQueriesDoNotReconstruct() throws BadLocationException, IOException, 
+    ClassNameNotFoundException {
+    OpenDefinitionsDocument[] docs = new OpenDefinitionsDocument[6];
+    for (int i = 0; i < docs.length; i++) {
+      File f = tempFile(i);
+      IOUtil.writeStringToFile(f, "package p;\n\nclass Helper { }\npublic class C" + i + " { }\n");
+      docs[i] = openFile(f);
+    }
+    long misses = _cache.getColdMissCount() + _cache.getWarmMissCount();
+    for (int i = 0; i < docs.length; i++) {
+      assertEquals("p", docs[i].getPackageNameFromDocument());
+      assertEquals("Helper", docs[i].getFirstTopLevelClassName());
+      assertEquals("p.C" + i, docs[i].getQualifiedClassName());
+    }
+    assertEquals("unloaded documents are not reconstructed", misses, 
+                 _cache.getColdMissCount() + _cache.getWarmMissCount());
+    assertEquals("no document is loaded", 0, _cache.getNumInCache());
+    
+    // an edit to a resident document changes its outline
+    docs[0].insertString(docs[0].getText().indexOf("class Helper"), "interface First { }\n", null);
+    assertEquals("First", docs[0].getFirstTopLevelClassName());
+    assertEquals("p.C0", docs[0].getQualifiedClassName());
+    
+    // the outline of the edited text survives eviction
+    docs[0].resetModification();  // as if saved; modified documents are never evicted
+    for (int i = 1; i < 5; i++) docs[i].getCurrentLine();
+    assertFalse("document 0 is evicted", _adapterTable.get(docs[0]).isReady());
+    misses = _cache.getColdMissCount() + _cache.getWarmMissCount();
+    assertEquals("First", docs[0].getFirstTopLevelClassName());
+    assertEquals("p.C0", docs[0].getQualifiedClassName());
+    assertEquals("evicted document is not reconstructed", misses, 
+                 _cache.getColdMissCount() + _cache.getWarmMissCount());
+  }
+  
   /** This is just so that we can have an instance of a DefaultGlobalModel rather than a single display model. */
   private static class TestGlobalModel extends DefaultGlobalModel {
     public void aboutToSaveFromSaveAll(OpenDefinitionsDocument doc) { /* dummy method */ }
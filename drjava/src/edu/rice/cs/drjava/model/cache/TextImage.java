@@ -0,0 +1,144 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import edu.rice.cs.util.UnexpectedException;
+
+/** An immutable image of the text of a document that is not resident in the DocumentCache.  The image is either the 
+  * text itself or a deflated copy of it.  A compressed image remembers its most recently inflated text through a soft 
+  * reference, so repeated calls to getText() on a virtualized document do not inflate it every time.  Characters are
+  * compressed as raw UTF-16 code units, so any String (including one with unpaired surrogates) survives intact.
+  */
+public final class TextImage {
+  
+  /** The empty image. */
+  public static final TextImage EMPTY = new TextImage("");
+  
+  private final int _length;
+  /** The text, or null if this image is compressed. */
+  private final String _text;
+  /** The deflated UTF-16 code units, or null if this image is not compressed. */
+  private final byte[] _compressed;
+  /** The inflated text of a compressed image, if it has not been reclaimed. */
+  private volatile SoftReference<String> _inflated;
+  
+  private TextImage(String text) {
+    _length = text.length();
+    _text = text;
+    _compressed = null;
+    _inflated = null;
+  }
+  
+  private TextImage(int length, byte[] compressed) {
+    _length = length;
+    _text = null;
+    _compressed = compressed;
+    _inflated = null;
+  }
+  
+  /** @param text the text
+    * @return an uncompressed image of text */
+  public static TextImage of(String text) { return (text.length() == 0) ? EMPTY : new TextImage(text); }
+  
+  /** @return the number of characters in the text. */
+  public int length() { return _length; }
+  
+  /** @return true if this image is compressed */
+  public boolean isCompressed() { return _compressed != null; }
+  
+  /** @return the approximate number of bytes of heap used by the text of this image (ignoring any soft reference). */
+  public int size() { return (_compressed != null) ? _compressed.length : 2 * _length; }
+  
+  /** @return the text of this image, inflating it if necessary. */
+  public String getText() {
+    if (_text != null) return _text;
+    SoftReference<String> ref = _inflated;
+    String text = (ref == null) ? null : ref.get();
+    if (text == null) {
+      text = _inflate();
+      _inflated = new SoftReference<String>(text);
+    }
+    return text;
+  }
+  
+  /** @return a compressed image of the same text; this image if it is already compressed or compression does not 
+    * save space. */
+  public TextImage compress() {
+    if (_compressed != null || _length == 0) return this;
+    byte[] bytes = new byte[2 * _length];
+    for (int i = 0; i < _length; i++) {
+      char c = _text.charAt(i);
+      bytes[2 * i] = (byte) (c >>> 8);
+      bytes[2 * i + 1] = (byte) c;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(_length / 2 + 16);
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      DeflaterOutputStream dout = new DeflaterOutputStream(out, deflater);
+      dout.write(bytes);
+      dout.close();
+    }
+    catch (IOException e) { throw new UnexpectedException(e); }  // cannot happen for a ByteArrayOutputStream
+    finally { deflater.end(); }
+    if (out.size() >= bytes.length) return this;
+    return new TextImage(_length, out.toByteArray());
+  }
+  
+  private String _inflate() {
+    byte[] bytes = new byte[2 * _length];
+    try {
+      InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(_compressed));
+      int read = 0;
+      while (read < bytes.length) {
+        int n = in.read(bytes, read, bytes.length - read);
+        if (n < 0) throw new IOException("Truncated text image");
+        read += n;
+      }
+      in.close();
+    }
+    catch (IOException e) { throw new UnexpectedException(e); }
+    char[] chars = new char[_length];
+    for (int i = 0; i < _length; i++) {
+      chars[i] = (char) (((bytes[2 * i] & 0xFF) << 8) | (bytes[2 * i + 1] & 0xFF));
+    }
+    return new String(chars);
+  }
+  
+  public String toString() {
+    return "TextImage[" + _length + " chars" + ((_compressed != null) ? ", " + _compressed.length + " bytes]" : "]");
+  }
+}
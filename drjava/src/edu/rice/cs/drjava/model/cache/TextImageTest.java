@@ -0,0 +1,69 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model.cache;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the compression of the text of evicted documents.
+  * @version $Id$
+  */
+public class TextImageTest extends DrJavaTestCase {
+  
+  public void testCompressPreservesText() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 2000; i++) sb.append("  public void m").append(i).append("() { return; }\n");
+    sb.append("é中\ud800x\udc00");  // non-ASCII text and unpaired surrogates
+    String text = sb.toString();
+    
+    TextImage image = TextImage.of(text);
+    assertFalse(image.isCompressed());
+    assertEquals(2 * text.length(), image.size());
+    
+    TextImage compressed = image.compress();
+    assertTrue(compressed.isCompressed());
+    assertTrue("compressed size " + compressed.size(), compressed.size() < image.size() / 4);
+    assertEquals(text.length(), compressed.length());
+    assertEquals(text, compressed.getText());
+    assertEquals(text, compressed.getText());
+    assertSame(compressed, compressed.compress());
+  }
+  
+  public void testEmpty() {
+    TextImage image = TextImage.of("");
+    assertSame(TextImage.EMPTY, image);
+    assertSame(image, image.compress());
+    assertEquals("", image.getText());
+  }
+  
+  /** Text that deflate cannot shrink is left uncompressed. */
+  public void testIncompressible() {
+    TextImage image = TextImage.of("x");
+    assertSame(image, image.compress());
+  }
+}
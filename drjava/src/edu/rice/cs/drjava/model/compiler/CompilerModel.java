@@ -95,6 +95,10 @@ public interface CompilerModel {
   /** Resets the compiler error state to have no errors. */
   public void resetCompilerErrors();
   
+  /** @return a description of the files compiled by the last incremental compile and the time it took, or "" if the 
+    *         last compile was not incremental */
+  public String getCompileSummary();
+  
   //-------------------------- Compiler Management --------------------------//
   
   /** @return all registered compilers that are actually available.  If there are none,
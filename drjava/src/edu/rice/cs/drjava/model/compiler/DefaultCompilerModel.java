@@ -91,6 +91,16 @@ public class DefaultCompilerModel implements CompilerModel {
     * numbers to .dj* line numbers when an error is thrown */
   public LanguageLevelStackTraceMapper _LLSTM;
   
+  /** The dependencies among language level files recorded by previous conversions; used to convert only the files 
+    * that have changed (and the files that depend on them) */
+  private final DependencyGraph _llDependencies = new DependencyGraph();
+  
+  /** The state of incremental compilation; only used while holding _compilerLock */
+  private final IncrementalBuild _incrementalBuild = new IncrementalBuild();
+  
+  /** The summary of the last compile, if it was incremental */
+  private volatile String _compileSummary = "";
+  
   /** Main constructor.  
     * @param m the GlobalModel that is the source of documents for this CompilerModel
     * @param compilers  The compilers to use.  The first will be made active; all are assumed
@@ -229,16 +239,19 @@ public class DefaultCompilerModel implements CompilerModel {
     * @throws IOException if an IO operation fails
     */
   private void _doCompile(List<OpenDefinitionsDocument> docs) throws IOException {
-    _LLSTM.clearCache();
     final ArrayList<File> filesToCompile = new ArrayList<File>();
     final ArrayList<File> excludedFiles = new ArrayList<File>();
     final ArrayList<DJError> packageErrors = new ArrayList<DJError>();
+    final HashMap<File, String> sourceText = new HashMap<File, String>();
     
     for (OpenDefinitionsDocument doc : docs) {
       if (doc.isSourceFile()) {
         File f = doc.getFile();
         // Check for null in case the file is untitled (not sure this is the correct check)
-        if (f != null && f != FileOps.NULL_FILE) { filesToCompile.add(f); }
+        if (f != null && f != FileOps.NULL_FILE) {
+          filesToCompile.add(f);
+          sourceText.put(f, doc.getText());
+        }
         doc.setCachedClassFile(FileOps.NULL_FILE); // clear cached class file
         
         try { doc.getSourceRoot(); }
@@ -261,7 +274,7 @@ public class DefaultCompilerModel implements CompilerModel {
         if (buildDir != null && buildDir != FileOps.NULL_FILE && ! buildDir.exists() && ! buildDir.mkdirs())
           throw new IOException("Could not create build directory: " + buildDir);
         
-        _compileFiles(filesToCompile, buildDir);
+        _compileFiles(filesToCompile, sourceText, buildDir);
       }
       catch (Throwable t) {
         DJError err = new DJError(t.toString(), false);
@@ -322,11 +335,13 @@ public class DefaultCompilerModel implements CompilerModel {
    * only one that uses synchronization to prevent compiling and unit testing 
    * at the same time.
    * @param files The files to be compiled
+   * @param sourceText The text of the open documents among the files, which a JavaxToolsCompiler reads instead of 
+   *        the files on disk
    * @param buildDir The output directory for all the .class files; @code{null} 
    *        means output to the same directory as the source file
    * @throws IOException if an IO operation fails
    */
-  private void _compileFiles(List<File> files, File buildDir) throws IOException {
+  private void _compileFiles(List<File> files, Map<File, String> sourceText, File buildDir) throws IOException {
     if (! files.isEmpty()) {
       /* Canonicalize buildDir */
       if (buildDir == FileOps.NULL_FILE) buildDir = null; // compiler interface wants null pointer if no build directory
@@ -340,6 +355,7 @@ public class DefaultCompilerModel implements CompilerModel {
       if (bootProp != null) { bootClassPath = CollectUtil.makeList(IOUtil.parsePath(bootProp)); }
       
       final LinkedList<DJError> errors = new LinkedList<DJError>();
+      _compileSummary = "";
       
       List<? extends File> preprocessedFiles = _compileLanguageLevelsFiles(files, errors, classPath, bootClassPath);
       
@@ -351,8 +367,22 @@ public class DefaultCompilerModel implements CompilerModel {
         
         // Mutual exclusion with JUnit code that finds all test classes (in DefaultJUnitModel)
         synchronized(_compilerLock) {
+          boolean incremental = DrJava.getConfig().getSetting(OptionConstants.INCREMENTAL_COMPILE).booleanValue();
+          // any other compile may rewrite class files behind the incremental build's back
+          if (preprocessedFiles != null || ! incremental || ! (compiler instanceof JavaxToolsCompiler)) {
+            _incrementalBuild.clear();
+          }
+          
           if (preprocessedFiles == null) {
-            errors.addAll(compiler.compile(files, classPath, null, buildDir, bootClassPath, null, true));
+            if (compiler instanceof JavaxToolsCompiler) {
+              JavaxToolsCompiler javax = (JavaxToolsCompiler) compiler;
+              if (incremental) {
+                _compileIncrementally(javax, files, sourceText, classPath, buildDir, bootClassPath, errors);
+              }
+              else errors.addAll(javax.compile(files, sourceText, classPath, null, buildDir, bootClassPath, null, true, 
+                                               null));
+            }
+            else errors.addAll(compiler.compile(files, classPath, null, buildDir, bootClassPath, null, true));
           }
           else {
             /** If compiling a language level file, do not show warnings, as these are not caught by the language level 
@@ -369,6 +399,51 @@ public class DefaultCompilerModel implements CompilerModel {
     }
   }
   
+  /** Compiles the files that changed since the last incremental compile, then the files that depend on the classes
+    * whose ABI changed, and so on.  Files with errors are compiled again by the next compile.  Assumes that 
+    * _compilerLock is held.
+    * @param compiler the compiler
+    * @param files the files to be compiled
+    * @param sourceText the text of the open documents among the files
+    * @param classPath the class path
+    * @param buildDir the build directory, or null
+    * @param bootClassPath the boot class path, or null
+    * @param errors to be populated with the errors that occur during compilation
+    */
+  private void _compileIncrementally(JavaxToolsCompiler compiler, List<File> files, Map<File, String> sourceText, 
+                                     List<File> classPath, File buildDir, List<File> bootClassPath, 
+                                     List<DJError> errors) {
+    long start = System.currentTimeMillis();
+    _incrementalBuild.setConfiguration(buildDir, classPath, bootClassPath);
+    Set<String> removed = _incrementalBuild.removeDeletedFiles();
+    
+    LinkedHashSet<File> toCompile = new LinkedHashSet<File>(_incrementalBuild.outOfDateFiles(files, sourceText));
+    toCompile.addAll(_incrementalBuild.dependents(removed, files));
+    LinkedHashSet<File> compiled = new LinkedHashSet<File>();
+    while (! toCompile.isEmpty()) {
+      List<File> round = new ArrayList<File>(toCompile);
+      HashMap<File, Set<File>> outputs = new HashMap<File, Set<File>>();
+      List<? extends DJError> roundErrors = 
+        compiler.compile(round, sourceText, classPath, null, buildDir, bootClassPath, null, true, outputs);
+      errors.addAll(roundErrors);
+      compiled.addAll(round);
+      
+      boolean hasErrors = false;
+      for (DJError e: roundErrors) { if (! e.isWarning()) hasErrors = true; }
+      if (hasErrors) {
+        _incrementalBuild.forget(round);
+        break;
+      }
+      Set<String> changed = _incrementalBuild.recordCompiled(round, sourceText, outputs);
+      toCompile.clear();
+      for (File f: _incrementalBuild.dependents(changed, files)) { if (! compiled.contains(f)) toCompile.add(f); }
+    }
+    
+    _compileSummary = "Compiled " + compiled.size() + " of " + files.size() + " files in " + 
+      (System.currentTimeMillis() - start) + " ms.";
+    _log.log(_compileSummary + " " + compiled);
+  }
+  
   /** Reorders files so that all file names containing "Test" are at the end.  
    * @param files the files to be sorted
    * @return the sorted list of files
@@ -412,7 +487,7 @@ public class DefaultCompilerModel implements CompilerModel {
         //checks if .dj? file has a matching .java file open in project. Eventually warns user (later on in code)
         if (files.contains(javaFile)) filesToBeClosed.add(javaFile);
           // delete file later so closeFiles doesn't complain about missing files
-        else
+        else if (! _llDependencies.isUpToDate(f))
           // Delete the stale .java file now (if it exists), a file with this name will subsequently be generated
           javaFile.delete();
         
@@ -557,7 +632,10 @@ public class DefaultCompilerModel implements CompilerModel {
        */
       Map<File,Set<String>> sourceToTopLevelClassMap = new HashMap<File,Set<String>>();
       Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>> llErrors = 
-        llc.convert(_testFileSort(files).toArray(new File[0]), llOpts, sourceToTopLevelClassMap);
+        llc.convert(_testFileSort(files).toArray(new File[0]), llOpts, sourceToTopLevelClassMap, _llDependencies);
+      
+      /* Only the line number maps of regenerated .java files have changed. */
+      _LLSTM.clearCache(_llDependencies.lastConverted());
       
       /* Add any errors encountered in conversion to the compilation error log. */
       errors.addAll(_parseExceptions2CompilerErrors(llErrors.getFirst()));
@@ -599,6 +677,10 @@ public class DefaultCompilerModel implements CompilerModel {
   /** @return the total number of current warnings. */  
   public int getNumWarnings() { return getCompilerErrorModel().getNumWarnings(); }
   
+  /** @return a description of the files compiled by the last incremental compile and the time it took, or "" if the 
+    *         last compile was not incremental */
+  public String getCompileSummary() { return _compileSummary; }
+  
   /** Resets the compiler error state to have no errors. */
   public void resetCompilerErrors() {
     // TODO: see if we can get by without this function
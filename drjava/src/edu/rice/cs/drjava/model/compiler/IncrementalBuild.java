@@ -0,0 +1,366 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.util.UnexpectedException;
+
+/** The state of incremental Java compilation: for each source file that was last compiled without errors, the hash of 
+  * its text, the class files it produced, and, for each of those classes, a hash of its ABI (the non-private parts of
+  * its declaration) and the classes it refers to.  From this state, an incremental build determines the files that
+  * must be compiled:
+  * <ul>
+  * <li>files that are new, whose text has changed, or whose class files are missing;</li>
+  * <li>after those are compiled, the files that depend on a class whose ABI changed, or that was added or removed;
+  *     and so on, until no ABI changes.</li>
+  * </ul>
+  * A file depends on a class if one of its class files refers to the class, to a subclass of it, or if the file 
+  * mentions the simple name of the class (references to constants are inlined and leave no trace in class files).
+  * Since javac places the class files of all the classes in a source file with the same sibling, the class files of a
+  * source file are exactly those reported by the compiler; when a recompiled file no longer produces a class file, the
+  * stale class file is deleted.
+  * 
+  * The state describes one build configuration (class path and build directory); it is discarded when the 
+  * configuration changes.  Not thread safe; DefaultCompilerModel only uses it while holding its compiler lock.
+  */
+public class IncrementalBuild {
+  
+  /** What is known about a source file that was compiled without errors. */
+  private static class SourceState {
+    final byte[] hash;
+    final Set<String> names;  // the identifiers in the text
+    final Map<File, ClassState> classes = new HashMap<File, ClassState>();
+    SourceState(byte[] h, Set<String> n) { hash = h; names = n; }
+  }
+  
+  /** What is known about a class file. */
+  private static class ClassState {
+    final String name;  // internal name, e.g. java/util/Map$Entry
+    final String abi;
+    final Set<String> supertypes;
+    final Set<String> references;
+    ClassState(String n, String a, Set<String> s, Set<String> r) { name = n; abi = a; supertypes = s; references = r; }
+  }
+  
+  /** The source files, identified by absolute path. */
+  private final HashMap<File, SourceState> _sources = new HashMap<File, SourceState>();
+  
+  /** The build configuration that _sources describes. */
+  private List<Object> _configuration = null;
+  
+  /** Discards the state if the configuration differs from that of the last build.
+    * @param buildDir the build directory, or null if class files are placed next to their sources
+    * @param classPath the class path
+    * @param bootClassPath the boot class path, or null
+    */
+  public void setConfiguration(File buildDir, List<File> classPath, List<File> bootClassPath) {
+    List<Object> configuration = new ArrayList<Object>();
+    configuration.add(buildDir);
+    for (List<File> path: Arrays.asList(classPath, bootClassPath)) {
+      configuration.add(path);
+      if (path == null) continue;
+      // compiling against a different version of a library can change any class file
+      for (File f: path) { if (f.isFile()) configuration.add(f.lastModified()); }
+    }
+    if (! configuration.equals(_configuration)) {
+      _sources.clear();
+      _configuration = configuration;
+    }
+  }
+  
+  /** Discards the state, so that the next incremental build compiles every file. */
+  public void clear() {
+    _sources.clear();
+    _configuration = null;
+  }
+  
+  /** Returns the files that must be compiled because they are new, have changed, or have lost their class files.
+    * @param files the source files of the build
+    * @param text the text of the source files
+    * @return the out-of-date files, in the order of files
+    */
+  public List<File> outOfDateFiles(List<File> files, Map<File, String> text) {
+    List<File> result = new ArrayList<File>();
+    for (File f: files) {
+      SourceState s = _sources.get(f.getAbsoluteFile());
+      boolean upToDate = s != null && Arrays.equals(s.hash, _hash(_text(f, text)));
+      if (upToDate) {
+        for (File classFile: s.classes.keySet()) { if (! classFile.isFile()) upToDate = false; }
+      }
+      if (! upToDate) result.add(f);
+    }
+    return result;
+  }
+  
+  /** Forgets the given files, so that they are compiled by the next build, and their dependents are compiled after 
+    * them.  Used for files that had errors.
+    * @param files the files to forget
+    */
+  public void forget(Collection<File> files) {
+    for (File f: files) { _sources.remove(f.getAbsoluteFile()); }
+  }
+  
+  /** Records the result of compiling files without errors.  Deletes the class files they no longer produce, unless
+    * another of the files produced them in the same round (for example, when a class moved from one file to another).
+    * @param files the files that were compiled
+    * @param text the text of the files
+    * @param outputs the class files written for each file, keyed by absolute path
+    * @return the internal names of the classes whose ABI changed, that were added, or that were removed
+    */
+  public Set<String> recordCompiled(Collection<File> files, Map<File, String> text, Map<File, Set<File>> outputs) {
+    Set<String> changed = new HashSet<String>();
+    Set<File> produced = new HashSet<File>();
+    for (Set<File> classFiles: outputs.values()) { produced.addAll(classFiles); }
+    for (File f: files) {
+      File key = f.getAbsoluteFile();
+      String t = _text(f, text);
+      SourceState old = _sources.get(key);
+      SourceState s = new SourceState(_hash(t), _identifiers(t));
+      Set<File> classFiles = outputs.get(key);
+      if (classFiles != null) {
+        for (File classFile: classFiles) {
+          ClassState c = _readClass(classFile);
+          s.classes.put(classFile, c);
+          ClassState oldClass = (old == null) ? null : old.classes.get(classFile);
+          if (oldClass == null || ! oldClass.abi.equals(c.abi)) changed.add(c.name);
+        }
+      }
+      if (old != null) {
+        for (Map.Entry<File, ClassState> e: old.classes.entrySet()) {
+          if (! s.classes.containsKey(e.getKey())) {
+            changed.add(e.getValue().name);
+            if (! produced.contains(e.getKey())) e.getKey().delete();
+          }
+        }
+      }
+      _sources.put(key, s);
+    }
+    return changed;
+  }
+  
+  /** Removes the files that no longer exist, deleting their class files.
+    * @return the internal names of the classes that were removed
+    */
+  public Set<String> removeDeletedFiles() {
+    Set<String> removed = new HashSet<String>();
+    for (java.util.Iterator<Map.Entry<File, SourceState>> i = _sources.entrySet().iterator(); i.hasNext(); ) {
+      Map.Entry<File, SourceState> e = i.next();
+      if (! e.getKey().exists()) {
+        for (Map.Entry<File, ClassState> c: e.getValue().classes.entrySet()) {
+          removed.add(c.getValue().name);
+          c.getKey().delete();
+        }
+        i.remove();
+      }
+    }
+    return removed;
+  }
+  
+  /** Returns the files that depend on the given classes and must be compiled again.
+    * @param changed the internal names of classes whose ABI changed
+    * @param files the source files of the build
+    * @return the files among files, other than those defining the changed classes, that depend on the changed classes,
+    *         in the order of files
+    */
+  public List<File> dependents(Set<String> changed, List<File> files) {
+    // a change to a class changes the members its subclasses inherit
+    Set<String> affected = new HashSet<String>(changed);
+    LinkedList<String> work = new LinkedList<String>(changed);
+    Map<String, List<String>> subtypes = new HashMap<String, List<String>>();
+    for (SourceState s: _sources.values()) {
+      for (ClassState c: s.classes.values()) {
+        for (String sup: c.supertypes) {
+          List<String> l = subtypes.get(sup);
+          if (l == null) subtypes.put(sup, l = new ArrayList<String>());
+          l.add(c.name);
+        }
+      }
+    }
+    while (! work.isEmpty()) {
+      List<String> l = subtypes.get(work.removeFirst());
+      if (l == null) continue;
+      for (String sub: l) { if (affected.add(sub)) work.add(sub); }
+    }
+    Set<String> simpleNames = new HashSet<String>();
+    for (String name: affected) { simpleNames.add(_simpleName(name)); }
+    
+    List<File> result = new ArrayList<File>();
+    for (File f: files) {
+      SourceState s = _sources.get(f.getAbsoluteFile());
+      if (s == null) continue;  // already out of date
+      boolean defines = false;
+      for (ClassState c: s.classes.values()) { if (changed.contains(c.name)) defines = true; }
+      if (defines) continue;
+      boolean depends = false;
+      for (String n: simpleNames) { if (s.names.contains(n)) { depends = true; break; } }
+      for (ClassState c: s.classes.values()) {
+        if (depends) break;
+        for (String r: c.references) { if (affected.contains(r)) { depends = true; break; } }
+      }
+      if (depends) result.add(f);
+    }
+    return result;
+  }
+  
+  /** @return the text of f, from the given map or, if it is not there, from disk */
+  private static String _text(File f, Map<File, String> text) {
+    String t = text.get(f);
+    if (t != null) return t;
+    try { return IOUtil.toString(f); }
+    catch (IOException e) { return ""; }  // the compiler will report the problem
+  }
+  
+  private static byte[] _hash(String text) {
+    try { return MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8)); }
+    catch (NoSuchAlgorithmException e) { throw new UnexpectedException(e); }
+  }
+  
+  /** @return the Java identifiers in the text (including those in comments and strings, which does no harm) */
+  private static Set<String> _identifiers(String text) {
+    Set<String> result = new HashSet<String>();
+    int i = 0;
+    int n = text.length();
+    while (i < n) {
+      if (Character.isJavaIdentifierStart(text.charAt(i))) {
+        int start = i;
+        while (i < n && Character.isJavaIdentifierPart(text.charAt(i))) ++i;
+        result.add(text.substring(start, i));
+      }
+      else ++i;
+    }
+    return result;
+  }
+  
+  /** @return the simple name of the class with the given internal name */
+  static String _simpleName(String internalName) {
+    int pos = Math.max(internalName.lastIndexOf('/'), internalName.lastIndexOf('$'));
+    return internalName.substring(pos + 1);
+  }
+  
+  /** Reads the name, ABI, supertypes, and references of a class file.  A class file that cannot be read gets an ABI
+    * that never matches, so its dependents are always compiled.
+    * @param classFile the class file
+    * @return the state of the class file
+    */
+  private static ClassState _readClass(File classFile) {
+    ClassReader cr;
+    try { cr = new ClassReader(IOUtil.toByteArray(classFile)); }
+    catch (IOException e) { return _unreadable(classFile); }
+    catch (IllegalArgumentException e) { return _unreadable(classFile); }
+    
+    final StringBuilder abi = new StringBuilder();
+    final Set<String> supertypes = new HashSet<String>();
+    final Set<String> references = new HashSet<String>();
+    cr.accept(new ClassVisitor(Opcodes.ASM9) {
+      public void visit(int version, int access, String name, String signature, String superName, 
+                        String[] interfaces) {
+        abi.append("class ").append(access).append(' ').append(name).append(' ').append(signature);
+        if (superName != null) supertypes.add(superName);
+        if (interfaces != null) supertypes.addAll(Arrays.asList(interfaces));
+        abi.append(' ').append(superName).append(' ').append(Arrays.toString(interfaces)).append('\n');
+      }
+      public void visitInnerClass(String name, String outerName, String innerName, int access) {
+        abi.append("inner ").append(name).append(' ').append(access).append('\n');
+      }
+      public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+        _addDescriptor(desc, references);
+        if ((access & Opcodes.ACC_PRIVATE) == 0) {
+          abi.append("field ").append(access).append(' ').append(name).append(' ').append(desc).append(' ');
+          abi.append(signature).append(' ').append(value).append('\n');
+        }
+        return null;
+      }
+      public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        _addDescriptor(desc, references);
+        if ((access & Opcodes.ACC_PRIVATE) == 0) {
+          abi.append("method ").append(access).append(' ').append(name).append(' ').append(desc).append(' ');
+          abi.append(signature).append(' ').append(Arrays.toString(exceptions)).append('\n');
+        }
+        return null;
+      }
+    }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    
+    // the classes named in the constant pool, and in the descriptors of the members used
+    char[] buf = new char[cr.getMaxStringLength()];
+    for (int i = 1; i < cr.getItemCount(); ++i) {
+      int offset = cr.getItem(i);
+      if (offset == 0) continue;  // second slot of a long or double
+      int tag = cr.readByte(offset - 1);
+      if (tag == 7) {  // CONSTANT_Class
+        String name = cr.readUTF8(offset, buf);
+        if (name.startsWith("[")) _addDescriptor(name, references);
+        else references.add(name);
+      }
+      else if (tag == 12) _addDescriptor(cr.readUTF8(offset + 2, buf), references);  // CONSTANT_NameAndType
+      else if (tag == 16) _addDescriptor(cr.readUTF8(offset, buf), references);  // CONSTANT_MethodType
+    }
+    references.addAll(supertypes);
+    references.remove(cr.getClassName());
+    return new ClassState(cr.getClassName(), abi.toString(), supertypes, references);
+  }
+  
+  private static ClassState _unreadable(File classFile) {
+    String name = classFile.getName();
+    if (name.endsWith(".class")) name = name.substring(0, name.length() - ".class".length());
+    return new ClassState(name, "unreadable " + System.nanoTime(), new HashSet<String>(), new HashSet<String>());
+  }
+  
+  /** Adds the classes named in a descriptor to the set. */
+  private static void _addDescriptor(String desc, Set<String> classes) {
+    int i = desc.indexOf('L');
+    while (i >= 0) {
+      int end = desc.indexOf(';', i);
+      if (end < 0) return;
+      classes.add(desc.substring(i + 1, end));
+      i = desc.indexOf('L', end);
+    }
+  }
+}
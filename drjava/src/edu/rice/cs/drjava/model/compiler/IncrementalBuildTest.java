@@ -0,0 +1,169 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.DJError;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the change and dependency tracking of IncrementalBuild. */
+public final class IncrementalBuildTest extends DrJavaTestCase {
+  private volatile File _tempDir;
+  private volatile File _out;
+  private volatile JavaxToolsCompiler _compiler;
+  private volatile IncrementalBuild _build;
+  private final Map<File, String> _text = new HashMap<File, String>();
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    String user = System.getProperty("user.name");
+    _tempDir = IOUtil.createAndMarkTempDirectory("DrJava-test-" + user, "");
+    _out = new File(_tempDir, "classes");
+    _out.mkdir();
+    _compiler = new JavaxToolsCompiler();
+    _build = new IncrementalBuild();
+    _text.clear();
+  }
+  
+  public void tearDown() throws Exception {
+    IOUtil.deleteRecursively(_tempDir);
+    _tempDir = null;
+    super.tearDown();
+  }
+  
+  public void testDependencies() throws IOException {
+    if (! _compiler.isAvailable()) return;
+    File a = _source("A", "public class A { public static final int K = 1; public int f() { return 1; } }");
+    File b = _source("B", "public class B { int g(A a) { return a.f(); } }");
+    File c = _source("C", "public class C { int k = A.K; }");
+    File d = _source("D", "public class D { }");
+    File e = _source("E", "public class E extends A { }");
+    File f = _source("F", "public class F { Object h() { return new E(); } int g() { return ((E) h()).f(); } }");
+    List<File> files = Arrays.asList(a, b, c, d, e, f);
+    
+    _build.setConfiguration(_out, Arrays.asList(_out), null);
+    assertEquals(files, _build.outOfDateFiles(files, _text));
+    _compileRound(files);
+    assertEquals(0, _build.outOfDateFiles(files, _text).size());
+    
+    // a change to a method body changes no ABI
+    _text.put(a, "public class A { public static final int K = 1; public int f() { return 2; } }");
+    assertEquals(Arrays.asList(a), _build.outOfDateFiles(files, _text));
+    Set<String> changed = _compileRound(Arrays.asList(a));
+    assertEquals(0, changed.size());
+    assertEquals(0, _build.dependents(changed, files).size());
+    
+    // a changed constant is inlined: C depends on A only through its name
+    _text.put(a, "public class A { public static final int K = 2; public int f() { return 2; } }");
+    changed = _compileRound(_build.outOfDateFiles(files, _text));
+    assertEquals(new HashSet<String>(Arrays.asList("A")), changed);
+    assertEquals(Arrays.asList(b, c, e, f), _build.dependents(changed, files));
+    
+    // a configuration change discards the state
+    _build.setConfiguration(_out, Arrays.asList(_out, _tempDir), null);
+    assertEquals(files, _build.outOfDateFiles(files, _text));
+  }
+  
+  public void testStaleClassFiles() throws IOException {
+    if (! _compiler.isAvailable()) return;
+    File a = _source("A", "public class A { static class Inner { } }");
+    File b = _source("B", "public class B { }");
+    List<File> files = Arrays.asList(a, b);
+    _build.setConfiguration(_out, Arrays.asList(_out), null);
+    _compileRound(files);
+    File inner = new File(_out, "A$Inner.class");
+    assertTrue(inner.exists());
+    
+    _text.put(a, "public class A { }");
+    Set<String> changed = _compileRound(_build.outOfDateFiles(files, _text));
+    assertEquals(new HashSet<String>(Arrays.asList("A", "A$Inner")), changed);
+    assertFalse("stale class file deleted", inner.exists());
+    
+    File classB = new File(_out, "B.class");
+    assertTrue(classB.exists());
+    assertTrue(b.delete());
+    assertEquals(new HashSet<String>(Arrays.asList("B")), _build.removeDeletedFiles());
+    assertFalse("class file of deleted source deleted", classB.exists());
+    
+    // a missing class file makes its source out of date
+    new File(_out, "A.class").delete();
+    assertEquals(Arrays.asList(a), _build.outOfDateFiles(Arrays.asList(a), _text));
+  }
+  
+  public void testMovedClass() throws IOException {
+    if (! _compiler.isAvailable()) return;
+    File a = _source("A", "public class A { } class X { int f() { return 1; } }");
+    File b = _source("B", "public class B { }");
+    List<File> files = Arrays.asList(a, b);
+    _build.setConfiguration(_out, Arrays.asList(_out), null);
+    _compileRound(files);
+    File x = new File(_out, "X.class");
+    assertTrue(x.exists());
+    
+    // X moves from A to B; both are compiled in the same round
+    _text.put(a, "public class A { }");
+    _text.put(b, "public class B { } class X { int f() { return 2; } }");
+    assertEquals(files, _build.outOfDateFiles(files, _text));
+    _compileRound(files);
+    assertTrue("moved class file kept", x.exists());
+    assertEquals(0, _build.outOfDateFiles(files, _text).size());
+    
+    // X is removed from B
+    _text.put(b, "public class B { }");
+    _compileRound(_build.outOfDateFiles(files, _text));
+    assertFalse("removed class file deleted", x.exists());
+  }
+  
+  private File _source(String name, String text) throws IOException {
+    File f = new File(_tempDir, name + ".java");
+    IOUtil.writeStringToFile(f, "");  // the text is compiled from memory
+    _text.put(f, text);
+    return f;
+  }
+  
+  /** Compiles the files and records the result.
+    * @return the classes whose ABI changed */
+  private Set<String> _compileRound(List<File> files) {
+    Map<File, Set<File>> outputs = new HashMap<File, Set<File>>();
+    List<? extends DJError> errors = 
+      _compiler.compile(files, _text, Arrays.asList(_out), null, _out, null, null, false, outputs);
+    assertEquals("errors: " + errors, 0, errors.size());
+    return _build.recordCompiled(files, _text, outputs);
+  }
+}
@@ -27,6 +27,14 @@ public class JavaxToolsCompiler implements CompilerInterface {
     }
     private final JavaCompiler compiler;
 
+    /** The file manager, kept across compiles so that the class path archives it has opened and indexed are reused.
+      * Guarded by this. */
+    private StandardJavaFileManager _fileManager = null;
+
+    /** The modification times of the archives on the class path and boot class path when _fileManager was created. If
+      * any of them changes, _fileManager is discarded, since it may have cached the old contents. Guarded by this. */
+    private Map<File, Long> _archiveStamps = Collections.emptyMap();
+
     /** Standard Constructor */
     public JavaxToolsCompiler() { this.compiler = ToolProvider.getSystemJavaCompiler(); }
 
@@ -35,6 +43,29 @@ public class JavaxToolsCompiler implements CompilerInterface {
     public List<? extends DJError> compile(List<? extends File> files, List<? extends File> classPath,
                                            List<? extends File> sourcePath, File destination,
                                            List<? extends File> bootClassPath, String sourceVersion, boolean showWarnings) {
+        return compile(files, Collections.<File, String>emptyMap(), classPath, sourcePath, destination, bootClassPath,
+                       sourceVersion, showWarnings, null);
+    }
+
+    /** Compile the given files, reading the sources of some of them from memory rather than from disk.  The arguments
+      * are as in {@link CompilerInterface#compile}.
+      * @param files  Source files to compile.
+      * @param sourceText  The text of those files that should not be read from disk, such as open documents.
+      * @param classPath  Support jars or directories that should be on the classpath.
+      * @param sourcePath  Location of additional sources to be compiled on-demand.
+      * @param destination  Location (directory) for compiled classes.
+      * @param bootClassPath  The bootclasspath.
+      * @param sourceVersion  The language version of the sources.
+      * @param showWarnings  Whether compiler warnings should be shown or ignored.
+      * @param outputs  If not null, receives the class files written for each source file, which is identified by its
+      *                 absolute path.
+      * @return Errors that occurred. If no errors, should be zero length (not null).
+      */
+    public synchronized List<? extends DJError> compile(List<? extends File> files, Map<File, String> sourceText,
+                                                        List<? extends File> classPath, List<? extends File> sourcePath,
+                                                        File destination, List<? extends File> bootClassPath,
+                                                        String sourceVersion, boolean showWarnings,
+                                                        Map<File, Set<File>> outputs) {
         // Check if compiler is available
         if (compiler == null) {
             List<DJError> errors = new ArrayList<>();
@@ -43,19 +74,13 @@ public class JavaxToolsCompiler implements CompilerInterface {
         }
 
         // Set up the file manager
-        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        StandardJavaFileManager fileManager = _getFileManager(classPath, bootClassPath);
 
-        // Set the classpath, source path, and bootclasspath
+        // Set the classpath, source path, and bootclasspath; null restores the default
         try {
-            if (classPath != null) {
-                fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
-            }
-            if (sourcePath != null) {
-                fileManager.setLocation(StandardLocation.SOURCE_PATH, sourcePath);
-            }
-            if (bootClassPath != null) {
-                fileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, bootClassPath);
-            }
+            fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+            fileManager.setLocation(StandardLocation.SOURCE_PATH, sourcePath);
+            fileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, bootClassPath);
         } catch (IOException e) {
             List<DJError> errors = new ArrayList<>();
             errors.add(new DJError("Error setting paths: " + e.getMessage(), false));
@@ -63,7 +88,14 @@ public class JavaxToolsCompiler implements CompilerInterface {
         }
 
         // Convert files to a format the compiler understands
-        Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(files);
+        List<JavaFileObject> compilationUnits = new ArrayList<>();
+        List<File> diskFiles = new ArrayList<>();
+        for (File f : files) {
+            String text = sourceText.get(f);
+            if (text == null) diskFiles.add(f);
+            else compilationUnits.add(new SourceText(f, text));
+        }
+        for (JavaFileObject fo : fileManager.getJavaFileObjectsFromFiles(diskFiles)) compilationUnits.add(fo);
 
         // Prepare the compilation options
         /* Question (by Corky): is the "-source" option necessary?  The JavaxTools compiler is part of the executing JVM. */
@@ -72,24 +104,22 @@ public class JavaxToolsCompiler implements CompilerInterface {
             optionList.add("-source");
             optionList.add(sourceVersion);
         }
-        if (destination != null) {
-            try {
-                fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(destination));
-            } catch (IOException e) {
-                List<DJError> errors = new ArrayList<>();
-                errors.add(new DJError("Error setting build directory: " + e.getMessage(), false));
-                return errors;
-            }
-            // This doesn't work for javax.tools compiler
-            // optionList.add("-d");
-            // optionList.add(destination.getAbsolutePath());
+        try {
+            // javax.tools ignores "-d"; null writes each class file next to its source
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
+                                    (destination == null) ? null : Collections.singletonList(destination));
+        } catch (IOException e) {
+            List<DJError> errors = new ArrayList<>();
+            errors.add(new DJError("Error setting build directory: " + e.getMessage(), false));
+            return errors;
         }
 
         // Prepare a diagnostic collector to collect compile errors
         DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
 
         // Create a compilation task
-        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, optionList, null, compilationUnits);
+        JavaCompiler.CompilationTask task = compiler.getTask(null, new SourceTextFileManager(fileManager, outputs), diagnostics,
+                                                             optionList, null, compilationUnits);
 
         // Perform the compile task
         boolean success = task.call();
@@ -97,21 +127,108 @@ public class JavaxToolsCompiler implements CompilerInterface {
         // Process diagnostics to create DJError list
         List<DJError> errors = new ArrayList<>();
         for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            boolean isWarning = diagnostic.getKind() != Diagnostic.Kind.ERROR;
+            if (diagnostic.getSource() == null) {
+                errors.add(new DJError(diagnostic.getMessage(null), isWarning));
+                continue;
+            }
             DJError error = new DJError(new File(diagnostic.getSource().toUri()),
                     (int) diagnostic.getLineNumber() - 1, // DJError adds 1 to this number.
                     (int) diagnostic.getColumnNumber() - 1, // Fixes the cursor position offset.
                     diagnostic.getMessage(null),
-                    diagnostic.getKind() == Diagnostic.Kind.ERROR);
+                    isWarning);
             errors.add(error);
         }
 
         // If compilation failed and no errors were reported, add a generic error message
         if (!success && errors.isEmpty()) {
-            errors.add(new DJError("Compilation failed with unknown error", true));
+            errors.add(new DJError("Compilation failed with unknown error", false));
         }
 
         return errors;
     }
+
+    /** Returns the file manager kept from the previous compile, unless an archive on the given paths has been modified
+      * since it was created, in which case a new one replaces it.
+      * @param classPath the class path of the compile, or null
+      * @param bootClassPath the boot class path of the compile, or null
+      * @return the file manager to use
+      */
+    private StandardJavaFileManager _getFileManager(List<? extends File> classPath, List<? extends File> bootClassPath) {
+        Map<File, Long> stamps = new HashMap<>();
+        for (List<? extends File> path : Arrays.asList(classPath, bootClassPath)) {
+            if (path == null) continue;
+            for (File f : path) {
+                if (f.isFile()) stamps.put(f, f.lastModified());
+            }
+        }
+        // Archives that have been added or removed do not matter: the paths are set again on every compile
+        boolean stale = false;
+        for (Map.Entry<File, Long> e : stamps.entrySet()) {
+            Long old = _archiveStamps.get(e.getKey());
+            if (old != null && !old.equals(e.getValue())) stale = true;
+        }
+        if (_fileManager != null && stale) {
+            try { _fileManager.close(); }
+            catch (IOException e) { /* the old file manager is discarded anyway */ }
+            _fileManager = null;
+        }
+        if (_fileManager == null) {
+            _fileManager = compiler.getStandardFileManager(null, null, null);
+            _archiveStamps = new HashMap<>();
+        }
+        _archiveStamps.putAll(stamps);
+        return _fileManager;
+    }
+
+    /** The source of a compilation unit, taken from memory.  Its URI is that of the file, so diagnostics refer to the
+      * file. */
+    private static class SourceText extends SimpleJavaFileObject {
+        private final File _file;
+        private final String _text;
+        public SourceText(File f, String text) {
+            super(f.toURI(), JavaFileObject.Kind.SOURCE);
+            _file = f;
+            _text = text;
+        }
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) { return _text; }
+    }
+
+    /** Places the class files of sources taken from memory as it would those of the files themselves: the standard
+      * file manager only puts class files next to the sources it created when there is no class output location.
+      * Also records the class files written for each source. */
+    private static class SourceTextFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<File, Set<File>> _outputs;
+        public SourceTextFileManager(StandardJavaFileManager fileManager, Map<File, Set<File>> outputs) {
+            super(fileManager);
+            _outputs = outputs;
+        }
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) throws IOException {
+            if (sibling instanceof SourceText) {
+                sibling = fileManager.getJavaFileObjects(((SourceText) sibling)._file).iterator().next();
+            }
+            JavaFileObject result = super.getJavaFileForOutput(location, className, kind, sibling);
+            if (_outputs != null && sibling != null && kind == JavaFileObject.Kind.CLASS &&
+                "file".equals(sibling.toUri().getScheme()) && "file".equals(result.toUri().getScheme())) {
+                File source = new File(sibling.toUri()).getAbsoluteFile();
+                Set<File> classFiles = _outputs.get(source);
+                if (classFiles == null) {
+                    classFiles = new HashSet<>();
+                    _outputs.put(source, classFiles);
+                }
+                classFiles.add(new File(result.toUri()).getAbsoluteFile());
+            }
+            return result;
+        }
+        public boolean isSameFile(FileObject a, FileObject b) {
+            if (a instanceof SourceText || b instanceof SourceText) return a.toUri().equals(b.toUri());
+            return super.isSameFile(a, b);
+        }
+        /** Keeps the underlying file manager open; it is reused by later compiles. */
+        public void close() { }
+    }
+
     /* Question (Corky): Shouldn't we retreive the version of this System (JVM). */
     public JavaVersion version() { return JavaVersion.JAVA_8; }
 
@@ -0,0 +1,129 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.DJError;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests compiling from memory and reusing the file manager in JavaxToolsCompiler. */
+public final class JavaxToolsCompilerTest extends DrJavaTestCase {
+  private volatile File _tempDir;
+  private volatile JavaxToolsCompiler _compiler;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    String user = System.getProperty("user.name");
+    _tempDir = IOUtil.createAndMarkTempDirectory("DrJava-test-" + user, "");
+    _compiler = new JavaxToolsCompiler();
+  }
+  
+  public void tearDown() throws Exception {
+    IOUtil.deleteRecursively(_tempDir);
+    _tempDir = null;
+    _compiler = null;
+    super.tearDown();
+  }
+  
+  /** The text given for a file is compiled instead of the file's contents, and errors refer to the file. */
+  public void testCompileFromMemory() throws IOException {
+    if (! _compiler.isAvailable()) return;
+    File src = new File(_tempDir, "Foo.java");
+    IOUtil.writeStringToFile(src, "public class Foo { this does not compile }");
+    File out = new File(_tempDir, "classes");
+    out.mkdir();
+    
+    Map<File, String> text = new HashMap<File, String>();
+    text.put(src, "public class Foo { public int x; }");
+    List<? extends DJError> errors = _compile(Arrays.asList(src), text, null, out);
+    assertEquals("errors: " + errors, 0, errors.size());
+    assertTrue(new File(out, "Foo.class").exists());
+    
+    text.put(src, "public class Foo {\n  int y = \"not an int\";\n}");
+    errors = _compile(Arrays.asList(src), text, null, out);
+    assertEquals(1, errors.size());
+    assertEquals(src.getCanonicalFile(), errors.get(0).file().getCanonicalFile());
+    assertEquals(1, errors.get(0).lineNumber());
+    
+    errors = _compile(Arrays.asList(src), Collections.<File, String>emptyMap(), null, out);
+    assertTrue(errors.size() > 0);
+  }
+  
+  /** A library jar that is rewritten between compiles is read again. */
+  public void testModifiedJar() throws IOException {
+    if (! _compiler.isAvailable()) return;
+    File jar = new File(_tempDir, "lib.jar");
+    _makeLibrary(jar, "public class Lib { public static int f() { return 1; } }");
+    File src = new File(_tempDir, "User.java");
+    File out = new File(_tempDir, "classes");
+    out.mkdir();
+    
+    Map<File, String> text = new HashMap<File, String>();
+    text.put(src, "public class User { int x = Lib.f(); }");
+    List<File> classPath = Arrays.asList(jar);
+    assertEquals(0, _compile(Arrays.asList(src), text, classPath, out).size());
+    
+    _makeLibrary(jar, "public class Lib { public static int g() { return 2; } }");
+    jar.setLastModified(jar.lastModified() + 10000);
+    assertEquals(1, _compile(Arrays.asList(src), text, classPath, out).size());
+    text.put(src, "public class User { int x = Lib.g(); }");
+    assertEquals(0, _compile(Arrays.asList(src), text, classPath, out).size());
+  }
+  
+  private List<? extends DJError> _compile(List<File> files, Map<File, String> text, List<File> classPath, File out) {
+    return _compiler.compile(files, text, classPath, null, out, null, null, false, null);
+  }
+  
+  /** Compiles the source of class Lib and writes the class file to the given jar. */
+  private void _makeLibrary(File jar, String source) throws IOException {
+    File dir = IOUtil.createAndMarkTempDirectory("lib", "", _tempDir);
+    File src = new File(dir, "Lib.java");
+    IOUtil.writeStringToFile(src, source);
+    assertEquals(0, new JavaxToolsCompiler().compile(Arrays.asList(src), null, null, dir, null, null, false).size());
+    JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      jos.putNextEntry(new JarEntry("Lib.class"));
+      jos.write(IOUtil.toByteArray(new File(dir, "Lib.class")));
+      jos.closeEntry();
+    }
+    finally { jos.close(); }
+  }
+}
@@ -128,6 +128,14 @@ public class LanguageLevelStackTraceMapper {
     cache = new HashMap<String,TreeMap<Integer,Integer>>();
   }
   
+  /** Removes the TreeMaps for the given language level files, whose .java files have been regenerated, from the cache 
+    * @param llFiles the language level files */
+  public void clearCache(Iterable<File> llFiles) {
+    HashMap<String,TreeMap<Integer,Integer>> newCache = new HashMap<String,TreeMap<Integer,Integer>>(cache);
+    for (File f: llFiles) newCache.remove(f.getAbsolutePath());
+    cache = newCache;
+  }
+  
   /** Ensures the given file and StackTraceElement match.  The extension on 
    * the file f may be a LL extension while the extension in the 
    * StackTraceElement is the corresponding .java file. 
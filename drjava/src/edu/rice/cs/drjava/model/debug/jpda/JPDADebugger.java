@@ -32,6 +32,7 @@ import java.awt.EventQueue;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.TreeMap;
@@ -99,6 +100,9 @@ public class JPDADebugger implements Debugger {
   
   private static final String NEW_INSTANCE_SIG = "(Ljava/lang/Class;I)Ljava/lang/Object;";
   
+  /** Maximum number of entries in each of the mirror caches before they are released and emptied. */
+  private static final int MIRROR_CACHE_SIZE = 1024;
+  
   /** Reference to DrJava's model. */
   private volatile GlobalModel _model;
   
@@ -135,6 +139,23 @@ public class JPDADebugger implements Debugger {
   
   /*Determines whether automatic trace has been enabled*/
   private volatile boolean _isAutomaticTraceEnabled = false;
+  
+  /** Variable names mirrored in the VM by earlier calls to _dumpVariablesIntoInterpreterAndSwitch.  Strings are
+    * immutable, so they are kept (protected from garbage collection) and reused on later steps.  Only accessed in
+    * the event thread.
+    */
+  private final HashMap<String, StringReference> _nameMirrors = new HashMap<String, StringReference>();
+  
+  /** Boxed primitive values created in the VM by earlier calls to _dumpVariablesIntoInterpreterAndSwitch, so that a
+    * local whose value is unchanged since the last step is not boxed again.  Only accessed in the event thread.
+    */
+  private final HashMap<PrimitiveValue, ObjectReference> _boxMirrors = new HashMap<PrimitiveValue, ObjectReference>();
+  
+  /** Time (from {@code System.nanoTime()}) at which the pending step was requested, or -1 if none is pending. */
+  private volatile long _stepStart = -1;
+  
+  /** Milliseconds from the most recent step request until its suspension was shown, or -1 if there was none. */
+  private volatile long _stepLatency = -1;
       
   /** Builds a new JPDADebugger to debug code in the Interactions JVM, using 
    * the JPDA/JDI interfaces.
@@ -274,6 +295,9 @@ public class JPDADebugger implements Debugger {
         _suspendedThreads = new RandomAccessStack();
         _eventManager = null;
         _runningThread = null;
+        // the mirrors belonged to the disposed VM
+        _nameMirrors.clear();
+        _boxMirrors.clear();
         _updateWatches();
       }
     }
@@ -1277,6 +1301,7 @@ public class JPDADebugger implements Debugger {
     
     ThreadReference thread = _suspendedThreads.peek();
     _log.log(this + "is Stepping " + thread.toString());
+    _stepStart = System.nanoTime();
     
     // Copy the variables back into the thread from the appropriate interpreter.
     // We do this before stepping since DrJava will hang if you try to copy back
@@ -1434,37 +1459,18 @@ public class JPDADebugger implements Debugger {
     * called from unsynchronized listeners. */
   private /* synchronized */ void _updateWatches() {
     assert EventQueue.isDispatchThread();
-    if (! isReady()) return;
+    if (! isReady() || _watches.isEmpty()) return;
+    
+    // evaluate all watches in the interpreter with a single call
+    List<String> names = new ArrayList<String>(_watches.size());
+    for (DebugWatchData w : _watches) { names.add(w.getName()); }
+    List<Pair<String,String>> values = _model.getInteractionsModel().getVariablesToString(names);
     
-    for (DebugWatchData w : _watches) {
-      String name = w.getName();
-      String val = "";
-      String type = "";
-//      ArrayList<Integer> arr_index = new ArrayList<Integer>();
-//      
-//      if (name.indexOf("[") != -1 && name.indexOf("]") != -1) {
-//        name = name.substring(0, name.indexOf("["));
-//        arr_index.add(Integer.parseInt(w.getName().substring(w.getName().indexOf("[")+1, w.getName().indexOf("]"))));      
-//        if (w.getName().indexOf("]")<(w.getName().length()-1)) {
-//          String iter = w.getName().substring(w.getName().indexOf("]")+1, w.getName().length());
-//          while(iter.indexOf("[") != -1 && iter.indexOf("]") != -1) {
-//            arr_index.add(Integer.parseInt(iter.substring(iter.indexOf("[")+1, iter.indexOf("]"))));      
-//            if (iter.indexOf("]")<(iter.length()-1))
-//              iter = iter.substring(iter.indexOf("]")+1, iter.length());
-//            else 
-//              iter = "";
-//          }
-//        }
-//      }
-//     
-//      int [] indices = new int[arr_index.size()];
-//      for (int i = 0; i < arr_index.size(); i++) {
-//        indices[i] = arr_index.get(i);
-//      }
-      Pair<String,String> pair = _model.getInteractionsModel().getVariableToString(name);
-      // System.out.println("pair == null? "+(pair == null));
-      val = pair.first();
-      type = pair.second();
+    for (int i = 0; i < _watches.size(); i++) {
+      DebugWatchData w = _watches.get(i);
+      Pair<String,String> pair = values.get(i);
+      String val = pair.first();
+      String type = pair.second();
       
       if (val == null) { w.setNoValue(); }
       else { w.setValue(val); }
@@ -1487,16 +1493,21 @@ public class JPDADebugger implements Debugger {
       // Name the new interpreter based on this thread
       String interpreterName = _getUniqueThreadName(thread);
       ObjectReference mirroredName = _mirrorString(interpreterName, toRelease);
-      ObjectReference thisVal = thread.frame(0).thisObject();
-      ClassObjectReference thisClass = thread.frame(0).location().declaringType().classObject();
+      // the frame is invalidated each time we invoke a method in thread (as in _box), so everything needed from
+      // it is read before the first invocation
+      StackFrame frame = thread.frame(0);
+      ObjectReference thisVal = frame.thisObject();
+      ClassObjectReference thisClass = frame.location().declaringType().classObject();
       
       List<ObjectReference> localVars = new LinkedList<ObjectReference>();
       List<StringReference> localVarNames = new LinkedList<StringReference>();
       List<ClassObjectReference> localVarClasses = new LinkedList<ClassObjectReference>();
       try {
-        // we don't store the value thread.frame(0) anywhere, because it is invalidated
-        // each time we invoke a method in thread (as in _box)
-        for (LocalVariable v : thread.frame(0).visibleVariables()) {
+        List<LocalVariable> visible = frame.visibleVariables();
+        // fetch all of the values with a single request
+        Map<LocalVariable, Value> values = frame.getValues(visible);
+        if (_nameMirrors.size() > MIRROR_CACHE_SIZE || _boxMirrors.size() > MIRROR_CACHE_SIZE) { _releaseMirrors(); }
+        for (LocalVariable v : visible) {
           try {
             // Get the type first, so that if an error occurs, we haven't mutated the lists.
             Type t = v.type();
@@ -1507,10 +1518,10 @@ public class JPDADebugger implements Debugger {
               // primitive types are represented by null
               localVarClasses.add(null);
             }
-            localVarNames.add(_mirrorString(v.name(), toRelease));
-            Value val = thread.frame(0).getValue(v);
+            localVarNames.add(_mirrorName(v.name()));
+            Value val = values.get(v);
             if (val == null || val instanceof ObjectReference) { localVars.add((ObjectReference) val); }
-            else { localVars.add(_box((PrimitiveValue) val, thread, toRelease)); }
+            else { localVars.add(_mirrorBox((PrimitiveValue) val, thread)); }
           }
           catch (ClassNotLoadedException e) {
             // This is a real possibility, as documented in the ClassNotLoadedException
@@ -1567,6 +1578,48 @@ public class JPDADebugger implements Debugger {
     throw new DebugException("Ran out of OBJECT_COLLECTED_TRIES");
   }
   
+  /** Get a string for a variable name in the VM, reusing the mirror created for an earlier step if there is one.
+   * The result stays protected from garbage collection until {@link #_releaseMirrors}.
+   * @param name the variable name to be mirrored
+   * @return reference to the string
+   * @throws DebugException if something goes wrong
+   */
+  private StringReference _mirrorName(String name) throws DebugException {
+    StringReference result = _nameMirrors.get(name);
+    if (result == null) {
+      result = _mirrorString(name, new LinkedList<ObjectReference>());
+      _nameMirrors.put(name, result);
+    }
+    return result;
+  }
+  
+  /** Get a boxed object for the given primitive, reusing the box created for an earlier step if the value has not
+   * changed.  The result stays protected from garbage collection until {@link #_releaseMirrors}.
+   * @param val the value to be boxed
+   * @param thread a ThreadReference
+   * @return the boxed value
+   * @throws DebugException if something goes wrong
+   */
+  private ObjectReference _mirrorBox(PrimitiveValue val, ThreadReference thread) throws DebugException {
+    ObjectReference result = _boxMirrors.get(val);
+    if (result == null) {
+      result = _box(val, thread, new LinkedList<ObjectReference>());
+      _boxMirrors.put(val, result);
+    }
+    return result;
+  }
+  
+  /** Allow the VM to collect the cached name and box mirrors, and empty the caches. */
+  private void _releaseMirrors() {
+    try {
+      for (ObjectReference ref : _nameMirrors.values()) { ref.enableCollection(); }
+      for (ObjectReference ref : _boxMirrors.values()) { ref.enableCollection(); }
+    }
+    catch (VMDisconnectedException e) { /* nothing left to release */ }
+    _nameMirrors.clear();
+    _boxMirrors.clear();
+  }
+  
   /** Create an array of the given elements in the VM and prevent it from being garbage collected.
    * @param elementClass the type of the objects in elts
    * @param elts a list of objects to mirror
@@ -1704,6 +1757,7 @@ public class JPDADebugger implements Debugger {
     try {
       _dumpVariablesIntoInterpreterAndSwitch();
       _switchToSuspendedThread();
+      _recordStepLatency();
     }
     catch(DebugException de) { throw new UnexpectedException(de); }
   }
@@ -1717,10 +1771,25 @@ public class JPDADebugger implements Debugger {
     try {
       _dumpVariablesIntoInterpreterAndSwitch();
       _switchToSuspendedThread(request);
+      _recordStepLatency();
     }
     catch(DebugException de) { throw new UnexpectedException(de); }
   }
   
+  /** If a step was pending, record and log how long it took from the request until the suspension was shown. */
+  private void _recordStepLatency() {
+    long stepStart = _stepStart;
+    if (stepStart >= 0) {
+      _stepStart = -1;
+      _stepLatency = (System.nanoTime() - stepStart) / 1000000;
+      _log.log(this + " step took " + _stepLatency + " ms");
+    }
+  }
+  
+  /** @return the number of milliseconds from the most recent step request until the debugger showed the resulting
+    *         suspension (variables copied, watches updated, and source shown), or -1 if no step has completed */
+  public long getStepLatency() { return _stepLatency; }
+  
   /** Calls the real switchToSuspendedThread, telling it to updateWatches. 
    * This is what is usually called.
    * @throws DebugException if something goes wrong
@@ -31,7 +31,6 @@ package edu.rice.cs.drjava.model.definitions;
 import javax.swing.text.*;
 import java.awt.*;
 // TODO: Check synchronization.
-import java.util.ArrayList;
 
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.model.*;
@@ -109,29 +108,25 @@ public class ColoringGlyphPainter extends GlyphView.GlyphPainter implements Opti
     
     text = v.getText(start, end);
     
-    ArrayList<HighlightStatus> stats = djdoc.getHighlightStatus(start, end);
-    if (stats.size() < 1) throw  new RuntimeException("GetHighlightStatus returned nothing!");
+    boolean styled = (djdoc instanceof InteractionsDJDocument) && 
+      ((InteractionsDJDocument)djdoc).setColoring((start+end)/2,g);
     try {
-      for (HighlightStatus stat: stats) {
-        int length = stat.getLength();
-        int location = stat.getLocation();
-        
-        if (location < end && location + length > start) {
+      // Draw the cached highlight spans of each line in the range, adjusted to fit within the bounds of the element
+      int pos = start;
+      while (pos < end) {
+        int[] spans = djdoc.getHighlightSpans(pos);
+        for (int i = 2; i < spans.length; i += 3) {
+          int location = Math.max(spans[i], start);
+          int length = Math.min(spans[i] + spans[i + 1], end) - location;
+          if (length <= 0) continue;
           
-          // Adjust the length and location to fit within the bounds of the element we're about to render
-          if (location < start) {
-            length -= (start-location);
-            location = start;
-          }        
-          if (location + length > end) length = end - location;
-          
-          if (! (djdoc instanceof InteractionsDJDocument) || 
-              ! ((InteractionsDJDocument)djdoc).setColoring((start+end)/2,g))      
-            setFormattingForState(g, stat.getState());
+          if (! styled) setFormattingForState(g, spans[i + 2]);
           
           djdoc.getText(location, length, text);
           x = Utilities.drawTabbedText(text, x, y, g, v.getTabExpander(), location);
         }
+        if (spans[1] <= pos) break;
+        pos = spans[1];
       }
     }
     catch(BadLocationException ble) { /* don't continue rendering if such an exception is found */ }
@@ -31,7 +31,6 @@ package edu.rice.cs.drjava.model.definitions;
 import javax.swing.text.*;
 import java.awt.*;
 import javax.swing.event.DocumentEvent;
-import java.util.ArrayList;
 
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.model.*;
@@ -40,7 +39,6 @@ import edu.rice.cs.drjava.config.OptionConstants;
 import edu.rice.cs.drjava.config.OptionEvent;
 import edu.rice.cs.drjava.config.OptionListener;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.*;
-import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.text.EditDocumentInterface;
 
 /** This view class renders text on the screen using the reduced model info.  By extending WrappedPlainView, we only
@@ -145,21 +143,26 @@ public class ColoringView extends PlainView implements OptionConstants {
     
     final AbstractDJDocument _doc = (AbstractDJDocument) doc;
     
-    ArrayList<HighlightStatus> stats = _doc.getHighlightStatus(start, end);
-    if (stats.size() < 1) throw new UnexpectedException("GetHighlightStatus returned nothing!");
+    // Interactions documents may color the whole range according to its style
+    boolean styled = (_doc instanceof InteractionsDJDocument) && 
+      ((InteractionsDJDocument)_doc).setColoring((start + end)/2, g);
+    Segment text = getLineBuffer(); 
     
-    for (HighlightStatus stat: stats) {
-      int location = stat.getLocation();
-      int length = stat.getLength();
-      
-      // If this highlight status extends past p1, end at p1
-      if (location + length > end) length = end - stat.getLocation();
-      
-      if (! (_doc instanceof InteractionsDJDocument) || ! ((InteractionsDJDocument)_doc).setColoring((start + end)/2, g))      
-        setFormattingForState(g, stat.getState());
-      Segment text = getLineBuffer(); 
-      _doc.getText(location, length, text);
-      x = Utilities.drawTabbedText(text, x, y, g, this, location);  // updates x on each iteration
+    // Draw the cached highlight spans of each line in the range (normally just one), clipped to [start, end)
+    int pos = start;
+    while (pos < end) {
+      int[] spans = _doc.getHighlightSpans(pos);
+      for (int i = 2; i < spans.length; i += 3) {
+        int location = Math.max(spans[i], start);
+        int length = Math.min(spans[i] + spans[i + 1], end) - location;
+        if (length <= 0) continue;
+        
+        if (! styled) setFormattingForState(g, spans[i + 2]);
+        _doc.getText(location, length, text);
+        x = Utilities.drawTabbedText(text, x, y, g, this, location);  // updates x on each iteration
+      }
+      if (spans[1] <= pos) break;
+      pos = spans[1];
     }
     return  x;
   }
@@ -848,8 +848,15 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
     */
   public String getPackageName() {
     // assert EventQueue.isDispatchThread();
-    Reader r;
-    r = new StringReader(getText()); // getText() is cheap if document is not resident
+    return getPackageName(new StringReader(getText())); // getText() is cheap if document is not resident
+  }
+  
+  /** Gets the package name embedded in the Java source text read from r, using the same minimal parse as
+    * {@link #getPackageName()}.  Does not require a document, so it may run in any thread.  Closes r.
+    * @param r the reader supplying the source text
+    * @return the name of the declared package, or "" if there is no well-formed package statement
+    */
+  public static String getPackageName(Reader r) {
     try { return new Parser(r).packageDeclaration(Parser.DeclType.TOP).getName(); }
     catch (ParseException e) { return ""; }
     // addresses bug [ 1815387 ] Editor should discard parse errors for now
@@ -2608,4 +2608,91 @@ public final class DefinitionsDocumentTest extends MultiThreadedTestCase impleme
     assertFalse(_doc.containsClassOrInterfaceOrEnum());
     _doc.remove(0, _doc.getText().length());
   }
+  
+  /** Tests that the query cache is used while typing and is invalidated by edits, including undo.
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public void testQueryCacheDuringTyping() throws BadLocationException {
+    _doc.addUndoableEditListener(_doc.getUndoManager());
+    _doc.insertString(0, "class A {\n  void m() {\n    int x;\n  }\n}\n", null);
+    final int pos = _doc.getText().indexOf("int x");
+    final int brace = _doc.getText().indexOf("() {") + 3;
+    
+    _doc.getQueryCache().resetStatistics();
+    assertEquals(brace, _doc.findPrevEnclosingBrace(pos, '{', '}'));
+    assertEquals(brace, _doc.findPrevEnclosingBrace(pos, '{', '}'));
+    assertEquals("second query is a hit", 1, _doc.getQueryCache().getHits());
+    
+    _doc.insertString(pos + 5, "yz", null);  // after the text the query depends on
+    assertEquals(brace, _doc.findPrevEnclosingBrace(pos, '{', '}'));
+    assertEquals("edit beyond the query keeps it", 2, _doc.getQueryCache().getHits());
+    
+    _doc.insertString(brace + 1, "}", null);  // closes the method body before pos
+    assertEquals("edit before the query invalidates it", 
+                 _doc.getText().indexOf("A {") + 2, _doc.findPrevEnclosingBrace(pos, '{', '}'));
+    
+    _doc.getUndoManager().undo();
+    assertEquals("undo", brace, _doc.findPrevEnclosingBrace(pos, '{', '}'));
+  }
+  
+  /** Tests that a cached failure to find an enclosing brace is invalidated by an edit anywhere in the document.
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public void testQueryCacheNoEnclosingBrace() throws BadLocationException {
+    _doc.insertString(0, "class A {\n  void m() {\n    int x;\n", null);
+    final int pos = _doc.getText().indexOf("int x");
+    assertEquals("no closing brace", -1, _doc.findNextEnclosingBrace(pos, '{', '}'));
+    
+    _doc.insertString(_doc.getLength(), "  }\n", null);  // far beyond pos
+    assertEquals("edit after pos adds the closing brace", _doc.getText().lastIndexOf('}'),
+                 _doc.findNextEnclosingBrace(pos, '{', '}'));
+  }
+  
+  /** Tests that the highlight spans of each line are cached, and are recomputed after edits at or before the line,
+    * including edits that change the reduced model state of later lines.
+    */
+  public void testHighlightSpansCache() {
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        try {
+          _doc.insertString(0, "int x = 12;\nString s = \"if\";\nreturn x;\n", null);
+          final int line2 = _doc.getText().indexOf("String");
+          final int line3 = _doc.getText().indexOf("return");
+          
+          int[] first = _doc.getHighlightSpans(0);
+          assertSame("cached", first, _doc.getHighlightSpans(5));
+          assertEquals("line start", 0, first[0]);
+          assertEquals("line end", line2, first[1]);
+          assertEquals("int", HighlightStatus.TYPE, first[4]);
+          assertEquals("12", HighlightStatus.NUMBER, first[3 * 2 + 4]);
+          
+          int[] second = _doc.getHighlightSpans(line2);
+          assertEquals("String", HighlightStatus.TYPE, second[4]);
+          assertEquals("quoted keyword", HighlightStatus.DOUBLE_QUOTED, second[3 * 2 + 4]);
+          int[] third = _doc.getHighlightSpans(line3);
+          assertEquals("return", HighlightStatus.KEYWORD, third[4]);
+          
+          _doc.insertString(line2, "/*", null);  // comments out the rest of the document
+          assertSame("edit after the line keeps it", first, _doc.getHighlightSpans(0));
+          third = _doc.getHighlightSpans(line3 + 2);
+          assertEquals("one block", 5, third.length);
+          assertEquals("commented", HighlightStatus.COMMENTED, third[4]);
+          
+          _doc.remove(line2, 2);
+          assertEquals("uncommented", HighlightStatus.KEYWORD, _doc.getHighlightSpans(line3)[4]);
+          
+          List<HighlightStatus> v = _doc.getHighlightStatus(0, _doc.getLength());
+          assertEquals(HighlightStatus.TYPE, v.get(0).getState());
+          assertEquals("int", 3, v.get(0).getLength());
+          int walk = 0;
+          for (HighlightStatus stat: v) {
+            assertEquals("contiguous", walk, stat.getLocation());
+            walk += stat.getLength();
+          }
+          assertEquals("whole document", _doc.getLength(), walk);
+        }
+        catch(BadLocationException e) { throw new UnexpectedException(e); }
+      }
+    });
+  }
 }
@@ -45,8 +45,13 @@ public abstract class AbstractReducedModel implements ReducedModelStates {
   TokenList.Iterator _cursor;
   
   /** Constructor.  Creates a new reduced model with the cursor at the start of a blank "page." */
-  public AbstractReducedModel() {
-    _tokens = new TokenList();
+  public AbstractReducedModel() { this(ModelList.DEFAULT_GAP_BUFFER); }
+  
+  /** Constructor.  Creates a new reduced model with the cursor at the start of a blank "page."
+    * @param useGapBuffer whether the token list should be a gap buffer rather than a linked list
+    */
+  public AbstractReducedModel(boolean useGapBuffer) {
+    _tokens = new TokenList(useGapBuffer);
     _cursor = _tokens.getIterator();
     // we should be pointing to the head of the list
     _cursor.setBlockOffset(0);
@@ -0,0 +1,139 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model.definitions.reducedmodel;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Runs the ModelList tests against the gap buffer representation, and checks that it agrees with the linked list
+  * representation on long edit sequences.
+  * @version $Id$
+  */
+public final class GapModelListTest extends ModelListTest {
+  
+  protected <T> ModelList<T> makeList() { return new ModelList<T>(true); }
+  
+  /** Edits both representations with many iterators in use, enough to clear the edit log several times. */
+  public void testAgreesWithLinkedList() {
+    Random rand = new Random(17);
+    ModelList<Integer> linked = new ModelList<Integer>(false);
+    ModelList<Integer> gap = new ModelList<Integer>(true);
+    ArrayList<ModelList<Integer>.ModelIterator> linkedIts = new ArrayList<ModelList<Integer>.ModelIterator>();
+    ArrayList<ModelList<Integer>.ModelIterator> gapIts = new ArrayList<ModelList<Integer>.ModelIterator>();
+    for (int i = 0; i < 8; i++) {
+      linkedIts.add(linked.getIterator());
+      gapIts.add(gap.getIterator());
+    }
+    
+    for (int step = 0; step < 5000; step++) {
+      int i = rand.nextInt(linkedIts.size());
+      ModelList<Integer>.ModelIterator l = linkedIts.get(i);
+      ModelList<Integer>.ModelIterator g = gapIts.get(i);
+      switch (rand.nextInt(6)) {
+        case 0: case 1:
+          l.insert(step);
+          g.insert(step);
+          break;
+        case 2:
+          if (! l.atStart() && ! l.atEnd()) { l.remove(); g.remove(); }
+          break;
+        case 3:
+          if (! l.atEnd()) { l.next(); g.next(); }
+          break;
+        case 4:
+          if (! l.atStart()) { l.prev(); g.prev(); }
+          break;
+        default:
+          int j = rand.nextInt(linkedIts.size());
+          if (rand.nextInt(10) == 0) { l.collapse(linkedIts.get(j)); g.collapse(gapIts.get(j)); }
+          else if (rand.nextBoolean()) { l.setTo(linkedIts.get(j)); g.setTo(gapIts.get(j)); }
+      }
+      assertEquals("length at step " + step, linked.length(), gap.length());
+      for (int k = 0; k < linkedIts.size(); k++) {
+        assertEquals("position at step " + step, linkedIts.get(k).pos(), gapIts.get(k).pos());
+        assertEquals("item at step " + step, linkedIts.get(k).current(), gapIts.get(k).current());
+      }
+    }
+    
+    ModelList<Integer>.ModelIterator l = linked.getIterator();
+    ModelList<Integer>.ModelIterator g = gap.getIterator();
+    while (! l.atEnd()) {
+      l.next();
+      g.next();
+      assertEquals(l.current(), g.current());
+    }
+    assertTrue(g.atEnd());
+  }
+  
+  /** Types and edits a long Java-like text in reduced models of both representations. */
+  public void testReducedModelsAgree() {
+    String unit = "/* block\n * comment */\nclass A {\n  // line comment\n  String s = \"a \\\"b\\\" {\";\n" +
+      "  char c = '}';\n  void m(int[] a) { if (a[0] > 1) { return; } }\n}\n";
+    ReducedModelControl linked = new ReducedModelControl(false);
+    ReducedModelControl gap = new ReducedModelControl(true);
+    assertTrue(gap._rmb._tokens.isGapBuffer());
+    assertFalse(linked._rmb._tokens.isGapBuffer());
+    
+    int length = 0;
+    for (int i = 0; i < 50; i++) {
+      for (int j = 0; j < unit.length(); j++) {
+        linked.insertChar(unit.charAt(j));
+        gap.insertChar(unit.charAt(j));
+      }
+      length += unit.length();
+    }
+    assertEquals(linked.simpleString(), gap.simpleString());
+    
+    Random rand = new Random(42);
+    int offset = length;
+    String edits = "{}()[]/*\"'\\\n x";
+    for (int step = 0; step < 2000; step++) {
+      int target = rand.nextInt(length + 1);
+      linked.move(target - offset);
+      gap.move(target - offset);
+      offset = target;
+      if (rand.nextInt(3) == 0 && offset < length) {
+        linked.delete(1);
+        gap.delete(1);
+        length--;
+      }
+      else {
+        char ch = edits.charAt(rand.nextInt(edits.length()));
+        linked.insertChar(ch);
+        gap.insertChar(ch);
+        offset++;
+        length++;
+      }
+      assertEquals("state at step " + step, linked.getStateAtCurrent(), gap.getStateAtCurrent());
+      assertEquals("balance at step " + step, linked.balanceForward(), gap.balanceForward());
+      assertEquals("balance at step " + step, linked.balanceBackward(), gap.balanceBackward());
+    }
+    assertEquals(linked.simpleString(), gap.simpleString());
+  }
+}
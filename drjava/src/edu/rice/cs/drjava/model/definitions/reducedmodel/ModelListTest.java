@@ -33,15 +33,18 @@ import edu.rice.cs.drjava.DrJavaTestCase;
 /** * Tests the functionality of the ModelList list class.
  * @version $Id$
  */
-public final class ModelListTest extends DrJavaTestCase {
+public class ModelListTest extends DrJavaTestCase {
   protected ModelList<Integer> fEmpty;
   protected ModelList<Integer> fFull;
 
   protected void setUp() throws Exception {
     super.setUp();
-    fFull = new ModelList<Integer>();
-    fEmpty = new ModelList<Integer>();
+    fFull = makeList();
+    fEmpty = makeList();
   }
+  
+  /** @return a new, empty list of the representation under test.  Overridden by {@link GapModelListTest}. */
+  protected <T> ModelList<T> makeList() { return new ModelList<T>(false); }
 
   public void testInsert() {
     ModelList<Integer>.ModelIterator itFull = fFull.getIterator();
@@ -261,7 +264,7 @@ public final class ModelListTest extends DrJavaTestCase {
   }
   
   public void testListenerCount() {
-    ModelList<Character> testList = new ModelList<Character>();
+    ModelList<Character> testList = makeList();
     
     assertEquals("No iterators", 0, testList.listenerCount());
     
@@ -40,8 +40,10 @@ public class ReducedModelBrace extends AbstractReducedModel {
   
   private volatile ReducedModelControl _parent;  // contains the walker which is moved by moveWalkerGetState
   
-  public ReducedModelBrace(ReducedModelControl parent) {
-    super();
+  public ReducedModelBrace(ReducedModelControl parent) { this(parent, ModelList.DEFAULT_GAP_BUFFER); }
+  
+  public ReducedModelBrace(ReducedModelControl parent, boolean useGapBuffer) {
+    super(useGapBuffer);
     _parent = parent;
   }
   
@@ -41,8 +41,13 @@ public class ReducedModelComment extends AbstractReducedModel {
   volatile TokenList.Iterator _walker;
   
   /** Constructor.  Creates a new reduced model with the cursor at the start of a blank "page." */
-  public ReducedModelComment() {
-    super();
+  public ReducedModelComment() { this(ModelList.DEFAULT_GAP_BUFFER); }
+  
+  /** Constructor.  Creates a new reduced model with the cursor at the start of a blank "page."
+    * @param useGapBuffer whether the token list should be a gap buffer rather than a linked list
+    */
+  public ReducedModelComment(boolean useGapBuffer) {
+    super(useGapBuffer);
     _walker = _cursor.copy();
   }
   
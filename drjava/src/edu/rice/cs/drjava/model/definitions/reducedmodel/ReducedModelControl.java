@@ -56,9 +56,14 @@ public class ReducedModelControl implements BraceReduction {
   volatile int _offset;
   
   /** Standard constructor. */
-  public ReducedModelControl() {
-    _rmb = new ReducedModelBrace(this);
-    _rmc = new ReducedModelComment();
+  public ReducedModelControl() { this(ModelList.DEFAULT_GAP_BUFFER); }
+  
+  /** Constructor that selects the representation of the token lists; see {@link ModelList}.
+    * @param useGapBuffer whether the token lists should be gap buffers rather than linked lists
+    */
+  public ReducedModelControl(boolean useGapBuffer) {
+    _rmb = new ReducedModelBrace(this, useGapBuffer);
+    _rmc = new ReducedModelComment(useGapBuffer);
   }
   
   /** @return the absolute offset of the cursor in the brace model, which is expensive.  Used for testing purposes only. 
@@ -33,6 +33,14 @@ package edu.rice.cs.drjava.model.definitions.reducedmodel;
   */
 public class TokenList extends ModelList<ReducedToken> implements /*imports*/ ReducedModelStates {
   
+  /** Creates an empty list using the default representation. */
+  public TokenList() { super(); }
+  
+  /** Creates an empty list.
+    * @param useGapBuffer whether to store the tokens in a gap buffer rather than a linked list
+    */
+  public TokenList(boolean useGapBuffer) { super(useGapBuffer); }
+  
   /** Gets a TokenList.Iterator for this list.  Overrides the weaker method in {@code ModelList<ReducedToken>.Iterator}. */
   public Iterator getIterator() { return new Iterator(); }
   
@@ -44,15 +44,13 @@ import java.rmi.RemoteException;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import edu.rice.cs.drjava.config.BooleanOption;
 import edu.rice.cs.drjava.model.DrJavaFileUtils;
 import edu.rice.cs.drjava.model.FileMovedException;
-import edu.rice.cs.drjava.model.FindReplaceMachine;
-import edu.rice.cs.drjava.model.FindResult;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
 import edu.rice.cs.drjava.model.SingleDisplayModel;
 import edu.rice.cs.drjava.model.repl.newjvm.MainJVM;
@@ -65,17 +63,15 @@ import edu.rice.cs.drjava.config.OptionConstants;
 
 import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.iter.IterUtil;
-import edu.rice.cs.plt.lambda.Box;
-import edu.rice.cs.plt.lambda.SimpleBox;
+import edu.rice.cs.plt.lambda.Thunk;
 import edu.rice.cs.util.FileOps;
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.classloader.ClassFileError;
+import edu.rice.cs.util.text.MultiPatternMatcher;
 import edu.rice.cs.util.text.SwingDocument;
 import edu.rice.cs.util.swing.Utilities;
 import edu.rice.cs.util.Log;
 
-import org.objectweb.asm.*;
-
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
 
 import edu.rice.cs.drjava.model.coverage.CoverageMetadata;
@@ -117,6 +113,9 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
   /** State flag to record if test classes in projects must end in "Test" */
   private boolean _forceTestSuffix = false;
   
+  /** The class files found in build directories by previous test runs, reused while they are unchanged. */
+  private final TestClassIndex _testClassIndex = new TestClassIndex();
+  
   /** The document used to display JUnit test results.  Used only for testing. */
   private final SwingDocument _junitDoc = new SwingDocument();
   
@@ -194,19 +193,27 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     junitOpenDefDocs(lod, true);
   }
   
-  /** Determines if className appears as an identifier in the open documents. */
-  private boolean appearsInSourceText(String className, FindReplaceMachine frm) {
-    _log.log("***appearsInSourceText(" + className + ", " + frm + ")");
-    OpenDefinitionsDocument doc = _model.getActiveDocument();
-    frm.setDocument(doc);
-    frm.setFirstDoc(doc);
-    frm.setPosition(doc.getCurrentLocation());
-    frm.setFindWord(className);
-    frm.setIgnoreCommentsAndStrings(true);
-    frm.setSearchAllDocuments(true);
-    FindResult match = frm.findNext();
-    _log.log("Matching result = " + match);
-    return (match.getFoundOffset() != -1);
+  /** Determines which of the given class names appear in the open documents, outside of comments and strings.  All of
+    * the names are matched in a single pass over each document.  Only runs in the event thread.
+    * @param classNames the simple class names to look for
+    * @return the subset of classNames that appear in some open document
+    */
+  private Set<String> namesInSourceText(final Set<String> classNames) {
+    _log.log(new Thunk<String>() { public String value() { return "***namesInSourceText(" + classNames + ")"; } });
+    final Set<String> found = new HashSet<String>();
+    if (classNames.isEmpty()) return found;
+    MultiPatternMatcher matcher = new MultiPatternMatcher(classNames);
+    for (final OpenDefinitionsDocument doc : _model.getOpenDefinitionsDocuments()) {
+      boolean completed = matcher.findAll(doc.getText(), new MultiPatternMatcher.MatchHandler() {
+        public boolean matched(String name, int start) {
+          if (! found.contains(name) && ! doc.isShadowed(start)) found.add(name);
+          return found.size() < classNames.size();
+        }
+      });
+      if (! completed) break;  // all names have been found
+    }
+    _log.log(new Thunk<String>() { public String value() { return "Matching result = " + found; } });
+    return found;
   }
   
   public void junitDocs(List<OpenDefinitionsDocument> lod) { junitOpenDefDocs(lod, true); }
@@ -324,7 +331,7 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     for (OpenDefinitionsDocument doc: lod) /* for all nonEmpty documents in lod */ {
       if (doc.isSourceFile())  { // excludes Untitled documents and open non-source files
         try {
-          _log.log("Processing " + doc);
+          _log.log(new Thunk<String>() { public String value() { return "Processing " + doc; } });
           File sourceRoot = doc.getSourceRoot(); // may throw an InvalidPackageException
           
           // doc has valid package name; add it to list of open java source doc files
@@ -344,19 +351,23 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
           
           if (! classDirsAndRoots.containsKey(classFileDir)) {
             classDirsAndRoots.put(classFileDir, sourceDir);
-            _log.log("Adding " + classFileDir + " with source root " + sourceRoot + " to list of class directories");
+            _log.log(new Thunk<String>() {
+              public String value() {
+                return "Adding " + classFileDir + " with source root " + sourceRoot + " to list of class directories";
+              }
+            });
           }
         }
         catch (InvalidPackageException e) { /* Skip the file, since it doesn't have a valid package */ }
       }
     }
 
-    _log.log("classDirs = " + classDirsAndRoots.keySet());
+    _log.log(new Thunk<String>() { public String value() { return "classDirs = " + classDirsAndRoots.keySet(); } });
     
     /** set of dirs potentially containing test classes */
     Set<File> classDirs = classDirsAndRoots.keySet();
     
-    _log.log("openDocFiles = " + openDocFiles);
+    _log.log(new Thunk<String>() { public String value() { return "openDocFiles = " + openDocFiles; } });
 
     /* Names of test classes. */
     final ArrayList<String> classNames = new ArrayList<String>();
@@ -367,98 +378,67 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     /* Flag indicating if project is open */
     final boolean isProject = _model.isProjectActive();
     
-    /* Set up FindReplaceMachine to search open definitions documents. */
-    final FindReplaceMachine frm = new FindReplaceMachine(_model, _model.getDocumentIterator(), null);
-    
     try {
-      for (File dir: classDirs) { // foreach class file directory
-        _log.log("Examining directory " + dir);
-        
-        File[] listing = dir.listFiles();
-        
-        _log.log("Directory contains the files: " + Arrays.asList(listing));
+      /* Read the names and source files of the class files in classDirs; unchanged class files are not reread. */
+      Map<File, List<TestClassIndex.ClassFileInfo>> classFiles = _testClassIndex.scan(classDirs, _forceTestSuffix);
+      
+      /* In flat file mode, ignore class files that are not named in a source document. */
+      Set<String> namedInSource = null;
+      if (! isProject) {
+        Set<String> simpleNames = new HashSet<String>();
+        for (List<TestClassIndex.ClassFileInfo> infos : classFiles.values()) {
+          for (TestClassIndex.ClassFileInfo info : infos) simpleNames.add(info.simpleName);
+        }
+        namedInSource = namesInSourceText(simpleNames);
+      }
+      
+      for (Map.Entry<File, List<TestClassIndex.ClassFileInfo>> dirEntry : classFiles.entrySet()) {
+        File rootDir = classDirsAndRoots.get(dirEntry.getKey());
         
-        if (listing != null) { // listFiles may return null if there's an IO error
-          for (File entry : listing) { /* for each class file in the build directory */        
-            
-            _log.log("Examining file " + entry);
-            
-            /* ignore non-class files */
-            final String name = entry.getName();
-            if (! name.endsWith(".class")) continue;
-            
-            final String noExtName = name.substring(0, name.length() - 6);  // remove ".class" from name
-            final int indexOfLastDot = noExtName.lastIndexOf('.');
-            final String simpleClassName = noExtName.substring(indexOfLastDot + 1);
-            _log.log("Simple class name is " + simpleClassName);  
-            
-            /* Ignore class names that do not end in "Test" if FORCE_TEST_SUFFIX option is set */
-            if (_forceTestSuffix && ! simpleClassName.endsWith("Test")) continue;
-                       
-            /* ignore entries that do not correspond to files?  Can this happen? */
-            if (! entry.isFile()) continue;
-            
-            /* In flat file mode, ignore files that are not named in a source document. */
-            if (! isProject && ! appearsInSourceText(simpleClassName, frm)) continue;
-            _log.log("isProject = " + isProject + "; name = " + name);
-            
-            // Add this class and the corrresponding source file to classNames and files, respectively.
-            // Finding the source file is non-trivial because it may be a language-levels file
-            
-            try {
-              final Box<String> className = new SimpleBox<String>();
-              final Box<String> sourceName = new SimpleBox<String>();
-              new ClassReader(IOUtil.toByteArray(entry)).accept(new ClassVisitor(Opcodes.ASM7) {
-                public void visit(int version, int access, String name, String sig, String sup, String[] inters) {
-                  className.set(name.replace('/', '.'));
-                }
-                public void visitSource(String source, String debug) { sourceName.set(source); }
-                public void visitOuterClass(String owner, String name, String desc) { }
-                public AnnotationVisitor visitAnnotation(String desc, boolean visible) { return null; }
-                public void visitAttribute(Attribute attr) { }
-                public void visitInnerClass(String name, String out, String in, int access) { }
-                public FieldVisitor visitField(int a, String n, String d, String s, Object v) { return null; }
-                public MethodVisitor visitMethod(int a, String n, String d, String s, String[] e) { return null; }
-                public void visitEnd() { }
-              }, 0);
-              
-              File rootDir = classDirsAndRoots.get(dir);
-              
-              /** The canonical pathname for the file (including the file name) */
-              String javaSourceFileName = getCanonicalPath(rootDir) + File.separator + sourceName.value();
- 
-//              System.err.println("Full java source fileName = " + javaSourceFileName);
-              
-              /* The index in fileName of the dot preceding the extension ".java", ".dj", ".dj0*, ".dj1", or ".dj2" */
-              int indexOfExtDot = javaSourceFileName.lastIndexOf('.');
-//              System.err.println("indexOfExtDot = " + indexOfExtDot);
-              if (indexOfExtDot == -1) continue;  // RMI stub class files return source file names without extensions
-//              System.err.println("File found in openDocFiles = "  + openDocFiles.contains(sourceFileName));
-              
-              /* Determine if this java source file was generated from a language levels file. */
-              String strippedName = javaSourceFileName.substring(0, indexOfExtDot);
-//              System.err.println("Stripped name = " + strippedName);
-              
-              String sourceFileName;
-              
-              if (openDocFiles.contains(javaSourceFileName)) sourceFileName = javaSourceFileName;
-              else if (openDocFiles.contains(strippedName + OptionConstants.DJ_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.DJ_FILE_EXTENSION;
-              else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION;
-              else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION;
-              else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION;
-              else continue; // no matching source file is open
-              
-              File sourceFile = new File(sourceFileName);
-              classNames.add(className.value());
-              files.add(sourceFile);
-              _log.log("Class " + className + " added to classNames.   File " + sourceFileName + " added to files.");
+        for (TestClassIndex.ClassFileInfo info : dirEntry.getValue()) { /* for each class file in the build directory */
+          _log.log(new Thunk<String>() { public String value() { return "Examining class " + info.className; } });
+          
+          if (namedInSource != null && ! namedInSource.contains(info.simpleName)) continue;
+          _log.log(new Thunk<String>() {
+            public String value() { return "isProject = " + isProject + "; name = " + info.simpleName; }
+          });
+          
+          // Add this class and the corrresponding source file to classNames and files, respectively.
+          // Finding the source file is non-trivial because it may be a language-levels file
+          
+          if (info.sourceName == null) continue;
+          
+          /** The canonical pathname for the file (including the file name) */
+          String javaSourceFileName = getCanonicalPath(rootDir) + File.separator + info.sourceName;
+          
+          /* The index in fileName of the dot preceding the extension ".java", ".dj", ".dj0*, ".dj1", or ".dj2" */
+          int indexOfExtDot = javaSourceFileName.lastIndexOf('.');
+          if (indexOfExtDot == -1) continue;  // RMI stub class files return source file names without extensions
+          
+          /* Determine if this java source file was generated from a language levels file. */
+          String strippedName = javaSourceFileName.substring(0, indexOfExtDot);
+          
+          String sourceFileName;
+          
+          if (openDocFiles.contains(javaSourceFileName)) sourceFileName = javaSourceFileName;
+          else if (openDocFiles.contains(strippedName + OptionConstants.DJ_FILE_EXTENSION))
+            sourceFileName = strippedName + OptionConstants.DJ_FILE_EXTENSION;
+          else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION))
+            sourceFileName = strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION;
+          else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION))
+            sourceFileName = strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION;
+          else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION))
+            sourceFileName = strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION;
+          else continue; // no matching source file is open
+          
+          File sourceFile = new File(sourceFileName);
+          classNames.add(info.className);
+          files.add(sourceFile);
+          _log.log(new Thunk<String>() {
+            public String value() {
+              return "Class " + info.className + " added to classNames.   File " + sourceFileName + " added to files.";
             }
-            catch(IOException e) { /* ignore it; can't read class file */ }
-          }
+          });
         }
       }
     }
@@ -485,7 +465,9 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
         synchronized(_compilerModel.getCompilerLock()) {
           // synchronized over _compilerModel to ensure that compilation and junit testing are mutually exclusive.
           /** Set up junit test suite on slave JVM; get TestCase classes forming that suite */
-          _log.log("Calling findTestClasses(" + classNames + ", " + files + " ... )");
+          _log.log(new Thunk<String>() {
+            public String value() { return "Calling findTestClasses(" + classNames + ", " + files + " ... )"; }
+          });
           List<String> tests = _jvm.findTestClasses(classNames, files, coverageMetadata).unwrap(null);
 
           if (tests == null || tests.isEmpty()) {
@@ -0,0 +1,274 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** An index of the class files in build directories, used by DefaultJUnitModel to find the test classes corresponding
+  * to open documents.  For each class file, the index records the class name and the SourceFile attribute, which are
+  * read directly from the class file header; the constant pool is parsed, but fields, methods, and their code are 
+  * skipped.  Entries are reused as long as the class file's modification time and size are unchanged, so only new or 
+  * recompiled classes are read again.  Directories and class files are read in parallel in the common fork-join pool.
+  * Safe for use by multiple threads.
+  */
+class TestClassIndex {
+  
+  /** The number of class files that a single task reads without forking. */
+  private static final int FILES_PER_TASK = 8;
+  
+  /** The class name and source file name of a class file. */
+  static final class ClassFileInfo {
+    /** The simple name of the class file: its file name without the ".class" extension */
+    final String simpleName;
+    /** The fully-qualified (binary) name of the class */
+    final String className;
+    /** The value of the SourceFile attribute, or null if there is none */
+    final String sourceName;
+    ClassFileInfo(String simple, String name, String source) { simpleName = simple; className = name; sourceName = source; }
+  }
+  
+  /** A cached result for a class file; info is null if the file could not be read. */
+  private static final class Entry {
+    final long lastModified;
+    final long length;
+    final ClassFileInfo info;
+    Entry(long mod, long len, ClassFileInfo i) { lastModified = mod; length = len; info = i; }
+  }
+  
+  /** Maps each directory scanned to the entries for its class files, keyed by file name. */
+  private final ConcurrentHashMap<File, Map<String, Entry>> _dirs = new ConcurrentHashMap<File, Map<String, Entry>>();
+  
+  private final AtomicInteger _reads = new AtomicInteger(0);
+  
+  /** Lists the class files in each of the given directories, reading those that are new or have changed.
+    * @param dirs the directories to scan (not recursively)
+    * @param requireTestSuffix whether to ignore classes whose names do not end in "Test"
+    * @return a map from each directory to the readable class files it contains, in the order given by dirs
+    */
+  public Map<File, List<ClassFileInfo>> scan(Collection<File> dirs, boolean requireTestSuffix) {
+    final List<DirectoryTask> tasks = new ArrayList<DirectoryTask>();
+    for (File d : dirs) tasks.add(new DirectoryTask(d, requireTestSuffix));
+    ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+      protected void compute() { invokeAll(tasks); }
+    });
+    
+    Map<File, List<ClassFileInfo>> result = new LinkedHashMap<File, List<ClassFileInfo>>();
+    for (DirectoryTask t : tasks) result.put(t._dir, t.result());
+    return result;
+  }
+  
+  /** @return the number of class files read since this index was created; for testing purposes. */
+  int readCount() { return _reads.get(); }
+  
+  /** Forgets all cached entries. */
+  public void clear() { _dirs.clear(); }
+  
+  /** Scans a single directory, replacing its cached entries. */
+  private class DirectoryTask extends RecursiveAction {
+    private final File _dir;
+    private final boolean _requireTestSuffix;
+    private File[] _files = new File[0];
+    private Entry[] _entries = new Entry[0];
+    
+    DirectoryTask(File dir, boolean requireTestSuffix) { _dir = dir; _requireTestSuffix = requireTestSuffix; }
+    
+    protected void compute() {
+      File[] listing = _dir.listFiles();  // may return null if there's an IO error
+      Map<String, Entry> cached = _dirs.get(_dir);
+      if (cached == null) cached = Collections.emptyMap();
+      
+      List<File> files = new ArrayList<File>();
+      if (listing != null) {
+        for (File f : listing) {
+          String name = f.getName();
+          if (! name.endsWith(".class")) continue;
+          if (_requireTestSuffix && ! name.endsWith("Test.class")) continue;
+          files.add(f);
+        }
+      }
+      _files = files.toArray(new File[files.size()]);
+      _entries = new Entry[_files.length];
+      new ReadTask(_files, _entries, cached, 0, _files.length).invoke();
+      
+      // Files ignored because of their names are kept, so that toggling requireTestSuffix doesn't force a reread
+      Map<String, Entry> updated = new HashMap<String, Entry>();
+      if (listing != null) {
+        for (File f : listing) {
+          Entry e = cached.get(f.getName());
+          if (e != null) updated.put(f.getName(), e);
+        }
+      }
+      for (int i = 0; i < _files.length; i++) {
+        if (_entries[i] != null) updated.put(_files[i].getName(), _entries[i]);
+      }
+      _dirs.put(_dir, updated);
+    }
+    
+    List<ClassFileInfo> result() {
+      List<ClassFileInfo> result = new ArrayList<ClassFileInfo>();
+      for (Entry e : _entries) { if (e != null && e.info != null) result.add(e.info); }
+      return result;
+    }
+  }
+  
+  /** Fills in entries[start, end) for files[start, end), dividing the range among subtasks. */
+  private class ReadTask extends RecursiveAction {
+    private final File[] _files;
+    private final Entry[] _entries;
+    private final Map<String, Entry> _cached;
+    private final int _start;
+    private final int _end;
+    
+    ReadTask(File[] files, Entry[] entries, Map<String, Entry> cached, int start, int end) {
+      _files = files; _entries = entries; _cached = cached; _start = start; _end = end;
+    }
+    
+    protected void compute() {
+      if (_end - _start > FILES_PER_TASK) {
+        int mid = (_start + _end) >>> 1;
+        invokeAll(new ReadTask(_files, _entries, _cached, _start, mid),
+                  new ReadTask(_files, _entries, _cached, mid, _end));
+      }
+      else {
+        for (int i = _start; i < _end; i++) _entries[i] = _entry(_files[i], _cached.get(_files[i].getName()));
+      }
+    }
+  }
+  
+  /** @return an up-to-date entry for f, reusing old if f is unchanged, or null if f is not a file */
+  private Entry _entry(File f, Entry old) {
+    long mod = f.lastModified();
+    long len = f.length();
+    if (old != null && old.lastModified == mod && old.length == len) return old;
+    if (! f.isFile()) return null;
+    _reads.incrementAndGet();
+    ClassFileInfo info;
+    try { info = readClassFile(f); }
+    catch (IOException e) { info = null; /* ignore it; can't read class file */ }
+    return new Entry(mod, len, info);
+  }
+  
+  /** Reads the name and SourceFile attribute of the given class file.
+    * @param f a class file
+    * @return the class file's information
+    * @throws IOException if f cannot be read or is not a well-formed class file
+    */
+  static ClassFileInfo readClassFile(File f) throws IOException {
+    String fileName = f.getName();
+    String simpleName = fileName.substring(0, fileName.length() - ".class".length());
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 4096));
+    try {
+      if (in.readInt() != 0xCAFEBABE) throw new IOException("Not a class file: " + f);
+      in.readUnsignedShort();  // minor version
+      in.readUnsignedShort();  // major version
+      
+      int poolSize = in.readUnsignedShort();
+      String[] utf8 = new String[poolSize];
+      int[] classNames = new int[poolSize];
+      for (int i = 1; i < poolSize; i++) {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+          case 1: utf8[i] = in.readUTF(); break;                      // Utf8
+          case 7: classNames[i] = in.readUnsignedShort(); break;      // Class
+          case 8: case 16: case 19: case 20: _skip(in, 2); break;     // String, MethodType, Module, Package
+          case 15: _skip(in, 3); break;                               // MethodHandle
+          case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18: _skip(in, 4); break;
+          case 5: case 6: _skip(in, 8); i++; break;                   // Long and Double take two entries
+          default: throw new IOException("Unknown constant pool tag " + tag + " in " + f);
+        }
+      }
+      
+      in.readUnsignedShort();  // access flags
+      int thisClass = in.readUnsignedShort();
+      if (thisClass <= 0 || thisClass >= poolSize || utf8[classNames[thisClass]] == null) {
+        throw new IOException("Bad class name in " + f);
+      }
+      String className = utf8[classNames[thisClass]].replace('/', '.');
+      in.readUnsignedShort();  // superclass
+      _skip(in, 2 * in.readUnsignedShort());  // interfaces
+      for (int members = 0; members < 2; members++) {  // fields, then methods
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+          _skip(in, 6);  // access flags, name, descriptor
+          _skipAttributes(in);
+        }
+      }
+      
+      String sourceName = null;
+      int attributes = in.readUnsignedShort();
+      for (int i = 0; i < attributes && sourceName == null; i++) {
+        int name = in.readUnsignedShort();
+        int length = in.readInt();
+        if (name < poolSize && "SourceFile".equals(utf8[name]) && length == 2) {
+          int value = in.readUnsignedShort();
+          if (value < poolSize) sourceName = utf8[value];
+        }
+        else _skip(in, length & 0xFFFFFFFFL);
+      }
+      return new ClassFileInfo(simpleName, className, sourceName);
+    }
+    finally { in.close(); }
+  }
+  
+  private static void _skipAttributes(DataInputStream in) throws IOException {
+    int count = in.readUnsignedShort();
+    for (int i = 0; i < count; i++) {
+      _skip(in, 2);
+      _skip(in, in.readInt() & 0xFFFFFFFFL);
+    }
+  }
+  
+  /** Skips n bytes, seeking past large spans rather than reading them. */
+  private static void _skip(DataInputStream in, long n) throws IOException {
+    while (n > 0) {
+      long skipped = in.skip(n);
+      if (skipped <= 0) {
+        if (in.read() < 0) throw new EOFException();
+        skipped = 1;
+      }
+      n -= skipped;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model.junit;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/** Tests the TestClassIndex. */
+public final class TestClassIndexTest extends DrJavaTestCase {
+  
+  private volatile File _tempDir;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    String user = System.getProperty("user.name");
+    _tempDir = IOUtil.createAndMarkTempDirectory("DrJava-test-" + user, "");
+  }
+  
+  public void tearDown() throws Exception {
+    IOUtil.deleteRecursively(_tempDir);
+    _tempDir = null;
+    super.tearDown();
+  }
+  
+  /** Copies the class file for c into dir. */
+  private File _copyClass(Class<?> c, File dir) throws IOException {
+    String name = c.getName().substring(c.getName().lastIndexOf('.') + 1) + ".class";
+    File dest = new File(dir, name);
+    InputStream in = c.getResourceAsStream(name);
+    try {
+      FileOutputStream out = new FileOutputStream(dest);
+      try { IOUtil.copyInputStream(in, out); }
+      finally { out.close(); }
+    }
+    finally { in.close(); }
+    return dest;
+  }
+  
+  public void testReadClassFile() throws IOException {
+    TestClassIndex.ClassFileInfo info = TestClassIndex.readClassFile(_copyClass(TestClassIndexTest.class, _tempDir));
+    assertEquals("TestClassIndexTest", info.simpleName);
+    assertEquals(TestClassIndexTest.class.getName(), info.className);
+    assertEquals("TestClassIndexTest.java", info.sourceName);
+    
+    info = TestClassIndex.readClassFile(_copyClass(TestClassIndex.ClassFileInfo.class, _tempDir));
+    assertEquals("TestClassIndex$ClassFileInfo", info.simpleName);
+    assertEquals(TestClassIndex.ClassFileInfo.class.getName(), info.className);
+    assertEquals("TestClassIndex.java", info.sourceName);
+    
+    File bad = new File(_tempDir, "Bad.class");
+    IOUtil.writeStringToFile(bad, "not a class file");
+    try { TestClassIndex.readClassFile(bad); fail("Expected an IOException"); }
+    catch (IOException e) { /* expected */ }
+  }
+  
+  public void testScan() throws IOException {
+    File dir1 = new File(_tempDir, "a");
+    File dir2 = new File(_tempDir, "b");
+    dir1.mkdir();
+    dir2.mkdir();
+    _copyClass(TestClassIndexTest.class, dir1);
+    File index = _copyClass(TestClassIndex.class, dir1);
+    IOUtil.writeStringToFile(new File(dir1, "Bad.class"), "not a class file");
+    IOUtil.writeStringToFile(new File(dir1, "notes.txt"), "not a class file");
+    _copyClass(DefaultJUnitModel.class, dir2);
+    
+    TestClassIndex idx = new TestClassIndex();
+    Map<File, List<TestClassIndex.ClassFileInfo>> result = idx.scan(Arrays.asList(dir1, dir2), false);
+    assertEquals(Arrays.asList(dir1, dir2), Arrays.asList(result.keySet().toArray()));
+    assertEquals(3, result.get(dir1).size() + result.get(dir2).size());
+    assertEquals(DefaultJUnitModel.class.getName(), result.get(dir2).get(0).className);
+    assertEquals(4, idx.readCount());
+    
+    // unchanged files are not read again
+    result = idx.scan(Arrays.asList(dir1, dir2), true);
+    assertEquals(1, result.get(dir1).size());
+    assertEquals(TestClassIndexTest.class.getName(), result.get(dir1).get(0).className);
+    assertEquals(0, result.get(dir2).size());
+    assertEquals(4, idx.readCount());
+    
+    // changed and deleted files are noticed
+    IOUtil.writeStringToFile(index, "no longer a class file");
+    assertTrue(new File(dir2, "DefaultJUnitModel.class").delete());
+    result = idx.scan(Arrays.asList(dir1, dir2), false);
+    assertEquals(1, result.get(dir1).size());
+    assertEquals(0, result.get(dir2).size());
+    assertEquals(5, idx.readCount());
+    
+    result = idx.scan(Arrays.asList(new File(_tempDir, "missing")), false);
+    assertEquals(Collections.emptyList(), result.get(new File(_tempDir, "missing")));
+  }
+}
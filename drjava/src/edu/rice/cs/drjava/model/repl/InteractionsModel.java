@@ -32,6 +32,7 @@ import java.io.*;
 import java.net.ServerSocket;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
 import javax.swing.text.BadLocationException;
 
@@ -254,6 +255,17 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
     */
   public abstract Pair<String,String> getVariableToString(String var);
   
+  /** Gets the string representations of the values of several variables in the current interpreter.  Subclasses
+    * that talk to a remote interpreter should override this to fetch all values at once.
+    * @param vars the names of the variables
+    * @return the result of {@link #getVariableToString} for each name, in the same order
+    */
+  public List<Pair<String,String>> getVariablesToString(List<String> vars) {
+    List<Pair<String,String>> result = new ArrayList<Pair<String,String>>(vars.size());
+    for (String var : vars) { result.add(getVariableToString(var)); }
+    return result;
+  }
+  
   /** Resets the Java interpreter with working directory wd. 
     * @param wd the working directory to be set
     * @param force true if reset is to be forced (restarting the slave JVM)
@@ -29,11 +29,15 @@
 package edu.rice.cs.drjava.model.repl.newjvm;
 
 import java.io.File;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.lang.ClassLoader;
 
 import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.iter.AbstractIterable;
 import edu.rice.cs.plt.iter.IterUtil;
+import edu.rice.cs.plt.iter.SnapshotIterable;
+import edu.rice.cs.plt.iter.VersionedIterable;
 import edu.rice.cs.plt.lambda.Lambda;
 import edu.rice.cs.plt.reflect.PathClassLoader;
 
@@ -54,6 +58,13 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   private final LinkedList<File> _projectFilesCP;  /* The open project files. */
   private final LinkedList<File> _externalFilesCP; /* The open external files. */
   private final LinkedList<File> _extraCP;         /* The extra preferences class path. */
+  private final Iterable<File> _builtInCP;         /* The class path of the JVM. */
+  
+  /** Incremented whenever one of the lists changes. */
+  private long _version;
+  /** Snapshot of the concatenated lists, or null if it must be recomputed. */
+  private SnapshotIterable<File> _fullPathSnapshot;
+  
   // these can be accessed concurrently:
   
   private final Iterable<File> _fullPath;
@@ -64,38 +75,48 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
     _projectFilesCP = new LinkedList<File>();
     _externalFilesCP = new LinkedList<File>();
     _extraCP = new LinkedList<File>();
-    // conversions to SizedIterables are necessary to support 1.4 compatibility
-    Iterable<Iterable<File>> allPaths =
-      IterUtil.<Iterable<File>>make(IterUtil.asSizedIterable(_projectCP),
-                                    IterUtil.asSizedIterable(_buildCP),
-                                    IterUtil.asSizedIterable(_projectFilesCP),
-                                    IterUtil.asSizedIterable(_externalFilesCP),
-                                    IterUtil.asSizedIterable(_extraCP),
-                                    IterUtil.snapshot(builtInCP));
-    // lazily map the lists to their snapshots -- the snapshot code executes every time
-    // _fullPath is traversed
-    _fullPath = IterUtil.collapse(IterUtil.map(allPaths, _makeSafeSnapshot));
+    _builtInCP = IterUtil.snapshot(builtInCP);
+    _version = 0;
+    _fullPathSnapshot = null;
+    _fullPath = new FullPath();
     _log.log("ClassPathManager created in new JVM with _fullPath = " + _fullPath);
     updateProperty();
   }
   
+  /** A dynamic view of the concatenated lists.  Traversals use a snapshot that is only recomputed after a change,
+    * and class loaders can detect changes by comparing versions rather than traversing the path.
+    */
+  private class FullPath extends AbstractIterable<File> implements VersionedIterable<File> {
+    public Iterator<File> iterator() { return snapshot().iterator(); }
+    public long version() { synchronized(ClassPathManager.this) { return _version; } }
+  }
+  
+  /** @return a snapshot of the full class path, computed at most once per change. */
+  private synchronized SnapshotIterable<File> snapshot() {
+    if (_fullPathSnapshot == null) {
+      _fullPathSnapshot = IterUtil.snapshot(IterUtil.collapse(IterUtil.make(_projectCP, _buildCP, _projectFilesCP,
+                                                                              _externalFilesCP, _extraCP, _builtInCP)));
+    }
+    return _fullPathSnapshot;
+  }
+  
+  /** Records a change to one of the lists.  Assumes the lock on this is held. */
+  private void changed() {
+    _version++;
+    _fullPathSnapshot = null;
+    updateProperty();
+  }
+  
   public static final String INTERACTIONS_CLASS_PATH_PROPERTY = "edu.rice.cs.drjava.interactions.class.path";
   
   protected void updateProperty() {
     System.setProperty(INTERACTIONS_CLASS_PATH_PROPERTY,IOUtil.pathToString(_fullPath));
   }
   
-  private final Lambda<Iterable<File>, Iterable<File>> _makeSafeSnapshot =
-    new Lambda<Iterable<File>, Iterable<File>>() {
-    public Iterable<File> value(Iterable<File> arg) {
-      synchronized(ClassPathManager.this) { return IterUtil.snapshot(arg); }
-    }
-  };
-  
   /** Adds the entry to the front of the project classpath (this is the classpath specified in project properties)
     * @param f the file to be added to the classpath
     */
-  public synchronized void addProjectCP(File f) { _projectCP.addFirst(f); updateProperty(); }
+  public synchronized void addProjectCP(File f) { _projectCP.addFirst(f); changed(); }
   
   public synchronized Iterable<File> getProjectCP() { return IterUtil.snapshot(_projectCP); }
   
@@ -105,7 +126,7 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   public synchronized void addBuildDirectoryCP(File f) {
     _buildCP.remove(f); // eliminate duplicates
     _buildCP.addFirst(f);
-    updateProperty();
+    changed();
   }
   
   public synchronized Iterable<File> getBuildDirectoryCP() { return IterUtil.snapshot(_buildCP); }
@@ -116,7 +137,7 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   public synchronized void addProjectFilesCP(File f) {
     _projectFilesCP.remove(f); // eliminate duplicates
     _projectFilesCP.addFirst(f);
-    updateProperty();
+    changed();
   }
   
   public synchronized Iterable<File> getProjectFilesCP() { return IterUtil.snapshot(_projectFilesCP); }
@@ -127,7 +148,7 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   public synchronized void addExternalFilesCP(File f) {
     _externalFilesCP.remove(f); // eliminate duplicates
     _externalFilesCP.addFirst(f);
-    updateProperty();
+    changed();
   }
   
   public synchronized Iterable<File> getExternalFilesCP() { return IterUtil.snapshot(_externalFilesCP); }
@@ -138,7 +159,7 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   public synchronized void addExtraCP(File f) {
     _extraCP.remove(f); // eliminate duplicates
     _extraCP.addFirst(f);
-    updateProperty();
+    changed();
   }
   
   public Iterable<File> getExtraCP() { return IterUtil.snapshot(_extraCP); }
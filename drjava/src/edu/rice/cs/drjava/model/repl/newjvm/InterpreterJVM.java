@@ -47,7 +47,7 @@ import java.awt.EventQueue;
 
 import edu.rice.cs.util.InputStreamRedirector;
 import edu.rice.cs.util.Log;
-import edu.rice.cs.util.OutputStreamRedirector;
+import edu.rice.cs.util.BatchedOutputRedirector;
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.classloader.ClassFileError;
 import edu.rice.cs.util.newjvm.*;
@@ -128,6 +128,9 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
   
   /** Remote reference to the MainJVM class in DrJava's primary JVM.  Assigned ONLY once. */
   private volatile MainJVMRemoteI _mainJVM;
+  
+  /** Buffer for System.out and System.err output destined for the main JVM.  Assigned ONLY once, in handleStart. */
+  private volatile BatchedOutputRedirector _output;
 
   /** Private constructor; use the singleton ONLY instance. */
   private InterpreterJVM() {
@@ -184,6 +187,7 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     // redirect stdin
     System.setIn(new InputStreamRedirector() {
       protected String _getInput() {
+        _flushOutput();  // make sure any prompt is visible before blocking for input
         try { return _mainJVM.getConsoleInput(); }
         catch(RemoteException re) {
           error.log(re);
@@ -192,28 +196,23 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
       }
     });
 
-    System.setOut(new PrintStream(new OutputStreamRedirector() {
-      public void print(String s) {
-        try {
-          _mainJVM.systemOutPrint(s);
-        }
+    // redirect stdout and stderr through a shared buffer, so that output is sent to the main JVM in batches
+    _output = new BatchedOutputRedirector() {
+      protected void printBatch(String[] segments, boolean[] isErr) {
+        try { _mainJVM.systemPrintBatch(segments, isErr); }
         catch (RemoteException re) {
           error.log(re);
           throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
         }
       }
-    }));
+    };
+    System.setOut(new PrintStream(_output.getOut()));
+    System.setErr(new PrintStream(_output.getErr()));
     
-    // redirect stderr
-    System.setErr(new PrintStream(new OutputStreamRedirector() {
-      public void print(String s) {
-        try { _mainJVM.systemErrPrint(s); }
-        catch (RemoteException re) {
-          error.log(re);
-          throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
-        }
-      }
-    }));
+    // don't lose buffered output if user code calls System.exit
+    Runtime.getRuntime().addShutdownHook(new Thread("Flush Output Thread") {
+      public void run() { _flushOutput(); }
+    });
     
     /* On Windows, any frame or dialog opened from Interactions pane will appear *behind* DrJava's frame, unless a 
      * previous frame or dialog is shown here.  Not sure what the difference is, but this hack seems to work.  (I'd
@@ -228,6 +227,29 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     //_dialog("interpreter JVM started");
   }
   
+  /** Evaluates a block statement in JShell, so that a standby JVM has launched the JShell execution engine before it
+    * is started.  A block defines no names and produces no output, so it does not disturb the user's session (the
+    * first expression the user evaluates is still {@code $1}).  Also runs a throwaway DynamicJava interpreter, leaving
+    * the default one untouched. */
+  protected void warmUp() {
+    _js.eval("{ Object o = String.valueOf(0); }");
+    try { new Interpreter(_interpreterOptions, _interpreterLoader).interpret("0"); }
+    catch (InterpreterException e) { error.log("Interpreter warm-up failed", e); }
+  }
+  
+  /** Delivers all pending System.out and System.err output to the main JVM.  Called before any result or callback
+    * that the user would expect to appear after that output. */
+  private void _flushOutput() {
+    BatchedOutputRedirector output = _output;
+    if (output != null) {
+      try { output.flush(); }
+      catch (RuntimeException e) { error.log("Could not flush output", e); }
+    }
+  }
+  
+  /** Flushes pending output before the JVM exits. */
+  protected void beforeQuit() { _flushOutput(); }
+  
   /* Concurrent operations on _interpreters. */ 
   private Interpreter getInterpreter(String name) {
     synchronized(_interpreters) {return _interpreters.get(name); }
@@ -363,7 +385,10 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     }
     catch (InterpreterException e) { debug.logEnd(); return InterpretResult.exception(e); }
     catch (Throwable e) { debug.logEnd(); return InterpretResult.unexpectedException(e); }
-    finally { removeBusyInterpreter(interpreter); }
+    finally {
+      removeBusyInterpreter(interpreter);
+      _flushOutput();  // output printed during interpretation must appear before the result
+    }
 
     if (result == null) {
       //TODO create something more robust here
@@ -442,6 +467,27 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     }
   }
 
+  /** Gets the string representations of the values of several variables in the current interpreter.  A name that
+    * occurs more than once is only evaluated once.
+    * @param vars the names of the variables
+    * @return the result of {@link #getVariableToString} for each name, in the same order
+    */
+  public List<Pair<String,String>> getVariablesToString(List<String> vars) {
+    synchronized(_stateLock) {
+      Map<String, Pair<String,String>> results = new HashMap<String, Pair<String,String>>();
+      List<Pair<String,String>> ret = new ArrayList<Pair<String,String>>(vars.size());
+      for (String var : vars) {
+        Pair<String,String> result = results.get(var);
+        if (result == null) {
+          result = getVariableToString(var);  // recursive locking
+          results.put(var, result);
+        }
+        ret.add(result);
+      }
+      return ret;
+    }
+  }
+
   /** @param c the class to get the name of
    * @return the name of the class, with the right number of array suffixes 
    *         "[]" and while being ambiguous about boxed and primitive types. 
@@ -680,6 +726,7 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     * @param causedError If not successful, whether the test caused an error or simply failed.
     */
   public void testEnded(String testName, boolean wasSuccessful, boolean causedError) {
+    _flushOutput();
     try { _mainJVM.testEnded(testName, wasSuccessful, causedError); }
     catch (RemoteException re) { error.log(re); }
   }
@@ -689,6 +736,7 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     * @param errors The array of errors from all failed tests in the suite.
     */
   public void testSuiteEnded(JUnitError[] errors) {
+    _flushOutput();
     try { _mainJVM.testSuiteEnded(errors); }
     catch (RemoteException re) { error.log(re); }
   }
@@ -113,6 +113,14 @@ public interface InterpreterJVMRemoteI extends SlaveRemote {
    */
   public Pair<String,String> getVariableToString(String var) throws RemoteException;
   
+  /** Gets the string representations of the values of several variables in the current interpreter, in a single
+   * call (the debugger uses this to update all watches at once).
+   * @param vars the names of the variables
+   * @return the result of {@link #getVariableToString} for each name, in the same order
+   * @throws RemoteException if communication over RMI fails
+   */
+  public List<Pair<String,String>> getVariablesToString(List<String> vars) throws RemoteException;
+  
   /** @return the current class path.
    * @throws RemoteException if communication over RMI fails
    */
@@ -120,6 +120,12 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   /** Working directory for slave JVM */
   private volatile File _workingDir;
   
+  /** Time (from {@code System.nanoTime()}) at which the pending reset began, or -1 if no reset is pending. */
+  private volatile long _resetStart = -1;
+  
+  /** Milliseconds from the last reset request to the interpreter being ready, or -1 before the first reset. */
+  private volatile long _resetLatency = -1;
+  
   /** Creates a new MainJVM to interface to another JVM;  the MainJVM has a 
    * link to the partially initialized global model.  The MainJVM but does 
    * not automatically start the Interpreter JVM.  Callers must set the
@@ -167,6 +173,10 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     */
   public void dispose() { _state.value().dispose(); }
   
+  /** @return the number of milliseconds the most recent completed reset took, from the request until the new
+    *         interpreter was ready; -1 if no reset has completed */
+  public long getResetLatency() { return _resetLatency; }
+  
 
   /* === AbstractMasterJVM methods === */
 
@@ -222,6 +232,20 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     debug.logEnd();
   }
   
+  /** Forwards a batch of System.out and System.err output from InterpreterJVM to the local InteractionsModel.  Each
+    * segment is passed to systemOutPrint or systemErrPrint, in order.
+    * @param segments Strings that were printed in the other JVM
+    * @param isErr for each segment, whether it was printed to System.err
+    */
+  public void systemPrintBatch(String[] segments, boolean[] isErr) {
+    debug.logStart();
+    for (int i = 0; i < segments.length; i++) {
+      if (isErr[i]) { systemErrPrint(segments[i]); }
+      else { systemOutPrint(segments[i]); }
+    }
+    debug.logEnd();
+  }
+  
   /** Asks the main jvm for input from the console.
    * @return the console input
    */
@@ -376,6 +400,19 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     catch (RemoteException e) { _handleRemoteException(e); return Option.none(); }
   }
   
+  /** Gets the string representations of the values of several variables in the current interpreter with a single
+    * remote call, or "none" if the remote JVM is unavailable or an error occurs.  Blocks until the interpreter is
+    * connected.
+    * @param vars the names of the variables
+    * @return string representation of each variable, in the same order
+    */
+  public Option<List<Pair<String,String>>> getVariablesToString(List<String> vars) {
+    InterpreterJVMRemoteI remote = _state.value().interpreter(false);
+    if (remote == null) { return Option.none(); }
+    try { return Option.some(remote.getVariablesToString(vars)); }
+    catch (RemoteException e) { _handleRemoteException(e); return Option.none(); }
+  }
+  
   /** Blocks until the interpreter is connected. 
     * @param f file to be added to the class path
     * @return {@code true} if the change was successfully passed to the remote JVM.
@@ -719,6 +756,9 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     
     jvmArgs.addAll(ArgumentTokenizer.tokenize(slaveArgs));
     
+    setStandbyPolicy(DrJava.getConfig().getSetting(OptionConstants.SLAVE_JVM_STANDBY_COUNT),
+                     DrJava.getConfig().getSetting(OptionConstants.SLAVE_JVM_QUIT_IN_BACKGROUND));
+    
     JVMBuilder jvmb = new JVMBuilder(_startupClassPath).directory(dir).jvmArguments(jvmArgs);
     
 //    // extend classpath if JUnit/ConcJUnit location specified
@@ -899,6 +939,13 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
         // (Is the user ever going to see a working dir message that doesn't match the actual setting?)
         _interactionsModel.interpreterReady(_workingDir);
         _junitModel.junitJVMReady();        
+        
+        long resetStart = _resetStart;
+        if (resetStart >= 0) {
+          _resetStart = -1;
+          _resetLatency = (System.nanoTime() - resetStart) / 1000000;
+          _log.log("Interactions reset took " + _resetLatency + " ms");
+        }
       }
       else { _state.value().started(i); }
     }
@@ -930,6 +977,7 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     
     public void restart(boolean force) {
       if (_state.compareAndSet(this, new RestartingState())) {  // Advance to RestartingState
+        _resetStart = System.nanoTime();
         _interactionsModel.interpreterResetting();
         quitSlave();
       }
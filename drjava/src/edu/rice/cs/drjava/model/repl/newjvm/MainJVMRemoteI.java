@@ -52,6 +52,14 @@ public interface MainJVMRemoteI extends MasterRemote {
     */
   public void systemOutPrint(String s) throws RemoteException;
   
+  /** Forwards a batch of System.out and System.err output from InterpreterJVM to the MainJVM for output to the user.
+    * The segments are printed in order.
+    * @param segments Strings that were printed in the other JVM
+    * @param isErr for each segment, whether it was printed to System.err (rather than System.out)
+    * @throws RemoteException if remote communication fails
+    */
+  public void systemPrintBatch(String[] segments, boolean[] isErr) throws RemoteException;
+  
   /** Asks the main jvm for input from the console.
    * @return the console input
     * @throws RemoteException if remote communication fails
@@ -32,6 +32,8 @@ import edu.rice.cs.drjava.DrJavaTestCase;
 
 import edu.rice.cs.plt.concurrent.CompletionMonitor;
 import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.tuple.Option;
+import edu.rice.cs.plt.tuple.Pair;
 import edu.rice.cs.util.Log;
 import edu.rice.cs.util.UnexpectedException;
 
@@ -40,6 +42,8 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
 
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
 
@@ -91,6 +95,14 @@ public final class NewJVMTest extends DrJavaTestCase  {
     _log.log("$$$ NewJVMTest.testPrintln completed"); 
   }
 
+  /** Tests that a batch of output from the interpreter JVM is delivered through systemOutPrint and systemErrPrint. */
+  public void testPrintBatch() throws Throwable {
+    _jvm.resetFlags();
+    _jvm.systemPrintBatch(new String[] { "out", "err", "out2" }, new boolean[] { false, true, false });
+    assertEquals("system out buffer", "outout2", _jvm._outBuf);
+    assertEquals("system err buffer", "err", _jvm._errBuf);
+  }
+
   public void testReturnConstant() throws Throwable {
    _log.log("$$ NewJVMTest.testReturnConstant executing");
 
@@ -117,10 +129,34 @@ public final class NewJVMTest extends DrJavaTestCase  {
     assertTrue(_jvm.interpret("4"));
     assertEquals("result", "4", _jvm.returnBuf());
     
+    // The latency is recorded just after the new interpreter is announced as ready
+    long deadline = System.currentTimeMillis() + 5000;
+    while (_jvm.getResetLatency() < 0 && System.currentTimeMillis() < deadline) { Thread.sleep(10); }
+    assertTrue("reset latency recorded", _jvm.getResetLatency() >= 0);
+    
     _log.log("$$$ NewJVMTest.testWorksAfterRestartConstant completed");
   }
 
 
+  public void testGetVariablesToString() throws Throwable {
+    _log.log("$$$ NewJVMTest.testGetVariablesToString executing");
+    
+    _jvm.resetFlags();
+    assertTrue(_jvm.interpret("int watched = 42;"));
+    _jvm.outBuf(); // wait for the interaction to complete
+    
+    Option<List<Pair<String,String>>> result =
+      _jvm.getVariablesToString(Arrays.asList("watched", "notDefined", "watched"));
+    assertTrue("interpreter available", result.isSome());
+    List<Pair<String,String>> values = result.unwrap();
+    assertEquals("one result per name", 3, values.size());
+    assertEquals("defined variable", _jvm.getVariableToString("watched").unwrap(), values.get(0));
+    assertEquals("repeated name", values.get(0), values.get(2));
+    assertEquals("undefined variable", null, values.get(1).first());
+    
+    _log.log("$$$ NewJVMTest.testGetVariablesToString completed");
+  }
+
   public void testThrowRuntimeException() throws Throwable {
     _log.log("$$$ NewJVMTest.testThrowRuntimeException executing");
     
@@ -202,7 +202,9 @@ public class CompilerErrorPanel extends ErrorPanel {
       ErrorDocument doc = new ErrorDocument(getErrorDocumentTitle());
       String message;
       if (_compileHasOccurred) {
-        if (_excludedFiles.length == 0) message = "Compilation completed.";
+        String summary = getModel().getCompilerModel().getCompileSummary();
+        if (summary.length() > 0) summary = "  " + summary;
+        if (_excludedFiles.length == 0) message = "Compilation completed." + summary;
         else {
           final StringBuilder msgBuffer = 
             new StringBuilder("Compilation completed.  The following files were not compiled:\n");
@@ -665,6 +665,7 @@ class FindReplacePanel extends TabbedPanel implements ClipboardOwner {
     _machine.setPosition(oldPosition);
     
 //    System.out.println("Adding found regions to corresponding documents");
+    final ArrayList<MovingDocumentRegion> regions = new ArrayList<MovingDocumentRegion>(results.size());
     for (FindResult fr: results) {
       
       final OpenDefinitionsDocument doc = fr.getDocument();
@@ -674,8 +675,9 @@ class FindReplacePanel extends TabbedPanel implements ClipboardOwner {
       final int lineStart = doc._getLineStartPos(start);
       final int lineEnd = doc._getLineEndPos(end);
       
-      rm.addRegion(new MovingDocumentRegion(doc, start, end, lineStart, lineEnd));                       
+      regions.add(new MovingDocumentRegion(doc, start, end, lineStart, lineEnd));
     }
+    rm.addRegions(regions);  // one notification for the whole batch
       
     // show panel in tabbed pane unless it is empty
     if (count > 0) _frame.showFindResultsPanel(panel);
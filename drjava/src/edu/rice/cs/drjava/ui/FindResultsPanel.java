@@ -61,7 +61,7 @@ import edu.rice.cs.drjava.config.OptionListener;
 import edu.rice.cs.drjava.model.MovingDocumentRegion;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
 import edu.rice.cs.drjava.model.RegionManager;
-import edu.rice.cs.drjava.model.RegionManagerListener;
+import edu.rice.cs.drjava.model.RegionManagerBatchListener;
 import edu.rice.cs.plt.tuple.Pair;
 import edu.rice.cs.util.swing.Utilities;
 
@@ -147,8 +147,9 @@ public class FindResultsPanel extends RegionsTreePanel<MovingDocumentRegion> {
     _findAgainButton.setToolTipText(sb.toString());
 
     // Similar (but NOT identical) code found in BookmarksPanel and BreakpointsPanel
-    getRegionManager().addListener(new RegionManagerListener<MovingDocumentRegion>() {      
+    getRegionManager().addListener(new RegionManagerBatchListener<MovingDocumentRegion>() {      
       public void regionAdded(MovingDocumentRegion r) { addRegion(r); }
+      public void regionsAdded(List<MovingDocumentRegion> rs) { addRegions(rs); }
       public void regionChanged(MovingDocumentRegion r) { 
         regionRemoved(r);
 
@@ -156,6 +157,7 @@ public class FindResultsPanel extends RegionsTreePanel<MovingDocumentRegion> {
         if (findReplacePanel.isSearchStringMatch(r, searchString)) { regionAdded(r); }
       }
       public void regionRemoved(MovingDocumentRegion r) { removeRegion(r); }
+      public void regionsRemoved(List<MovingDocumentRegion> rs) { removeRegions(rs); }
     });
     
     for(int i = 0; i < OptionConstants.FIND_RESULTS_COLORS.length; ++i) {
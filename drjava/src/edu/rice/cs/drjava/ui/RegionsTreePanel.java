@@ -31,8 +31,6 @@ package edu.rice.cs.drjava.ui;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 import javax.swing.*;
 import javax.swing.event.*;
@@ -775,67 +773,102 @@ public abstract class RegionsTreePanel<R extends OrderedDocumentRegion> extends
       }
 //    }
       
-//    if (doc == _cachedDoc & r.getStartOffset() >= _cachedStartOffset) { // insert new region after previous insert
-//      _cachedRegionIndex++;
-//      _cachedStartOffset = r.getStartOffset();
-//      insertNewRegionNode(r, docNode, _cachedRegionIndex);
-//    }
-//    else {
-      @SuppressWarnings("unchecked")
-      Enumeration<TreeNode> rawNodes = docNode.children();
-      Iterator<DefaultMutableTreeNode> nodeIterator = StreamSupport.stream(Spliterators.spliteratorUnknownSize((Iterator<TreeNode>) rawNodes, 0), false)
-              .map(node -> (DefaultMutableTreeNode) node)
-              .iterator();
-
-      Enumeration<DefaultMutableTreeNode> regionNodes = Collections.enumeration(
-              StreamSupport.stream(Spliterators.spliteratorUnknownSize(nodeIterator, 0), false)
-                      .collect(Collectors.toList()));
-
       // Create a new region node in this document node list, where regions are sorted by start offset.
-      int startOffset = r.getStartOffset();
-      for (int index = 0; true ; index++) {  // infinite loop incrementing index on each iteration
+      insertNewRegionNode(r, docNode, _insertionIndex(docNode, r.getStartOffset()));
+      _changeState.updateButtons();
+    }
+    catch(Exception e) { DrJavaErrorHandler.record(e); throw new UnexpectedException(e); }
+  }
+
+  /** Add a batch of regions to the tree.  The new region nodes for each document are merged into its node list, which
+    * is sorted by start offset, and the tree model is told about the change once per document rather than once per 
+    * region.  Must be executed in event thread.
+    * @param rs the regions
+    */
+  public void addRegions(final Collection<? extends R> rs) {
+    try {
+      LinkedHashMap<OpenDefinitionsDocument, ArrayList<R>> docRegions = 
+        new LinkedHashMap<OpenDefinitionsDocument, ArrayList<R>>();
+      for (R r: rs) {
+        ArrayList<R> l = docRegions.get(r.getDocument());
+        if (l == null) {
+          l = new ArrayList<R>();
+          docRegions.put(r.getDocument(), l);
+        }
+        l.add(r);
+      }
+      
+      for (Map.Entry<OpenDefinitionsDocument, ArrayList<R>> e: docRegions.entrySet()) {
+        OpenDefinitionsDocument doc = e.getKey();
+        ArrayList<R> added = e.getValue();
+        Collections.sort(added, START_OFFSET_ORDER);  // stable, like repeated calls to addRegion
         
-        if (! regionNodes.hasMoreElements()) { // exhausted all elements; insert new region node at end
-//          System.err.println("inserting " + r + " at end, unaided by caching");
-          insertNewRegionNode(r, docNode, index);
-//          _cachedDoc = doc;
-//          _cachedDocNode = docNode;
-//          _cachedRegionIndex = index;
-//          _cachedStartOffset = startOffset;
-          break;
+        DefaultMutableTreeNode docNode = _docToTreeNode.get(doc);
+        boolean isNewDoc = (docNode == null);
+        if (isNewDoc) {
+          docNode = new DefaultMutableTreeNode(doc.getRawFile());
+          _docToTreeNode.put(doc, docNode);
         }
-        DefaultMutableTreeNode node = regionNodes.nextElement();
         
-        @SuppressWarnings("unchecked")
-        RegionTreeUserObj<R> userObject = (RegionTreeUserObj<R>) node.getUserObject();
-        R nodeRegion = userObject.region();
-        int nodeOffset = nodeRegion.getStartOffset();
+        ArrayList<DefaultMutableTreeNode> existing = new ArrayList<DefaultMutableTreeNode>(docNode.getChildCount());
+        for (int i = 0; i < docNode.getChildCount(); i++) existing.add((DefaultMutableTreeNode) docNode.getChildAt(i));
+        docNode.removeAllChildren();
         
-//        if (nodeOffset == startOffset) {
-//          // region with same start offset already exists
-//          if (nodeRegion.getEndOffset() == r.getEndOffset()) {
-//            // silently suppress inserting region; can this happen?  Caller should suppress it.
-//            _changeState.scrollPathToVisible(new TreePath(node));
-//            _changeState.setLastAdded(node);
-//            break;
-//          }
-//          else { // new region is distinct from nodeRegion
-//            insertNewRegionNode(r, docNode, index);
-//            break;
-//          }
-//        }
-//        else 
-        if (nodeOffset >= startOffset) {
-          insertNewRegionNode(r, docNode, index);
-//          _cachedDoc = null;  // insertion was not at the end of the region list for doc
-          break;
+        // Merge the sorted new regions into the sorted existing nodes; a new region precedes existing regions with the
+        // same start offset, as in addRegion.
+        int i = 0;
+        DefaultMutableTreeNode lastAdded = null;
+        for (R r: added) {
+          int startOffset = r.getStartOffset();
+          while (i < existing.size() && _regionOf(existing.get(i)).getStartOffset() < startOffset) {
+            docNode.add(existing.get(i++));
+          }
+          lastAdded = new DefaultMutableTreeNode(makeRegionTreeUserObj(r));
+          docNode.add(lastAdded);
+          _regionToTreeNode.put(r, lastAdded);
         }
+        while (i < existing.size()) docNode.add(existing.get(i++));
+        
+        if (isNewDoc) _regTreeModel.insertNodeInto(docNode, _rootNode, _rootNode.getChildCount());
+        else _regTreeModel.nodeStructureChanged(docNode);
+        
+        // Make sure the nodes for this document are visible
+        _changeState.scrollPathToVisible(new TreePath(lastAdded.getPath()));
+        _changeState.setLastAdded(lastAdded);
       }
-//    }
       _changeState.updateButtons();
     }
     catch(Exception e) { DrJavaErrorHandler.record(e); throw new UnexpectedException(e); }
   }
+  
+  /** Orders regions by start offset. */
+  private final Comparator<R> START_OFFSET_ORDER = new Comparator<R>() {
+    public int compare(R r1, R r2) { return r1.getStartOffset() - r2.getStartOffset(); }
+  };
+  
+  /** @param regionNode a region node in the tree
+    * @return the region of regionNode 
+    */
+  @SuppressWarnings("unchecked")
+  private R _regionOf(DefaultMutableTreeNode regionNode) {
+    return ((RegionTreeUserObj<R>) regionNode.getUserObject()).region();
+  }
+  
+  /** Finds the position for a new region node in the node list of a document, which is sorted by start offset.
+    * @param docNode the document node
+    * @param startOffset the start offset of the new region
+    * @return the index of the first region node whose region starts at or after startOffset
+    */
+  private int _insertionIndex(DefaultMutableTreeNode docNode, int startOffset) {
+    int lo = 0;
+    int hi = docNode.getChildCount();
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (_regionOf((DefaultMutableTreeNode) docNode.getChildAt(mid)).getStartOffset() >= startOffset) hi = mid;
+      else lo = mid + 1;
+    }
+    return lo;
+  }
 
   private void insertNewRegionNode(R r, DefaultMutableTreeNode docNode, int pos) {
 //    System.err.println("insertNewRegionNode(" + r + ", " + docNode + ", " + pos + ")");
@@ -901,6 +934,57 @@ public abstract class RegionsTreePanel<R extends OrderedDocumentRegion> extends
     closeIfEmpty();
   }
   
+  /** Remove a batch of regions from this panel.  The tree model is told about the change once per document rather
+    * than once per region.  Must be executed in event thread.
+    * @param rs the regions
+    */
+  public void removeRegions(final Collection<? extends R> rs) {
+    assert EventQueue.isDispatchThread();
+    _changeState.setLastAdded(null);
+    
+    // Removing the selected region moves the selection to a neighbor, exactly as removeRegion does
+    if (_lastSelectedRegion != null && rs.contains(_lastSelectedRegion)) removeRegion(_lastSelectedRegion);
+    
+    LinkedHashMap<OpenDefinitionsDocument, Set<DefaultMutableTreeNode>> docRegionNodes = 
+      new LinkedHashMap<OpenDefinitionsDocument, Set<DefaultMutableTreeNode>>();
+    for (R r: rs) {
+      DefaultMutableTreeNode regionNode = _regionToTreeNode.remove(r);
+      if (regionNode == null) continue;
+      Set<DefaultMutableTreeNode> nodes = docRegionNodes.get(r.getDocument());
+      if (nodes == null) {
+        nodes = Collections.newSetFromMap(new IdentityHashMap<DefaultMutableTreeNode, Boolean>());
+        docRegionNodes.put(r.getDocument(), nodes);
+      }
+      nodes.add(regionNode);
+    }
+    
+    for (Map.Entry<OpenDefinitionsDocument, Set<DefaultMutableTreeNode>> e: docRegionNodes.entrySet()) {
+      OpenDefinitionsDocument doc = e.getKey();
+      Set<DefaultMutableTreeNode> removed = e.getValue();
+      DefaultMutableTreeNode docNode = _docToTreeNode.get(doc);
+      if (docNode == null) continue;
+      
+      ArrayList<DefaultMutableTreeNode> kept = new ArrayList<DefaultMutableTreeNode>(docNode.getChildCount());
+      for (int i = 0; i < docNode.getChildCount(); i++) {
+        DefaultMutableTreeNode node = (DefaultMutableTreeNode) docNode.getChildAt(i);
+        if (! removed.contains(node)) kept.add(node);
+      }
+      if (kept.isEmpty()) {
+        // this document has no more regions, remove it
+        _docToTreeNode.remove(doc);
+        _regTreeModel.removeNodeFromParent(docNode);
+      }
+      else {
+        docNode.removeAllChildren();
+        for (DefaultMutableTreeNode node: kept) docNode.add(node);
+        _regTreeModel.nodeStructureChanged(docNode);
+      }
+    }
+    if (_lastSelectedRegion != null && rs.contains(_lastSelectedRegion)) _lastSelectedRegion = null;
+    _changeState.updateButtons();
+    closeIfEmpty();
+  }
+  
   /** Select a region in this panel. Must be executed in event thread.
     * @param r the region
     */
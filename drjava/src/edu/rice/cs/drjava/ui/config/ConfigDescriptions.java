@@ -518,6 +518,13 @@ public class ConfigDescriptions {
         "The maximum heap the Interactions JVM can use. Select blank for default");
     add(OptionConstants.SLAVE_JVM_ARGS, "JVM Args for Interactions JVM",
         "The command-line arguments to pass to the Interactions JVM.");    
+    add(OptionConstants.SLAVE_JVM_STANDBY_COUNT, "Standby Interactions JVMs",
+        "<html>The number of Interactions JVMs started ahead of time, so that resetting<br>" +
+        "the Interactions Pane does not have to wait for a new JVM. Each standby JVM uses<br>" +
+        "as much memory as an idle Interactions JVM (about 125 MB). Enter 0 to disable.</html>");
+    add(OptionConstants.SLAVE_JVM_QUIT_IN_BACKGROUND, "Reset Without Waiting for Old Interactions JVM",
+        "<html>Whether resetting the Interactions Pane proceeds while the old Interactions JVM<br>" +
+        "is still shutting down. Not used while debugging.</html>");
     
     /** Adds all of the components for the Compiler Options Panel of the preferences window
       */
@@ -544,6 +551,10 @@ public class ConfigDescriptions {
     add(OptionConstants.SHOW_FALLTHROUGH_WARNINGS, "Show Fall-Through Warnings",
         "<html>Warn about <code>switch</code> block cases that fall through to the next case.</html>");
     
+    add(OptionConstants.INCREMENTAL_COMPILE, "Compile Incrementally",
+        "<html>Only compile the files that changed since the last compile, and the files<br>"+
+        "that depend on them.  Warnings are only shown for the compiled files.</html>");
+    
     /*
      * The drop down box containing the compiler names
      */
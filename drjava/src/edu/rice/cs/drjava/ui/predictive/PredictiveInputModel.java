@@ -28,10 +28,15 @@
  * END_COPYRIGHT_BLOCK*/
 package edu.rice.cs.drjava.ui.predictive;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.StringTokenizer;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.regex.PatternSyntaxException;
@@ -104,9 +109,53 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     public String force(X item, String mask);
   }
   
+  /** The kinds of matching that the model can perform with indexes of the items' text. */
+  public static enum MatchKind {
+    /** Items whose text starts with the mask. */
+    PREFIX,
+    /** Items whose text contains every whitespace-separated fragment of the mask. */
+    FRAGMENTS,
+    /** Items whose text matches the mask as a regular expression. */
+    REGEX
+  }
+  
+  /** A strategy whose matches the model finds with its indexes of the items' text, rather than by calling isMatch on
+    * every item.  The text of an item is its string representation, lower-cased if the model ignores case.  The 
+    * methods of MatchingStrategy must agree with the methods here: an item is a match if its text matches the matched
+    * mask in the way described by the match kind, it is a perfect match if its text equals the (lower-cased) matched
+    * mask, and two items are equivalent if they have the same equivalence text.
+    */
+  public static interface IndexedMatchingStrategy<X extends Comparable<? super X>> extends MatchingStrategy<X> {
+    
+    /** @return the kind of matching performed by this strategy */
+    public MatchKind getMatchKind();
+    
+    /** Returns the part of the mask that items are matched against.
+      * @param mask the mask
+      * @return the matched part of the mask
+      */
+    public String getMatchedMask(String mask);
+    
+    /** Returns the part of an item's text that determines whether it is equivalent to other items.
+      * @param text the text of an item
+      * @return the equivalence text
+      */
+    public String getEquivalenceText(String text);
+  }
+  
+  /** @param s a mask or item text
+    * @return the part of s before the last ':', which separates a line number */
+  private static String _beforeLineNum(String s) {
+    int pos = s.lastIndexOf(':');
+    return (pos < 0) ? s : s.substring(0, pos);
+  }
+  
   /** Matching based on string prefix. */
-  public static class PrefixStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class PrefixStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Prefix"; }
+    public MatchKind getMatchKind() { return MatchKind.PREFIX; }
+    public String getMatchedMask(String mask) { return mask; }
+    public String getEquivalenceText(String text) { return text; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       String a = (pim._ignoreCase) ? (item.toString().toLowerCase()) : (item.toString());
       String b = (pim._ignoreCase) ? (pim._mask.toLowerCase()) : (pim._mask);
@@ -178,8 +227,11 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string fragments. */
-  public static class FragmentStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class FragmentStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Fragments"; }
+    public MatchKind getMatchKind() { return MatchKind.FRAGMENTS; }
+    public String getMatchedMask(String mask) { return mask; }
+    public String getEquivalenceText(String text) { return text; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       String a = (pim._ignoreCase) ? (item.toString().toLowerCase()) : (item.toString());
       String b = (pim._ignoreCase) ? (pim._mask.toLowerCase()) : (pim._mask);
@@ -219,20 +271,14 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string regular expressions. */
-  public static class RegExStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class RegExStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "RegEx"; }
+    public MatchKind getMatchKind() { return MatchKind.REGEX; }
+    public String getMatchedMask(String mask) { return mask; }
+    public String getEquivalenceText(String text) { return text; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
-      String a = item.toString();
-
-      try {
-        Pattern p = Pattern.compile(pim._mask,
-                                    (pim._ignoreCase)?(Pattern.CASE_INSENSITIVE):(0));
-        Matcher m = p.matcher(a);
-        return m.matches();
-      }
-      catch (PatternSyntaxException e) {
-        return false;
-      }
+      Pattern p = pim._compile(pim._mask);
+      return p != null && p.matcher(item.toString()).matches();
     }
     public boolean isPerfectMatch(X item, PredictiveInputModel<X> pim) {
       String a = (pim._ignoreCase)?(item.toString().toLowerCase()):(item.toString());
@@ -263,8 +309,11 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string prefix, supporting line numbers separated by :. */
-  public static class PrefixLineNumStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class PrefixLineNumStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Prefix"; }
+    public MatchKind getMatchKind() { return MatchKind.PREFIX; }
+    public String getMatchedMask(String mask) { return _beforeLineNum(mask); }
+    public String getEquivalenceText(String text) { return _beforeLineNum(text); }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
       if (posB < 0) { posB = pim._mask.length(); }
@@ -387,8 +436,11 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string fragments, supporting line numbers. */
-  public static class FragmentLineNumStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class FragmentLineNumStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Fragments"; }
+    public MatchKind getMatchKind() { return MatchKind.FRAGMENTS; }
+    public String getMatchedMask(String mask) { return _beforeLineNum(mask); }
+    public String getEquivalenceText(String text) { return _beforeLineNum(text); }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
       if (posB < 0) { posB = pim._mask.length(); }
@@ -460,24 +512,18 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string regular expressions, supporting line numbers. */
-  public static class RegExLineNumStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class RegExLineNumStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "RegEx"; }
+    public MatchKind getMatchKind() { return MatchKind.REGEX; }
+    public String getMatchedMask(String mask) { return _beforeLineNum(mask); }
+    public String getEquivalenceText(String text) { return _beforeLineNum(text); }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
       if (posB < 0) { posB = pim._mask.length(); }
       String mask = pim._mask.substring(0,posB);
       
-      String a = item.toString();
-
-      try {
-        Pattern p = Pattern.compile(mask,
-                                    (pim._ignoreCase)?(Pattern.CASE_INSENSITIVE):(0));
-        Matcher m = p.matcher(a);
-        return m.matches();
-      }
-      catch (PatternSyntaxException e) {
-        return false;
-      }
+      Pattern p = pim._compile(mask);
+      return p != null && p.matcher(item.toString()).matches();
     }
     public boolean isPerfectMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
@@ -542,6 +588,12 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
 
   /** Array of matching items. */
   private final ArrayList<T> _matchingItems = new ArrayList<T>();
+  
+  /** Indices in _items of the matching items, in increasing order; only maintained for indexed strategies. */
+  private volatile int[] _matches = new int[0];
+  
+  /** The matched mask for which _matches was computed, or null if _matches may not be used to narrow the matches. */
+  private volatile String _matchesMask = null;
 
   /** Currently entered mask. */
   private volatile String _mask = "";
@@ -551,6 +603,14 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   
   /** Matching strategy. */
   private volatile MatchingStrategy<T> _strategy;
+  
+  /** Index of the text of _items, built when first needed; null if not built since the items were set. */
+  private volatile ItemIndex _itemIndex = null;
+  
+  /** The regular expression last compiled by _compile, its source, and whether it is a valid expression. */
+  private volatile Pattern _pattern = null;
+  private volatile String _patternSource = null;
+  private volatile boolean _patternValid = false;
 
   /** Create a new predictive input model.
     * @param ignoreCase true if case should be ignored
@@ -589,7 +649,8 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
    */
   public void setStrategy(MatchingStrategy<T> strategy) {
     _strategy = strategy;
-    updateMatchingStrings(_items);
+    _matchesMask = null;
+    updateMatchingStrings(false);
   }
 
   /** Returns a copy of the list of items.
@@ -605,7 +666,7 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   public void setItems(Collection<T> items) {
     _items = new ArrayList<T>(items);
     Collections.sort(_items);
-    updateMatchingStrings(_items);
+    _itemsChanged();
   }
 
   /** Sets the list
@@ -616,13 +677,20 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     _items = new ArrayList<T>(items.length);
     for(T s: items) _items.add(s);
     Collections.sort(_items);
-    updateMatchingStrings(_items);
+    _itemsChanged();
   }
 
   /** Sets the list.
     * @param pim other predictive input model
     */
   public void setItems(PredictiveInputModel<T> pim) { setItems(pim._items); }  
+  
+  /** Discards the index of the old items and finds the matching items among the new ones. */
+  private void _itemsChanged() {
+    _itemIndex = null;
+    _matchesMask = null;
+    updateMatchingStrings(false);
+  }
 
   /** Return the current mask.
     * @return current mask
@@ -634,7 +702,7 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     */
   public void setMask(String mask) {
     _mask = mask;
-    updateMatchingStrings(_items);
+    updateMatchingStrings(false);
   }
 
   /** Helper function that does indexOf with ignoreCase option.
@@ -651,12 +719,89 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     return -1;
   }
   
+  /** Returns the index of the first item in _items equivalent to the given item.
+    * @param item item for which the index should be retrieved
+    * @return index of item in _items, or -1 if not found
+    */
+  private int _indexOfItem(T item) {
+    if (! (_strategy instanceof IndexedMatchingStrategy)) return indexOf(_items, item);
+    IndexedMatchingStrategy<T> strategy = (IndexedMatchingStrategy<T>) _strategy;
+    return _getItemIndex().firstEquivalent(strategy, strategy.getEquivalenceText(_text(item.toString())));
+  }
+  
+  /** @param s a string
+    * @return s, lower-cased if case should be ignored */
+  private String _text(String s) { return (_ignoreCase) ? s.toLowerCase() : s; }
+  
+  /** @return the index of the text of _items, building it if necessary */
+  private ItemIndex _getItemIndex() {
+    ItemIndex index = _itemIndex;
+    if (index == null) {
+      index = new ItemIndex(_items, _ignoreCase);
+      _itemIndex = index;
+    }
+    return index;
+  }
+  
+  /** Compiles the given regular expression, respecting the ignoreCase option.  The last result is cached, so that
+    * matching every item against the same mask compiles it only once.
+    * @param regex the regular expression
+    * @return the compiled pattern, or null if regex is not a valid regular expression
+    */
+  private Pattern _compile(String regex) {
+    if (! regex.equals(_patternSource)) {
+      try {
+        _pattern = Pattern.compile(regex, (_ignoreCase) ? (Pattern.CASE_INSENSITIVE) : (0));
+        _patternValid = true;
+      }
+      catch (PatternSyntaxException e) { _patternValid = false; }
+      _patternSource = regex;
+    }
+    return (_patternValid) ? _pattern : null;
+  }
+  
   /** Update the list of matching strings and current index.
-    * @param items list of items to base the matching on
+    * @param narrow true if the matching items can only be found among the current matching items; indexed strategies
+    *        determine this from the mask themselves
     */
-  private void updateMatchingStrings(ArrayList<T> items) {
-    items = new ArrayList<T>(items); // create a new copy, otherwise we might be clearing the list in the next line
+  private void updateMatchingStrings(boolean narrow) {
+    if (_strategy instanceof IndexedMatchingStrategy) {
+      IndexedMatchingStrategy<T> strategy = (IndexedMatchingStrategy<T>) _strategy;
+      String mask = strategy.getMatchedMask(_mask);
+      ItemIndex index = _getItemIndex();
+      // Extending the mask can only narrow the prefix and fragment matches, so only the old matches need be searched.
+      // Regular expressions are searched in full: an extended regular expression may match more items.
+      int[] candidates = null;
+      if (_matchesMask != null && strategy.getMatchKind() != MatchKind.REGEX && mask.startsWith(_matchesMask)) {
+        candidates = _matches;
+      }
+      
+      int[] matches;
+      if (strategy.getMatchKind() == MatchKind.REGEX) {
+        Pattern p = _compile(mask);
+        matches = (p == null) ? new int[0] : index.findRegExMatches(p, candidates);
+      }
+      else if (strategy.getMatchKind() == MatchKind.PREFIX) matches = index.findPrefixMatches(_text(mask), candidates);
+      else matches = index.findFragmentMatches(_text(mask), candidates);
+      _matches = matches;
+      _matchesMask = mask;
+      _matchingItems.clear();
+      _matchingItems.ensureCapacity(matches.length);
+      for (int i: matches) _matchingItems.add(_items.get(i));
+      
+      if (_items.size() > 0) {
+        int perfect = index.firstEqual(_text(mask));
+        if (perfect >= 0) _index = perfect;
+        setCurrentItem(_items.get(_index));
+      }
+      else _index = 0;
+      return;
+    }
+    
+    // create a new copy, otherwise we might be clearing the list in the next line
+    ArrayList<T> items = new ArrayList<T>((narrow) ? _matchingItems : _items);
     _matchingItems.clear();
+    _matchesMask = null;
     for(T s: items) {
       if (_strategy.isMatch(s, this)) _matchingItems.add(s);
     }
@@ -690,14 +835,29 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
       return;
     }
     boolean found = false;
-    int index = indexOf(_items, item);
+    int index = _indexOfItem(item);
     if (index < 0) {
       // not in list of items, pick first item
       pickClosestMatch(item);
     }
     else {
+      HashSet<String> matchingTexts = null;  // equivalence texts of the matching items, computed if needed
       for (int i=index; i < _items.size(); ++i) {
-        if (0 <= indexOf(_matchingItems, _items.get(i))) {
+        boolean matching;
+        if (_strategy instanceof IndexedMatchingStrategy) {
+          if (Arrays.binarySearch(_matches, i) >= 0) matching = true;
+          else {
+            IndexedMatchingStrategy<T> strategy = (IndexedMatchingStrategy<T>) _strategy;
+            ItemIndex itemIndex = _getItemIndex();
+            if (matchingTexts == null) {
+              matchingTexts = new HashSet<String>();
+              for (int m: _matches) matchingTexts.add(strategy.getEquivalenceText(itemIndex.text(m)));
+            }
+            matching = matchingTexts.contains(strategy.getEquivalenceText(itemIndex.text(i)));
+          }
+        }
+        else matching = (0 <= indexOf(_matchingItems, _items.get(i)));
+        if (matching) {
           _index = i;
           found = true;
           break;
@@ -722,10 +882,10 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
         }
         follows = i;
       }
-      _index = indexOf(_items, follows);
+      _index = _indexOfItem(follows);
     }
     else {
-      _index = indexOf(_items, _strategy.getLongestMatch(item, _items, this));
+      _index = _indexOfItem(_strategy.getLongestMatch(item, _items, this));
     }
   }
 
@@ -751,7 +911,7 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
    */
   public void extendMask(String extension) {
     _mask = _mask + extension;
-    updateMatchingStrings(_matchingItems);
+    updateMatchingStrings(true);
   }
   
 
@@ -759,6 +919,219 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
    */
   public void extendSharedMask() {
     _mask = _strategy.getExtendedSharedMask(_matchingItems, this);
-    updateMatchingStrings(_matchingItems);
+    updateMatchingStrings(true);
+  }
+  
+  /** The text of a list of items, indexed for the kinds of matching in MatchKind.  Items are identified by their index
+    * in the list.  The indexes for each kind of matching are built when first needed.
+    */
+  private static final class ItemIndex {
+    /** The number of buckets in the trigram index; a power of two. */
+    private static final int TRIGRAM_BUCKETS = 1 << 15;
+    
+    /** The string representation of each item. */
+    private final String[] _strings;
+    /** The text of each item: its string representation, lower-cased if case is ignored. */
+    private final String[] _texts;
+    
+    /** The indices of the items, sorted by text. */
+    private int[] _byText = null;
+    
+    /** For each bucket, the indices of the items (in increasing order) that contain a trigram hashed to the bucket. */
+    private int[][] _trigrams = null;
+    
+    /** The index of the first item with each equivalence text, for the strategy _equivalenceStrategy. */
+    private HashMap<String, Integer> _firstEquivalent = null;
+    private IndexedMatchingStrategy<?> _equivalenceStrategy = null;
+    
+    public ItemIndex(List<?> items, boolean ignoreCase) {
+      _strings = new String[items.size()];
+      _texts = new String[items.size()];
+      for (int i = 0; i < _strings.length; i++) {
+        _strings[i] = items.get(i).toString();
+        _texts[i] = (ignoreCase) ? _strings[i].toLowerCase() : _strings[i];
+      }
+    }
+    
+    /** @param i the index of an item
+      * @return the text of the item */
+    public String text(int i) { return _texts[i]; }
+    
+    /** Finds the items whose text starts with the prefix.
+      * @param prefix the (lower-cased) prefix
+      * @param candidates the indices of the items to search, in increasing order, or null for all items
+      * @return the indices of the matching items, in increasing order
+      */
+    public int[] findPrefixMatches(String prefix, int[] candidates) {
+      if (candidates != null) {
+        int[] result = new int[candidates.length];
+        int size = 0;
+        for (int i: candidates) { if (_texts[i].startsWith(prefix)) result[size++] = i; }
+        return Arrays.copyOf(result, size);
+      }
+      int[] byText = _getByText();
+      int start = _lowerBound(prefix);
+      int end = start;
+      while (end < byText.length && _texts[byText[end]].startsWith(prefix)) end++;
+      int[] result = Arrays.copyOfRange(byText, start, end);
+      Arrays.sort(result);
+      return result;
+    }
+    
+    /** Finds the items whose text contains every whitespace-separated fragment of the mask.  Unless candidates are 
+      * given, the items that contain every trigram of the fragments are found with the trigram index and then checked.
+      * @param mask the (lower-cased) mask
+      * @param candidates the indices of the items to search, in increasing order, or null for all items
+      * @return the indices of the matching items, in increasing order
+      */
+    public int[] findFragmentMatches(String mask, int[] candidates) {
+      ArrayList<String> fragments = new ArrayList<String>();
+      StringTokenizer tok = new StringTokenizer(mask);
+      while (tok.hasMoreTokens()) fragments.add(tok.nextToken());
+      
+      if (candidates == null) {
+        for (String f: fragments) {
+          for (int j = 0; j + 3 <= f.length(); j++) {
+            int[] bucket = _getTrigrams()[_trigramBucket(f, j)];
+            if (bucket == null) return new int[0];
+            candidates = (candidates == null) ? bucket : _intersect(candidates, bucket);
+          }
+        }
+      }
+      
+      int count = (candidates == null) ? _texts.length : candidates.length;
+      int[] result = new int[count];
+      int size = 0;
+      for (int k = 0; k < count; k++) {
+        int i = (candidates == null) ? k : candidates[k];
+        boolean matches = true;
+        for (String f: fragments) {
+          if (_texts[i].indexOf(f) < 0) {
+            matches = false;
+            break;
+          }
+        }
+        if (matches) result[size++] = i;
+      }
+      return Arrays.copyOf(result, size);
+    }
+    
+    /** Finds the items whose string representation matches the pattern.
+      * @param p the pattern, compiled with the case-sensitivity of the model
+      * @param candidates the indices of the items to search, in increasing order, or null for all items
+      * @return the indices of the matching items, in increasing order
+      */
+    public int[] findRegExMatches(Pattern p, int[] candidates) {
+      int count = (candidates == null) ? _strings.length : candidates.length;
+      int[] result = new int[count];
+      int size = 0;
+      Matcher m = p.matcher("");
+      for (int k = 0; k < count; k++) {
+        int i = (candidates == null) ? k : candidates[k];
+        if (m.reset(_strings[i]).matches()) result[size++] = i;
+      }
+      return Arrays.copyOf(result, size);
+    }
+    
+    /** @param text the (lower-cased) text to find
+      * @return the index of the first item with the given text, or -1 if there is none */
+    public int firstEqual(String text) {
+      int[] byText = _getByText();
+      int first = -1;
+      for (int j = _lowerBound(text); j < byText.length && _texts[byText[j]].equals(text); j++) {
+        if (first < 0 || byText[j] < first) first = byText[j];
+      }
+      return first;
+    }
+    
+    /** @param strategy the strategy that defines equivalence
+      * @param equivalenceText the equivalence text of an item
+      * @return the index of the first item with the given equivalence text, or -1 if there is none */
+    public int firstEquivalent(IndexedMatchingStrategy<?> strategy, String equivalenceText) {
+      if (_firstEquivalent == null || _equivalenceStrategy != strategy) {
+        _firstEquivalent = new HashMap<String, Integer>();
+        for (int i = _texts.length - 1; i >= 0; i--) _firstEquivalent.put(strategy.getEquivalenceText(_texts[i]), i);
+        _equivalenceStrategy = strategy;
+      }
+      Integer i = _firstEquivalent.get(equivalenceText);
+      return (i == null) ? -1 : i;
+    }
+    
+    /** @return the indices of the items, sorted by text */
+    private int[] _getByText() {
+      if (_byText == null) {
+        Integer[] order = new Integer[_texts.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+          public int compare(Integer i, Integer j) { return _texts[i].compareTo(_texts[j]); }
+        });
+        _byText = new int[order.length];
+        for (int i = 0; i < order.length; i++) _byText[i] = order[i];
+      }
+      return _byText;
+    }
+    
+    /** @return the first position in _getByText() of an item whose text is not less than s */
+    private int _lowerBound(String s) {
+      int[] byText = _getByText();
+      int lo = 0;
+      int hi = byText.length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (_texts[byText[mid]].compareTo(s) < 0) lo = mid + 1;
+        else hi = mid;
+      }
+      return lo;
+    }
+    
+    /** @return the trigram index, building it if necessary */
+    private int[][] _getTrigrams() {
+      if (_trigrams == null) {
+        int[][] buckets = new int[TRIGRAM_BUCKETS][];
+        int[] sizes = new int[TRIGRAM_BUCKETS];
+        for (int i = 0; i < _texts.length; i++) {
+          String t = _texts[i];
+          for (int j = 0; j + 3 <= t.length(); j++) {
+            int b = _trigramBucket(t, j);
+            int[] bucket = buckets[b];
+            int size = sizes[b];
+            if (size > 0 && bucket[size - 1] == i) continue;  // already added for this item
+            if (bucket == null) bucket = buckets[b] = new int[4];
+            else if (size == bucket.length) bucket = buckets[b] = Arrays.copyOf(bucket, 2 * size);
+            bucket[size] = i;
+            sizes[b] = size + 1;
+          }
+        }
+        for (int b = 0; b < TRIGRAM_BUCKETS; b++) {
+          if (buckets[b] != null) buckets[b] = Arrays.copyOf(buckets[b], sizes[b]);
+        }
+        _trigrams = buckets;
+      }
+      return _trigrams;
+    }
+    
+    /** @return the trigram bucket of the three characters of s starting at j */
+    private static int _trigramBucket(String s, int j) {
+      int h = (s.charAt(j) * 31 + s.charAt(j + 1)) * 31 + s.charAt(j + 2);
+      return (h ^ (h >>> 15)) & (TRIGRAM_BUCKETS - 1);
+    }
+    
+    /** @return the elements common to the two increasing arrays, in increasing order */
+    private static int[] _intersect(int[] a, int[] b) {
+      int[] result = new int[Math.min(a.length, b.length)];
+      int size = 0;
+      int i = 0;
+      int j = 0;
+      while (i < a.length && j < b.length) {
+        if (a[i] < b[j]) i++;
+        else if (a[i] > b[j]) j++;
+        else {
+          result[size++] = a[i];
+          i++;
+          j++;
+        }
+      }
+      return Arrays.copyOf(result, size);
+    }
   }
 }
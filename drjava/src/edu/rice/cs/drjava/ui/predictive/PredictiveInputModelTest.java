@@ -30,7 +30,9 @@ package edu.rice.cs.drjava.ui.predictive;
 
 import edu.rice.cs.drjava.DrJavaTestCase;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 /** * Unit tests for PredictiveInputModel class.
@@ -1085,6 +1087,91 @@ public class PredictiveInputModelTest extends DrJavaTestCase {
     assertTrue(pim.getMatchingItems().contains("JFrame"));
   }
 
+  /** Checks that the indexed matches agree with the strategies' isMatch for random masks, typed and deleted. */
+  public void testIndexedMatchesAgreeWithIsMatch() {
+    Random r = new Random(16);
+    String chars = "abcAB:1 .*";
+    List<String> items = new ArrayList<String>();
+    for (int i = 0; i < 300; ++i) items.add(_randomString(r, "abcdABCD:12", 1 + r.nextInt(10)));
+    List<PredictiveInputModel.MatchingStrategy<String>> strategies = 
+      new ArrayList<PredictiveInputModel.MatchingStrategy<String>>();
+    strategies.add(new PredictiveInputModel.PrefixStrategy<String>());
+    strategies.add(new PredictiveInputModel.FragmentStrategy<String>());
+    strategies.add(new PredictiveInputModel.RegExStrategy<String>());
+    strategies.add(new PredictiveInputModel.PrefixLineNumStrategy<String>());
+    strategies.add(new PredictiveInputModel.FragmentLineNumStrategy<String>());
+    strategies.add(new PredictiveInputModel.RegExLineNumStrategy<String>());
+    for (boolean ignoreCase: new boolean[] { false, true }) {
+      for (PredictiveInputModel.MatchingStrategy<String> strategy: strategies) {
+        PredictiveInputModel<String> pim = new PredictiveInputModel<String>(ignoreCase, strategy, items);
+        for (int i = 0; i < 200; ++i) {
+          String mask = pim.getMask();
+          if (mask.length() > 0 && r.nextInt(4) == 0) pim.setMask(mask.substring(0, mask.length() - 1));
+          else if (r.nextBoolean()) pim.extendMask(_randomString(r, chars, 1));
+          else pim.setMask(mask + _randomString(r, chars, 1));
+          if (pim.getMask().length() > 6) pim.setMask("");
+          
+          List<String> expected = new ArrayList<String>();
+          for (String s: pim.getItems()) { if (strategy.isMatch(s, pim)) expected.add(s); }
+          assertEquals(strategy + " " + ignoreCase + " '" + pim.getMask() + "'", expected, pim.getMatchingItems());
+          if (expected.size() > 0) {
+            assertTrue(strategy + " '" + pim.getMask() + "'", 
+                       _containsEquivalent(pim, strategy, expected, pim.getCurrentItem()));
+          }
+        }
+      }
+    }
+  }
+  
+  private static String _randomString(Random r, String chars, int length) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; ++i) sb.append(chars.charAt(r.nextInt(chars.length())));
+    return sb.toString();
+  }
+  
+  private static boolean _containsEquivalent(PredictiveInputModel<String> pim, 
+                                             PredictiveInputModel.MatchingStrategy<String> strategy, 
+                                             List<String> l, String item) {
+    for (String s: l) { if (strategy.equivalent(s, item, pim)) return true; }
+    return false;
+  }
+  
+  public void testFragmentShorterThanTrigram() {
+    PredictiveInputModel<String> pim = new PredictiveInputModel<String>(true,
+                                                                        new PredictiveInputModel.FragmentStrategy<String>(),
+                                                                        "Frame",
+                                                                        "JFrame",
+                                                                        "Window",
+                                                                        "JWindow",
+                                                                        "Test");
+    pim.setMask("j");
+    assertEquals(2, pim.getMatchingItems().size());
+    pim.setMask("j ame");
+    assertEquals(1, pim.getMatchingItems().size());
+    assertEquals("JFrame", pim.getMatchingItems().get(0));
+    pim.setMask("j");
+    assertEquals(2, pim.getMatchingItems().size());
+    pim.setMask("in");
+    assertEquals(2, pim.getMatchingItems().size());
+    assertTrue(pim.getMatchingItems().contains("Window"));
+    assertTrue(pim.getMatchingItems().contains("JWindow"));
+  }
+  
+  public void testInvalidRegEx() {
+    PredictiveInputModel<String> pim = new PredictiveInputModel<String>(false,
+                                                                        new PredictiveInputModel.RegExStrategy<String>(),
+                                                                        "Frame",
+                                                                        "JFrame",
+                                                                        "Test");
+    pim.setMask("J(");
+    assertEquals(0, pim.getMatchingItems().size());
+    pim.extendMask(".*)");
+    assertEquals(1, pim.getMatchingItems().size());
+    assertEquals("JFrame", pim.getMatchingItems().get(0));
+    pim.setMask(".*e.*");
+    assertEquals(3, pim.getMatchingItems().size());
+  }
+  
   // What about Java 6, 7, 8?
   public void testJavaAPIFragmentLineNumStrategy() {
     final String base = edu.rice.cs.drjava.DrJava.
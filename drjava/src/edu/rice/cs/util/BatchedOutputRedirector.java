@@ -0,0 +1,332 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+import static edu.rice.cs.plt.debug.DebugUtil.error;
+
+/** Redirects a pair of output streams (typically System.out and System.err) to another destination in batches.
+  * Unlike {@link OutputStreamRedirector}, which forwards every write immediately, bytes written to either stream are
+  * collected in a single bounded buffer and handed to {@link #printBatch} as a sequence of segments.  Since both
+  * streams share one buffer, the relative order of out and err output is preserved.  The buffer is flushed
+  * <ul>
+  * <li>by a background thread, shortly after a complete line has been written (or somewhat later for a partial line);</li>
+  * <li>by the writing thread itself when the buffer is full, so that a fast producer is throttled to the speed of the
+  *     destination rather than growing the buffer without bound;</li>
+  * <li>whenever {@link #flush} is invoked explicitly, e.g. before reading from the console or returning a result.</li>
+  * </ul>
+  * Calls to {@code printBatch} are never concurrent and always occur in the order the output was written.  A character
+  * whose bytes are split between two flushes is delivered with the later one.
+  * @version $Id$
+  */
+public abstract class BatchedOutputRedirector {
+  /** Default buffer capacity in bytes. */
+  public static final int DEFAULT_CAPACITY = 64 * 1024;
+  /** Default delay (in milliseconds) before output ending in a newline is flushed. */
+  public static final int DEFAULT_LINE_DELAY = 20;
+  /** Default delay (in milliseconds) before output without a trailing newline is flushed. */
+  public static final int DEFAULT_PARTIAL_LINE_DELAY = 100;
+  
+  /** Guards all of the buffer state below. */
+  private final Object _lock = new Object();
+  /** Serializes calls to printBatch so that batches are delivered in order. */
+  private final Object _flushLock = new Object();
+  
+  private final byte[] _buf;
+  private int _size;
+  /** Segment boundaries: segment i covers [_runEnds[i-1], _runEnds[i]) of _buf and belongs to err iff _runIsErr[i]. */
+  private int[] _runEnds;
+  private boolean[] _runIsErr;
+  private int _runs;
+  /** Time at which the oldest unflushed byte was written. */
+  private long _pendingSince;
+  /** Whether the last byte written was a newline. */
+  private boolean _endsWithNewline;
+  private boolean _closed;
+  
+  private final int _lineDelay;
+  private final int _partialLineDelay;
+  
+  /** Decoders for the out and err streams.  Guarded by _flushLock. */
+  private final Decoder _outDecoder;
+  private final Decoder _errDecoder;
+  
+  private final OutputStream _out;
+  private final OutputStream _err;
+  
+  /** Creates a redirector with the default capacity and flush delays. */
+  public BatchedOutputRedirector() {
+    this(DEFAULT_CAPACITY, DEFAULT_LINE_DELAY, DEFAULT_PARTIAL_LINE_DELAY);
+  }
+  
+  /** Creates a redirector that decodes output with the platform's default charset.
+    * @param capacity  Number of bytes that may be buffered before a writer must wait for a flush
+    * @param lineDelay  Milliseconds to wait for more output before flushing output that ends in a newline
+    * @param partialLineDelay  Milliseconds to wait for more output before flushing an incomplete line
+    */
+  public BatchedOutputRedirector(int capacity, int lineDelay, int partialLineDelay) {
+    this(capacity, lineDelay, partialLineDelay, Charset.defaultCharset());
+  }
+  
+  /** Creates a redirector.
+    * @param capacity  Number of bytes that may be buffered before a writer must wait for a flush
+    * @param lineDelay  Milliseconds to wait for more output before flushing output that ends in a newline
+    * @param partialLineDelay  Milliseconds to wait for more output before flushing an incomplete line
+    * @param charset  Charset used to decode the bytes written to both streams
+    */
+  public BatchedOutputRedirector(int capacity, int lineDelay, int partialLineDelay, Charset charset) {
+    if (capacity <= 0) { throw new IllegalArgumentException("capacity must be positive"); }
+    _buf = new byte[capacity];
+    _size = 0;
+    _runEnds = new int[16];
+    _runIsErr = new boolean[16];
+    _runs = 0;
+    _endsWithNewline = false;
+    _closed = false;
+    _lineDelay = lineDelay;
+    _partialLineDelay = partialLineDelay;
+    _outDecoder = new Decoder(charset);
+    _errDecoder = new Decoder(charset);
+    _out = new Channel(false);
+    _err = new Channel(true);
+    
+    Thread flusher = new Thread("Batched Output Flush Thread") {
+      public void run() { _flushLoop(); }
+    };
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+  
+  /** @return the stream whose output is delivered with {@code isErr == false} */
+  public OutputStream getOut() { return _out; }
+  
+  /** @return the stream whose output is delivered with {@code isErr == true} */
+  public OutputStream getErr() { return _err; }
+  
+  /** Implement this method to print a batch of output to the appropriate destination.  Adjacent segments always
+    * belong to different streams.
+    * @param segments  The text written, in order
+    * @param isErr  For each segment, whether it was written to the err stream
+    */
+  protected abstract void printBatch(String[] segments, boolean[] isErr);
+  
+  /** Delivers all buffered output to {@link #printBatch}, blocking until it has been printed. */
+  public void flush() {
+    synchronized(_flushLock) {
+      String[] segments;
+      boolean[] isErr;
+      int count = 0;
+      synchronized(_lock) {
+        // once closed, no more bytes will complete a held-back character, so it is decoded as malformed input
+        boolean endOfInput = _closed;
+        if (_size == 0 && ! (endOfInput && (_outDecoder.hasPending() || _errDecoder.hasPending()))) { return; }
+        segments = new String[_runs + 2];
+        isErr = new boolean[_runs + 2];
+        int start = 0;
+        for (int i = 0; i < _runs; i++) {
+          Decoder d = _runIsErr[i] ? _errDecoder : _outDecoder;
+          count = _addSegment(segments, isErr, count, d.decode(_buf, start, _runEnds[i] - start, endOfInput),
+                              _runIsErr[i]);
+          start = _runEnds[i];
+        }
+        if (endOfInput) {
+          count = _addSegment(segments, isErr, count, _outDecoder.decode(_buf, 0, 0, true), false);
+          count = _addSegment(segments, isErr, count, _errDecoder.decode(_buf, 0, 0, true), true);
+        }
+        _size = 0;
+        _runs = 0;
+        _endsWithNewline = false;
+      }
+      if (count > 0) { printBatch(Arrays.copyOf(segments, count), Arrays.copyOf(isErr, count)); }
+    }
+  }
+  
+  /** Appends decoded text to the first count segments, merging it into the last segment if that belongs to the same
+    * stream.  Empty text (a segment holding only the start of a character) is skipped.
+    * @return the new number of segments
+    */
+  private static int _addSegment(String[] segments, boolean[] isErr, int count, String text, boolean err) {
+    if (text.length() == 0) { return count; }
+    if (count > 0 && isErr[count-1] == err) {
+      segments[count-1] += text;
+      return count;
+    }
+    segments[count] = text;
+    isErr[count] = err;
+    return count + 1;
+  }
+  
+  /** Flushes any remaining output and stops the background flush thread.  Subsequent writes are flushed immediately. */
+  public void close() {
+    synchronized(_lock) { _closed = true; _lock.notifyAll(); }
+    flush();
+  }
+  
+  /** Appends the given bytes to the buffer, flushing first (in the calling thread) if there isn't enough room. */
+  private void _write(boolean isErr, byte[] b, int off, int len) {
+    while (len > 0) {
+      boolean mustFlush;
+      synchronized(_lock) {
+        int free = _buf.length - _size;
+        // keep a single write together if it fits at all; otherwise fill the buffer and continue with the rest
+        int n = (len <= free || _size == 0) ? Math.min(len, free) : 0;
+        if (n > 0) {
+          System.arraycopy(b, off, _buf, _size, n);
+          _appended(isErr, n);
+          off += n;
+          len -= n;
+        }
+        mustFlush = (len > 0) || _closed;
+      }
+      if (mustFlush) { flush(); }
+    }
+  }
+  
+  /** Appends a single byte to the buffer without allocating, flushing first if the buffer is full. */
+  private void _write(boolean isErr, int b) {
+    boolean written = false;
+    while (! written) {
+      boolean mustFlush;
+      synchronized(_lock) {
+        if (_size < _buf.length) {
+          _buf[_size] = (byte) b;
+          _appended(isErr, 1);
+          written = true;
+        }
+        mustFlush = (! written) || _closed;
+      }
+      if (mustFlush) { flush(); }
+    }
+  }
+  
+  /** Records that n bytes have just been copied to the end of the buffer.  Assumes _lock is held. */
+  private void _appended(boolean isErr, int n) {
+    if (_size == 0) { _pendingSince = System.currentTimeMillis(); }
+    _size += n;
+    if (_runs > 0 && _runIsErr[_runs-1] == isErr) { _runEnds[_runs-1] = _size; }
+    else {
+      if (_runs == _runEnds.length) {
+        int[] newEnds = new int[_runs * 2];
+        boolean[] newIsErr = new boolean[_runs * 2];
+        System.arraycopy(_runEnds, 0, newEnds, 0, _runs);
+        System.arraycopy(_runIsErr, 0, newIsErr, 0, _runs);
+        _runEnds = newEnds;
+        _runIsErr = newIsErr;
+      }
+      _runEnds[_runs] = _size;
+      _runIsErr[_runs] = isErr;
+      _runs++;
+    }
+    boolean wasNewline = _endsWithNewline;
+    _endsWithNewline = (_buf[_size-1] == '\n');
+    // wake the flush thread if it was idle, or if it may now use the shorter line delay
+    if (_size == n || (_endsWithNewline && ! wasNewline)) { _lock.notifyAll(); }
+  }
+  
+  /** Body of the background flush thread: waits for output and flushes it once the appropriate delay has passed. */
+  private void _flushLoop() {
+    try {
+      while (true) {
+        synchronized(_lock) {
+          while (true) {
+            if (_closed) { return; }
+            if (_size > 0) {
+              long delay = _endsWithNewline ? _lineDelay : _partialLineDelay;
+              long remaining = _pendingSince + delay - System.currentTimeMillis();
+              if (remaining <= 0) { break; }
+              _lock.wait(remaining);
+            }
+            else { _lock.wait(); }
+          }
+        }
+        try { flush(); }
+        catch (RuntimeException e) { error.log("Could not flush redirected output", e); }
+      }
+    }
+    catch (InterruptedException e) { /* terminate the thread */ }
+  }
+  
+  /** Decodes the bytes written to one stream.  Bytes at the end of a segment that do not form a complete character
+    * are held back and decoded together with that stream's next segment. */
+  private static class Decoder {
+    private final CharsetDecoder _decoder;
+    private byte[] _pending = new byte[0];
+    
+    public Decoder(Charset charset) {
+      _decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    
+    public boolean hasPending() { return _pending.length > 0; }
+    
+    /** Decodes the held-back bytes followed by b[off, off+len), holding back any incomplete character at the end
+      * unless endOfInput is set. */
+    public String decode(byte[] b, int off, int len, boolean endOfInput) {
+      ByteBuffer in;
+      if (_pending.length == 0) { in = ByteBuffer.wrap(b, off, len); }
+      else {
+        byte[] joined = Arrays.copyOf(_pending, _pending.length + len);
+        System.arraycopy(b, off, joined, _pending.length, len);
+        in = ByteBuffer.wrap(joined);
+      }
+      CharBuffer out = CharBuffer.allocate((int) (in.remaining() * _decoder.maxCharsPerByte()) + 16);
+      while (_decoder.decode(in, out, endOfInput).isOverflow()) { out = _grow(out); }
+      if (endOfInput) {
+        while (_decoder.flush(out).isOverflow()) { out = _grow(out); }
+        _decoder.reset();
+      }
+      _pending = new byte[in.remaining()];
+      in.get(_pending);
+      out.flip();
+      return out.toString();
+    }
+    
+    private static CharBuffer _grow(CharBuffer out) {
+      CharBuffer bigger = CharBuffer.allocate(out.capacity() * 2);
+      out.flip();
+      return bigger.put(out);
+    }
+  }
+  
+  /** One of the two output streams feeding the shared buffer. */
+  private class Channel extends OutputStream {
+    private final boolean _isErr;
+    public Channel(boolean isErr) { _isErr = isErr; }
+    public void write(int b) { _write(_isErr, b); }
+    public void write(byte[] b) { _write(_isErr, b, 0, b.length); }
+    public void write(byte[] b, int off, int len) { _write(_isErr, b, off, len); }
+  }
+}
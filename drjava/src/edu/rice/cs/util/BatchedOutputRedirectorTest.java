@@ -0,0 +1,166 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.util;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Test suite over BatchedOutputRedirector. */
+public class BatchedOutputRedirectorTest extends DrJavaTestCase {
+  
+  /** Records every batch it receives. */
+  private static class RecordingRedirector extends BatchedOutputRedirector {
+    final List<String> segments = new ArrayList<String>();
+    final List<Boolean> isErr = new ArrayList<Boolean>();
+    int batches = 0;
+    public RecordingRedirector(int capacity, int lineDelay, int partialLineDelay) {
+      super(capacity, lineDelay, partialLineDelay);
+    }
+    public RecordingRedirector(int capacity, int lineDelay, int partialLineDelay, Charset charset) {
+      super(capacity, lineDelay, partialLineDelay, charset);
+    }
+    protected synchronized void printBatch(String[] s, boolean[] e) {
+      batches++;
+      for (int i = 0; i < s.length; i++) {
+        if (i > 0) { assertTrue("adjacent segments should alternate", e[i] != e[i-1]); }
+        segments.add(s[i]);
+        isErr.add(e[i]);
+      }
+    }
+    synchronized String text() {
+      StringBuilder sb = new StringBuilder();
+      for (String s : segments) { sb.append(s); }
+      return sb.toString();
+    }
+  }
+  
+  /** Tests that interleaved out and err output is delivered in order. */
+  public void testOrderPreserved() {
+    RecordingRedirector r = new RecordingRedirector(1024, 10000, 10000);
+    PrintStream out = new PrintStream(r.getOut());
+    PrintStream err = new PrintStream(r.getErr());
+    out.print("a");
+    out.print("b");
+    err.print("c");
+    out.print("d");
+    err.print("e");
+    err.print("f");
+    assertEquals("nothing should be printed before flush", 0, r.batches);
+    r.flush();
+    assertEquals(1, r.batches);
+    assertEquals("[ab, c, d, ef]", r.segments.toString());
+    assertEquals("[false, true, false, true]", r.isErr.toString());
+    r.close();
+  }
+  
+  /** Tests that single-byte writes and multi-byte characters are reassembled correctly. */
+  public void testSingleBytesAndEncoding() throws Exception {
+    RecordingRedirector r = new RecordingRedirector(1024, 10000, 10000);
+    String s = "h\u00e9llo \u4e16\u754c";
+    byte[] bytes = s.getBytes();
+    for (byte b : bytes) { r.getOut().write(b); }
+    r.flush();
+    assertEquals(new String(bytes), r.text());
+    r.close();
+  }
+  
+  /** Tests that output exceeding the capacity is flushed by the writer, in order and without loss. */
+  public void testBackpressure() {
+    RecordingRedirector r = new RecordingRedirector(64, 10000, 10000);
+    PrintStream out = new PrintStream(r.getOut());
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      out.print(i + ",");
+      expected.append(i + ",");
+    }
+    assertTrue("full buffer should have forced flushes", r.batches > 1);
+    String big = expected.toString() + expected.toString();
+    out.print(big);
+    expected.append(big);
+    r.close();
+    assertEquals(expected.toString(), r.text());
+  }
+  
+  /** Tests that multi-byte characters survive flushes that fall between their bytes, both when output longer than the
+    * capacity is split by the writer and when a character is written in pieces around an explicit flush. */
+  public void testMultiByteCharactersAcrossFlushes() throws Exception {
+    RecordingRedirector r = new RecordingRedirector(64, 10000, 10000, Charset.forName("UTF-8"));
+    PrintStream out = new PrintStream(r.getOut(), false, "UTF-8");
+    StringBuilder sb = new StringBuilder();
+    // characters of 2, 3, 4 and 1 bytes, so the 64-byte buffer fills up at every possible offset within a character
+    for (int i = 0; i < 100; i++) { sb.append("\u00e9\u4e16\ud83d\ude00x"); }
+    String s = sb.toString();
+    out.print(s);
+    assertTrue("full buffer should have forced flushes", r.batches > 1);
+    r.flush();
+    assertEquals(s, r.text());
+    
+    byte[] e = "\u00e9".getBytes("UTF-8");
+    r.getOut().write(e[0]);
+    r.flush();
+    r.getErr().write('!');
+    r.getOut().write(e[1]);
+    r.flush();
+    assertEquals(s + "!\u00e9", r.text());
+    r.close();
+  }
+  
+  /** Tests that the background thread flushes a complete line without an explicit flush. */
+  public void testTimedFlush() throws InterruptedException {
+    RecordingRedirector r = new RecordingRedirector(1024, 10, 10);
+    new PrintStream(r.getOut()).println("line");
+    for (int i = 0; i < 100 && r.batches == 0; i++) { Thread.sleep(50); }
+    assertEquals("line" + System.getProperty("line.separator"), r.text());
+    r.close();
+  }
+  
+  /** Compares the number of deliveries (remote calls, in the interpreter JVM) for many short lines against unbatched
+    * redirection, which makes at least one per write. */
+  public void testThroughput() {
+    final int[] unbatchedCalls = { 0 };
+    PrintStream unbatched = new PrintStream(new OutputStreamRedirector() {
+      public void print(String s) { unbatchedCalls[0]++; }
+    });
+    RecordingRedirector r = new RecordingRedirector(BatchedOutputRedirector.DEFAULT_CAPACITY, 10000, 10000);
+    PrintStream batched = new PrintStream(r.getOut());
+    
+    final int lines = 100000;
+    for (int i = 0; i < lines; i++) { unbatched.println(i); }
+    for (int i = 0; i < lines; i++) { batched.println(i); }
+    r.flush();
+    
+    assertTrue("each line should be at least one unbatched call", unbatchedCalls[0] >= lines);
+    assertTrue("batching should need far fewer deliveries: " + r.batches, r.batches * 100 < lines);
+    r.close();
+  }
+}
@@ -34,14 +34,28 @@ import java.util.Date;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.rice.cs.plt.lambda.Thunk;
 
 /** Logging class to record errors or unexpected behavior to a file.  The file is created in the current directory,
   * and is only used if the log is enabled.  All logs can be enabled at once with the ENABLE_ALL field.
+  * 
+  * Logging a message only time-stamps it and appends it to a lock-free queue; a background writer thread per log
+  * formats the queued messages and writes them out, flushing the file whenever the queue runs dry.  Hence a message
+  * reaches the file shortly after it is logged; use {@link #flush} to wait until it has.
   * @version $Id$
   */
 public class Log {
   public static final boolean ENABLE_ALL = false;
   
+  /** How long an idle writer thread sleeps before checking the queue again, in milliseconds. */
+  private static final long IDLE_WAIT = 1000L;
+  
   /** Whether this particular log is enabled in development mode. */
   protected volatile boolean _isEnabled;
   
@@ -51,11 +65,44 @@ public class Log {
   /** The file object for this log. */
   protected volatile File _file;
   
-  /** PrintWriter to print messages to a file. */
+  /** PrintWriter to print messages to a file.  Only written to by the writer thread once the log is open. */
   protected volatile PrintWriter _writer;
   
+  /** The thread writing queued messages to _writer, or null if the log is not open. */
+  protected volatile Thread _writerThread;
+  
+  /** Flushes the queued messages when the JVM exits, or null if the log is not open. */
+  protected volatile Thread _shutdownHook;
+  
+  /** Messages waiting to be written, in the order they were logged. */
+  private final ConcurrentLinkedQueue<Entry> _pending = new ConcurrentLinkedQueue<Entry>();
+  
+  /** Set by the writer thread before it parks, so that only the first message logged afterward wakes it up. */
+  private final AtomicBoolean _writerIdle = new AtomicBoolean(false);
+  
   public final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("d MMM yyyy H:mm:ss z");
   
+  /** The format used by the writer thread.  SimpleDateFormat is not thread-safe, so it is separate from DATE_FORMAT. */
+  private final SimpleDateFormat _stampFormat = new SimpleDateFormat("d MMM yyyy H:mm:ss z");
+  
+  /** The second (since the epoch) of the most recently formatted time stamp, and its formatted text.  Time stamps 
+    * have a resolution of one second, so consecutive messages usually share one.  Only used by the writer thread.
+    */
+  private long _stampSecond = -1L;
+  private String _stamp;
+  
+  /** A message waiting to be written, or a request to flush the file if _flushed is not null. */
+  private static final class Entry {
+    final long _time;
+    final String _message;
+    final CountDownLatch _flushed;
+    Entry(long time, String message, CountDownLatch flushed) {
+      _time = time;
+      _message = message;
+      _flushed = flushed;
+    }
+  }
+  
   /** Creates a new Log with the given name.  If enabled is true, a file is created in the current directory with the
     * given name.
     * @param name  File name for the log
@@ -69,16 +116,18 @@ public class Log {
     _isEnabled = isEnabled;
     DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("GMT"));
     DATE_FORMAT.setLenient(false);
+    _stampFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
     _init();
   }
   
-  /** Creates the log file, if enabled. */
-  protected void _init() {
+  /** Creates the log file and starts its writer thread, if enabled. */
+  protected synchronized void _init() {
     if (_writer == null) {
       if (_isEnabled || ENABLE_ALL) {
         try {
           FileWriter w = new FileWriter(_file.getAbsolutePath(), true);
-          _writer = new PrintWriter(w);
+          _writer = new PrintWriter(new BufferedWriter(w));
+          _startWriterThread();
           log("Log '" + _name + "' opened: " + DATE_FORMAT.format(new Date()) + " with name " + _file.getAbsolutePath());
         }
         catch (IOException ioe) {
@@ -88,6 +137,59 @@ public class Log {
     }
   }
   
+  /** Starts a daemon thread that writes the queued messages to _writer until the log is closed. */
+  private void _startWriterThread() {
+    final PrintWriter writer = _writer;
+    final Thread t = new Thread("Log writer: " + _name) {
+      public void run() {
+        while (true) {
+          Entry e = _pending.poll();
+          if (e == null) {
+            writer.flush();  // one flush per batch of messages
+            if (_writerThread != this) return;  // closed, and the queue has been drained
+            _writerIdle.set(true);
+            if (_pending.isEmpty()) LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(IDLE_WAIT));
+            _writerIdle.set(false);
+          }
+          else if (e._flushed != null) {
+            writer.flush();
+            e._flushed.countDown();
+          }
+          else writer.println(_timeStamp(e._time) + ": " + e._message);
+        }
+      }
+    };
+    t.setDaemon(true);
+    _writerThread = t;
+    _shutdownHook = new Thread("Log shutdown: " + _name) {
+      public void run() { flush(); }
+    };
+    Runtime.getRuntime().addShutdownHook(_shutdownHook);
+    t.start();
+  }
+  
+  /** Formats a time stamp, reusing the previous one if it falls within the same second.  Only called by the writer
+    * thread, or by close() once the writer thread has exited.
+    * @param time  the time in milliseconds since the epoch
+    * @return the formatted time stamp
+    */
+  private String _timeStamp(long time) {
+    long second = time / 1000;
+    if (second != _stampSecond) {
+      _stamp = _stampFormat.format(new Date(time));
+      _stampSecond = second;
+    }
+    return _stamp;
+  }
+  
+  /** Appends e to the queue and wakes up the writer thread if it is idle.
+    * @param e  the entry to append
+    */
+  private void _enqueue(Entry e) {
+    _pending.offer(e);
+    if (_writerIdle.compareAndSet(true, false)) LockSupport.unpark(_writerThread);
+  }
+  
   /** Sets whether this log is enabled.  Only has an effect if the code is in development mode.
     * @param isEnabled  Whether to print messages to the log file
     */
@@ -96,19 +198,26 @@ public class Log {
   /** @return  whether this log is currently enabled. */
   public boolean isEnabled() { return (_isEnabled || ENABLE_ALL); }
   
-  /** Prints a message to the log, if enabled.
+  /** Prints a message to the log, if enabled.  The message is written asynchronously.
     * @param message Message to print.
     */
-  public synchronized void log(String message) {
+  public void log(String message) {
     if (isEnabled()) {
       if (_writer == null) {
         _init();
       }
-      _writer.println(DATE_FORMAT.format(new Date()) + ": " + message);
-      _writer.flush();
+      _enqueue(new Entry(System.currentTimeMillis(), message, null));
     }
   }
   
+  /** Prints a message to the log, if enabled.  The message is only computed if the log is enabled, so callers can log
+    * expensive descriptions at no cost when logging is off.
+    * @param message Thunk producing the message to print
+    */
+  public void log(Thunk<String> message) {
+    if (isEnabled()) log(message.value());
+  }
+  
   /** Converts a stack trace (StackTraceElement[]) to string form 
    * @param trace trace to be converted
    * @return string representation of trace
@@ -123,7 +232,7 @@ public class Log {
     * @param s  Message to print
     * @param trace  Stack track to log
     */
-  public synchronized void log(String s, StackTraceElement[] trace) {
+  public void log(String s, StackTraceElement[] trace) {
     if (isEnabled()) log(s + traceToString(trace));
   }
   
@@ -131,7 +240,7 @@ public class Log {
     * @param s Message to print
     * @param t Throwable to log
     */
-  public synchronized void log(String s, Throwable t) {
+  public void log(String s, Throwable t) {
     if (isEnabled()) {
       StringWriter sw = new StringWriter();
       PrintWriter pw = new PrintWriter(sw);
@@ -140,8 +249,43 @@ public class Log {
     }
   }
   
-  /** Closes a log file. */
-  public void close() {
+  /** Blocks until all messages logged so far have been written to the log file.  Returns immediately if the log is
+    * not open.
+    */
+  public void flush() {
+    Thread t = _writerThread;
+    if (t == null) return;
+    CountDownLatch flushed = new CountDownLatch(1);
+    _enqueue(new Entry(0L, null, flushed));
+    try {
+      while (! flushed.await(IDLE_WAIT, TimeUnit.MILLISECONDS)) {
+        if (! t.isAlive()) return;  // the log was closed concurrently
+      }
+    }
+    catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+  }
+  
+  /** Closes a log file after writing all pending messages. */
+  public synchronized void close() {
+    Thread t = _writerThread;
+    if (t == null) return;
+    _writerThread = null;  // tells t to exit once the queue is empty
+    LockSupport.unpark(t);
+    try { t.join(); }
+    catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    // write the messages logged after t found the queue empty for the last time
+    if (! t.isAlive()) {
+      for (Entry e = _pending.poll(); e != null; e = _pending.poll()) {
+        if (e._flushed != null) {
+          _writer.flush();
+          e._flushed.countDown();
+        }
+        else _writer.println(_timeStamp(e._time) + ": " + e._message);
+      }
+    }
+    try { Runtime.getRuntime().removeShutdownHook(_shutdownHook); }
+    catch (IllegalStateException e) { /* the JVM is already shutting down */ }
+    _shutdownHook = null;
     _writer.close();
     _writer = null;
   }
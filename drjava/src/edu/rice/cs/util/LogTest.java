@@ -36,6 +36,7 @@ import java.util.Date;
 import java.util.Random;
 
 import edu.rice.cs.drjava.model.MultiThreadedTestCase;
+import edu.rice.cs.plt.lambda.Thunk;
 import edu.rice.cs.plt.io.IOUtil;
 
 /** Test cases for {@link Log}.
@@ -106,6 +107,7 @@ public class LogTest extends MultiThreadedTestCase {
     log1.log("Message 1");
     log1.log("Message 2");
     log1.log("Message 3");
+    log1.flush();
     
     BufferedReader fin = new BufferedReader(new FileReader(file1));
     Date now = new Date();
@@ -171,6 +173,7 @@ public class LogTest extends MultiThreadedTestCase {
       method = "\tat " + stes[0].toString();
       log2.log("Message 2", stes);
     }
+    log2.flush();
     
     BufferedReader fin = new BufferedReader(new FileReader(file2));
     Date now = new Date();
@@ -259,5 +262,36 @@ public class LogTest extends MultiThreadedTestCase {
     fin.close();
 //    System.err.println("LogTest.testConucrrentWrites complete");
   }
+  
+  /** Tests that a lazily described message is computed only while the log is enabled, and that messages logged after
+    * reopening a closed log are written.
+    * @throws IOException if an IO operation fails
+    */
+  public void testLazyMessages() throws IOException {
+    File file4 = IOUtil.createAndMarkTempFile("logtest004",".txt");
+    final int[] evaluated = new int[1];
+    Thunk<String> message = new Thunk<String>() {
+      public String value() { evaluated[0]++; return "Lazy message " + evaluated[0]; }
+    };
+    
+    Log log4 = new Log(file4, false);
+    log4.log(message);
+    assertEquals("Message computed while disabled", 0, evaluated[0]);
+    
+    log4.setEnabled(true);
+    log4.log(message);
+    log4.close();
+    log4.log(message);
+    log4.flush();
+    assertEquals("Message not computed while enabled", 2, evaluated[0]);
+    
+    BufferedReader fin = new BufferedReader(new FileReader(file4));
+    assertTrue("Incorrect log open message", getStringAfterDate(fin.readLine()).startsWith("Log '"));
+    assertEquals("Lazy message 1", getStringAfterDate(fin.readLine()));
+    assertTrue("Incorrect log open message", getStringAfterDate(fin.readLine()).startsWith("Log '"));
+    assertEquals("Lazy message 2", getStringAfterDate(fin.readLine()));
+    assertEquals("End of log expected", null, fin.readLine());
+    fin.close();
+    log4.close();
+  }
 }
-
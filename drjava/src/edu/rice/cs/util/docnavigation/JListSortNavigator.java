@@ -46,15 +46,19 @@ class JListSortNavigator<ItemT extends INavigatorItem> extends JListNavigator<It
     * @return the index at which the document was inserted
     */
   private int insertDoc(ItemT doc) {
-    int i;
+    String name = doc.getName().toUpperCase();
     synchronized(_model) {
-      for (i = 0; i < _model.size(); i++) { 
-        ItemT item = getFromModel(i);
-        if (doc.getName().toUpperCase().compareTo(item.getName().toUpperCase()) <= 0) break;
+      // binary search for the first item whose name is not less than doc's; the model is kept sorted
+      int lo = 0;
+      int hi = _model.size();
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (name.compareTo(getFromModel(mid).getName().toUpperCase()) <= 0) hi = mid;
+        else lo = mid + 1;
       }
-      _model.add(i, doc);
+      _model.add(lo, doc);
+      return lo;
     }
-    return i;
   }
   
   public String toString() { synchronized(_model) { return _model.toString(); } }
@@ -31,8 +31,15 @@ package edu.rice.cs.util.newjvm;
 import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.io.File;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import edu.rice.cs.util.Log;
 import edu.rice.cs.util.UnexpectedException;
@@ -73,24 +80,57 @@ public abstract class AbstractMasterJVM implements MasterRemote {
    */
   private enum State { FRESH, STARTING, RUNNING, QUITTING, DISPOSED };
   
-  /** Loads an instance of the given AbstractSlaveJVM class.  Invoked in the slave JVM. */
+  /** Loads an instance of the given AbstractSlaveJVM class.  Invoked in the slave JVM.  A factory for a standby
+    * slave also carries the master, so that the standby can quit on its own if the master dies before the standby
+    * is ever started.
+    */
   private static class SlaveFactory implements Thunk<AbstractSlaveJVM>, Serializable {
     private final String _className;
-    public SlaveFactory(String className) { _className = className; }
+    private final MasterRemote _master;
+    public SlaveFactory(String className) { this(className, null); }
+    public SlaveFactory(String className, MasterRemote master) { _className = className; _master = master; }
     public AbstractSlaveJVM value() {
-      try { return (AbstractSlaveJVM) ReflectUtil.getStaticField(_className, "ONLY"); }
+      AbstractSlaveJVM slave;
+      try { slave = (AbstractSlaveJVM) ReflectUtil.getStaticField(_className, "ONLY"); }
       catch (ReflectException e) {
-        try { return (AbstractSlaveJVM) ReflectUtil.loadObject(_className); }
+        try { slave = (AbstractSlaveJVM) ReflectUtil.loadObject(_className); }
         catch (ReflectException e2) { throw new WrappedException(e2); }
-     }
+      }
+      if (_master != null) { slave.handleStandby(_master); }
+      return slave;
     }
   }
   
+  /** A slave JVM process launched by this master.  A process is "active" while it is (or is about to become) the
+    * current slave; only an active process reports its exit through {@link #handleSlaveQuit}, and it does so at
+    * most once.  Standby processes are inactive until {@link #invokeSlave} claims them.
+    */
+  private static class SlaveProcess {
+    /** Settings the process was launched with, or {@code null} if it may not be pooled. */
+    public final List<Object> key;
+    public final AtomicBoolean active;
+    public volatile SlaveRemote stub;
+    public SlaveProcess(List<Object> k, boolean isActive) { key = k; active = new AtomicBoolean(isActive); }
+    /** @return {@code true} exactly once for an active process, making it inactive */
+    public boolean reportQuit() { return active.compareAndSet(true, false); }
+  }
+  
   private final StateMonitor<State> _monitor;
   private final SlaveFactory _slaveFactory;
   private final LazyThunk<MasterRemote> _masterStub;
   /** The slave JVM remote stub (non-null when the state is RUNNING). */
   private volatile SlaveRemote _slave;
+  /** The process of the current slave (non-null when the state is RUNNING). */
+  private volatile SlaveProcess _slaveProcess;
+  
+  /** Launched but not yet started slave JVMs, ready to be swapped in by {@link #invokeSlave}.  Guarded by itself. */
+  private final List<SlaveProcess> _standbys = new LinkedList<SlaveProcess>();
+  /** Serializes the background threads that refill {@code _standbys}. */
+  private final Object _refillLock = new Object();
+  /** Number of standby slave JVMs to keep ready; 0 disables the pool. */
+  private volatile int _standbyCount = 0;
+  /** Whether {@link #quitSlave} reports the quit without waiting for the slave process to exit. */
+  private volatile boolean _quitInBackground = false;
   
   /** Set up the master JVM object.  Does not start a slave JVM.
    * @param slaveClassName The fully-qualified class name of the class to start up in the second JVM.  Must be a
@@ -120,7 +160,8 @@ public abstract class AbstractMasterJVM implements MasterRemote {
   protected abstract void handleSlaveConnected(SlaveRemote newSlave);
   
   /** Callback for when the slave JVM has quit.
-   * @param status The exit code returned by the slave JVM.
+   * @param status The exit code returned by the slave JVM (0 if the quit was requested and, by the standby policy,
+   *               reported before the process exited).
    */
   protected abstract void handleSlaveQuit(int status);
   
@@ -129,6 +170,21 @@ public abstract class AbstractMasterJVM implements MasterRemote {
     */
   protected abstract void handleSlaveWontStart(Exception e);
   
+  /** Sets how slaves are replaced.  With a positive {@code standbyCount}, that many slave JVMs are launched ahead of
+    * time with the settings of the most recent {@link #invokeSlave} call, and the next invocation with the same
+    * settings starts one of them instead of waiting for a new process.  Standbys stay alive until they are claimed or
+    * this master is disposed, so each one permanently costs the memory of an idle slave JVM.  With 
+    * {@code quitInBackground}, {@link #quitSlave} reports the quit as soon as the slave acknowledges it, while the
+    * process finishes exiting in the background.  Neither applies to slaves that listen on a fixed debugger port, 
+    * since the old and new process would compete for it.
+    * @param standbyCount  Number of standby JVMs to keep ready
+    * @param quitInBackground  Whether to report a requested quit before the slave process exits
+    */
+  protected void setStandbyPolicy(int standbyCount, boolean quitInBackground) {
+    _standbyCount = Math.max(standbyCount, 0);
+    _quitInBackground = quitInBackground;
+  }
+  
   /** Creates and starts the slave JVM.  If the the slave is currently running, waits until it completes.
     * Also waits until the new process has started up and calls one of {@link #handleSlaveConnected}
     * or {@link #handleSlaveWontStart} before returning.
@@ -148,34 +204,34 @@ public abstract class AbstractMasterJVM implements MasterRemote {
     // include props, but shadow them with any definitions in jvmBuilder
     final JVMBuilder tweakedJVMBuilder = jvmBuilder.properties(CollectUtil.union(props, jvmBuilder.properties()));
 
+    final List<Object> key = _standbyKey(tweakedJVMBuilder);
+    SlaveProcess proc = _claimStandby(key);
     SlaveRemote newSlave = null;
-    try {
-      debug.logStart("invoking remote JVM process");
-      newSlave =
-        (SlaveRemote) ConcurrentUtil.exportInProcess(_slaveFactory, tweakedJVMBuilder, new Runnable1<Process>() {
-          public void run(Process p) {
-            debug.log("Remote JVM quit");
-            _monitor.set(State.FRESH);
-            //debug.log("Entered state " + State.FRESH);
-            debug.logStart("handleSlaveQuit");
-            handleSlaveQuit(p.exitValue());
-            debug.logEnd("handleSlaveQuit");
-          }
-        });
-      debug.logEnd("invoking remote JVM process");
+    if (proc != null) {
+      debug.log("using standby JVM process");
+      newSlave = proc.stub;
     }
-    catch (Exception e) {
-      debug.log(e);
-      debug.logEnd("invoking remote JVM process (failed)");
-      _monitor.set(State.FRESH);
-      //debug.log("Entered state " + State.FRESH);
-      handleSlaveWontStart(e);
+    else {
+      proc = new SlaveProcess(key, true);
+      try {
+        debug.logStart("invoking remote JVM process");
+        newSlave = (SlaveRemote) ConcurrentUtil.exportInProcess(_slaveFactory, tweakedJVMBuilder, _exitListener(proc));
+        debug.logEnd("invoking remote JVM process");
+      }
+      catch (Exception e) {
+        debug.log(e);
+        debug.logEnd("invoking remote JVM process (failed)");
+        _monitor.set(State.FRESH);
+        //debug.log("Entered state " + State.FRESH);
+        handleSlaveWontStart(e);
+      }
     }
 
     if (newSlave != null) {
       try { newSlave.start(_masterStub.value()); }
       catch (RemoteException e) {
         debug.log(e);
+        proc.reportQuit(); // the resulting exit is part of the failed startup, not a quit
         attemptQuit(newSlave);
         _monitor.set(State.FRESH);
         //debug.log("Entered state " + State.FRESH);
@@ -185,9 +241,125 @@ public abstract class AbstractMasterJVM implements MasterRemote {
       
       handleSlaveConnected(newSlave);
       _slave = newSlave;
+      _slaveProcess = proc;
       _monitor.set(State.RUNNING);
       //debug.log("Entered state " + State.RUNNING);
+      if (key != null) { _refillStandbys(key, tweakedJVMBuilder); }
+    }
+  }
+  
+  /** Creates the listener notified when a slave process exits.  Only an active process (the current slave, or one
+    * being started) is reported through {@link #handleSlaveQuit}; a standby is just dropped from the pool.
+    * @param proc  The process being launched
+    * @return  A listener to pass to {@link ConcurrentUtil#exportInProcess}
+    */
+  private Runnable1<Process> _exitListener(final SlaveProcess proc) {
+    return new Runnable1<Process>() {
+      public void run(Process p) {
+        synchronized(_standbys) { _standbys.remove(proc); }
+        if (proc.reportQuit()) {
+          debug.log("Remote JVM quit");
+          _monitor.set(State.FRESH);
+          //debug.log("Entered state " + State.FRESH);
+          debug.logStart("handleSlaveQuit");
+          handleSlaveQuit(p.exitValue());
+          debug.logEnd("handleSlaveQuit");
+        }
+      }
+    };
+  }
+  
+  /** Computes the settings that must match for a standby to replace a newly-launched slave.
+    * @param jvmBuilder  The fully configured builder for the slave
+    * @return  A list of the builder's settings, or {@code null} if slaves launched this way may not be pooled
+    */
+  private static List<Object> _standbyKey(JVMBuilder jvmBuilder) {
+    List<String> jvmArgs = new ArrayList<String>();
+    for (String arg : jvmBuilder.jvmArguments()) {
+      if (arg.startsWith("-Xrunjdwp") || arg.startsWith("-agentlib:jdwp")) { return null; }
+      jvmArgs.add(arg);
+    }
+    List<File> classPath = new ArrayList<File>();
+    for (File f : jvmBuilder.classPath()) { classPath.add(f); }
+    return Arrays.<Object>asList(jvmBuilder.javaCommand(), jvmArgs, classPath, jvmBuilder.directory(),
+                                 jvmBuilder.propertiesCopy(), jvmBuilder.environment());
+  }
+  
+  /** Takes a live standby launched with the given settings out of the pool and makes it active.
+    * @param key  Settings computed by {@link #_standbyKey}; may be {@code null}
+    * @return  The claimed standby, or {@code null} if none is available
+    */
+  private SlaveProcess _claimStandby(List<Object> key) {
+    if (key == null) { return null; }
+    synchronized(_standbys) {
+      for (Iterator<SlaveProcess> i = _standbys.iterator(); i.hasNext(); ) {
+        SlaveProcess proc = i.next();
+        if (proc.key.equals(key) && proc.active.compareAndSet(false, true)) { i.remove(); return proc; }
+      }
+    }
+    return null;
+  }
+  
+  /** In a background thread, quits standbys with other settings and launches new ones until the pool holds
+    * the configured number of standbys for the given settings.
+    * @param key  Settings computed by {@link #_standbyKey}
+    * @param jvmBuilder  Builder with those settings
+    */
+  private void _refillStandbys(final List<Object> key, final JVMBuilder jvmBuilder) {
+    Thread refill = new Thread("Refill Standby JVMs") {
+      public void run() {
+        synchronized(_refillLock) {
+          List<SlaveProcess> stale = new ArrayList<SlaveProcess>();
+          int ready = 0;
+          synchronized(_standbys) {
+            for (Iterator<SlaveProcess> i = _standbys.iterator(); i.hasNext(); ) {
+              SlaveProcess proc = i.next();
+              if (proc.key.equals(key) && ready < _standbyCount) { ready++; }
+              else { i.remove(); stale.add(proc); }
+            }
+          }
+          for (SlaveProcess proc : stale) { attemptQuit(proc.stub); }
+          while (ready < _standbyCount && !isDisposed()) {
+            SlaveProcess proc = new SlaveProcess(key, false);
+            try {
+              debug.logStart("invoking standby JVM process");
+              SlaveFactory factory = new SlaveFactory(_slaveFactory._className, _masterStub.value());
+              proc.stub = (SlaveRemote) ConcurrentUtil.exportInProcess(factory, jvmBuilder, _exitListener(proc));
+              debug.logEnd("invoking standby JVM process");
+            }
+            catch (Exception e) {
+              // the next invokeSlave will simply launch a new process
+              debug.log(e);
+              debug.logEnd("invoking standby JVM process (failed)");
+              return;
+            }
+            synchronized(_standbys) { _standbys.add(proc); }
+            ready++;
+          }
+          // dispose() may have run while the last standby was starting
+          if (isDisposed()) { _quitStandbys(); }
+        }
+      }
+    };
+    refill.setDaemon(true);
+    refill.start();
+  }
+  
+  /** @return the remote stubs of the standby slave JVMs currently in the pool; for testing purposes */
+  List<SlaveRemote> getStandbys() {
+    List<SlaveRemote> result = new ArrayList<SlaveRemote>();
+    synchronized(_standbys) { for (SlaveProcess proc : _standbys) { result.add(proc.stub); } }
+    return result;
+  }
+  
+  /** Quits and forgets all standby slave JVMs. */
+  private void _quitStandbys() {
+    List<SlaveProcess> standbys;
+    synchronized(_standbys) {
+      standbys = new ArrayList<SlaveProcess>(_standbys);
+      _standbys.clear();
     }
+    for (SlaveProcess proc : standbys) { attemptQuit(proc.stub); }
   }
   
   /** Quits slave JVM.  If a slave is not currently started and running, blocks until that state is reached.
@@ -195,10 +367,22 @@ public abstract class AbstractMasterJVM implements MasterRemote {
     */
   protected final void quitSlave() {
     transition(State.RUNNING, State.QUITTING);
+    final SlaveProcess proc = _slaveProcess;
     attemptQuit(_slave);
     _slave = null;
+    _slaveProcess = null;
     _monitor.set(State.FRESH);
     //debug.log("Entered state " + State.FRESH);
+    if (_quitInBackground && proc.key != null && proc.reportQuit()) {
+      // report the quit now (as the exit listener would, in another thread); the process exits on its own
+      new Thread("Report Slave Quit") {
+        public void run() {
+          debug.logStart("handleSlaveQuit");
+          handleSlaveQuit(0);
+          debug.logEnd("handleSlaveQuit");
+        }
+      }.start();
+    }
   }
     
   /** Make a best attempt to invoke {@code slave.quit()}.  Log an error if it fails.
@@ -215,6 +399,7 @@ public abstract class AbstractMasterJVM implements MasterRemote {
    */
   protected void dispose() {
     transition(State.FRESH, State.DISPOSED);
+    _quitStandbys();
     if (_masterStub.isResolved()) { 
       try { UnicastRemoteObject.unexportObject(this, true); }
       catch (NoSuchObjectException e) { error.log(e); }
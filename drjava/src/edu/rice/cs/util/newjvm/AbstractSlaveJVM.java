@@ -46,6 +46,8 @@ public abstract class AbstractSlaveJVM implements SlaveRemote {
   /** Name of the thread to periodically poll the master. */
   private final String _pollMasterThreadName;
   private boolean _started;
+  /** Whether the thread polling the master has been started. */
+  private boolean _polling;
   
   public AbstractSlaveJVM() {
     this("Quit SlaveJVM Thread", "Poll MasterJVM Thread");
@@ -55,6 +57,7 @@ public abstract class AbstractSlaveJVM implements SlaveRemote {
     _quitSlaveThreadName = quitSlaveThreadName;
     _pollMasterThreadName = pollMasterThreadName;
     _started = false;
+    _polling = false;
   }
   
   /** Quits the slave JVM, calling {@link #beforeQuit} before it does. */
@@ -81,7 +84,27 @@ public abstract class AbstractSlaveJVM implements SlaveRemote {
   public final synchronized void start(final MasterRemote master) throws RemoteException {
     if (_started) { throw new IllegalArgumentException("start() has already been invoked"); }
     master.checkStillAlive(); // verify that two-way communication works; may throw RemoteException
-
+    _pollMaster(master);
+    handleStart(master);
+  }
+  
+  /** Prepares this slave to wait as a standby until it is started: begins polling the master, so that an unused
+    * standby quits along with the master, and then calls {@link #warmUp}.  Invoked in the slave JVM before the
+    * slave is exported.
+    * @param master link to the master JVM that launched this slave
+    */
+  final synchronized void handleStandby(MasterRemote master) {
+    _pollMaster(master);
+    warmUp();
+  }
+  
+  /** Starts the background thread that periodically polls the master JVM and quits if it's dead, unless that
+    * thread is already running.
+    * @param master link to the master JVM
+    */
+  private void _pollMaster(final MasterRemote master) {
+    if (_polling) { return; }
+    _polling = true;
     Thread checkMaster = new Thread(_pollMasterThreadName) {
       public void run() {
         while (true) {
@@ -98,12 +121,16 @@ public abstract class AbstractSlaveJVM implements SlaveRemote {
     };
     checkMaster.setDaemon(true);
     checkMaster.start();
-    handleStart(master);
   }
   
   /** This method is called just before the JVM is quit.  It can be overridden to provide cleanup code, etc. */
   protected void beforeQuit() { }
   
+  /** Called in a standby slave JVM while it waits to be started.  May be overridden to exercise code that the
+    * slave will need soon after {@link #handleStart}, so that it is already loaded and compiled.
+    */
+  protected void warmUp() { }
+  
   /** Called when the slave JVM has started running.  Subclasses must implement this method. 
    * @param master link to the master JVM
    */
@@ -34,6 +34,7 @@ import edu.rice.cs.plt.concurrent.CompletionMonitor;
 import edu.rice.cs.plt.concurrent.JVMBuilder;
 
 import java.rmi.RemoteException;
+import java.util.List;
 
 /** Test cases for the master/slave jvm control framework.  Extends DrJavaTestCase because all JUnit assertXXX calls
   * are executed in the main test thread.
@@ -49,7 +50,7 @@ public class IntegratedMasterSlaveTest extends DrJavaTestCase {
   }
   
   public void tearDown() throws Exception {
-    _testMaster.dispose();
+    if (! _testMaster.isDisposed()) _testMaster.dispose();
     super.tearDown();
   }
   
@@ -66,6 +67,9 @@ public class IntegratedMasterSlaveTest extends DrJavaTestCase {
     for (int i = 0; i < 5; i++)  _testMaster.runImmediateQuitTest();
   }
   
+  // this test uses thread pools and starts a THRAD_EXECUTOR-n thread that we cannot join
+  public void testStandbys_NOJOIN() throws Exception { _testMaster.runStandbyTest(); }
+  
   private static class TestMasterJVM extends AbstractMasterJVM implements TestMasterRemote {
     
     private static final int WAIT_TIMEOUT = 10000; 
@@ -128,6 +132,71 @@ public class IntegratedMasterSlaveTest extends DrJavaTestCase {
       _currentTest = "";
     }
     
+    /** With a standby policy, invokeSlave starts a standby launched by the previous invocation and launches a 
+      * replacement, and dispose quits the standbys.
+      * @throws Exception if something goes wrong
+      */
+    public void runStandbyTest() throws Exception {
+      _currentTest = "runStandbyTest";
+      setStandbyPolicy(1, false);
+      _justQuit.reset();
+      _slave = null;
+      _letter = 'a';
+      
+      try {
+        invokeSlave(JVMBuilder.DEFAULT);
+        TestSlaveRemote standby = (TestSlaveRemote) _awaitStandby(null);
+        assertFalse("standby is not the running slave", standby.equals(_slave));
+        _quitAndWait();
+        
+        invokeSlave(JVMBuilder.DEFAULT);
+        assertEquals("reset starts the standby", standby, _slave);
+        assertEquals("value returned by former standby", 0, _slave.getNumber());
+        TestSlaveRemote replacement = (TestSlaveRemote) _awaitStandby(standby);
+        assertEquals("standby has not been started", 0, replacement.getNumber());
+        _quitAndWait();
+        
+        dispose();
+        assertTrue("pool is empty after dispose", getStandbys().isEmpty());
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        boolean quit = false;
+        while (! quit && System.currentTimeMillis() < deadline) {
+          try { replacement.getNumber(); Thread.sleep(50); }
+          catch (RemoteException e) { quit = true; }
+        }
+        assertTrue("standby quit on dispose", quit);
+      }
+      finally {
+        // a failed assertion leaves the slave running, and tearDown cannot dispose until it quits
+        if (_slave != null) quitSlave();
+      }
+      _currentTest = "";
+    }
+    
+    private void _quitAndWait() throws InterruptedException {
+      quitSlave();
+      _slave = null;
+      assertTrue(_justQuit.attemptEnsureSignaled(WAIT_TIMEOUT));
+      _justQuit.reset();
+    }
+    
+    /** Waits until the pool holds a single standby other than the given one.
+      * @param old the standby that is no longer expected in the pool, or null
+      * @return the standby
+      * @throws InterruptedException if interrupted while waiting
+      */
+    private SlaveRemote _awaitStandby(SlaveRemote old) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+      List<SlaveRemote> standbys = getStandbys();
+      while ((standbys.size() != 1 || standbys.get(0).equals(old)) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+        standbys = getStandbys();
+      }
+      assertEquals("standbys in the pool", 1, standbys.size());
+      assertFalse("standby was replaced", standbys.get(0).equals(old));
+      return standbys.get(0);
+    }
+    
     public char getLetter() {
       synchronized(_letterLock) {
         char ret = _letter;
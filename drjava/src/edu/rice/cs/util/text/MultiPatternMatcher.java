@@ -0,0 +1,144 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.util.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Finds all occurrences of a fixed set of strings in a text in a single pass, using the Aho-Corasick automaton.
+  * The cost of a search is proportional to the length of the text plus the number of matches, regardless of the
+  * number of patterns.  Matching is case-sensitive.  Instances are immutable once constructed, so a matcher may be 
+  * shared among threads.
+  */
+public class MultiPatternMatcher {
+  
+  /** Receives the matches found by {@link #findAll}. */
+  public static interface MatchHandler {
+    /** @param pattern the pattern that was found
+      * @param start the offset in the text of the first character of the match
+      * @return true to continue searching; false to stop
+      */
+    public boolean matched(String pattern, int start);
+  }
+  
+  private final Node _root = new Node();
+  
+  /** @param patterns the strings to search for; empty strings and duplicates are ignored */
+  public MultiPatternMatcher(Iterable<String> patterns) {
+    for (String p : patterns) {
+      if (p.length() == 0) continue;
+      Node n = _root;
+      for (int i = 0; i < p.length(); i++) n = n.addChild(p.charAt(i));
+      n._pattern = p;
+    }
+    _link();
+  }
+  
+  /** Reports the matches in text to handler, in order of their end offsets.  Overlapping matches are all reported.
+    * @param text the text to search
+    * @param handler the handler for each match
+    * @return false if the handler stopped the search; true otherwise
+    */
+  public boolean findAll(CharSequence text, MatchHandler handler) {
+    Node n = _root;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      Node next = n.child(c);
+      while (next == null && n != _root) {
+        n = n._failure;
+        next = n.child(c);
+      }
+      n = (next == null) ? _root : next;
+      for (Node out = (n._pattern == null) ? n._output : n; out != null; out = out._output) {
+        if (! handler.matched(out._pattern, i + 1 - out._pattern.length())) return false;
+      }
+    }
+    return true;
+  }
+  
+  /** Sets the failure and output links of every node, in breadth-first order. */
+  private void _link() {
+    List<Node> queue = new ArrayList<Node>();
+    for (int i = 0; i < _root._size; i++) {
+      Node child = _root._children[i];
+      child._failure = _root;
+      queue.add(child);
+    }
+    for (int q = 0; q < queue.size(); q++) {
+      Node n = queue.get(q);
+      for (int i = 0; i < n._size; i++) {
+        char c = n._labels[i];
+        Node child = n._children[i];
+        Node f = n._failure;
+        while (f.child(c) == null && f != _root) f = f._failure;
+        Node target = f.child(c);
+        child._failure = (target == null) ? _root : target;
+        child._output = (child._failure._pattern != null) ? child._failure : child._failure._output;
+        queue.add(child);
+      }
+    }
+  }
+  
+  /** A state of the automaton: the prefix of one or more patterns.  Children are kept sorted by label. */
+  private static final class Node {
+    private char[] _labels = new char[0];
+    private Node[] _children = new Node[0];
+    private int _size = 0;
+    /** The pattern ending at this node, or null. */
+    private String _pattern = null;
+    /** The node for the longest proper suffix of this prefix that is also a prefix of some pattern. */
+    private Node _failure = null;
+    /** The nearest node along the failure links that ends a pattern, or null. */
+    private Node _output = null;
+    
+    Node child(char c) {
+      int i = Arrays.binarySearch(_labels, 0, _size, c);
+      return (i < 0) ? null : _children[i];
+    }
+    
+    Node addChild(char c) {
+      int i = Arrays.binarySearch(_labels, 0, _size, c);
+      if (i >= 0) return _children[i];
+      i = -(i + 1);
+      if (_size == _labels.length) {
+        int capacity = Math.max(2, _size * 2);
+        _labels = Arrays.copyOf(_labels, capacity);
+        _children = Arrays.copyOf(_children, capacity);
+      }
+      System.arraycopy(_labels, i, _labels, i + 1, _size - i);
+      System.arraycopy(_children, i, _children, i + 1, _size - i);
+      Node result = new Node();
+      _labels[i] = c;
+      _children[i] = result;
+      _size++;
+      return result;
+    }
+  }
+}
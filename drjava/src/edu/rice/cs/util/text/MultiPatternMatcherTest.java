@@ -0,0 +1,72 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.util.text;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Tests the MultiPatternMatcher. */
+public class MultiPatternMatcherTest extends DrJavaTestCase {
+  
+  private static List<String> _matches(MultiPatternMatcher m, String text) {
+    final List<String> result = new ArrayList<String>();
+    m.findAll(text, new MultiPatternMatcher.MatchHandler() {
+      public boolean matched(String pattern, int start) { result.add(pattern + "@" + start); return true; }
+    });
+    return result;
+  }
+  
+  public void testOverlappingMatches() {
+    MultiPatternMatcher m = new MultiPatternMatcher(Arrays.asList("he", "she", "his", "hers", ""));
+    assertEquals(Arrays.asList("she@1", "he@2", "hers@2"), _matches(m, "ushers"));
+    assertEquals(Arrays.asList("his@0", "she@2", "he@3"), _matches(m, "hishe"));
+    assertEquals(Arrays.<String>asList(), _matches(m, "HERS"));
+  }
+  
+  public void testFailureLinks() {
+    MultiPatternMatcher m = new MultiPatternMatcher(Arrays.asList("FooTest", "Test", "oTes", "FooTestTest"));
+    assertEquals(Arrays.asList("oTes@2", "FooTest@0", "Test@3", "FooTestTest@0", "Test@7"), 
+                 _matches(m, "FooTestTest"));
+    assertEquals(Arrays.asList("oTes@3", "Test@7", "oTes@13"), _matches(m, "FFooTesTestFooTes"));
+  }
+  
+  public void testStop() {
+    MultiPatternMatcher m = new MultiPatternMatcher(Arrays.asList("a", "b"));
+    final List<Integer> starts = new ArrayList<Integer>();
+    boolean completed = m.findAll("xaxbxa", new MultiPatternMatcher.MatchHandler() {
+      public boolean matched(String pattern, int start) { starts.add(start); return ! pattern.equals("b"); }
+    });
+    assertFalse(completed);
+    assertEquals(Arrays.asList(1, 3), starts);
+    assertTrue(new MultiPatternMatcher(new ArrayList<String>()).findAll("abc", null));
+  }
+}
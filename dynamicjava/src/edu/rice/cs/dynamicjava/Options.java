@@ -37,4 +37,9 @@ public class Options {
   public boolean prohibitBoxing() { return false; }
   /** Disallow unchecked casting conversion. */
   public boolean prohibitUncheckedCasts() { return true; }
+  /**
+   * Compile top-level loops to bytecode where possible, rather than evaluating them by walking the tree.
+   * Statements that can't be compiled are still evaluated by walking the tree.
+   */
+  public boolean compileStatements() { return false; }
 }
@@ -2,8 +2,8 @@ package edu.rice.cs.dynamicjava.interpreter;
 
 import java.util.*;
 
-import edu.rice.cs.plt.collect.IndexedRelation;
-import edu.rice.cs.plt.collect.Relation;
+import edu.rice.cs.plt.collect.ConsList;
+import edu.rice.cs.plt.collect.PersistentMap;
 import edu.rice.cs.plt.iter.IterUtil;
 import edu.rice.cs.plt.iter.SequenceIterator;
 import edu.rice.cs.plt.lambda.Lambda;
@@ -29,7 +29,9 @@ public class ImportContext extends DelegatingContext {
   private final String _currentPackage;
   private final Iterator<Integer> _anonymousCounter;
     
-  // The following fields refer to specific implementation classes in order to use the clone() method.
+  // The sets refer to specific implementation classes in order to use the clone() method; they
+  // are typically very small.  The maps are persistent, so that they can be shared by the copies
+  // made for each new import.
   
   /** Packages whose top-level classes are all imported */
   private final HashSet<String> _onDemandPackages;
@@ -39,13 +41,13 @@ public class ImportContext extends DelegatingContext {
   private final HashSet<DJClass> _staticOnDemandClasses;
   
   /** Top-level classes that are individually imported */
-  private final HashMap<String, DJClass> _importedTopLevelClasses;
+  private PersistentMap<String, DJClass> _importedTopLevelClasses;
   /** Classes containing an individually-imported member class */
-  private final HashMap<String, DJClass> _importedMemberClasses;
+  private PersistentMap<String, DJClass> _importedMemberClasses;
   /** Classes containing an individually-imported field */
-  private final HashMap<String, DJClass> _importedFields;
-  /** Classes containing an individually-imported method */
-  private final Relation<String, DJClass> _importedMethods;
+  private PersistentMap<String, DJClass> _importedFields;
+  /** Classes containing an individually-imported method, most recent first */
+  private PersistentMap<String, ConsList<DJClass>> _importedMethods;
   
   /**
    * Make a top-level context that delegates to a LibraryContext based on the given class loader.
@@ -68,10 +70,10 @@ public class ImportContext extends DelegatingContext {
     _onDemandPackages = new HashSet<String>();
     _onDemandClasses = new HashSet<DJClass>();
     _staticOnDemandClasses = new HashSet<DJClass>();
-    _importedTopLevelClasses = new HashMap<String, DJClass>();
-    _importedMemberClasses = new HashMap<String, DJClass>();
-    _importedFields = new HashMap<String, DJClass>();
-    _importedMethods = new IndexedRelation<String, DJClass>(false);
+    _importedTopLevelClasses = PersistentMap.empty();
+    _importedMemberClasses = PersistentMap.empty();
+    _importedFields = PersistentMap.empty();
+    _importedMethods = PersistentMap.empty();
     
     _onDemandPackages.add("java.lang");
   }
@@ -90,11 +92,10 @@ public class ImportContext extends DelegatingContext {
     _onDemandPackages = (HashSet<String>) bindings._onDemandPackages.clone();
     _onDemandClasses = (HashSet<DJClass>) bindings._onDemandClasses.clone();
     _staticOnDemandClasses = (HashSet<DJClass>) bindings._staticOnDemandClasses.clone();
-    _importedTopLevelClasses = (HashMap<String, DJClass>) bindings._importedTopLevelClasses.clone();
-    _importedMemberClasses = (HashMap<String, DJClass>) bindings._importedMemberClasses.clone();
-    _importedFields = (HashMap<String, DJClass>) bindings._importedFields.clone();
-    _importedMethods = new IndexedRelation<String, DJClass>(false);
-    _importedMethods.addAll(bindings._importedMethods);
+    _importedTopLevelClasses = bindings._importedTopLevelClasses;
+    _importedMemberClasses = bindings._importedMemberClasses;
+    _importedFields = bindings._importedFields;
+    _importedMethods = bindings._importedMethods;
   }
   
   protected TypeContext duplicate(TypeContext next) {
@@ -133,8 +134,8 @@ public class ImportContext extends DelegatingContext {
     ImportContext result = new ImportContext(this);
     String name = c.declaredName();
     // Under strict circumstances, a duplicate import for a name is illegal, but DynamicJava allows it
-    result._importedMemberClasses.remove(name);
-    result._importedTopLevelClasses.put(name, c);
+    result._importedMemberClasses = result._importedMemberClasses.without(name);
+    result._importedTopLevelClasses = result._importedTopLevelClasses.with(name, c);
     return result;
   }
   
@@ -142,8 +143,8 @@ public class ImportContext extends DelegatingContext {
   @Override public TypeContext importMemberClass(DJClass outer, String name) {
     ImportContext result = new ImportContext(this);
     // Under strict circumstances, a duplicate import for a name is illegal, but DynamicJava allows it
-    result._importedTopLevelClasses.remove(name);
-    result._importedMemberClasses.put(name, outer);
+    result._importedTopLevelClasses = result._importedTopLevelClasses.without(name);
+    result._importedMemberClasses = result._importedMemberClasses.with(name, outer);
     return result;
   }
   
@@ -151,14 +152,19 @@ public class ImportContext extends DelegatingContext {
   @Override public TypeContext importField(DJClass c, String name) {
     ImportContext result = new ImportContext(this);
     // Under strict circumstances, a duplicate import for a name is illegal, but DynamicJava allows it
-    result._importedFields.put(name, c);
+    result._importedFields = result._importedFields.with(name, c);
     return result;
   }
   
   /** Import the method(s) of {@code c} with the given name */
   @Override public TypeContext importMethod(DJClass c, String name) {
     ImportContext result = new ImportContext(this);
-    result._importedMethods.add(name, c); // overloads with any others already imported
+    // overloads with any others already imported
+    ConsList<DJClass> classes = result._importedMethods.get(name);
+    if (classes == null) { classes = ConsList.empty(); }
+    if (!IterUtil.contains(classes, c)) {
+      result._importedMethods = result._importedMethods.with(name, ConsList.cons(c, classes));
+    }
     return result;
   }
     
@@ -326,8 +332,8 @@ public class ImportContext extends DelegatingContext {
 
   private Type importedMethodType(String name, final TypeSystem ts) {
     Iterable<ClassType> matches;
-    Iterable<DJClass> explicitImports = _importedMethods.matchFirst(name);
-    if (!IterUtil.isEmpty(explicitImports)) {
+    Iterable<DJClass> explicitImports = _importedMethods.get(name);
+    if (explicitImports != null) {
       matches = IterUtil.mapSnapshot(explicitImports, new Lambda<DJClass, ClassType>() {
         public ClassType value(DJClass c) { return ts.makeClassType(c); }
       });
@@ -1,6 +1,8 @@
 package edu.rice.cs.dynamicjava.interpreter;
 
 import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import edu.rice.cs.plt.tuple.Option;
 import edu.rice.cs.plt.tuple.Pair;
 import edu.rice.cs.plt.lambda.WrappedException;
@@ -16,14 +18,30 @@ import static edu.rice.cs.plt.debug.DebugUtil.debug;
 /** The external interface for the interpreter. */
 public class Interpreter {
 
+  /** Maximum number of inputs kept in the parse-and-check cache. */
+  private static final int CHECKED_CACHE_SIZE = 256;
+  
   private final Options _opt;
   private TypeContext _typeContext;
   private RuntimeBindings _bindings;
   
+  /**
+   * Parsed and type-checked inputs, in least-recently-used order.  A checked tree is reused when the same code is
+   * interpreted again in the same TypeContext under the same checking options (as when an expression is re-run
+   * from the history, or a declaration is retried after evaluation failed).  Contexts are immutable, so the
+   * checker would produce exactly the same annotations and result context; evaluation does not modify the tree.
+   */
+  private final Map<CheckedKey, Pair<Iterable<Node>, TypeContext>> _checked;
+  
   public Interpreter(Options opt, TypeContext typeContext, RuntimeBindings bindings) {
     _opt = opt;
     _typeContext = typeContext;
     _bindings = bindings;
+    _checked = new LinkedHashMap<CheckedKey, Pair<Iterable<Node>, TypeContext>>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<CheckedKey, Pair<Iterable<Node>, TypeContext>> e) {
+        return size() > CHECKED_CACHE_SIZE;
+      }
+    };
     // Force potentially expensive objects/classes to initialize now:
     _opt.typeSystem();
     new JavaCCParser(new StringReader(""), _opt).parseStream();
@@ -38,11 +56,19 @@ public class Interpreter {
   }
   
   public Option<Object> interpret(String code) throws InterpreterException {
-    Iterable<Node> tree = parse(code);
-    debug.logValue("Parse result", tree);
-    TypeContext tcResult = typeCheck(tree);
-    debug.log("Static phase successful");
-    Pair<RuntimeBindings, Option<Object>> evalResult = evaluate(tree);
+    CheckedKey key = new CheckedKey(code, _typeContext, _opt);
+    Pair<Iterable<Node>, TypeContext> checked = _checked.get(key);
+    if (checked == null) {
+      Iterable<Node> tree = parse(code);
+      debug.logValue("Parse result", tree);
+      checked = Pair.make(tree, typeCheck(tree));
+      debug.log("Static phase successful");
+      _checked.put(key, checked);
+    }
+    else { debug.log("Reusing checked tree"); }
+    Iterable<Node> tree = checked.first();
+    TypeContext tcResult = checked.second();
+    Pair<RuntimeBindings, Option<Object>> evalResult = evaluate(tree, tcResult);
     // We don't commit an environment change until evaluation has completed successfully.  This
     // helps to guarantee that _typeContext and _bindings are in sync.  Effects:
     // - If there's a static error in the entire tree, nothing runs.
@@ -70,9 +96,14 @@ public class Interpreter {
     catch (ExecutionError e) { throw new CheckerException(e); }
   }
   
-  private Pair<RuntimeBindings, Option<Object>> evaluate(Iterable<Node> tree) throws InterpreterException {
+  private Pair<RuntimeBindings, Option<Object>> evaluate(Iterable<Node> tree, TypeContext tcResult)
+      throws InterpreterException {
     try {
-      StatementEvaluator.Result r = new StatementEvaluator(_bindings, _opt).evaluateSequence(tree);
+      StatementEvaluator.Result r;
+      if (_opt.compileStatements()) {
+        r = new StatementCompiler(tcResult.getClassLoader(), _opt).evaluateSequence(tree, _bindings);
+      }
+      else { r = new StatementEvaluator(_bindings, _opt).evaluateSequence(tree); }
       return Pair.make(r.bindings(), r.value());
     }
     catch (WrappedException e) {
@@ -81,4 +112,30 @@ public class Interpreter {
     }
   }
   
+  /** Identifies an input to the parse-and-check cache: source text, the context (by identity), and the options. */
+  private static final class CheckedKey {
+    private final String _code;
+    private final TypeContext _context;
+    private final int _flags;
+    
+    public CheckedKey(String code, TypeContext context, Options opt) {
+      _code = code;
+      _context = context;
+      // options that affect parsing or checking (the option object itself may be mutable)
+      _flags = (opt.requireSemicolon() ? 1 : 0) | (opt.requireVariableType() ? 2 : 0) |
+               (opt.enforceAllAccess() ? 4 : 0) | (opt.enforcePrivateAccess() ? 8 : 0) |
+               (opt.prohibitBoxing() ? 16 : 0) | (opt.prohibitUncheckedCasts() ? 32 : 0);
+    }
+    
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof CheckedKey)) { return false; }
+      CheckedKey k = (CheckedKey) o;
+      return _context == k._context && _flags == k._flags && _code.equals(k._code);
+    }
+    
+    @Override public int hashCode() {
+      return (_code.hashCode() * 31 + System.identityHashCode(_context)) * 31 + _flags;
+    }
+  }
+  
 }
@@ -0,0 +1,63 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import junit.framework.TestCase;
+import edu.rice.cs.plt.tuple.Option;
+
+import edu.rice.cs.dynamicjava.Options;
+
+public class InterpreterTest extends TestCase {
+
+  /** Options whose checking behavior can be changed between interactions. */
+  private static class MutableOptions extends Options {
+    private volatile boolean _requireVariableType = false;
+    @Override public boolean requireVariableType() { return _requireVariableType; }
+  }
+
+  private MutableOptions _opt;
+  private Interpreter _interp;
+
+  public void setUp() {
+    _opt = new MutableOptions();
+    _interp = new Interpreter(_opt, InterpreterTest.class.getClassLoader());
+  }
+
+  public void testRepeatedExpressionIsReevaluated() throws InterpreterException {
+    _interp.interpret("int x = 0;");
+    assertEquals(Option.some(0), _interp.interpret("x++"));
+    assertEquals(Option.some(1), _interp.interpret("x++"));
+    assertEquals(Option.some(2), _interp.interpret("x++"));
+    assertEquals(Option.some(3), _interp.interpret("x"));
+  }
+
+  public void testRepeatedDeclarationUsesNewContext() throws InterpreterException {
+    _interp.interpret("int x = 1;");
+    _interp.interpret("int y = x + 1;");
+    _interp.interpret("x = 10;");
+    _interp.interpret("int y = x + 1;");
+    assertEquals(Option.some(11), _interp.interpret("y"));
+  }
+
+  public void testRetryAfterEvaluationFailure() throws InterpreterException {
+    _interp.interpret("int[] a = new int[0];");
+    try { _interp.interpret("int z = a[0];"); fail("expected an exception"); }
+    catch (EvaluatorException e) { /* expected */ }
+    _interp.interpret("a = new int[] { 7 };");
+    _interp.interpret("int z = a[0];");
+    assertEquals(Option.some(7), _interp.interpret("z"));
+  }
+
+  public void testOptionChangeRechecks() throws InterpreterException {
+    _interp.interpret("int[] a = new int[0];");
+    // checked (and cached) without a variable type, but evaluation fails, so the context is unchanged
+    try { _interp.interpret("w = a[0];"); fail("expected an exception"); }
+    catch (EvaluatorException e) { /* expected */ }
+    _opt._requireVariableType = true;
+    try { _interp.interpret("w = a[0];"); fail("expected a checker error"); }
+    catch (CheckerException e) { /* expected */ }
+    _opt._requireVariableType = false;
+    _interp.interpret("a = new int[] { 3 };");
+    _interp.interpret("w = a[0];");
+    assertEquals(Option.some(3), _interp.interpret("w"));
+  }
+
+}
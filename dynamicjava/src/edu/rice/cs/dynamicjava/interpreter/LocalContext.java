@@ -1,5 +1,7 @@
 package edu.rice.cs.dynamicjava.interpreter;
 
+import edu.rice.cs.plt.collect.ConsList;
+import edu.rice.cs.plt.collect.PersistentMap;
 import edu.rice.cs.plt.iter.IterUtil;
 
 import edu.rice.cs.dynamicjava.symbol.*;
@@ -9,19 +11,56 @@ import edu.rice.cs.dynamicjava.symbol.type.VariableType;
 
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
 
-/** The context following a local class, variable, or function definition. */
+/**
+ * The context following a local class, variable, or function definition.  A LocalContext directly
+ * enclosed by another LocalContext absorbs its declarations, so a long sequence of declarations (at
+ * the top level of an interpreter session, for example) is represented by a single context with
+ * persistent maps: lookups don't need to traverse the sequence, and copying the context (see
+ * {@link #duplicate}) doesn't need to copy it.
+ */
 public class LocalContext extends DelegatingContext {
   
+  private final TypeContext _next; // need to save here for merging
   // may be null, indicating that the enclosing loader should be used (_classes should then be empty)
   // a cleaner approach would be to define different context types for classes/vars/functions...
-  private ClassLoader _loader;
-  private Iterable<DJClass> _classes;
-  private Iterable<LocalVariable> _vars;
-  private Iterable<LocalFunction> _functions;
+  private final ClassLoader _loader;
+  /** Named classes, by declared name */
+  private final PersistentMap<String, DJClass> _classes;
+  /** Variables, by declared name */
+  private final PersistentMap<String, LocalVariable> _vars;
+  /** Functions, by declared name; the most recent declaration is first */
+  private final PersistentMap<String, ConsList<LocalFunction>> _functions;
   
   public LocalContext(TypeContext next, ClassLoader loader, Iterable<DJClass> classes, 
                       Iterable<LocalVariable> vars, Iterable<LocalFunction> functions) {
+    super(outerContext(next));
+    LocalContext merged = (next instanceof LocalContext) ? (LocalContext) next : null;
+    _next = outerContext(next);
+    _loader = (loader == null && merged != null) ? merged._loader : loader;
+    PersistentMap<String, DJClass> classMap = (merged == null) ? PersistentMap.<String, DJClass>empty() : merged._classes;
+    for (DJClass c : classes) {
+      if (!c.isAnonymous()) { classMap = classMap.with(c.declaredName(), c); }
+    }
+    PersistentMap<String, LocalVariable> varMap =
+      (merged == null) ? PersistentMap.<String, LocalVariable>empty() : merged._vars;
+    for (LocalVariable v : vars) { varMap = varMap.with(v.declaredName(), v); }
+    PersistentMap<String, ConsList<LocalFunction>> functionMap =
+      (merged == null) ? PersistentMap.<String, ConsList<LocalFunction>>empty() : merged._functions;
+    for (LocalFunction f : functions) {
+      ConsList<LocalFunction> overloads = functionMap.get(f.declaredName());
+      if (overloads == null) { overloads = ConsList.empty(); }
+      functionMap = functionMap.with(f.declaredName(), ConsList.cons(f, overloads));
+    }
+    _classes = classMap;
+    _vars = varMap;
+    _functions = functionMap;
+  }
+  
+  private LocalContext(TypeContext next, ClassLoader loader, PersistentMap<String, DJClass> classes,
+                       PersistentMap<String, LocalVariable> vars,
+                       PersistentMap<String, ConsList<LocalFunction>> functions) {
     super(next);
+    _next = next;
     _loader = loader;
     _classes = classes;
     _vars = vars;
@@ -44,6 +83,11 @@ public class LocalContext extends DelegatingContext {
     this(next, null, IterUtil.<DJClass>empty(), IterUtil.<LocalVariable>empty(), IterUtil.singleton(f));
   }
   
+  /** The context enclosing {@code next}'s declarations: if {@code next} is a LocalContext, its enclosing context. */
+  private static TypeContext outerContext(TypeContext next) {
+    return (next instanceof LocalContext) ? ((LocalContext) next)._next : next;
+  }
+  
   protected LocalContext duplicate(TypeContext next) {
     return new LocalContext(next, _loader, _classes, _vars, _functions);
   }
@@ -79,12 +123,7 @@ public class LocalContext extends DelegatingContext {
     return (declaredClass(name) == null) ? super.getTypeVariable(name, ts) : null;
   }
 
-  private DJClass declaredClass(String name) {
-    for (DJClass c : _classes) {
-      if (!c.isAnonymous() && c.declaredName().equals(name)) { return c; }
-    }
-    return null;
-  }
+  private DJClass declaredClass(String name) { return _classes.get(name); }
   
   // Variables and fields
   
@@ -109,12 +148,7 @@ public class LocalContext extends DelegatingContext {
     return (declaredVariable(name) == null) ? super.typeContainingField(name, ts) : null;
   }
   
-  private LocalVariable declaredVariable(String name) {
-    for (LocalVariable v : _vars) {
-      if (v.declaredName().equals(name)) { return v; }
-    }
-    return null;
-  }
+  private LocalVariable declaredVariable(String name) { return _vars.get(name); }
   
   // Functions and methods
   
@@ -128,10 +162,8 @@ public class LocalContext extends DelegatingContext {
   
   @Override public Iterable<LocalFunction> getLocalFunctions(String name, TypeSystem ts,
                                                              Iterable<LocalFunction> partial) {
-    Iterable<LocalFunction> newPartial = partial;
-    for (LocalFunction f : _functions) {
-      if (f.declaredName().equals(name)) { newPartial = IterUtil.compose(partial, f); }
-    }
+    ConsList<LocalFunction> declared = _functions.get(name);
+    Iterable<LocalFunction> newPartial = (declared == null) ? partial : IterUtil.compose(partial, declared);
     return super.getLocalFunctions(name, ts, newPartial);
   }
   
@@ -143,12 +175,7 @@ public class LocalContext extends DelegatingContext {
     return hasFunction(name) ? null : super.typeContainingMethod(name, ts);
   }
   
-  private boolean hasFunction(String name) {
-    for (LocalFunction f : _functions) {
-      if (f.declaredName().equals(name)) { return true; }
-    }
-    return false;
-  }
+  private boolean hasFunction(String name) { return _functions.containsKey(name); }
   
   @Override public ClassLoader getClassLoader() {
     if (_loader == null) { return super.getClassLoader(); }
@@ -3,8 +3,11 @@ package edu.rice.cs.dynamicjava.interpreter;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Collections;
+import edu.rice.cs.plt.collect.PersistentMap;
 import edu.rice.cs.plt.tuple.Pair;
 import edu.rice.cs.plt.iter.IterUtil;
+import edu.rice.cs.plt.lambda.Box;
+import edu.rice.cs.plt.lambda.SimpleBox;
 
 import edu.rice.cs.dynamicjava.symbol.*;
 import edu.rice.cs.dynamicjava.symbol.type.Type;
@@ -21,17 +24,24 @@ public class RuntimeBindings {
   
   public static final RuntimeBindings EMPTY = new RuntimeBindings();
   
-  private final RuntimeBindings _parent;
-  private final Map<LocalVariable, Object> _vars;
-  private final Map<VariableType, Type> _tvars; // might be useful someday...
-  private final Map<DJClass, Object> _thisVals;
+  // Rather than delegating to a parent, each instance holds all visible bindings in persistent maps,
+  // so lookup time doesn't depend on the depth of nesting (which, at the top level of an interpreter
+  // session, grows with every declaration).  Variables are mapped to boxes so that an assignment is
+  // visible in every environment sharing the variable's binding.
+  private final PersistentMap<LocalVariable, Box<Object>> _vars;
+  private final PersistentMap<VariableType, Type> _tvars; // might be useful someday...
+  private final PersistentMap<DJClass, Object> _thisVals;
   
   public RuntimeBindings(RuntimeBindings parent, Map<LocalVariable, Object> vars,
                          Map<VariableType, Type> tvars, Map<DJClass, Object> thisVals) {
-    _parent = parent;
-    _vars = new HashMap<LocalVariable, Object>(vars);
-    _tvars = new HashMap<VariableType, Type>(tvars);
-    _thisVals = new HashMap<DJClass, Object>(thisVals);
+    PersistentMap<LocalVariable, Box<Object>> newVars =
+      (parent == null) ? PersistentMap.<LocalVariable, Box<Object>>empty() : parent._vars;
+    for (Map.Entry<LocalVariable, Object> e : vars.entrySet()) {
+      newVars = newVars.with(e.getKey(), new SimpleBox<Object>(e.getValue()));
+    }
+    _vars = newVars;
+    _tvars = (parent == null) ? PersistentMap.make(tvars) : parent._tvars.withAll(tvars);
+    _thisVals = (parent == null) ? PersistentMap.make(thisVals) : parent._thisVals.withAll(thisVals);
   }
   
   private RuntimeBindings() {
@@ -61,26 +71,26 @@ public class RuntimeBindings {
   }
   
   public Object get(LocalVariable v) {
-    if (_vars.containsKey(v)) { return _vars.get(v); }
-    else if (_parent != null) { return _parent.get(v); }
-    else { throw new IllegalArgumentException("Variable " + v + " is undefined"); }
+    return binding(v).value();
   }
   
   public void set(LocalVariable v, Object val) {
-    if (_vars.containsKey(v)) { _vars.put(v, val); }
-    else if (_parent != null) { _parent.set(v, val); }
-    else { throw new IllegalArgumentException("Variable " + v + " is undefined"); }
+    binding(v).set(val);
+  }
+  
+  private Box<Object> binding(LocalVariable v) {
+    Box<Object> result = _vars.get(v);
+    if (result == null) { throw new IllegalArgumentException("Variable " + v + " is undefined"); }
+    return result;
   }
 
   public Type get(VariableType v) {
     if (_tvars.containsKey(v)) { return _tvars.get(v); }
-    else if (_parent != null) { return _parent.get(v); }
     else { throw new IllegalArgumentException("Type variable " + v + " is undefined"); }
   }
   
   public Object getThis(DJClass c) {
     if (_thisVals.containsKey(c)) { return _thisVals.get(c); }
-    else if (_parent != null) { return _parent.getThis(c); }
     else { throw new IllegalArgumentException("This value " + c + " is undefined"); }
   }
 
@@ -0,0 +1,1284 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import edu.rice.cs.plt.lambda.WrappedException;
+import edu.rice.cs.plt.tuple.Option;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+import koala.dynamicjava.tree.*;
+import koala.dynamicjava.tree.visitor.*;
+
+import edu.rice.cs.dynamicjava.Options;
+import edu.rice.cs.dynamicjava.symbol.ArrayLengthField;
+import edu.rice.cs.dynamicjava.symbol.DJField;
+import edu.rice.cs.dynamicjava.symbol.LocalVariable;
+import edu.rice.cs.dynamicjava.symbol.SymbolUtil;
+import edu.rice.cs.dynamicjava.symbol.TypeSystem;
+
+import static org.objectweb.asm.Opcodes.*;
+import static koala.dynamicjava.interpreter.NodeProperties.*;
+import static edu.rice.cs.plt.debug.DebugUtil.debug;
+
+/**
+ * Compiles top-level loops, assumed to have been processed by the {@link StatementChecker} without
+ * any errors, to bytecode.  This avoids the overhead of walking the tree on each iteration.  Only
+ * a subset of the language is supported: primitive, string, and array operations; local variables;
+ * control flow other than {@code switch}, {@code try}, and {@code synchronized}; and access to public
+ * fields, methods, and constructors of public classes.  Anything else (including references to
+ * {@code this}, calls to local functions, and classes declared by the interpreter) prevents compilation,
+ * in which case the statement should be evaluated by a {@link StatementEvaluator} instead;
+ * {@link #evaluateSequence} takes care of this.
+ * <p>
+ * The compiled code is the body of a static method.  Local variables declared outside of the
+ * statement are copied out of the {@link RuntimeBindings} when the method starts and, if they are
+ * assigned, copied back when it completes (normally or abruptly).  A compiled statement looks something
+ * like the following:
+ * <pre>
+ * public final class $DynamicJavaStatement {
+ *   public static void run(Object[] $frame) {
+ *     int sum = (Integer) $frame[0];
+ *     try {
+ *       for (int i = 0; i < 1000; i++) { sum += i; }
+ *     }
+ *     finally { $frame[0] = sum; }
+ *   }
+ * }
+ * </pre>
+ * Each class is defined by a fresh {@link TreeClassLoader}, and can be collected once the statement
+ * has run.
+ */
+public class StatementCompiler {
+
+  private static final String CLASS_NAME = "$DynamicJavaStatement";
+  private static final String METHOD_NAME = "run";
+  private static final String METHOD_DESCRIPTOR = "([Ljava/lang/Object;)V";
+
+  /** Alternatives for the stack elements between {@link CompiledStatement#evaluate} and the compiled code. */
+  private static final String[][] INVOKE_EXTRA_STACK = new String[][] {
+    { "java.lang.reflect.Method.invoke",
+      "sun.reflect.DelegatingMethodAccessorImpl.invoke",
+      "sun.reflect.NativeMethodAccessorImpl.invoke",
+      "sun.reflect.NativeMethodAccessorImpl.invoke0",
+      CLASS_NAME + "." + METHOD_NAME },
+    { "java.lang.reflect.Method.invoke",
+      "jdk.internal.reflect.DelegatingMethodAccessorImpl.invoke",
+      "jdk.internal.reflect.NativeMethodAccessorImpl.invoke",
+      "jdk.internal.reflect.NativeMethodAccessorImpl.invoke0",
+      CLASS_NAME + "." + METHOD_NAME }
+  };
+
+  private static final Class<?>[] PRIMITIVES =
+    { boolean.class, char.class, byte.class, short.class, int.class, long.class, float.class, double.class };
+  private static final Class<?>[] WRAPPERS =
+    { Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class };
+
+  /** Conversions between computational types, indexed by {@link #computationalIndex}. */
+  private static final int[][] CONVERSIONS = { { NOP, I2L, I2F, I2D },
+                                               { L2I, NOP, L2F, L2D },
+                                               { F2I, F2L, NOP, F2D },
+                                               { D2I, D2L, D2F, NOP } };
+
+  private final ClassLoader _loader;
+  private final Options _opt;
+
+  /**
+   * @param loader  The class loader used to check the statements (see {@link TypeContext#getClassLoader}).
+   *                Compiled code refers to classes by name, so it must be able to resolve them.
+   */
+  public StatementCompiler(ClassLoader loader, Options opt) {
+    _loader = loader;
+    _opt = opt;
+  }
+
+  /**
+   * Evaluate the given sequence, compiling the statements for which {@link #compile} succeeds and
+   * evaluating the rest with a {@link StatementEvaluator}.  Behaves like
+   * {@link StatementEvaluator#evaluateSequence}.
+   */
+  public StatementEvaluator.Result evaluateSequence(Iterable<? extends Node> nodes, RuntimeBindings bindings) {
+    StatementEvaluator.Result result = new StatementEvaluator.Result(bindings);
+    for (Node n : nodes) {
+      Option<CompiledStatement> compiled = compile(n);
+      if (compiled.isSome()) {
+        // none of the candidate statements declare variables or produce values
+        compiled.unwrap().evaluate(result.bindings());
+        result = new StatementEvaluator.Result(result.bindings());
+      }
+      else { result = n.acceptVisitor(new StatementEvaluator(result.bindings(), _opt)); }
+    }
+    return result;
+  }
+
+  /**
+   * Whether {@code n} is worth compiling.  Only loops (which may be labeled) are candidates:
+   * for anything else, the cost of generating and loading a class outweighs the cost of
+   * walking the tree once.
+   */
+  public static boolean isCandidate(Node n) {
+    if (n instanceof LabeledStatement) { return isCandidate(((LabeledStatement) n).getStatement()); }
+    else {
+      return n instanceof WhileStatement || n instanceof DoStatement ||
+        n instanceof ForStatement || n instanceof ForEachStatement;
+    }
+  }
+
+  /**
+   * Compile the given statement.  The result is {@code none} if the statement is not a
+   * {@linkplain #isCandidate candidate} or uses features that aren't supported.
+   */
+  public Option<CompiledStatement> compile(Node n) {
+    if (!isCandidate(n)) { return Option.none(); }
+    TreeClassLoader loader = new TreeClassLoader(_loader, _opt);
+    try {
+      MethodCompiler compiler = new MethodCompiler(loader);
+      byte[] bytes = compiler.compile(n);
+      Class<?> c = loader.defineCompiledClass(CLASS_NAME, bytes);
+      // Initialization forces verification, so any problem with the bytecode shows up here
+      Class.forName(CLASS_NAME, true, loader);
+      return Option.some(new CompiledStatement(c.getMethod(METHOD_NAME, Object[].class), compiler.frame()));
+    }
+    catch (UnsupportedConstructException e) { debug.logValue("Statement can't be compiled", e.getMessage()); }
+    catch (ClassNotFoundException e) { debug.log(e); }
+    catch (NoSuchMethodException e) { debug.log(e); }
+    catch (LinkageError e) { debug.log(e); }
+    catch (RuntimeException e) { debug.log(e); /* an ASM failure, such as a method that is too large */ }
+    return Option.none();
+  }
+
+
+  /** A statement produced by {@link #compile}, which can be run in the bindings it was checked against. */
+  public static class CompiledStatement {
+    private final Method _method;
+    private final List<FrameEntry> _frame;
+
+    private CompiledStatement(Method method, List<FrameEntry> frame) {
+      _method = method;
+      _frame = frame;
+    }
+
+    /**
+     * Run the statement.  As in {@link StatementEvaluator}, exceptions that occur are wrapped in
+     * {@link EvaluatorException}s, which are in turn wrapped in WrappedExceptions.
+     */
+    public void evaluate(RuntimeBindings bindings) {
+      Object[] frame = new Object[_frame.size()];
+      int i = 0;
+      for (FrameEntry e : _frame) {
+        Object val = bindings.get(e.var);
+        if (e.c.isPrimitive()) { val = ExpressionEvaluator.convert(val, e.c); }
+        frame[i++] = val;
+      }
+      try { _method.invoke(null, new Object[]{ frame }); }
+      catch (InvocationTargetException e) {
+        throw new WrappedException(new EvaluatorException(e.getCause(), INVOKE_EXTRA_STACK));
+      }
+      catch (IllegalAccessException e) {
+        // The class and method are public
+        throw new RuntimeException(e);
+      }
+      finally {
+        i = 0;
+        for (FrameEntry e : _frame) {
+          if (e.assigned) { bindings.set(e.var, frame[i]); }
+          i++;
+        }
+      }
+    }
+  }
+
+  /** A variable declared outside of the compiled statement. */
+  private static class FrameEntry {
+    public final LocalVariable var;
+    public final Class<?> c;
+    public final int slot;
+    public boolean assigned;
+    public FrameEntry(LocalVariable v, Class<?> cl, int s) { var = v; c = cl; slot = s; assigned = false; }
+  }
+
+  /** Thrown when a statement uses a feature that can't be compiled. */
+  private static class UnsupportedConstructException extends RuntimeException {
+    public UnsupportedConstructException(String message) { super(message); }
+    public UnsupportedConstructException(Node n) { super(n.getClass().getName()); }
+  }
+
+  /** A statement that can be the target of a {@code break} or {@code continue}. */
+  private static class JumpTarget {
+    public final Node node;
+    public final Label breakLabel;
+    public final Label continueLabel; // null for labeled statements that are not loops
+    public JumpTarget(Node n, Label b, Label c) { node = n; breakLabel = b; continueLabel = c; }
+    public boolean hasLabel(String label) {
+      if (node instanceof LabeledStatement) { return ((LabeledStatement) node).getLabel().equals(label); }
+      else { return ((ContinueTarget) node).hasLabel(label); }
+    }
+  }
+
+
+  /** Produces the bytecode for a single compiled statement. */
+  private class MethodCompiler {
+
+    private final ClassLoader _classLoader;
+    private final TypeSystem _ts;
+    private final Map<LocalVariable, Integer> _slots;
+    private final Map<LocalVariable, Class<?>> _classes;
+    private final Map<LocalVariable, FrameEntry> _frame;
+    private final LinkedList<JumpTarget> _targets;
+    private final Map<Class<?>, Boolean> _accessible;
+    private final ExpressionVisitor _expressionVisitor;
+    private MethodVisitor _mv;
+    private int _nextSlot;
+
+    /** @param classLoader  The class loader that will define the compiled class. */
+    public MethodCompiler(ClassLoader classLoader) {
+      _classLoader = classLoader;
+      _ts = _opt.typeSystem();
+      _slots = new HashMap<LocalVariable, Integer>();
+      _classes = new HashMap<LocalVariable, Class<?>>();
+      // LinkedHashMap is not needed: frame() sorts by slot
+      _frame = new HashMap<LocalVariable, FrameEntry>();
+      _targets = new LinkedList<JumpTarget>();
+      _accessible = new HashMap<Class<?>, Boolean>();
+      _expressionVisitor = new ExpressionVisitor();
+      _mv = null;
+      _nextSlot = 1; // slot 0 is the frame array
+    }
+
+    /** The variables that must be read from and written back to the bindings, in frame order. */
+    public List<FrameEntry> frame() {
+      List<FrameEntry> result = new ArrayList<FrameEntry>(_frame.values());
+      Collections.sort(result, new java.util.Comparator<FrameEntry>() {
+        public int compare(FrameEntry e1, FrameEntry e2) { return e1.slot - e2.slot; }
+      });
+      return result;
+    }
+
+    public byte[] compile(Node n) {
+      ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+      cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, CLASS_NAME, null, "java/lang/Object", null);
+      _mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, METHOD_NAME, METHOD_DESCRIPTOR, null, null);
+      _mv.visitCode();
+
+      // The frame's contents aren't known until the body has been compiled, so the code that
+      // reads it is placed at the end
+      Label readFrame = new Label();
+      Label start = new Label();
+      Label end = new Label();
+      Label handler = new Label();
+      _mv.visitJumpInsn(GOTO, readFrame);
+      _mv.visitLabel(start);
+      _mv.visitInsn(NOP); // guarantees that the protected range is not empty
+      n.acceptVisitor(new StatementVisitor());
+      _mv.visitLabel(end);
+      writeFrame();
+      _mv.visitInsn(RETURN);
+
+      _mv.visitLabel(handler);
+      int exception = allocate(Throwable.class);
+      _mv.visitVarInsn(ASTORE, exception);
+      writeFrame();
+      _mv.visitVarInsn(ALOAD, exception);
+      _mv.visitInsn(ATHROW);
+
+      _mv.visitLabel(readFrame);
+      List<FrameEntry> frame = frame();
+      for (int i = 0; i < frame.size(); i++) {
+        FrameEntry e = frame.get(i);
+        _mv.visitVarInsn(ALOAD, 0);
+        push(i);
+        _mv.visitInsn(AALOAD);
+        coerce(Object.class, e.c);
+        _mv.visitVarInsn(asmType(e.c).getOpcode(ISTORE), e.slot);
+      }
+      _mv.visitJumpInsn(GOTO, start);
+
+      _mv.visitTryCatchBlock(start, end, handler, null);
+      _mv.visitMaxs(0, 0);
+      _mv.visitEnd();
+      cw.visitEnd();
+      return cw.toByteArray();
+    }
+
+    private void writeFrame() {
+      List<FrameEntry> frame = frame();
+      for (int i = 0; i < frame.size(); i++) {
+        FrameEntry e = frame.get(i);
+        if (e.assigned) {
+          _mv.visitVarInsn(ALOAD, 0);
+          push(i);
+          _mv.visitVarInsn(asmType(e.c).getOpcode(ILOAD), e.slot);
+          coerce(e.c, Object.class);
+          _mv.visitInsn(AASTORE);
+        }
+      }
+    }
+
+
+    /* * * * * * * * * *
+     * VARIABLES
+     * * * * * * * * * */
+
+    private int allocate(Class<?> c) {
+      int result = _nextSlot;
+      _nextSlot += (c.equals(long.class) || c.equals(double.class)) ? 2 : 1;
+      return result;
+    }
+
+    private void declare(LocalVariable v) {
+      Class<?> c = jvmClass(_ts.erasedClass(v.type()).value());
+      _slots.put(v, allocate(c));
+      _classes.put(v, c);
+    }
+
+    /** Get the class of the given variable, treating it as a frame variable if it hasn't been declared. */
+    private Class<?> variableClass(LocalVariable v) {
+      if (!_slots.containsKey(v)) {
+        declare(v);
+        _frame.put(v, new FrameEntry(v, _classes.get(v), _slots.get(v)));
+      }
+      return _classes.get(v);
+    }
+
+    private Class<?> load(LocalVariable v) {
+      Class<?> c = variableClass(v);
+      _mv.visitVarInsn(asmType(c).getOpcode(ILOAD), _slots.get(v));
+      return c;
+    }
+
+    private void store(LocalVariable v) {
+      Class<?> c = variableClass(v);
+      _mv.visitVarInsn(asmType(c).getOpcode(ISTORE), _slots.get(v));
+      FrameEntry e = _frame.get(v);
+      if (e != null) { e.assigned = true; }
+    }
+
+
+    /* * * * * * * * * *
+     * CLASSES
+     * * * * * * * * * */
+
+    /**
+     * Whether compiled code can refer to the given class: it must be public, and resolving its name
+     * must produce the same class.
+     */
+    private boolean isAccessible(Class<?> c) {
+      while (c.isArray()) { c = c.getComponentType(); }
+      if (c.isPrimitive()) { return true; }
+      Boolean result = _accessible.get(c);
+      if (result == null) {
+        result = false;
+        if (Modifier.isPublic(c.getModifiers())) {
+          try { result = (Class.forName(c.getName(), false, _classLoader) == c); }
+          catch (ClassNotFoundException e) { /* leave result false */ }
+          catch (LinkageError e) { /* leave result false */ }
+        }
+        _accessible.put(c, result);
+      }
+      return result;
+    }
+
+    private void requireAccessible(Class<?> c) {
+      if (!isAccessible(c)) { throw new UnsupportedConstructException("Inaccessible class " + c.getName()); }
+    }
+
+    private void requirePublic(int modifiers, String name) {
+      if (!Modifier.isPublic(modifiers)) { throw new UnsupportedConstructException("Inaccessible member " + name); }
+    }
+
+    /** The class used to represent a value of class {@code c} in compiled code. */
+    private Class<?> jvmClass(Class<?> c) { return isAccessible(c) ? c : Object.class; }
+
+    /** The class of the value produced by the given expression, according to the type checker. */
+    private Class<?> staticClass(Expression e) { return _ts.erasedClass(getType(e)).value(); }
+
+    private org.objectweb.asm.Type asmType(Class<?> c) { return org.objectweb.asm.Type.getType(c); }
+
+    private String internalName(Class<?> c) { return org.objectweb.asm.Type.getInternalName(c); }
+
+
+    /* * * * * * * * * *
+     * STACK OPERATIONS
+     * * * * * * * * * */
+
+    private boolean isWide(Class<?> c) { return c.equals(long.class) || c.equals(double.class); }
+
+    private void push(int i) {
+      if (i >= -1 && i <= 5) { _mv.visitInsn(ICONST_0 + i); }
+      else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) { _mv.visitIntInsn(BIPUSH, i); }
+      else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) { _mv.visitIntInsn(SIPUSH, i); }
+      else { _mv.visitLdcInsn(i); }
+    }
+
+    private void pop(Class<?> c) {
+      if (isWide(c)) { _mv.visitInsn(POP2); }
+      else if (!c.equals(void.class)) { _mv.visitInsn(POP); }
+    }
+
+    private void dup(Class<?> c) { _mv.visitInsn(isWide(c) ? DUP2 : DUP); }
+
+    /** Duplicate the top value, placing the copy beneath an array and index. */
+    private void dupBelowArrayElement(Class<?> c) { _mv.visitInsn(isWide(c) ? DUP2_X2 : DUP_X2); }
+
+    private void pushDefault(Class<?> c) {
+      if (c.equals(long.class)) { _mv.visitInsn(LCONST_0); }
+      else if (c.equals(float.class)) { _mv.visitInsn(FCONST_0); }
+      else if (c.equals(double.class)) { _mv.visitInsn(DCONST_0); }
+      else if (c.isPrimitive()) { _mv.visitInsn(ICONST_0); }
+      else { _mv.visitInsn(ACONST_NULL); }
+    }
+
+    /** Push the given constant, returning its class. */
+    private Class<?> constant(Object val) {
+      if (val == null) { _mv.visitInsn(ACONST_NULL); return Object.class; }
+      else if (val instanceof Boolean) { push(((Boolean) val) ? 1 : 0); return boolean.class; }
+      else if (val instanceof Character) { push((Character) val); return char.class; }
+      else if (val instanceof Byte) { push((Byte) val); return byte.class; }
+      else if (val instanceof Short) { push((Short) val); return short.class; }
+      else if (val instanceof Integer) { push((Integer) val); return int.class; }
+      else if (val instanceof Long) { _mv.visitLdcInsn(val); return long.class; }
+      else if (val instanceof Float) { _mv.visitLdcInsn(val); return float.class; }
+      else if (val instanceof Double) { _mv.visitLdcInsn(val); return double.class; }
+      else if (val instanceof String) { _mv.visitLdcInsn(val); return String.class; }
+      else { throw new UnsupportedConstructException("Constant " + val.getClass().getName()); }
+    }
+
+    private void newArray(Class<?> component) {
+      if (component.isPrimitive()) {
+        int t;
+        if (component.equals(boolean.class)) { t = T_BOOLEAN; }
+        else if (component.equals(char.class)) { t = T_CHAR; }
+        else if (component.equals(byte.class)) { t = T_BYTE; }
+        else if (component.equals(short.class)) { t = T_SHORT; }
+        else if (component.equals(int.class)) { t = T_INT; }
+        else if (component.equals(long.class)) { t = T_LONG; }
+        else if (component.equals(float.class)) { t = T_FLOAT; }
+        else { t = T_DOUBLE; }
+        _mv.visitIntInsn(NEWARRAY, t);
+      }
+      else { _mv.visitTypeInsn(ANEWARRAY, internalName(component)); }
+    }
+
+
+    /* * * * * * * * * *
+     * CONVERSIONS
+     * * * * * * * * * */
+
+    private Class<?> boxedClass(Class<?> c) {
+      for (int i = 0; i < PRIMITIVES.length; i++) { if (PRIMITIVES[i].equals(c)) { return WRAPPERS[i]; } }
+      return null;
+    }
+
+    private Class<?> unboxedClass(Class<?> c) {
+      for (int i = 0; i < WRAPPERS.length; i++) { if (WRAPPERS[i].equals(c)) { return PRIMITIVES[i]; } }
+      return null;
+    }
+
+    /** Index of the computational type of a primitive: int, long, float, or double. */
+    private int computationalIndex(Class<?> c) {
+      if (c.equals(long.class)) { return 1; }
+      else if (c.equals(float.class)) { return 2; }
+      else if (c.equals(double.class)) { return 3; }
+      else { return 0; }
+    }
+
+    private void primitiveConvert(Class<?> from, Class<?> to) {
+      if (from.equals(to)) { return; }
+      if (from.equals(boolean.class) || to.equals(boolean.class)) {
+        throw new UnsupportedConstructException("Conversion from " + from + " to " + to);
+      }
+      int op = CONVERSIONS[computationalIndex(from)][computationalIndex(to)];
+      if (op != NOP) { _mv.visitInsn(op); }
+      if (to.equals(byte.class)) { _mv.visitInsn(I2B); }
+      else if (to.equals(short.class)) { _mv.visitInsn(I2S); }
+      else if (to.equals(char.class)) { _mv.visitInsn(I2C); }
+    }
+
+    /**
+     * Convert the value on top of the stack from class {@code from} to class {@code to}.  Boxing,
+     * unboxing, primitive conversions, and casts are inserted as necessary.
+     */
+    private void coerce(Class<?> from, Class<?> to) {
+      if (from.equals(to) || to.equals(void.class)) { return; }
+      if (from.equals(void.class)) { throw new UnsupportedConstructException("Void value"); }
+      if (to.isPrimitive()) {
+        if (!from.isPrimitive()) {
+          Class<?> unboxed = unboxedClass(from);
+          if (unboxed == null) {
+            if (!from.equals(Object.class)) {
+              throw new UnsupportedConstructException("Conversion from " + from.getName() + " to " + to);
+            }
+            unboxed = to;
+            _mv.visitTypeInsn(CHECKCAST, internalName(boxedClass(to)));
+          }
+          _mv.visitMethodInsn(INVOKEVIRTUAL, internalName(boxedClass(unboxed)), unboxed.getName() + "Value",
+                              "()" + asmType(unboxed).getDescriptor(), false);
+          from = unboxed;
+        }
+        primitiveConvert(from, to);
+      }
+      else {
+        if (from.isPrimitive()) {
+          Class<?> unboxedTo = unboxedClass(to);
+          if (unboxedTo != null) { primitiveConvert(from, unboxedTo); from = unboxedTo; }
+          Class<?> boxed = boxedClass(from);
+          _mv.visitMethodInsn(INVOKESTATIC, internalName(boxed), "valueOf",
+                              "(" + asmType(from).getDescriptor() + ")" + asmType(boxed).getDescriptor(), false);
+          from = boxed;
+        }
+        if (!to.isAssignableFrom(from)) {
+          requireAccessible(to);
+          _mv.visitTypeInsn(CHECKCAST, internalName(to));
+        }
+      }
+    }
+
+
+    /* * * * * * * * * *
+     * EXPRESSIONS
+     * * * * * * * * * */
+
+    /**
+     * Compile the given expression, leaving its value on the stack.  Mirrors
+     * {@link ExpressionEvaluator#value}.
+     * @return  The class of the value on the stack.
+     */
+    private Class<?> value(Expression e) {
+      Class<?> result;
+      if (hasValue(e)) { result = constant(getValue(e)); }
+      else if (hasTranslation(e)) { result = value(getTranslation(e)); }
+      else { result = e.acceptVisitor(_expressionVisitor); }
+      if (hasConvertedType(e)) {
+        Class<?> target = getConvertedType(e).value();
+        coerce(result, target);
+        result = target;
+      }
+      if (hasCheckedType(e)) {
+        Class<?> target = getCheckedType(e).value();
+        requireAccessible(target);
+        coerce(result, target);
+        result = target;
+      }
+      return result;
+    }
+
+    /** Compile a boolean expression, jumping to {@code ifFalse} if it is false. */
+    private void condition(Expression e, Label ifFalse) {
+      coerce(value(e), boolean.class);
+      _mv.visitJumpInsn(IFEQ, ifFalse);
+    }
+
+    /** Whether the given expression can be evaluated twice without any visible difference. */
+    private boolean isSimple(Expression e) {
+      if (hasValue(e)) { return true; }
+      else if (hasTranslation(e)) { return isSimple(getTranslation(e)); }
+      else { return e instanceof VariableAccess; }
+    }
+
+    /** Unwrap the translations the checker may have applied to the left side of an assignment. */
+    private Expression lvalue(Expression e) {
+      while ((e instanceof AmbiguousName || e instanceof ObjectFieldAccess) && hasTranslation(e)) {
+        e = getTranslation(e);
+      }
+      return e;
+    }
+
+    /**
+     * Push an array and index for the given array access.
+     * @return  The class of the array's elements.
+     */
+    private Class<?> arrayAndIndex(ArrayAccess node) {
+      Class<?> arrayClass = value(node.getExpression());
+      if (!arrayClass.isArray()) { throw new UnsupportedConstructException("Inaccessible array type"); }
+      coerce(value(node.getCellNumber()), int.class);
+      return arrayClass.getComponentType();
+    }
+
+    /** Compile a binary primitive operation, where {@code opcode} is the int version of the instruction. */
+    private Class<?> binary(Expression left, Expression right, int opcode) {
+      Class<?> leftClass = value(left);
+      Class<?> rightClass = value(right);
+      if (!leftClass.isPrimitive() || leftClass.equals(void.class)) {
+        throw new UnsupportedConstructException("Binary operation on " + leftClass.getName());
+      }
+      if (opcode == ISHL || opcode == ISHR || opcode == IUSHR) {
+        if (rightClass.equals(long.class)) { _mv.visitInsn(L2I); }
+        else if (!rightClass.equals(int.class)) {
+          throw new UnsupportedConstructException("Shift by " + rightClass.getName());
+        }
+      }
+      else if (!leftClass.equals(rightClass)) {
+        throw new UnsupportedConstructException("Mismatched operands " + leftClass + " and " + rightClass);
+      }
+      _mv.visitInsn(asmType(leftClass).getOpcode(opcode));
+      return leftClass;
+    }
+
+    /** Compile a string concatenation. */
+    private Class<?> concatenate(Expression left, Expression right) {
+      _mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+      _mv.visitInsn(DUP);
+      _mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
+      coerce(value(left), Object.class);
+      _mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append",
+                          "(Ljava/lang/Object;)Ljava/lang/StringBuilder;", false);
+      coerce(value(right), Object.class);
+      _mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append",
+                          "(Ljava/lang/Object;)Ljava/lang/StringBuilder;", false);
+      _mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
+      return String.class;
+    }
+
+    /**
+     * Compile a comparison.
+     * @param intJump  The {@code IF_ICMP} instruction that jumps if the comparison is true.
+     * @param zeroJump  The equivalent instruction comparing to 0, used with {@code LCMP}, etc.
+     */
+    private Class<?> compare(BinaryExpression node, int intJump, int zeroJump) {
+      Class<?> leftClass = value(node.getLeftExpression());
+      Class<?> rightClass = value(node.getRightExpression());
+      Label ifTrue = new Label();
+      Label end = new Label();
+      if (!leftClass.isPrimitive() && !rightClass.isPrimitive()) {
+        if (intJump != IF_ICMPEQ && intJump != IF_ICMPNE) {
+          throw new UnsupportedConstructException("Reference comparison");
+        }
+        _mv.visitJumpInsn(intJump == IF_ICMPEQ ? IF_ACMPEQ : IF_ACMPNE, ifTrue);
+      }
+      else if (!leftClass.equals(rightClass)) {
+        throw new UnsupportedConstructException("Mismatched operands " + leftClass + " and " + rightClass);
+      }
+      else if (leftClass.equals(long.class)) {
+        _mv.visitInsn(LCMP);
+        _mv.visitJumpInsn(zeroJump, ifTrue);
+      }
+      else if (leftClass.equals(float.class) || leftClass.equals(double.class)) {
+        // NaN must compare false, so the NaN result of the comparison must make the jump fail
+        boolean nanIsGreater = (zeroJump == IFLT || zeroJump == IFLE);
+        if (leftClass.equals(float.class)) { _mv.visitInsn(nanIsGreater ? FCMPG : FCMPL); }
+        else { _mv.visitInsn(nanIsGreater ? DCMPG : DCMPL); }
+        _mv.visitJumpInsn(zeroJump, ifTrue);
+      }
+      else { _mv.visitJumpInsn(intJump, ifTrue); }
+      _mv.visitInsn(ICONST_0);
+      _mv.visitJumpInsn(GOTO, end);
+      _mv.visitLabel(ifTrue);
+      _mv.visitInsn(ICONST_1);
+      _mv.visitLabel(end);
+      return boolean.class;
+    }
+
+    /**
+     * Compile an operator-assignment expression.
+     * @param opcode  The int version of the instruction, or {@code -1} for a string concatenation.
+     */
+    private Class<?> opAssign(AssignExpression node, int opcode) {
+      Expression left = lvalue(node.getLeftExpression());
+      LocalVariable var = null;
+      Class<?> target;
+      if (left instanceof VariableAccess) {
+        var = getVariable(left);
+        target = variableClass(var);
+      }
+      else if (left instanceof ArrayAccess && isSimple(((ArrayAccess) left).getExpression()) &&
+               isSimple(((ArrayAccess) left).getCellNumber())) {
+        // LEFT_EXPRESSION evaluates the array and index a second time (see ExpressionEvaluator)
+        target = arrayAndIndex((ArrayAccess) left);
+      }
+      else { throw new UnsupportedConstructException(left); }
+
+      Class<?> result;
+      if (opcode == -1) { result = concatenate(getLeftExpression(node), node.getRightExpression()); }
+      else { result = binary(getLeftExpression(node), node.getRightExpression(), opcode); }
+      coerce(result, target);
+      if (var == null) {
+        dupBelowArrayElement(target);
+        _mv.visitInsn(asmType(target).getOpcode(IASTORE));
+      }
+      else {
+        dup(target);
+        store(var);
+      }
+      return target;
+    }
+
+    /** Compile an increment or decrement expression. */
+    private Class<?> increment(UnaryExpression node, boolean isIncrement, boolean isPrefix) {
+      Expression operand = lvalue(node.getExpression());
+      LocalVariable var = null;
+      Class<?> target;
+      if (operand instanceof VariableAccess) {
+        var = getVariable(operand);
+        target = variableClass(var);
+      }
+      else if (operand instanceof ArrayAccess && isSimple(((ArrayAccess) operand).getExpression()) &&
+               isSimple(((ArrayAccess) operand).getCellNumber())) {
+        target = arrayAndIndex((ArrayAccess) operand);
+      }
+      else { throw new UnsupportedConstructException(operand); }
+
+      Class<?> c = value(getLeftExpression(node));
+      if (!c.isPrimitive() || c.equals(boolean.class)) {
+        throw new UnsupportedConstructException("Increment of " + c.getName());
+      }
+      if (!isPrefix) {
+        if (var == null) { dupBelowArrayElement(c); }
+        else { dup(c); }
+      }
+      Class<?> computational = computationalIndex(c) == 0 ? int.class : c;
+      constant(primitiveOne(computational));
+      _mv.visitInsn(asmType(computational).getOpcode(isIncrement ? IADD : ISUB));
+      primitiveConvert(computational, c);
+      if (isPrefix) {
+        if (var == null) { dupBelowArrayElement(c); }
+        else { dup(c); }
+      }
+      coerce(c, target);
+      if (var == null) { _mv.visitInsn(asmType(target).getOpcode(IASTORE)); }
+      else { store(var); }
+      return c;
+    }
+
+    private Object primitiveOne(Class<?> c) {
+      if (c.equals(long.class)) { return 1L; }
+      else if (c.equals(float.class)) { return 1.0f; }
+      else if (c.equals(double.class)) { return 1.0; }
+      else { return 1; }
+    }
+
+    /** Compile a field access; {@code receiver} is null for static accesses. */
+    private Class<?> field(Node node, Expression receiver) {
+      DJField f = getField(node);
+      if (f instanceof ArrayLengthField) {
+        if (receiver == null || !value(receiver).isArray()) {
+          throw new UnsupportedConstructException("Inaccessible array type");
+        }
+        _mv.visitInsn(ARRAYLENGTH);
+        return int.class;
+      }
+      Option<Field> reflected = SymbolUtil.reflectionField(f);
+      if (reflected.isNone()) { throw new UnsupportedConstructException("Field " + f.declaredName()); }
+      Field rf = reflected.unwrap();
+      Class<?> owner = rf.getDeclaringClass();
+      requirePublic(rf.getModifiers(), rf.getName());
+      requireAccessible(owner);
+      boolean isStatic = Modifier.isStatic(rf.getModifiers());
+      if (receiver != null) {
+        Class<?> receiverClass = value(receiver);
+        if (isStatic) { pop(receiverClass); }
+        else { coerce(receiverClass, owner); }
+      }
+      else if (!isStatic) { throw new UnsupportedConstructException("Field of this"); }
+      _mv.visitFieldInsn(isStatic ? GETSTATIC : GETFIELD, internalName(owner), rf.getName(),
+                         asmType(rf.getType()).getDescriptor());
+      return jvmClass(rf.getType());
+    }
+
+    /** Compile a method call; {@code receiver} is null for static calls. */
+    private Class<?> call(MethodCall node, Expression receiver) {
+      Option<Method> reflected = SymbolUtil.reflectionMethod(getMethod(node));
+      if (reflected.isNone()) { throw new UnsupportedConstructException("Method " + node.getMethodName()); }
+      Method m = reflected.unwrap();
+      Class<?> owner = m.getDeclaringClass();
+      requirePublic(m.getModifiers(), m.getName());
+      requireAccessible(owner);
+      boolean isStatic = Modifier.isStatic(m.getModifiers());
+      if (isStatic && owner.isInterface()) {
+        throw new UnsupportedConstructException("Static interface method " + m.getName());
+      }
+      if (receiver != null) {
+        Class<?> receiverClass = value(receiver);
+        if (isStatic) { pop(receiverClass); }
+        else { coerce(receiverClass, owner); }
+      }
+      else if (!isStatic) { throw new UnsupportedConstructException("Method of this"); }
+      arguments(node.getArguments(), m.getParameterTypes());
+      int opcode = isStatic ? INVOKESTATIC : owner.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL;
+      _mv.visitMethodInsn(opcode, internalName(owner), m.getName(),
+                          org.objectweb.asm.Type.getMethodDescriptor(m), owner.isInterface());
+      return jvmClass(m.getReturnType());
+    }
+
+    /** @param args  May be null, meaning there are no arguments */
+    private void arguments(List<Expression> args, Class<?>[] params) {
+      int size = (args == null) ? 0 : args.size();
+      if (size != params.length) { throw new UnsupportedConstructException("Argument count mismatch"); }
+      for (int i = 0; i < size; i++) {
+        requireAccessible(params[i]);
+        coerce(value(args.get(i)), params[i]);
+      }
+    }
+
+
+    private class ExpressionVisitor extends AbstractVisitor<Class<?>> {
+
+      @Override public Class<?> defaultCase(Node node) { throw new UnsupportedConstructException(node); }
+
+      @Override public Class<?> visit(Literal node) { return constant(node.getValue()); }
+
+      @Override public Class<?> visit(VariableAccess node) { return load(getVariable(node)); }
+
+      @Override public Class<?> visit(SimpleFieldAccess node) {
+        if (hasDJClass(node)) { throw new UnsupportedConstructException("Field of this"); }
+        return field(node, null);
+      }
+
+      @Override public Class<?> visit(ObjectFieldAccess node) { return field(node, node.getExpression()); }
+
+      @Override public Class<?> visit(StaticFieldAccess node) { return field(node, null); }
+
+      @Override public Class<?> visit(SimpleMethodCall node) {
+        if (hasDJClass(node)) { throw new UnsupportedConstructException("Method of this"); }
+        return call(node, null);
+      }
+
+      @Override public Class<?> visit(ObjectMethodCall node) { return call(node, node.getExpression()); }
+
+      @Override public Class<?> visit(StaticMethodCall node) { return call(node, null); }
+
+      @Override public Class<?> visit(SimpleAllocation node) {
+        if (hasEnclosingThis(node)) { throw new UnsupportedConstructException("Inner class allocation"); }
+        Option<Constructor<?>> reflected = SymbolUtil.reflectionConstructor(getConstructor(node));
+        if (reflected.isNone()) { throw new UnsupportedConstructException(node); }
+        Constructor<?> k = reflected.unwrap();
+        Class<?> owner = k.getDeclaringClass();
+        requirePublic(k.getModifiers(), owner.getName());
+        requireAccessible(owner);
+        if (Modifier.isAbstract(owner.getModifiers()) ||
+            (owner.getEnclosingClass() != null && !Modifier.isStatic(owner.getModifiers()))) {
+          throw new UnsupportedConstructException("Allocation of " + owner.getName());
+        }
+        _mv.visitTypeInsn(NEW, internalName(owner));
+        _mv.visitInsn(DUP);
+        arguments(node.getArguments(), k.getParameterTypes());
+        _mv.visitMethodInsn(INVOKESPECIAL, internalName(owner), "<init>",
+                            org.objectweb.asm.Type.getConstructorDescriptor(k), false);
+        return owner;
+      }
+
+      @Override public Class<?> visit(ArrayAllocation node) {
+        if (node.getInitialization() != null) { return node.getInitialization().acceptVisitor(this); }
+        Class<?> c = getErasedType(node).value();
+        requireAccessible(c);
+        List<Expression> sizes = node.getSizes();
+        for (Expression size : sizes) { coerce(value(size), int.class); }
+        if (sizes.size() == 1) { newArray(c.getComponentType()); }
+        else { _mv.visitMultiANewArrayInsn(asmType(c).getDescriptor(), sizes.size()); }
+        return c;
+      }
+
+      @Override public Class<?> visit(ArrayInitializer node) {
+        Class<?> c = getErasedType(node).value();
+        requireAccessible(c);
+        Class<?> component = c.getComponentType();
+        push(node.getCells().size());
+        newArray(component);
+        int i = 0;
+        for (Expression cell : node.getCells()) {
+          dup(c);
+          push(i++);
+          coerce(value(cell), component);
+          _mv.visitInsn(asmType(component).getOpcode(IASTORE));
+        }
+        return c;
+      }
+
+      @Override public Class<?> visit(ArrayAccess node) {
+        Class<?> component = arrayAndIndex(node);
+        _mv.visitInsn(asmType(component).getOpcode(IALOAD));
+        return component;
+      }
+
+      @Override public Class<?> visit(SimpleAssignExpression node) {
+        Expression left = lvalue(node.getLeftExpression());
+        if (left instanceof VariableAccess) {
+          LocalVariable var = getVariable(left);
+          Class<?> c = variableClass(var);
+          coerce(value(node.getRightExpression()), c);
+          dup(c);
+          store(var);
+          return c;
+        }
+        else if (left instanceof ArrayAccess) {
+          Class<?> component = arrayAndIndex((ArrayAccess) left);
+          coerce(value(node.getRightExpression()), component);
+          dupBelowArrayElement(component);
+          _mv.visitInsn(asmType(component).getOpcode(IASTORE));
+          return component;
+        }
+        else { throw new UnsupportedConstructException(left); }
+      }
+
+      @Override public Class<?> visit(CastExpression node) {
+        // cast checks/conversions are handled by value()
+        return value(node.getExpression());
+      }
+
+      @Override public Class<?> visit(InstanceOfExpression node) {
+        Class<?> c = value(node.getExpression());
+        if (c.isPrimitive()) { throw new UnsupportedConstructException(node); }
+        Class<?> target = getErasedType(node.getReferenceType()).value();
+        requireAccessible(target);
+        _mv.visitTypeInsn(INSTANCEOF, internalName(target));
+        return boolean.class;
+      }
+
+      @Override public Class<?> visit(ConditionalExpression node) {
+        Class<?> c = jvmClass(staticClass(node));
+        Label ifFalse = new Label();
+        Label end = new Label();
+        condition(node.getConditionExpression(), ifFalse);
+        coerce(value(node.getIfTrueExpression()), c);
+        _mv.visitJumpInsn(GOTO, end);
+        _mv.visitLabel(ifFalse);
+        coerce(value(node.getIfFalseExpression()), c);
+        _mv.visitLabel(end);
+        return c;
+      }
+
+      @Override public Class<?> visit(AndExpression node) {
+        Label ifFalse = new Label();
+        Label end = new Label();
+        condition(node.getLeftExpression(), ifFalse);
+        coerce(value(node.getRightExpression()), boolean.class);
+        _mv.visitJumpInsn(GOTO, end);
+        _mv.visitLabel(ifFalse);
+        _mv.visitInsn(ICONST_0);
+        _mv.visitLabel(end);
+        return boolean.class;
+      }
+
+      @Override public Class<?> visit(OrExpression node) {
+        Label ifTrue = new Label();
+        Label end = new Label();
+        coerce(value(node.getLeftExpression()), boolean.class);
+        _mv.visitJumpInsn(IFNE, ifTrue);
+        coerce(value(node.getRightExpression()), boolean.class);
+        _mv.visitJumpInsn(GOTO, end);
+        _mv.visitLabel(ifTrue);
+        _mv.visitInsn(ICONST_1);
+        _mv.visitLabel(end);
+        return boolean.class;
+      }
+
+      @Override public Class<?> visit(NotExpression node) {
+        coerce(value(node.getExpression()), boolean.class);
+        _mv.visitInsn(ICONST_1);
+        _mv.visitInsn(IXOR);
+        return boolean.class;
+      }
+
+      @Override public Class<?> visit(ComplementExpression node) {
+        Class<?> c = value(node.getExpression());
+        if (c.equals(long.class)) { _mv.visitLdcInsn(-1L); _mv.visitInsn(LXOR); }
+        else if (c.equals(int.class)) { _mv.visitInsn(ICONST_M1); _mv.visitInsn(IXOR); }
+        else { throw new UnsupportedConstructException("Complement of " + c.getName()); }
+        return c;
+      }
+
+      @Override public Class<?> visit(PlusExpression node) {
+        Class<?> c = value(node.getExpression());
+        if (!c.isPrimitive() || c.equals(boolean.class)) {
+          throw new UnsupportedConstructException("Unary plus of " + c.getName());
+        }
+        return c;
+      }
+
+      @Override public Class<?> visit(MinusExpression node) {
+        Class<?> c = value(node.getExpression());
+        if (!c.isPrimitive() || c.equals(boolean.class)) {
+          throw new UnsupportedConstructException("Negation of " + c.getName());
+        }
+        _mv.visitInsn(asmType(c).getOpcode(INEG));
+        return c;
+      }
+
+      @Override public Class<?> visit(AddExpression node) {
+        if (getOperation(node) == ExpressionEvaluator.CONCATENATE) {
+          return concatenate(node.getLeftExpression(), node.getRightExpression());
+        }
+        else { return binary(node.getLeftExpression(), node.getRightExpression(), IADD); }
+      }
+
+      @Override public Class<?> visit(SubtractExpression node) {
+        return binary(node.getLeftExpression(), node.getRightExpression(), ISUB);
+      }
+
+      @Override public Class<?> visit(MultiplyExpression node) {
+        return binary(node.getLeftExpression(), node.getRightExpression(), IMUL);
+      }
+
+      @Override public Class<?> visit(DivideExpression node) {
+        return binary(node.getLeftExpression(), node.getRightExpression(), IDIV);
+      }
+
+      @Override public Class<?> visit(RemainderExpression node) {
+        return binary(node.getLeftExpression(), node.getRightExpression(), IREM);
+      }
+
+      @Override public Class<?> visit(BitAndExpression node) {
+        return binary(node.getLeftExpression(), node.getRightExpression(), IAND);
+      }
+
+      @Override public Class<?> visit(BitOrExpression node) {
+        return binary(node.getLeftExpression(), node.getRightExpression(), IOR);
+      }
+
+      @Override public Class<?> visit(ExclusiveOrExpression node) {
+        return binary(node.getLeftExpression(), node.getRightExpression(), IXOR);
+      }
+
+      @Override public Class<?> visit(ShiftLeftExpression node) {
+        return binary(node.getLeftExpression(), node.getRightExpression(), ISHL);
+      }
+
+      @Override public Class<?> visit(ShiftRightExpression node) {
+        return binary(node.getLeftExpression(), node.getRightExpression(), ISHR);
+      }
+
+      @Override public Class<?> visit(UnsignedShiftRightExpression node) {
+        return binary(node.getLeftExpression(), node.getRightExpression(), IUSHR);
+      }
+
+      @Override public Class<?> visit(EqualExpression node) { return compare(node, IF_ICMPEQ, IFEQ); }
+      @Override public Class<?> visit(NotEqualExpression node) { return compare(node, IF_ICMPNE, IFNE); }
+      @Override public Class<?> visit(LessExpression node) { return compare(node, IF_ICMPLT, IFLT); }
+      @Override public Class<?> visit(LessOrEqualExpression node) { return compare(node, IF_ICMPLE, IFLE); }
+      @Override public Class<?> visit(GreaterExpression node) { return compare(node, IF_ICMPGT, IFGT); }
+      @Override public Class<?> visit(GreaterOrEqualExpression node) { return compare(node, IF_ICMPGE, IFGE); }
+
+      @Override public Class<?> visit(AddAssignExpression node) {
+        return opAssign(node, getOperation(node) == ExpressionEvaluator.CONCATENATE ? -1 : IADD);
+      }
+      @Override public Class<?> visit(SubtractAssignExpression node) { return opAssign(node, ISUB); }
+      @Override public Class<?> visit(MultiplyAssignExpression node) { return opAssign(node, IMUL); }
+      @Override public Class<?> visit(DivideAssignExpression node) { return opAssign(node, IDIV); }
+      @Override public Class<?> visit(RemainderAssignExpression node) { return opAssign(node, IREM); }
+      @Override public Class<?> visit(BitAndAssignExpression node) { return opAssign(node, IAND); }
+      @Override public Class<?> visit(BitOrAssignExpression node) { return opAssign(node, IOR); }
+      @Override public Class<?> visit(ExclusiveOrAssignExpression node) { return opAssign(node, IXOR); }
+      @Override public Class<?> visit(ShiftLeftAssignExpression node) { return opAssign(node, ISHL); }
+      @Override public Class<?> visit(ShiftRightAssignExpression node) { return opAssign(node, ISHR); }
+      @Override public Class<?> visit(UnsignedShiftRightAssignExpression node) { return opAssign(node, IUSHR); }
+
+      @Override public Class<?> visit(PreIncrement node) { return increment(node, true, true); }
+      @Override public Class<?> visit(PreDecrement node) { return increment(node, false, true); }
+      @Override public Class<?> visit(PostIncrement node) { return increment(node, true, false); }
+      @Override public Class<?> visit(PostDecrement node) { return increment(node, false, false); }
+
+    }
+
+
+    /* * * * * * * * * *
+     * STATEMENTS
+     * * * * * * * * * */
+
+    /** Find the target of a {@code break} or {@code continue}. */
+    private JumpTarget target(String label, boolean isContinue) {
+      for (JumpTarget t : _targets) {
+        if (label == null) {
+          if (t.continueLabel != null) { return t; }
+        }
+        else if (t.hasLabel(label) && (!isContinue || t.continueLabel != null)) { return t; }
+      }
+      throw new UnsupportedConstructException("Missing target for " + label);
+    }
+
+    private class StatementVisitor extends AbstractVisitor<Void> {
+
+      @Override public Void defaultCase(Node node) { throw new UnsupportedConstructException(node); }
+
+      @Override public Void visit(EmptyStatement node) { return null; }
+
+      @Override public Void visit(VariableDeclaration node) {
+        // as in StatementEvaluator, the variable is bound before the initializer is evaluated
+        LocalVariable var = getVariable(node);
+        declare(var);
+        Class<?> c = variableClass(var);
+        if (node.getInitializer() == null) { pushDefault(c); }
+        else { coerce(value(node.getInitializer()), c); }
+        store(var);
+        return null;
+      }
+
+      @Override public Void visit(ExpressionStatement node) {
+        if (hasStatementTranslation(node)) { getStatementTranslation(node).acceptVisitor(this); }
+        else { pop(value(node.getExpression())); }
+        return null;
+      }
+
+      @Override public Void visit(BlockStatement node) {
+        for (Node n : node.getStatements()) { n.acceptVisitor(this); }
+        return null;
+      }
+
+      @Override public Void visit(IfThenStatement node) {
+        Label end = new Label();
+        condition(node.getCondition(), end);
+        node.getThenStatement().acceptVisitor(this);
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(IfThenElseStatement node) {
+        Label ifFalse = new Label();
+        Label end = new Label();
+        condition(node.getCondition(), ifFalse);
+        node.getThenStatement().acceptVisitor(this);
+        _mv.visitJumpInsn(GOTO, end);
+        _mv.visitLabel(ifFalse);
+        node.getElseStatement().acceptVisitor(this);
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(WhileStatement node) {
+        Label top = new Label();
+        Label end = new Label();
+        _mv.visitLabel(top);
+        condition(node.getCondition(), end);
+        body(node, node.getBody(), end, top);
+        _mv.visitJumpInsn(GOTO, top);
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(DoStatement node) {
+        Label top = new Label();
+        Label next = new Label();
+        Label end = new Label();
+        _mv.visitLabel(top);
+        body(node, node.getBody(), end, next);
+        _mv.visitLabel(next);
+        coerce(value(node.getCondition()), boolean.class);
+        _mv.visitJumpInsn(IFNE, top);
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(ForStatement node) {
+        Label top = new Label();
+        Label next = new Label();
+        Label end = new Label();
+        if (node.getInitialization() != null) {
+          for (Node n : node.getInitialization()) { n.acceptVisitor(this); }
+        }
+        _mv.visitLabel(top);
+        if (node.getCondition() != null) { condition(node.getCondition(), end); }
+        body(node, node.getBody(), end, next);
+        _mv.visitLabel(next);
+        if (node.getUpdate() != null) {
+          for (Node n : node.getUpdate()) { n.acceptVisitor(this); }
+        }
+        _mv.visitJumpInsn(GOTO, top);
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(ForEachStatement node) {
+        LocalVariable param = getVariable(node.getParameter());
+        declare(param);
+        Class<?> paramClass = variableClass(param);
+        Class<?> collection = value(node.getCollection());
+        Label top = new Label();
+        Label next = new Label();
+        Label end = new Label();
+        if (staticClass(node.getCollection()).isArray()) {
+          if (!collection.isArray()) { throw new UnsupportedConstructException("Inaccessible array type"); }
+          int array = allocate(collection);
+          int length = allocate(int.class);
+          int index = allocate(int.class);
+          _mv.visitVarInsn(ASTORE, array);
+          _mv.visitVarInsn(ALOAD, array);
+          _mv.visitInsn(ARRAYLENGTH);
+          _mv.visitVarInsn(ISTORE, length);
+          _mv.visitInsn(ICONST_0);
+          _mv.visitVarInsn(ISTORE, index);
+          _mv.visitLabel(top);
+          _mv.visitVarInsn(ILOAD, index);
+          _mv.visitVarInsn(ILOAD, length);
+          _mv.visitJumpInsn(IF_ICMPGE, end);
+          _mv.visitVarInsn(ALOAD, array);
+          _mv.visitVarInsn(ILOAD, index);
+          Class<?> component = collection.getComponentType();
+          _mv.visitInsn(asmType(component).getOpcode(IALOAD));
+          coerce(component, paramClass);
+          store(param);
+          body(node, node.getBody(), end, next);
+          _mv.visitLabel(next);
+          _mv.visitIincInsn(index, 1);
+          _mv.visitJumpInsn(GOTO, top);
+        }
+        else {
+          // the element type is only known statically, so unboxing might require a conversion
+          if (paramClass.isPrimitive()) { throw new UnsupportedConstructException("Primitive iteration variable"); }
+          int iterator = allocate(Object.class);
+          coerce(collection, Iterable.class);
+          _mv.visitMethodInsn(INVOKEINTERFACE, "java/lang/Iterable", "iterator", "()Ljava/util/Iterator;", true);
+          _mv.visitVarInsn(ASTORE, iterator);
+          _mv.visitLabel(top);
+          _mv.visitVarInsn(ALOAD, iterator);
+          _mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z", true);
+          _mv.visitJumpInsn(IFEQ, end);
+          _mv.visitVarInsn(ALOAD, iterator);
+          _mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;", true);
+          coerce(Object.class, paramClass);
+          store(param);
+          body(node, node.getBody(), end, top);
+          _mv.visitJumpInsn(GOTO, top);
+        }
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      /** Compile a loop body, with {@code loop} as the target for {@code break} and {@code continue}. */
+      private void body(Node loop, Node body, Label breakLabel, Label continueLabel) {
+        _targets.addFirst(new JumpTarget(loop, breakLabel, continueLabel));
+        body.acceptVisitor(this);
+        _targets.removeFirst();
+      }
+
+      @Override public Void visit(LabeledStatement node) {
+        Label end = new Label();
+        _targets.addFirst(new JumpTarget(node, end, null));
+        node.getStatement().acceptVisitor(this);
+        _targets.removeFirst();
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(BreakStatement node) {
+        _mv.visitJumpInsn(GOTO, target(node.getLabel(), false).breakLabel);
+        return null;
+      }
+
+      @Override public Void visit(ContinueStatement node) {
+        _mv.visitJumpInsn(GOTO, target(node.getLabel(), true).continueLabel);
+        return null;
+      }
+
+      @Override public Void visit(ThrowStatement node) {
+        // a null value produces a NullPointerException, as required
+        coerce(value(node.getExpression()), Throwable.class);
+        _mv.visitInsn(ATHROW);
+        return null;
+      }
+
+    }
+
+  }
+
+}
@@ -0,0 +1,100 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import java.io.StringReader;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.rice.cs.plt.iter.IterUtil;
+import edu.rice.cs.plt.tuple.Option;
+
+import koala.dynamicjava.parser.wrapper.JavaCCParser;
+import koala.dynamicjava.tree.Node;
+
+import edu.rice.cs.dynamicjava.Options;
+
+public class StatementCompilerTest extends TestCase {
+
+  private static final Options COMPILE_OPTIONS = new Options() {
+    @Override public boolean compileStatements() { return true; }
+  };
+
+  private Interpreter _compiled;
+  private Interpreter _interpreted;
+
+  public void setUp() {
+    ClassLoader loader = StatementCompilerTest.class.getClassLoader();
+    _compiled = new Interpreter(COMPILE_OPTIONS, loader);
+    _interpreted = new Interpreter(Options.DEFAULT, loader);
+  }
+
+  /** Run the code in both interpreters, asserting that the results are the same. */
+  private Object interpretBoth(String code) throws InterpreterException {
+    Option<Object> expected = _interpreted.interpret(code);
+    Option<Object> actual = _compiled.interpret(code);
+    assertEquals(expected, actual);
+    return actual.unwrap(null);
+  }
+
+  /** Parse and check a single statement, and try to compile it. */
+  private boolean compiles(String code) throws Exception {
+    List<Node> tree = new JavaCCParser(new StringReader(code), COMPILE_OPTIONS).parseStream();
+    TypeContext context = new ImportContext(StatementCompilerTest.class.getClassLoader(), COMPILE_OPTIONS);
+    new StatementChecker(context, COMPILE_OPTIONS).checkList(tree);
+    StatementCompiler compiler = new StatementCompiler(context.getClassLoader(), COMPILE_OPTIONS);
+    return compiler.compile(IterUtil.last(tree)).isSome();
+  }
+
+  public void testCandidates() throws Exception {
+    assertTrue(compiles("int sum = 0; for (int i = 0; i < 10; i++) { sum += i; }"));
+    assertTrue(compiles("long x = 1; while (x < 1000L) x *= 3;"));
+    assertTrue(compiles("String s = \"\"; do { s += 'a'; } while (s.length() < 5);"));
+    assertTrue(compiles("int[] a = { 1, 2, 3 }; double d = 0; for (int i : a) { d += Math.sqrt(i); }"));
+    assertTrue(compiles("java.util.List<String> l = new java.util.ArrayList<String>(); " +
+                        "for (String s : l) { System.out.println(s); }"));
+    assertFalse(compiles("int x = 3;"));
+    assertFalse(compiles("int f(int x) { return x; } for (int i = 0; i < 10; i++) { f(i); }"));
+    assertFalse(compiles("for (int i = 0; i < 10; i++) { switch (i) { default: break; } }"));
+  }
+
+  public void testLoops() throws InterpreterException {
+    interpretBoth("int sum = 0;");
+    interpretBoth("for (int i = 0; i < 100; i++) { if (i % 3 == 0) continue; sum += i; }");
+    assertEquals(3267, interpretBoth("sum"));
+    interpretBoth("long fact = 1; int n = 0;");
+    interpretBoth("while (++n < 15) fact *= n;");
+    assertEquals(87178291200L, interpretBoth("fact"));
+    interpretBoth("double[] ds = new double[10];");
+    interpretBoth("for (int i = 0; i < ds.length; i++) { ds[i] = i / 2.0; ds[i] += 0.25; ds[i]++; }");
+    interpretBoth("double total = 0;");
+    interpretBoth("for (double d : ds) total += d;");
+    assertEquals(35.0, interpretBoth("total"));
+    interpretBoth("StringBuilder sb = new StringBuilder(); char c = 'a';");
+    interpretBoth("do { sb.append(c); c++; } while (c <= 'e');");
+    assertEquals("abcde", interpretBoth("sb.toString()"));
+    interpretBoth("Integer boxed = 0; java.util.List<Integer> list = java.util.Arrays.asList(1, 2, 3);");
+    interpretBoth("for (Integer i : list) { boxed += i; }");
+    assertEquals(6, interpretBoth("boxed"));
+  }
+
+  public void testLabels() throws InterpreterException {
+    interpretBoth("int count = 0;");
+    interpretBoth("outer: for (int i = 0; i < 10; i++) { for (int j = 0; j < 10; j++) { " +
+                  "if (j > i) continue outer; if (i * j > 20) break outer; count++; } }");
+    assertEquals(20, interpretBoth("count"));
+  }
+
+  public void testExceptions() throws InterpreterException {
+    _compiled.interpret("int x = 0; int[] a = new int[3];");
+    try {
+      _compiled.interpret("while (true) { a[x] = x; x++; }");
+      fail("Expected an exception");
+    }
+    catch (EvaluatorException e) {
+      assertTrue(e.getCause() instanceof ArrayIndexOutOfBoundsException);
+    }
+    // the assignments made before the exception are visible
+    assertEquals(3, _compiled.interpret("x").unwrap());
+    assertEquals(2, _compiled.interpret("a[2]").unwrap());
+  }
+
+}
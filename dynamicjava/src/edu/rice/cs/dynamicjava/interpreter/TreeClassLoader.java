@@ -72,6 +72,15 @@ public class TreeClassLoader extends AbstractClassLoader {
     }
   }
   
+  /**
+   * Define a class from bytecode that was produced directly, rather than from a registered tree
+   * (see {@link StatementCompiler}).  The class is not associated with an evaluation adapter.
+   */
+  public Class<?> defineCompiledClass(String name, byte[] bytes) {
+    definePackageForClass(name);
+    return defineClass(name, bytes, 0, bytes.length);
+  }
+  
   public TreeCompiler.EvaluationAdapter getAdapter(String className) {
     return _adapters.get(className);
   }
@@ -0,0 +1,254 @@
+package edu.rice.cs.dynamicjava.symbol;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import edu.rice.cs.plt.tuple.Option;
+
+import static org.objectweb.asm.Opcodes.*;
+import static edu.rice.cs.plt.debug.DebugUtil.debug;
+
+/**
+ * Generates classes that access a particular method or field directly, rather than through
+ * reflection.  Each generated invoker unpacks its arguments with casts and primitive unboxing
+ * specialized to the member's signature, and makes a single {@code invoke} or {@code get/putfield}
+ * instruction.  This avoids the per-call argument checking, access checking, and (for fields)
+ * accessor lookup overhead of {@link Method#invoke} and {@link Field#get}.
+ * <p>
+ * Invokers can only be produced for public members of public classes that are visible from the
+ * class's own loader; in all other cases, the result is {@code none} and reflection should be used.
+ * Generated code does not trigger static initialization in any different way than reflection does,
+ * but clients should only create invokers for members that have already been used successfully,
+ * so that errors in static initializers are always reported by reflection.  (See {@link JavaClass}.)
+ */
+public final class Invokers {
+
+  /** Prevents instance creation */
+  private Invokers() {}
+
+  /** Name of the generated method invoker classes; used to trim stack traces. */
+  static final String METHOD_INVOKER_NAME = "edu.rice.cs.dynamicjava.symbol.Invokers$GeneratedMethodInvoker";
+  /** Name of the generated field invoker classes; used to trim stack traces. */
+  static final String FIELD_INVOKER_NAME = "edu.rice.cs.dynamicjava.symbol.Invokers$GeneratedFieldInvoker";
+
+  /**
+   * Direct access to a method.  Arguments must be boxed exactly as they would be for
+   * {@link Method#invoke}, and there must be the correct number of them.  Exceptions thrown by
+   * the method are propagated directly, without being wrapped in an InvocationTargetException.
+   */
+  public static interface MethodInvoker {
+    public Object invoke(Object receiver, Object[] args) throws Throwable;
+  }
+
+  /**
+   * Direct access to a field.  For final fields, {@code set} throws an
+   * UnsupportedOperationException; reflection must be used instead.
+   */
+  public static interface FieldInvoker {
+    public Object get(Object receiver) throws Throwable;
+    public void set(Object receiver, Object val) throws Throwable;
+  }
+
+  /**
+   * Whether the given throwable was produced by the generated code itself -- an argument of the wrong
+   * type, for example, or a failure to link the generated code -- rather than by the invoked member.
+   * In these cases, no part of the member has been executed, and it is safe to try again with reflection.
+   */
+  public static boolean isInvokerFailure(Throwable t) {
+    if (t instanceof LinkageError || t instanceof ClassCastException || t instanceof NullPointerException) {
+      StackTraceElement[] stack = t.getStackTrace();
+      if (stack.length > 0) {
+        String name = stack[0].getClassName();
+        return name.equals(METHOD_INVOKER_NAME) || name.equals(FIELD_INVOKER_NAME);
+      }
+    }
+    return false;
+  }
+
+  /** Create an invoker for {@code m}, if possible. */
+  public static Option<MethodInvoker> forMethod(Method m) {
+    Class<?> owner = m.getDeclaringClass();
+    if (!Modifier.isPublic(m.getModifiers()) || !isAccessible(owner, owner)) { return Option.none(); }
+    for (Class<?> c : m.getParameterTypes()) { if (!isAccessible(c, owner)) { return Option.none(); } }
+    boolean isStatic = Modifier.isStatic(m.getModifiers());
+    // static interface methods require a newer class file version
+    if (isStatic && owner.isInterface()) { return Option.none(); }
+
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    startClass(cw, METHOD_INVOKER_NAME, MethodInvoker.class);
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "invoke",
+                                      "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;", null, null);
+    mv.visitCode();
+    if (!isStatic) {
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitTypeInsn(CHECKCAST, Type.getInternalName(owner));
+    }
+    Class<?>[] params = m.getParameterTypes();
+    for (int i = 0; i < params.length; i++) {
+      mv.visitVarInsn(ALOAD, 2);
+      push(mv, i);
+      mv.visitInsn(AALOAD);
+      unbox(mv, params[i]);
+    }
+    int opcode = isStatic ? INVOKESTATIC : owner.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL;
+    mv.visitMethodInsn(opcode, Type.getInternalName(owner), m.getName(), Type.getMethodDescriptor(m),
+                       owner.isInterface());
+    box(mv, m.getReturnType());
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    cw.visitEnd();
+    return instantiate(METHOD_INVOKER_NAME, cw.toByteArray(), owner, MethodInvoker.class);
+  }
+
+  /** Create an invoker for {@code f}, if possible. */
+  public static Option<FieldInvoker> forField(Field f) {
+    Class<?> owner = f.getDeclaringClass();
+    Class<?> type = f.getType();
+    if (!Modifier.isPublic(f.getModifiers()) || !isAccessible(owner, owner) || !isAccessible(type, owner)) {
+      return Option.none();
+    }
+    boolean isStatic = Modifier.isStatic(f.getModifiers());
+    String ownerName = Type.getInternalName(owner);
+    String desc = Type.getDescriptor(type);
+
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    startClass(cw, FIELD_INVOKER_NAME, FieldInvoker.class);
+
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "get", "(Ljava/lang/Object;)Ljava/lang/Object;", null, null);
+    mv.visitCode();
+    if (isStatic) { mv.visitFieldInsn(GETSTATIC, ownerName, f.getName(), desc); }
+    else {
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitTypeInsn(CHECKCAST, ownerName);
+      mv.visitFieldInsn(GETFIELD, ownerName, f.getName(), desc);
+    }
+    box(mv, type);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    mv = cw.visitMethod(ACC_PUBLIC, "set", "(Ljava/lang/Object;Ljava/lang/Object;)V", null, null);
+    mv.visitCode();
+    if (Modifier.isFinal(f.getModifiers())) {
+      mv.visitTypeInsn(NEW, "java/lang/UnsupportedOperationException");
+      mv.visitInsn(DUP);
+      mv.visitMethodInsn(INVOKESPECIAL, "java/lang/UnsupportedOperationException", "<init>", "()V", false);
+      mv.visitInsn(ATHROW);
+    }
+    else {
+      if (!isStatic) {
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, ownerName);
+      }
+      mv.visitVarInsn(ALOAD, 2);
+      unbox(mv, type);
+      mv.visitFieldInsn(isStatic ? PUTSTATIC : PUTFIELD, ownerName, f.getName(), desc);
+      mv.visitInsn(RETURN);
+    }
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    cw.visitEnd();
+    return instantiate(FIELD_INVOKER_NAME, cw.toByteArray(), owner, FieldInvoker.class);
+  }
+
+  /**
+   * Whether generated code, defined by a loader delegating to {@code context}'s loader, can refer
+   * to {@code c}.  The class and all its enclosing classes must be public.
+   */
+  private static boolean isAccessible(Class<?> c, Class<?> context) {
+    while (c.isArray()) { c = c.getComponentType(); }
+    if (c.isPrimitive()) { return true; }
+    for (Class<?> outer = c; outer != null; outer = outer.getEnclosingClass()) {
+      if (!Modifier.isPublic(outer.getModifiers())) { return false; }
+    }
+    try { return Class.forName(c.getName(), false, context.getClassLoader()) == c; }
+    catch (ClassNotFoundException e) { return false; }
+    catch (LinkageError e) { return false; }
+  }
+
+  private static void startClass(ClassWriter cw, String name, Class<?> iface) {
+    cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name.replace('.', '/'), null, "java/lang/Object",
+             new String[]{ Type.getInternalName(iface) });
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /** Define the class in a fresh loader (so that it can be collected) and create an instance. */
+  private static <T> Option<T> instantiate(String name, byte[] bytes, Class<?> owner, Class<T> iface) {
+    try {
+      InvokerLoader loader = new InvokerLoader(owner.getClassLoader());
+      Class<?> c = loader.define(name, bytes);
+      return Option.some(iface.cast(c.newInstance()));
+    }
+    catch (InstantiationException e) { debug.log(e); }
+    catch (IllegalAccessException e) { debug.log(e); }
+    catch (LinkageError e) { debug.log(e); }
+    catch (RuntimeException e) { debug.log(e); }
+    return Option.none();
+  }
+
+  private static void push(MethodVisitor mv, int i) {
+    if (i <= 5) { mv.visitInsn(ICONST_0 + i); }
+    else if (i <= Byte.MAX_VALUE) { mv.visitIntInsn(BIPUSH, i); }
+    else { mv.visitIntInsn(SIPUSH, i); }
+  }
+
+  /** Convert the Object on top of the stack to the given type. */
+  private static void unbox(MethodVisitor mv, Class<?> c) {
+    if (c.equals(Object.class)) { return; }
+    else if (c.isPrimitive()) {
+      Type wrapper = Type.getType(boxedClass(c));
+      mv.visitTypeInsn(CHECKCAST, wrapper.getInternalName());
+      mv.visitMethodInsn(INVOKEVIRTUAL, wrapper.getInternalName(), c.getName() + "Value",
+                         "()" + Type.getDescriptor(c), false);
+    }
+    else { mv.visitTypeInsn(CHECKCAST, Type.getInternalName(c)); }
+  }
+
+  /** Convert the value of the given type on top of the stack to an Object. */
+  private static void box(MethodVisitor mv, Class<?> c) {
+    if (c.equals(void.class)) { mv.visitInsn(ACONST_NULL); }
+    else if (c.isPrimitive()) {
+      Type wrapper = Type.getType(boxedClass(c));
+      mv.visitMethodInsn(INVOKESTATIC, wrapper.getInternalName(), "valueOf",
+                         "(" + Type.getDescriptor(c) + ")" + wrapper.getDescriptor(), false);
+    }
+  }
+
+  private static Class<?> boxedClass(Class<?> c) {
+    if (c.equals(boolean.class)) { return Boolean.class; }
+    else if (c.equals(char.class)) { return Character.class; }
+    else if (c.equals(byte.class)) { return Byte.class; }
+    else if (c.equals(short.class)) { return Short.class; }
+    else if (c.equals(int.class)) { return Integer.class; }
+    else if (c.equals(long.class)) { return Long.class; }
+    else if (c.equals(float.class)) { return Float.class; }
+    else { return Double.class; }
+  }
+
+  /**
+   * Defines a single invoker class.  Classes are found in the member's loader, except for the invoker
+   * interfaces, which must be the versions visible to this class.
+   */
+  private static class InvokerLoader extends ClassLoader {
+    public InvokerLoader(ClassLoader memberLoader) { super(memberLoader); }
+    public Class<?> define(String name, byte[] bytes) { return defineClass(name, bytes, 0, bytes.length); }
+    @Override protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (name.equals(MethodInvoker.class.getName())) { return MethodInvoker.class; }
+      else if (name.equals(FieldInvoker.class.getName())) { return FieldInvoker.class; }
+      else { return super.loadClass(name, resolve); }
+    }
+  }
+
+}
@@ -0,0 +1,86 @@
+package edu.rice.cs.dynamicjava.symbol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import edu.rice.cs.dynamicjava.Options;
+import edu.rice.cs.dynamicjava.interpreter.EvaluatorException;
+import edu.rice.cs.dynamicjava.interpreter.Interpreter;
+import edu.rice.cs.dynamicjava.interpreter.InterpreterException;
+
+public class InvokersTest extends TestCase {
+
+  public static class Point {
+    public static int created = 0;
+    public int x;
+    public final long y;
+    public Point(int x, long y) { this.x = x; this.y = y; created++; }
+    public long sum() { return x + y; }
+    public static int check(int i) {
+      if (i < 0) { throw new IllegalArgumentException("negative"); }
+      return i;
+    }
+    int hidden() { return x; }
+  }
+
+  public void testMethods() throws Throwable {
+    List<String> l = new ArrayList<String>();
+    l.add("a");
+    Invokers.MethodInvoker get = Invokers.forMethod(List.class.getMethod("get", int.class)).unwrap();
+    assertEquals("a", get.invoke(l, new Object[]{ 0 }));
+    Invokers.MethodInvoker max = Invokers.forMethod(Math.class.getMethod("max", long.class, long.class)).unwrap();
+    assertEquals(7L, max.invoke(null, new Object[]{ 3L, 7L }));
+    Invokers.MethodInvoker clear = Invokers.forMethod(ArrayList.class.getMethod("clear")).unwrap();
+    assertNull(clear.invoke(l, new Object[0]));
+    assertTrue(l.isEmpty());
+    Invokers.MethodInvoker sum = Invokers.forMethod(Point.class.getMethod("sum")).unwrap();
+    assertEquals(5L, sum.invoke(new Point(2, 3), new Object[0]));
+    assertTrue(Invokers.forMethod(Point.class.getDeclaredMethod("hidden")).isNone());
+  }
+
+  public void testFields() throws Throwable {
+    Point p = new Point(1, 2);
+    Invokers.FieldInvoker x = Invokers.forField(Point.class.getField("x")).unwrap();
+    x.set(p, 5);
+    assertEquals(5, x.get(p));
+    Invokers.FieldInvoker y = Invokers.forField(Point.class.getField("y")).unwrap();
+    assertEquals(2L, y.get(p));
+    try { y.set(p, 3L); fail("Expected an exception"); }
+    catch (UnsupportedOperationException e) { /* expected */ }
+    Invokers.FieldInvoker created = Invokers.forField(Point.class.getField("created")).unwrap();
+    assertEquals(Point.created, created.get(null));
+  }
+
+  public void testInvokerFailure() throws Throwable {
+    Invokers.MethodInvoker check = Invokers.forMethod(Point.class.getMethod("check", int.class)).unwrap();
+    try { check.invoke(null, new Object[]{ "x" }); fail("Expected an exception"); }
+    catch (ClassCastException e) { assertTrue(Invokers.isInvokerFailure(e)); }
+    try { check.invoke(null, new Object[]{ -1 }); fail("Expected an exception"); }
+    catch (IllegalArgumentException e) { assertFalse(Invokers.isInvokerFailure(e)); }
+  }
+
+  /** Calls are made often enough to use the generated invokers; exceptions must look the same. */
+  public void testInterpreter() throws InterpreterException {
+    Interpreter i = new Interpreter(Options.DEFAULT, InvokersTest.class.getClassLoader());
+    i.interpret("import edu.rice.cs.dynamicjava.symbol.InvokersTest.Point;");
+    i.interpret("Point p = new Point(0, 10); java.util.List<Integer> l = new java.util.ArrayList<Integer>();");
+    i.interpret("for (int j = 0; j < 100; j++) { l.add(Point.check(j)); p.x += l.get(j); }");
+    assertEquals(4950, i.interpret("p.x").unwrap());
+    assertEquals(4960L, i.interpret("p.sum()").unwrap());
+    try {
+      i.interpret("for (int j = 50; j > -50; j--) { p.x = Point.check(j); }");
+      fail("Expected an exception");
+    }
+    catch (EvaluatorException e) {
+      Throwable cause = e.getCause();
+      assertTrue(cause instanceof IllegalArgumentException);
+      StackTraceElement[] stack = cause.getStackTrace();
+      assertEquals(Point.class.getName(), stack[0].getClassName());
+      assertEquals(1, stack.length);
+    }
+    assertEquals(0, i.interpret("p.x").unwrap());
+  }
+
+}
@@ -159,7 +159,12 @@ public class JavaClass implements DJClass {
 
   protected class JavaField implements DJField {
     protected final Field _f;
-    public JavaField(Field f) { _f = f; }
+    // Shared by all the boxes for this field; races are harmless
+    private boolean _madeAccessible;
+    private int _uses;
+    private volatile Invokers.FieldInvoker _invoker;
+    private boolean _noInvoker;
+    public JavaField(Field f) { _f = f; _madeAccessible = false; _uses = 0; _invoker = null; _noInvoker = false; }
     public String declaredName() { return _f.getName(); }
     public DJClass declaringClass() { return JavaClass.this; }
     public Type type() { return classAsType(_f.getType()); }
@@ -187,9 +192,22 @@ public class JavaClass implements DJClass {
           if (!isStatic() && receiver == null) {
             throw new WrappedException(new EvaluatorException(new NullPointerException()));
           }
-          try { _f.setAccessible(true); }
-          catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
-          try { return _f.get(receiver); }
+          Invokers.FieldInvoker invoker = invoker();
+          if (invoker != null) {
+            try { return invoker.get(receiver); }
+            catch (Throwable t) {
+              if (!Invokers.isInvokerFailure(t)) {
+                throw new WrappedException(new EvaluatorException(t, FIELD_INVOKER_GET_EXTRA_STACK));
+              }
+              invokerFailed(t);
+            }
+          }
+          makeAccessible();
+          try {
+            Object result = _f.get(receiver);
+            _uses++;
+            return result;
+          }
           catch (IllegalAccessException e) {
             // should have been caught by static analysis
             throw new RuntimeException(e);
@@ -208,9 +226,21 @@ public class JavaClass implements DJClass {
           if (!isStatic() && receiver == null) {
             throw new WrappedException(new EvaluatorException(new NullPointerException()));
           }
-          try { _f.setAccessible(true); }
-          catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
-          try { _f.set(receiver, o); }
+          Invokers.FieldInvoker invoker = isFinal() ? null : invoker();
+          if (invoker != null) {
+            try { invoker.set(receiver, o); return; }
+            catch (Throwable t) {
+              if (!Invokers.isInvokerFailure(t)) {
+                throw new WrappedException(new EvaluatorException(t, FIELD_INVOKER_SET_EXTRA_STACK));
+              }
+              invokerFailed(t);
+            }
+          }
+          makeAccessible();
+          try {
+            _f.set(receiver, o);
+            _uses++;
+          }
           catch (IllegalAccessException e) {
             // should have been caught by static analysis
             throw new RuntimeException(e);
@@ -227,6 +257,27 @@ public class JavaClass implements DJClass {
         
       };
     }
+    
+    private void makeAccessible() {
+      if (!_madeAccessible) {
+        try { _f.setAccessible(true); }
+        catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+        _madeAccessible = true;
+      }
+    }
+    
+    /** Get the generated invoker, creating it once the field has been used successfully often enough. */
+    private Invokers.FieldInvoker invoker() {
+      if (_invoker == null && !_noInvoker && _uses >= INVOKER_THRESHOLD) {
+        _invoker = Invokers.forField(_f).unwrap(null);
+        _noInvoker = (_invoker == null);
+      }
+      return _invoker;
+    }
+    
+    private void invokerFailed(Throwable t) {
+      if (t instanceof LinkageError) { debug.log(t); _invoker = null; _noInvoker = true; }
+    }
       
     public String toString() { return "JavaField(" + declaredName() + ")"; }
 }
@@ -247,6 +298,12 @@ public class JavaClass implements DJClass {
                   "sun.reflect.UnsafeFieldAccessorFactory.newFieldAccessor",
                   "sun.misc.Unsafe.ensureClassInitialized" };  
   
+  private static final String[] FIELD_INVOKER_GET_EXTRA_STACK =
+    new String[]{ Invokers.FIELD_INVOKER_NAME + ".get" };
+  
+  private static final String[] FIELD_INVOKER_SET_EXTRA_STACK =
+    new String[]{ Invokers.FIELD_INVOKER_NAME + ".set" };
+  
   
   /** Non-static in order to determine the outer type. */
   protected class JavaConstructor implements DJConstructor {
@@ -331,7 +388,19 @@ public class JavaClass implements DJClass {
   protected class JavaMethod implements DJMethod {
     protected final Method _m;
     private final Thunk<Iterable<LocalVariable>> _params;
-    public JavaMethod(Method m) { _m = m; _params = makeParamThunk(); /* allows overriding */ }
+    // Call-site cache: each checked call refers to its own JavaMethod; races are harmless
+    private boolean _madeAccessible;
+    private int _calls;
+    private volatile Invokers.MethodInvoker _invoker;
+    private boolean _noInvoker;
+    public JavaMethod(Method m) {
+      _m = m;
+      _params = makeParamThunk(); /* allows overriding */
+      _madeAccessible = false;
+      _calls = 0;
+      _invoker = null;
+      _noInvoker = false;
+    }
     protected Thunk<Iterable<LocalVariable>> makeParamThunk() { return paramFactory(_m.getParameterTypes()); }
     public String declaredName() { return _m.getName(); }
     public DJClass declaringClass() { return JavaClass.this; }
@@ -354,12 +423,29 @@ public class JavaClass implements DJClass {
         throw new WrappedException(new EvaluatorException(new NullPointerException()));
       }
       
-      try { _m.setAccessible(true); }
-      catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+      Object[] argsArray = new Object[IterUtil.sizeOf(args)];
+      int i = 0;
+      for (Object arg : args) { argsArray[i++] = arg; }
+      Invokers.MethodInvoker invoker = invoker();
+      if (invoker != null) {
+        try { return invoker.invoke(receiver, argsArray); }
+        catch (Throwable t) {
+          if (!Invokers.isInvokerFailure(t)) { throw new EvaluatorException(t, METHOD_INVOKER_EXTRA_STACK); }
+          // otherwise, the method wasn't run; fall back to reflection
+          if (t instanceof LinkageError) { debug.log(t); _invoker = null; _noInvoker = true; }
+        }
+      }
+      
+      if (!_madeAccessible) {
+        try { _m.setAccessible(true); }
+        catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+        _madeAccessible = true;
+      }
       
-      Object[] argsArray = IterUtil.toArray(args, Object.class);
       try {
-        return _m.invoke(receiver, argsArray);
+        Object result = _m.invoke(receiver, argsArray);
+        _calls++;
+        return result;
       }
       catch (InvocationTargetException e) {
         throw new EvaluatorException(e.getCause(), METHOD_EXTRA_STACK);
@@ -378,6 +464,19 @@ public class JavaClass implements DJClass {
       }
     }
     
+    /**
+     * Get the generated invoker, creating it once the method has been called successfully often enough.
+     * Waiting avoids the cost of generating a class for methods that are only called a few times, and
+     * guarantees that the declaring class has been initialized.
+     */
+    private Invokers.MethodInvoker invoker() {
+      if (_invoker == null && !_noInvoker && _calls >= INVOKER_THRESHOLD) {
+        _invoker = Invokers.forMethod(_m).unwrap(null);
+        _noInvoker = (_invoker == null);
+      }
+      return _invoker;
+    }
+    
     public String toString() { return "JavaMethod(" + declaredName() + ")"; }
   }
   
@@ -387,6 +486,15 @@ public class JavaClass implements DJClass {
                    "sun.reflect.NativeMethodAccessorImpl.invoke",
                    "sun.reflect.NativeMethodAccessorImpl.invoke0" };
   
+  private static final String[] METHOD_INVOKER_EXTRA_STACK =
+    new String[] { Invokers.METHOD_INVOKER_NAME + ".invoke" };
+  
+  /**
+   * Number of successful reflective uses of a method or field before an {@link Invokers invoker} is
+   * generated for it.  (This matches the default threshold for the JVM's own reflection accessors.)
+   */
+  private static final int INVOKER_THRESHOLD = 15;
+  
   private static Thunk<Iterable<LocalVariable>> paramFactory(final Class<?>[] cs) {
     // Caches LocalVariables so we don't create duplicates
     return LazyThunk.make(new Thunk<Iterable<LocalVariable>>() {
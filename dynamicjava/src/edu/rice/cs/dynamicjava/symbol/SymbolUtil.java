@@ -1,12 +1,16 @@
 package edu.rice.cs.dynamicjava.symbol;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import edu.rice.cs.plt.lambda.Lambda;
 import edu.rice.cs.plt.lambda.Thunk;
 import edu.rice.cs.plt.iter.IterUtil;
 import edu.rice.cs.plt.reflect.JavaVersion;
 import edu.rice.cs.plt.reflect.ReflectUtil;
 import edu.rice.cs.plt.reflect.ReflectException;
+import edu.rice.cs.plt.tuple.Option;
 
 import edu.rice.cs.dynamicjava.symbol.type.*;
 
@@ -248,4 +252,28 @@ public class SymbolUtil {
     return !IterUtil.isEmpty(params) && (IterUtil.last(params).type() instanceof VarargArrayType); 
   }
 
+  /**
+   * Get the reflection method underlying {@code m}, if it was produced by a {@link JavaClass}.
+   * Methods declared in interpreted code, as well as special methods like {@code getClass()},
+   * have no such representation.
+   */
+  public static Option<Method> reflectionMethod(DJMethod m) {
+    if (m instanceof JavaClass.JavaMethod) { return Option.some(((JavaClass.JavaMethod) m)._m); }
+    else { return Option.none(); }
+  }
+  
+  /** Get the reflection field underlying {@code f}, if it was produced by a {@link JavaClass}. */
+  public static Option<Field> reflectionField(DJField f) {
+    if (f instanceof JavaClass.JavaField) { return Option.some(((JavaClass.JavaField) f)._f); }
+    else { return Option.none(); }
+  }
+  
+  /** Get the reflection constructor underlying {@code k}, if it was produced by a {@link JavaClass}. */
+  public static Option<Constructor<?>> reflectionConstructor(DJConstructor k) {
+    if (k instanceof JavaClass.JavaConstructor) {
+      return Option.<Constructor<?>>some(((JavaClass.JavaConstructor) k)._k);
+    }
+    else { return Option.none(); }
+  }
+
 }
@@ -118,10 +118,12 @@ public abstract class Node implements SourceInfo.Wrapper {
    * @return null if the property was not previously set
    */
   public Object getProperty(String name) {
-    if (!properties.containsKey(name)) { 
+    // Resolved members, types, etc., are looked up on every evaluation, so avoid a second lookup
+    Object result = properties.get(name);
+    if (result == null && !properties.containsKey(name)) { 
       throw new IllegalStateException("Property '" + name + "' is not initialized");
     }
-    return properties.get(name);
+    return result;
   }
   
   /**
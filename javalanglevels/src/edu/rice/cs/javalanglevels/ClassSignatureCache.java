@@ -0,0 +1,505 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.javalanglevels;
+
+import java.io.*;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.*;
+
+import edu.rice.cs.javalanglevels.util.UnexpectedException;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.reflect.EmptyClassLoader;
+import edu.rice.cs.plt.reflect.PathClassLoader;
+
+/** A cache of the member signatures of library classes, shared by all conversions.  LanguageLevelConverter builds
+  * SymbolDatas for library classes from these signatures rather than by reading and parsing class files.  Since
+  * SymbolDatas are mutable and are discarded at the start of each conversion, only the (immutable) signatures are
+  * shared.
+  * <p>
+  * Only classes found in jar files (including the boot class path) are cached; classes in directories may change at
+  * any time, so they are always read.  The signatures for each jar file are saved in a file in the cache directory,
+  * stamped with the format version, the Java version, and the jar's path, size, and modification date.  A saved
+  * file is memory-mapped when its jar is first used, and individual signatures are decoded on demand; files whose
+  * stamps no longer match are ignored and rewritten.  Safe for use by multiple threads.
+  */
+public class ClassSignatureCache {
+  
+  /** Identifies the cache file format; must be incremented whenever the format or the recorded data changes. */
+  static final int FORMAT_VERSION = 1;
+  
+  private static final int MAGIC = 0xD7C1A55E;
+  private static final String JAVA_VERSION = System.getProperty("java.version", "");
+  
+  /** The directory holding the saved signature files, or null if the cache is not saved. */
+  private final File _dir;
+  
+  /** The signatures for each jar file used so far. */
+  private final ConcurrentHashMap<File, JarSignatures> _jars = new ConcurrentHashMap<File, JarSignatures>();
+  
+  private final AtomicInteger _reads = new AtomicInteger(0);
+  
+  /** @param dir  The directory holding the saved signatures; created if necessary.  If null, signatures are only
+    *             cached in memory. */
+  public ClassSignatureCache(File dir) { _dir = dir; }
+  
+  /** The default cache directory: the value of the "javalanglevels.signature.cache" property, or the directory
+    * ".javalanglevels" in the user's home directory.  (A directory in the shared temporary directory could be created
+    * first by another user, who could then supply the signatures.)
+    */
+  public static File defaultDirectory() {
+    String prop = System.getProperty("javalanglevels.signature.cache");
+    if (prop != null) return (prop.length() == 0) ? null : new File(prop);
+    return new File(System.getProperty("user.home"), ".javalanglevels");
+  }
+  
+  /** Finds the signature of a class file using the given loader.
+    * @param resourceName  The resource name of the class file, such as "java/lang/Object.class"
+    * @param loader  The loader used to look up (but not load) the class file
+    * @return The class's signature, or null if the class file cannot be found
+    * @throws IOException if the class file cannot be read
+    */
+  public ClassSignature get(String resourceName, ClassLoader loader) throws IOException {
+    URL url = loader.getResource(resourceName);
+    if (url == null) return null;
+    File jarFile = _jarFile(url);
+    JarSignatures jar = (jarFile == null) ? null : _jarSignatures(jarFile);
+    if (jar != null) {
+      ClassSignature result = jar.get(resourceName);
+      if (result != null) return result;
+    }
+    InputStream stream = loader.getResourceAsStream(resourceName);
+    if (stream == null) return null;
+    ClassSignature result = read(IOUtil.toByteArray(stream));  // closes stream
+    _reads.incrementAndGet();
+    if (jar != null) jar.put(resourceName, result);
+    return result;
+  }
+  
+  /** @return the number of class files read (rather than found in the cache); for testing purposes. */
+  int readCount() { return _reads.get(); }
+  
+  /** Saves the signatures of any jar files with signatures that have not yet been saved.  Errors are ignored. */
+  public void save() {
+    if (_dir == null) return;
+    for (JarSignatures jar : _jars.values()) {
+      if (jar.isDirty()) {
+        try { jar.save(); }
+        catch (IOException e) { LanguageLevelConverter._log.log("Unable to save class signatures: " + e); }
+      }
+    }
+  }
+  
+  /** Forgets all signatures held in memory; saved signatures are not affected. */
+  public void clear() { _jars.clear(); }
+  
+  /** @return the jar file containing the given resource, or null if it is not in a local jar file */
+  private static File _jarFile(URL url) {
+    if (! url.getProtocol().equals("jar")) return null;
+    String path = url.getPath();
+    int sep = path.indexOf("!/");
+    if (sep < 0 || ! path.startsWith("file:")) return null;
+    try { return new File(new URI(path.substring(0, sep))); }
+    catch (URISyntaxException e) { return null; }
+    catch (IllegalArgumentException e) { return null; }
+  }
+  
+  private JarSignatures _jarSignatures(File jarFile) {
+    JarSignatures result = _jars.get(jarFile);
+    if (result == null || ! result.isCurrent()) {
+      JarSignatures fresh = new JarSignatures(jarFile);
+      fresh.load();
+      if (result == null) {
+        result = _jars.putIfAbsent(jarFile, fresh);
+        if (result == null) result = fresh;
+      }
+      else { _jars.put(jarFile, fresh); result = fresh; }
+    }
+    return result;
+  }
+  
+  /** The signatures of the classes in a single jar file. */
+  private class JarSignatures {
+    private final File _jar;
+    private final long _length;
+    private final long _lastModified;
+    private final String _stamp;
+    /** The saved signatures, mapped from the cache file, and the offsets of their encodings. */
+    private volatile ByteBuffer _saved = null;
+    private final Map<String, Integer> _offsets = new HashMap<String, Integer>();
+    /** Signatures that have been decoded or read from the jar. */
+    private final ConcurrentHashMap<String, ClassSignature> _signatures = new ConcurrentHashMap<String, ClassSignature>();
+    private volatile boolean _dirty = false;
+    
+    public JarSignatures(File jar) {
+      _jar = jar;
+      _length = jar.length();
+      _lastModified = jar.lastModified();
+      _stamp = FORMAT_VERSION + "|" + JAVA_VERSION + "|" + jar.getAbsolutePath() + "|" + _length + "|" + _lastModified;
+    }
+    
+    public boolean isCurrent() { return _jar.length() == _length && _jar.lastModified() == _lastModified; }
+    public boolean isDirty() { return _dirty; }
+    
+    /** The file in the cache directory for this jar: the jar's name followed by a checksum of the stamp. */
+    private File _cacheFile() {
+      CRC32 crc = new CRC32();
+      try { crc.update(_stamp.getBytes("UTF-8")); }
+      catch (UnsupportedEncodingException e) { throw new UnexpectedException(e); }
+      return new File(_dir, _jar.getName() + "-" + Long.toHexString(crc.getValue()) + ".sig");
+    }
+    
+    public ClassSignature get(String resourceName) {
+      ClassSignature result = _signatures.get(resourceName);
+      if (result == null && _saved != null) {
+        Integer offset = _offsets.get(resourceName);
+        if (offset != null) {
+          ByteBuffer buffer = _saved.duplicate();
+          buffer.position(offset);
+          result = ClassSignature.decode(buffer);
+          _signatures.putIfAbsent(resourceName, result);
+        }
+      }
+      return result;
+    }
+    
+    public void put(String resourceName, ClassSignature sig) {
+      if (_signatures.putIfAbsent(resourceName, sig) == null) _dirty = true;
+    }
+    
+    /** Maps the saved signatures, if there are any with a matching stamp. */
+    public void load() {
+      if (_dir == null) return;
+      File f = _cacheFile();
+      if (! f.isFile()) return;
+      try {
+        FileInputStream in = new FileInputStream(f);
+        try {
+          FileChannel channel = in.getChannel();
+          ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+          if (buffer.getInt() != MAGIC || ! _stamp.equals(_getString(buffer))) return;
+          int count = buffer.getInt();
+          for (int i = 0; i < count; i++) {
+            String name = _getString(buffer);
+            int length = buffer.getInt();
+            _offsets.put(name, buffer.position());
+            buffer.position(buffer.position() + length);
+          }
+          _saved = buffer;  // the mapping remains valid after the channel is closed
+        }
+        finally { in.close(); }
+      }
+      catch (IOException e) { _offsets.clear(); }
+      catch (RuntimeException e) { _offsets.clear(); }  // a truncated or corrupt file
+    }
+    
+    /** Writes all known signatures to a temporary file, and then replaces the cache file with it. */
+    public void save() throws IOException {
+      _dirty = false;
+      for (String name : _offsets.keySet()) get(name);  // decode the remaining saved signatures
+      Map<String, ClassSignature> all = new TreeMap<String, ClassSignature>(_signatures);
+      
+      if (! _dir.isDirectory() && ! _dir.mkdirs()) throw new IOException("Can't create " + _dir);
+      File dest = _cacheFile();
+      File temp = File.createTempFile(dest.getName(), ".tmp", _dir);
+      try {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+          out.writeInt(MAGIC);
+          _putString(out, _stamp);
+          out.writeInt(all.size());
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          for (Map.Entry<String, ClassSignature> e : all.entrySet()) {
+            bytes.reset();
+            e.getValue().encode(new DataOutputStream(bytes));
+            _putString(out, e.getKey());
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+          }
+        }
+        finally { out.close(); }
+        if (! temp.renameTo(dest)) {
+          // on some platforms, an existing (possibly mapped) file cannot be replaced
+          dest.delete();
+          if (! temp.renameTo(dest)) throw new IOException("Can't replace " + dest);
+        }
+      }
+      finally { temp.delete(); }
+    }
+  }
+  
+  private static void _putString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+  
+  private static String _getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    try { return new String(bytes, "UTF-8"); }
+    catch (UnsupportedEncodingException e) { throw new UnexpectedException(e); }
+  }
+  
+  /** Reads the signature of the given class file.  Private methods are omitted, since they are invisible to other
+    * classes; private fields are kept because they are needed by code augmentation.
+    */
+  public static ClassSignature read(byte[] classFile) {
+    final ClassSignature result = new ClassSignature();
+    final List<Member> fields = new ArrayList<Member>();
+    final List<Member> methods = new ArrayList<Member>();
+    new ClassReader(classFile).accept(new ClassVisitor(Opcodes.ASM4) {
+      public void visit(int version, int access, String name, String sig, String sup, String[] interfaces) {
+        result._access = access;
+        result._name = name;
+        result._superName = sup;
+        result._interfaces = (interfaces == null) ? new String[0] : interfaces.clone();
+      }
+      public FieldVisitor visitField(int access, String name, String desc, String sig, Object value) {
+        fields.add(new Member(access, name, desc, null));
+        return null;
+      }
+      public MethodVisitor visitMethod(int access, String name, String desc, String sig, String[] exceptions) {
+        if (! Modifier.isPrivate(access)) methods.add(new Member(access, name, desc, exceptions));
+        return null;
+      }
+    }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    result._fields = fields.toArray(new Member[fields.size()]);
+    result._methods = methods.toArray(new Member[methods.size()]);
+    return result;
+  }
+  
+  /** The access flags, name, supertypes, fields, and non-private methods of a class.  Immutable once created. */
+  public static class ClassSignature {
+    private int _access;
+    private String _name;
+    private String _superName;  // null for java.lang.Object
+    private String[] _interfaces;
+    private Member[] _fields;
+    private Member[] _methods;
+    
+    private ClassSignature() {}
+    
+    /** Presents the signature to the given visitor, as a ClassReader would with the SKIP_CODE flag. */
+    public void accept(ClassVisitor v) {
+      v.visit(Opcodes.V1_5, _access, _name, null, _superName, _interfaces.clone());
+      for (Member f : _fields) v.visitField(f.access, f.name, f.desc, null, null);
+      for (Member m : _methods) {
+        v.visitMethod(m.access, m.name, m.desc, null, (m.exceptions == null) ? null : m.exceptions.clone());
+      }
+      v.visitEnd();
+    }
+    
+    void encode(DataOutputStream out) throws IOException {
+      out.writeInt(_access);
+      _putString(out, _name);
+      _putString(out, (_superName == null) ? "" : _superName);
+      _putStrings(out, _interfaces);
+      _putMembers(out, _fields);
+      _putMembers(out, _methods);
+    }
+    
+    static ClassSignature decode(ByteBuffer buffer) {
+      ClassSignature result = new ClassSignature();
+      result._access = buffer.getInt();
+      result._name = _getString(buffer);
+      result._superName = _getString(buffer);
+      if (result._superName.length() == 0) result._superName = null;
+      result._interfaces = _getStrings(buffer);
+      result._fields = _getMembers(buffer);
+      result._methods = _getMembers(buffer);
+      return result;
+    }
+    
+    private static void _putStrings(DataOutputStream out, String[] strings) throws IOException {
+      out.writeInt(strings.length);
+      for (String s : strings) _putString(out, s);
+    }
+    
+    private static String[] _getStrings(ByteBuffer buffer) {
+      String[] result = new String[buffer.getInt()];
+      for (int i = 0; i < result.length; i++) result[i] = _getString(buffer);
+      return result;
+    }
+    
+    private static void _putMembers(DataOutputStream out, Member[] members) throws IOException {
+      out.writeInt(members.length);
+      for (Member m : members) {
+        out.writeInt(m.access);
+        _putString(out, m.name);
+        _putString(out, m.desc);
+        out.writeBoolean(m.exceptions != null);
+        if (m.exceptions != null) _putStrings(out, m.exceptions);
+      }
+    }
+    
+    private static Member[] _getMembers(ByteBuffer buffer) {
+      Member[] result = new Member[buffer.getInt()];
+      for (int i = 0; i < result.length; i++) {
+        int access = buffer.getInt();
+        String name = _getString(buffer);
+        String desc = _getString(buffer);
+        String[] exceptions = (buffer.get() != 0) ? _getStrings(buffer) : null;
+        result[i] = new Member(access, name, desc, exceptions);
+      }
+      return result;
+    }
+  }
+  
+  /** A field or method of a ClassSignature. */
+  private static class Member {
+    public final int access;
+    public final String name;
+    public final String desc;
+    public final String[] exceptions;  // null for fields and for methods without a throws clause
+    public Member(int a, String n, String d, String[] e) {
+      access = a; name = n; desc = d; exceptions = (e == null) ? null : e.clone();
+    }
+  }
+  
+  /** Test class for ClassSignatureCache. */
+  public static class ClassSignatureCacheTest extends TestCase {
+    
+    private File _tempDir;
+    
+    public ClassSignatureCacheTest() { this(""); }
+    public ClassSignatureCacheTest(String name) { super(name); }
+    
+    public void setUp() throws IOException { _tempDir = IOUtil.createAndMarkTempDirectory("llsig", ""); }
+    public void tearDown() { IOUtil.deleteRecursively(_tempDir); }
+    
+    /** Creates a jar containing the class files for the given classes. */
+    private File _makeJar(String name, Class<?>... classes) throws IOException {
+      File jar = new File(_tempDir, name);
+      JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+      try {
+        for (Class<?> c : classes) {
+          String resource = c.getName().replace('.', '/') + ".class";
+          out.putNextEntry(new JarEntry(resource));
+          out.write(IOUtil.toByteArray(c.getClassLoader().getResourceAsStream(resource)));
+          out.closeEntry();
+        }
+      }
+      finally { out.close(); }
+      return jar;
+    }
+    
+    /** Records the visits to a class, for comparison. */
+    private static String _describe(ClassSignature sig) {
+      final StringBuilder result = new StringBuilder();
+      sig.accept(new ClassVisitor(Opcodes.ASM4) {
+        public void visit(int version, int access, String name, String s, String sup, String[] interfaces) {
+          result.append(access).append(name).append(sup).append(Arrays.toString(interfaces)).append(';');
+        }
+        public FieldVisitor visitField(int access, String name, String desc, String s, Object value) {
+          result.append(access).append(name).append(desc).append(';');
+          return null;
+        }
+        public MethodVisitor visitMethod(int access, String name, String desc, String s, String[] exceptions) {
+          result.append(access).append(name).append(desc).append(Arrays.toString(exceptions)).append(';');
+          return null;
+        }
+      });
+      return result.toString();
+    }
+    
+    public void testRead() throws IOException {
+      String resource = ClassSignatureCache.class.getName().replace('.', '/') + ".class";
+      ClassSignature sig = read(IOUtil.toByteArray(ClassSignatureCache.class.getClassLoader().getResourceAsStream(resource)));
+      String description = _describe(sig);
+      assertTrue(description.startsWith(Opcodes.ACC_PUBLIC + Opcodes.ACC_SUPER + 
+                                        "edu/rice/cs/javalanglevels/ClassSignatureCachejava/lang/Object[];"));
+      assertTrue(description.contains("_dirLjava/io/File;"));
+      assertTrue(description.contains("save()Vnull;"));  // descriptor followed by no exceptions
+      assertTrue(description.contains("get(Ljava/lang/String;Ljava/lang/ClassLoader;)" + 
+                                      "Ledu/rice/cs/javalanglevels/ClassSignatureCache$ClassSignature;" +
+                                      "[java/io/IOException]"));
+      assertFalse(description.contains("_jarFile"));  // private method
+    }
+    
+    public void testSaveAndLoad() throws IOException {
+      File jar = _makeJar("classes.jar", ClassSignature.class, Member.class);
+      File cacheDir = new File(_tempDir, "cache");
+      ClassLoader loader = new PathClassLoader(EmptyClassLoader.INSTANCE, jar);
+      String sigName = ClassSignature.class.getName().replace('.', '/') + ".class";
+      String memberName = Member.class.getName().replace('.', '/') + ".class";
+      
+      ClassSignatureCache cache = new ClassSignatureCache(cacheDir);
+      ClassSignature sig = cache.get(sigName, loader);
+      assertSame(sig, cache.get(sigName, loader));
+      assertNull(cache.get("Missing.class", loader));
+      assertEquals(1, cache.readCount());
+      cache.save();
+      assertEquals(1, cacheDir.listFiles().length);
+      
+      ClassSignatureCache cache2 = new ClassSignatureCache(cacheDir);
+      assertEquals(_describe(sig), _describe(cache2.get(sigName, loader)));
+      assertEquals(0, cache2.readCount());
+      cache2.get(memberName, loader);
+      assertEquals(1, cache2.readCount());
+      cache2.save();
+      
+      ClassSignatureCache cache3 = new ClassSignatureCache(cacheDir);
+      cache3.get(sigName, loader);
+      cache3.get(memberName, loader);
+      assertEquals(0, cache3.readCount());
+      
+      // a changed jar is read again
+      assertTrue(jar.delete());
+      _makeJar("classes.jar", Member.class);
+      assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+      loader = new PathClassLoader(EmptyClassLoader.INSTANCE, jar);
+      assertNull(cache3.get(sigName, loader));
+      cache3.get(memberName, loader);
+      assertEquals(1, cache3.readCount());
+    }
+  }
+}
@@ -91,7 +91,10 @@ public abstract class Data {
   /** Set the fully qualified name of this data.  ?? What is the name for an arbitrary Data?  Not well-defined.
     * @param name  The new fully qualified name of this data.
     */
-  void setName(String name) { _name = name; }
+  void setName(String name) { 
+    SymbolData.changed();
+    _name = name; 
+  }
   
 //  // analyzes name to determine if this Data represents an anonymous class.  Is this Data an Instance or Symbol?
 //  public Boolean isAnonymousClass() {
@@ -215,6 +218,7 @@ public abstract class Data {
     * @param modifiersAndVisibility  The ModifiersAndVisibility to assign to this data.
     */
   public void setMav(ModifiersAndVisibility modifiersAndVisibility) {
+    SymbolData.changed();
     _modifiersAndVisibility = modifiersAndVisibility;
   }
   
@@ -233,6 +237,7 @@ public abstract class Data {
       return;
     }
     if (_outerData == null || _outerData.equals(outerData)) {
+      SymbolData.changed();
       _outerData = outerData;
       if (! _enclosingData.contains(outerData)) _enclosingData.addLast(outerData);
     }
@@ -403,12 +408,18 @@ public abstract class Data {
   public LinkedList<SymbolData> getInnerClasses() { return _innerClasses; }
   
   /** Sets the inner classes of this Data. */
-  public void setInnerClasses(LinkedList<SymbolData> innerClasses) { _innerClasses = innerClasses; }  
+  public void setInnerClasses(LinkedList<SymbolData> innerClasses) { 
+    SymbolData.changed();
+    _innerClasses = innerClasses; 
+  }  
   
   /** Add the specified SymbolData to the end of the list of inner classes.
     * @param innerClass  The SymbolData to add.
     */
-  public void addInnerClass(SymbolData innerClass) { _innerClasses.addLast(innerClass); }
+  public void addInnerClass(SymbolData innerClass) { 
+    SymbolData.changed();
+    _innerClasses.addLast(innerClass); 
+  }
   
   /** @return  true if this data has the specified String modifier, and false otherwise. */
   public boolean hasModifier(String modifier) {
@@ -428,6 +439,7 @@ public abstract class Data {
     */
   public void addModifier(String modifier) {
     if (! hasModifier(modifier)) {
+      SymbolData.changed();
       if (_modifiersAndVisibility == null) { setMav(new ModifiersAndVisibility(SourceInfo.NONE, new String[0])); }
       String[] modifiers = _modifiersAndVisibility.getModifiers();
       String[] newModifiers = new String[modifiers.length + 1];
@@ -0,0 +1,317 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.javalanglevels;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+import edu.rice.cs.javalanglevels.tree.*;
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.iter.IterUtil;
+import edu.rice.cs.plt.reflect.JavaVersion;
+
+/** Records, for each file converted by a LanguageLevelConverter, the classes it defines, the names it references, 
+  * and the state of the file and of its generated .java file when it was last converted.  A converter given a 
+  * DependencyGraph only re-converts the files that have changed since their last successful conversion, along with 
+  * the files that (directly or indirectly) reference classes defined in changed files; the generated .java files of 
+  * all other files are left as they are.  References are determined syntactically, by name, so they may include 
+  * names that are not classes at all; this can only cause unnecessary re-conversion.  A graph is used by one 
+  * converter at a time.
+  */
+public class DependencyGraph {
+  
+  /** The recorded information for a single source file. */
+  private static class Node {
+    /** Fully qualified names of the top-level classes defined in the file */
+    public final Set<String> defines;
+    /** Simple names of the top-level classes defined in the file */
+    public final Set<String> topLevelClasses;
+    /** Simple and qualified names that appear in the file */
+    public final Set<String> references;
+    /** The modification time and length of the source file when it was last converted; -1 if it is out of date */
+    public long sourceModified = -1;
+    public long sourceLength = -1;
+    /** The modification time of the generated file when it was last converted (0 if there is none) */
+    public long outputModified = -1;
+    
+    public Node(Set<String> d, Set<String> t, Set<String> r) { defines = d; topLevelClasses = t; references = r; }
+  }
+  
+  /** Maps canonical source files to their nodes. */
+  private final Map<File, Node> _nodes = new HashMap<File, Node>();
+  
+  /** Identifies the options used in the last conversion; a change in options invalidates the whole graph. */
+  private String _optionsKey = null;
+  
+  /** The files that were re-converted by the most recent conversion. */
+  private Set<File> _lastConverted = new LinkedHashSet<File>();
+  
+  /** Canonical form of the given file, used as a key. */
+  private static File _key(File f) { return IOUtil.attemptCanonicalFile(f); }
+  
+  /** Discards all information if options differ from the options of the last conversion. */
+  void checkOptions(Options options) {
+    String key = options.javaVersion() + "|" + IterUtil.toString(options.classPath()) + "|" + 
+      IterUtil.toString(options.bootClassPath());
+    if (! key.equals(_optionsKey)) { _nodes.clear(); _optionsKey = key; }
+  }
+  
+  /** @return  true iff f and its generated file are unchanged since f was last successfully converted */
+  public boolean isUpToDate(File f) {
+    Node n = _nodes.get(_key(f));
+    return n != null && n.sourceModified == f.lastModified() && n.sourceLength == f.length() &&
+      n.outputModified == LanguageLevelConverter.getJavaForLLFile(f).lastModified();
+  }
+  
+  /** Records the structure of a newly parsed file, which is out of date until it is converted.
+    * @param packageName  The package of the file, or "" for the default package
+    * @param topLevelClasses  The simple names of the top-level classes defined in the file
+    * @param references  The names that appear in the file */
+  void update(File f, String packageName, Set<String> topLevelClasses, Set<String> references) {
+    Set<String> defines = new HashSet<String>();
+    for (String c : topLevelClasses) { defines.add(packageName.length() == 0 ? c : packageName + "." + c); }
+    _nodes.put(_key(f), new Node(defines, topLevelClasses, references));
+  }
+  
+  /** @return  The simple names of the top-level classes defined in f when it was last parsed, or null if unknown */
+  public Set<String> topLevelClasses(File f) {
+    Node n = _nodes.get(_key(f));
+    return (n == null) ? null : n.topLevelClasses;
+  }
+  
+  /** @return  The qualified names of the classes defined in the given files, as last recorded */
+  Set<String> definedBy(Iterable<File> files) {
+    Set<String> result = new HashSet<String>();
+    for (File f : files) {
+      Node n = _nodes.get(_key(f));
+      if (n != null) result.addAll(n.defines);
+    }
+    return result;
+  }
+  
+  /** @return  true iff the recorded references of f include the simple or qualified name of one of the given classes */
+  private boolean _references(Node n, Set<String> classNames) {
+    for (String c : classNames) {
+      if (n.references.contains(c) || n.references.contains(c.substring(c.lastIndexOf('.') + 1))) return true;
+    }
+    return false;
+  }
+  
+  /** Computes the files among candidates that must be re-converted because they depend, directly or indirectly, on the
+    * classes in changedClasses, which are defined in the files changed (before or after the change).  Recorded files 
+    * outside of candidates that depend on these classes are marked out of date, so that they are re-converted when they 
+    * are next converted.
+    * @return  changed and the dependent files, in the order of candidates */
+  Set<File> dependents(Iterable<File> candidates, Set<File> changed, Set<String> changedClasses) {
+    Set<File> dirty = new HashSet<File>();
+    for (File f : changed) dirty.add(_key(f));
+    Set<String> classes = new HashSet<String>(changedClasses);
+    boolean grew = true;
+    while (grew) {
+      grew = false;
+      for (Map.Entry<File, Node> e : _nodes.entrySet()) {
+        if (! dirty.contains(e.getKey()) && _references(e.getValue(), classes)) {
+          dirty.add(e.getKey());
+          classes.addAll(e.getValue().defines);
+          grew = true;
+        }
+      }
+    }
+    Set<File> result = new LinkedHashSet<File>();
+    for (File f : candidates) { if (dirty.remove(_key(f))) result.add(f); }
+    for (File f : dirty) { invalidate(f); }
+    return result;
+  }
+  
+  /** Computes the unchanged files among candidates whose symbols are needed to convert the files in dirty: the files 
+    * defining classes that they reference, directly or through other such files.  Files whose class files are up to 
+    * date are not included (nor are their own dependencies), since the converter reads classes from those.
+    * @return  the needed files, in the order of candidates */
+  Set<File> dependencies(Iterable<File> candidates, Set<File> dirty) {
+    Set<File> needed = new HashSet<File>();
+    LinkedList<File> toVisit = new LinkedList<File>(dirty);
+    while (! toVisit.isEmpty()) {
+      Node n = _nodes.get(_key(toVisit.removeFirst()));
+      if (n == null) continue;
+      for (File f : candidates) {
+        if (dirty.contains(f) || needed.contains(f)) continue;
+        Node m = _nodes.get(_key(f));
+        if (m != null && _references(n, m.defines) && ! _hasClassFiles(f, m)) {
+          needed.add(f);
+          toVisit.add(f);
+        }
+      }
+    }
+    Set<File> result = new LinkedHashSet<File>();
+    for (File f : candidates) { if (needed.contains(f)) result.add(f); }
+    return result;
+  }
+  
+  /** @return  true iff each top-level class of f has a class file next to f that is newer than f */
+  private static boolean _hasClassFiles(File f, Node n) {
+    File dir = f.getAbsoluteFile().getParentFile();
+    if (n.topLevelClasses.isEmpty()) return false;
+    for (String c : n.topLevelClasses) {
+      if (new File(dir, c + ".class").lastModified() < f.lastModified()) return false;
+    }
+    return true;
+  }
+  
+  /** Records that the given files were successfully converted, so they are up to date until they or their generated 
+    * files change. */
+  void converted(Iterable<File> files) {
+    _lastConverted = new LinkedHashSet<File>();
+    for (File f : files) {
+      Node n = _nodes.get(_key(f));
+      if (n == null) continue;
+      n.sourceModified = f.lastModified();
+      n.sourceLength = f.length();
+      n.outputModified = LanguageLevelConverter.getJavaForLLFile(f).lastModified();
+      _lastConverted.add(f);
+    }
+  }
+  
+  /** Records that the conversion of the given files failed, so they must be re-converted. */
+  void failed(Iterable<File> files) {
+    _lastConverted = new LinkedHashSet<File>();
+    for (File f : files) { invalidate(f); }
+  }
+  
+  /** Marks f as out of date, so it is re-converted when it is next converted. */
+  public void invalidate(File f) {
+    Node n = _nodes.get(_key(f));
+    if (n != null) n.sourceModified = -1;
+  }
+  
+  /** Discards all recorded information. */
+  public void clear() { _nodes.clear(); _lastConverted = new LinkedHashSet<File>(); }
+  
+  /** @return  The files that were re-converted by the most recent successful conversion */
+  public Set<File> lastConverted() { return Collections.unmodifiableSet(_lastConverted); }
+  
+  /** Collects the names of the classes defined in, and the names appearing in, a source file. */
+  static class NameCollector extends JExpressionIFDepthFirstVisitor_void {
+    public final Set<String> names = new HashSet<String>();
+    
+    public void defaultDoFirst(JExpressionIF that) {
+      if (that instanceof Word) names.add(((Word) that).getText());
+      else if (that instanceof Type) {
+        String name = ((Type) that).getName();
+        names.add(name);
+        for (String s : name.split("[^\\p{javaJavaIdentifierPart}]+")) names.add(s);
+      }
+    }
+  }
+  
+  /** Test class for DependencyGraph: converts small language level projects incrementally. */
+  public static class DependencyGraphTest extends TestCase {
+    
+    private File _tempDir;
+    private File _a, _b, _c, _d;
+    
+    public DependencyGraphTest() { this(""); }
+    public DependencyGraphTest(String name) { super(name); }
+    
+    public void setUp() throws IOException { 
+      _tempDir = IOUtil.createAndMarkTempDirectory("lldeps", ""); 
+      _a = _write("A.dj", "class A { int x; }");
+      _b = _write("B.dj", "class B extends A { int y; }");
+      _c = _write("C.dj", "class C { int get(B b) { return b.x() + b.y(); } }");
+      _d = _write("D.dj", "class D { int z; }");
+    }
+    public void tearDown() { IOUtil.deleteRecursively(_tempDir); }
+    
+    private File _write(String name, String text) throws IOException {
+      File f = new File(_tempDir, name);
+      IOUtil.writeStringToFile(f, text);
+      return f;
+    }
+    
+    /** Changes the contents of f, ensuring that its modification time changes. */
+    private void _change(File f, String text) throws IOException {
+      long modified = f.lastModified();
+      IOUtil.writeStringToFile(f, text);
+      f.setLastModified(modified + 2000);
+    }
+    
+    private void _convert(DependencyGraph graph, File... files) {
+      Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>> result =
+        new LanguageLevelConverter().convert(files, new Options(JavaVersion.JAVA_8, IterUtil.<File>empty()),
+                                             new HashMap<File, Set<String>>(), graph);
+      assertEquals("parse errors", 0, result.getFirst().size());
+      assertEquals("visitor errors: " + result.getSecond(), 0, result.getSecond().size());
+    }
+    
+    private static Set<File> _set(File... files) { return new HashSet<File>(Arrays.asList(files)); }
+    
+    public void testIncrementalConversion() throws IOException {
+      DependencyGraph graph = new DependencyGraph();
+      _convert(graph, _a, _b, _c, _d);
+      assertEquals(_set(_a, _b, _c, _d), new HashSet<File>(graph.lastConverted()));
+      assertTrue(graph.isUpToDate(_a));
+      
+      _convert(graph, _a, _b, _c, _d);
+      assertEquals(_set(), new HashSet<File>(graph.lastConverted()));
+      
+      _change(_d, "class D { int z; int w; }");
+      assertFalse(graph.isUpToDate(_d));
+      _convert(graph, _a, _b, _c, _d);
+      assertEquals(_set(_d), new HashSet<File>(graph.lastConverted()));
+      
+      // The generated constructor of B, which C may use, depends on the fields of A
+      _change(_a, "class A { int x; int q; }");
+      _convert(graph, _a, _b, _c, _d);
+      assertEquals(_set(_a, _b, _c), new HashSet<File>(graph.lastConverted()));
+      
+      // A deleted output is regenerated
+      assertTrue(new File(_tempDir, "C.java").delete());
+      _convert(graph, _a, _b, _c, _d);
+      assertEquals(_set(_c), new HashSet<File>(graph.lastConverted()));
+      assertTrue(new File(_tempDir, "C.java").exists());
+    }
+    
+    public void testNameCollector() throws Exception {
+      NameCollector c = new NameCollector();
+      new edu.rice.cs.javalanglevels.parser.JExprParser(_c).SourceFile().visit(c);
+      assertTrue(c.names.contains("B"));
+      assertTrue(c.names.contains("x"));
+      assertFalse(c.names.contains("A"));
+    }
+  }
+}
@@ -39,6 +39,8 @@ package edu.rice.cs.javalanglevels;
 import java.lang.reflect.Modifier;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.objectweb.asm.*;
 
@@ -72,6 +74,9 @@ public class LanguageLevelConverter {
     * LanguageLevelConverter instance for each translation, we must drop the static attribute. */
   public static final Symboltable symbolTable = new Symboltable();
   
+  /** The signatures of library classes, which (unlike the symbolTable) are kept across conversions and sessions. */
+  public static final ClassSignatureCache SIGNATURES = new ClassSignatureCache(ClassSignatureCache.defaultDirectory());
+  
   public static Options OPT = Options.DEFAULT;
   
   /* For Corky's version: set this to false */
@@ -94,6 +99,9 @@ public class LanguageLevelConverter {
   /**Holds any visitor exceptions that are encountered*/
   private LinkedList<Pair<String, JExpressionIF>> _visitorErrors = new LinkedList<Pair<String, JExpressionIF>>();
   
+  /** The number of threads used to parse files. */
+  private int _parallelism = Runtime.getRuntime().availableProcessors();
+  
   /* Relying on default constructor. */
   
   /** Ensures that the symbol table contains essential symbols.  Executed as part of LanguageLevelVisitor init
@@ -156,9 +164,9 @@ public class LanguageLevelConverter {
     return _classFile2SymbolData(qualifiedClassName, null);
   }
   
-  /** Uses the ASM class reader to read the class file corresponding to the class in the specified directory, and uses
-    * the information from ASM to build a SymbolData corresponding to the class.  Ensures that the returned SymbolData
-    * (if any) is inserted in the symbolTable.  Silently fails returning null instead of throwing an exception.
+  /** Uses the ASM class reader to read the class file corresponding to the class in the specified directory (or finds
+    * its signature in SIGNATURES), and uses the information from ASM to build a SymbolData corresponding to the class.
+    * Ensures that the returned SymbolData (if any) is inserted in the symbolTable.  Silently fails returning null instead of throwing an exception.
     * Relies on fact that a static variable, namely LanguageLevelConverter.symbolTable holds the symbol table. UGHH!!
     * There should be a symbol table object and this method should be an instance method of that object!!
     * @param qualifiedClassName  The fully qualified class name of the class we are looking up
@@ -168,20 +176,20 @@ public class LanguageLevelConverter {
   public static SymbolData _classFile2SymbolData(final String qualifiedClassName, final String programRoot) {
     _log.log("***** _classFile2SymbolData(" + qualifiedClassName + ", " + programRoot + ") called");
     
-    ClassReader reader = null;
+    ClassSignatureCache.ClassSignature signature = null;
     try {
       String fileName = qualifiedClassName.replace('.', '/') + ".class";
       _log.log("***** reading class file: " + fileName);
-      InputStream stream = RESOURCES.value().getResourceAsStream(fileName);
-      if (stream == null && programRoot != null) {
-        stream = PathClassLoader.getResourceInPathAsStream(fileName, new File(programRoot));
+      signature = SIGNATURES.get(fileName, RESOURCES.value());
+      if (signature == null && programRoot != null) {
+        InputStream stream = PathClassLoader.getResourceInPathAsStream(fileName, new File(programRoot));
+        // Let IOUtil handle the stream here, because it closes it when it's done, unlike ASM.
+        if (stream != null) signature = ClassSignatureCache.read(IOUtil.toByteArray(stream));
       }
-      if (stream == null) { 
+      if (signature == null) { 
         _log.log("***** class file was empty! *****");
         return null; 
       }
-      // Let IOUtil handle the stream here, because it closes it when it's done, unlike ASM.
-      reader = new ClassReader(IOUtil.toByteArray(stream));
     }
     catch (IOException e) { return null; }
     
@@ -301,7 +309,7 @@ public class LanguageLevelConverter {
       
     };
     _log.log("***** Loading member signatures for file system class " + qualifiedClassName + " and all of its unloaded supertypes");
-    reader.accept(extractData, ClassReader.SKIP_CODE);
+    signature.accept(extractData);
 //    System.err.println("####### Finished loading " + qualifiedClassName);
     
     // Remove the class from the list of continuations to resolve.
@@ -382,9 +390,22 @@ public class LanguageLevelConverter {
     * @param files  The array of files to process.
     * @param sourceToTopLevelClassMap  A map from source files to names of top-level classes created from that source file;
     *        it is initially empty and subsequently filled out by this method */
-  // "Visit" is an extremely vague notion; I presume it means construct a symbol table for the file.
   public Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>>
     convert(File[] files, Options options, Map<File,Set<String>> sourceToTopLevelClassMap) {
+    return convert(files, options, sourceToTopLevelClassMap, null);
+  }
+  
+  /** Parse, visit, type check, and convert the language level files in files that have changed since they were last
+    * converted with the given dependency graph, along with the files that depend on them.  Unchanged files that define
+    * classes needed by these files are visited to construct their symbols, but are not type checked or converted again.
+    * @param files  The array of files to process.
+    * @param sourceToTopLevelClassMap  A map from source files to names of top-level classes created from that source file;
+    *        it is initially empty and subsequently filled out by this method
+    * @param graph  The dependency graph recorded by earlier conversions of these files, which is updated by this method;
+    *        if null, all files are converted */
+  // "Visit" is an extremely vague notion; I presume it means construct a symbol table for the file.
+  public Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>>
+    convert(File[] files, Options options, Map<File,Set<String>> sourceToTopLevelClassMap, DependencyGraph graph) {
     
 //    System.err.println("LanguageLevelConverter.convert called on files:  " + Arrays.toString(files));
     _log.log("LanguageLevelConverter.convert called on files:  " + Arrays.toString(files));
@@ -445,51 +466,48 @@ public class LanguageLevelConverter {
     /* Maintains the list of Full Java files, which are parsed for symbols and checked for gross errors. */
     LinkedList<File> javaFiles = new LinkedList<File>();
     
-    /** First pass: classfication and conformance checking */
-    for (File f : files) {    
+    /* Unchanged files that are visited only to construct the symbols needed by the files being converted. */
+    Set<File> contextFiles = new HashSet<File>();
+    
+    /* The parsed files to visit, in the order of files. */
+    ParsedFile[] parsedFiles;
+    if (graph == null) parsedFiles = _parseAll(files);
+    else {
+      parsedFiles = _parseIncremental(files, graph, contextFiles);
+      for (File f : files) {
+        Set<String> topLevelClasses = graph.topLevelClasses(f);
+        if (topLevelClasses != null) sourceToTopLevelClassMap.put(f, topLevelClasses);
+      }
+    }
+    
+    /** First pass: classfication and conformance checking.  The files are parsed in parallel (parsing has no shared 
+      * state), but are classified and visited in order, since visiting updates the shared symbol table. */
+    for (ParsedFile pf : parsedFiles) {    
+      File f = pf.file;
       try {
 //        if (filesNotToCheck.contains(f)) continue;  // Detects equal File objects
         
+        if (pf.ioException != null) throw pf.ioException;
+        
         // Check for a null file
-        BufferedReader tempBr = new BufferedReader(new FileReader(f));
-        String firstLine = tempBr.readLine();
-        tempBr.close();
-        if (firstLine == null) continue;
+        if (pf.isEmpty) continue;
         
         if (isAdvancedFile(f))  advanced.addLast(f);
         else if (isFullJavaFile(f)) javaFiles.addLast(f);
         
         if (isJavaFile(f)) {  /* a .dj0, .dj1, .dj2,, .dj, or .java file; all but .dj and .java are legacy */
           System.out.flush();
-          SourceFile sf = null;
-          JExprParser jep = new JExprParser(f);
-          try { 
-            _log.log("Parsing " + f);
-            sf = jep.SourceFile();  // Does the SourceFile method parse the file f embedded in jep?  NO!
-            // Parse the classes in sf
-            final Set<String> topLevelClasses = new HashSet<String>();
-            final SourceFile fsf = sf;
-            for (TypeDefBase t: sf.getTypes()) {
-              t.visit(new JExpressionIFAbstractVisitor<Void>() {
-                public Void forClassDef(ClassDef that) {
-                  String className = that.getName().getText();
-                  _log.log("Class '" + className + "' found in file " + fsf);
-                  topLevelClasses.add(className); 
-                  return null; 
-                }
-                public Void defaultCase(JExpressionIF that) { return null; }
-              });
-            }
-            sourceToTopLevelClassMap.put(f, topLevelClasses);
-            _log.log("Completed parsing " + f);
-          } 
-          catch (ParseException pe) {
+          if (pf.parseException != null) {
             // If there is a ParseException, go to next file.
-            _addParseException(pe);
-            _log.log("GENERATED (non-Parse) exception in parsing file " + sf);
+            _addParseException(pf.parseException);
+            _log.log("GENERATED (non-Parse) exception in parsing file " + f);
             continue;
           }
-          catch (Exception pe) { throw new UnexpectedException(pe); }  // catch any other Exceptions thrown in parsing
+          if (pf.error != null) throw pf.error;
+          if (pf.exception != null) throw new UnexpectedException(pf.exception);  // any other Exception in parsing
+          
+          SourceFile sf = pf.sourceFile;
+          sourceToTopLevelClassMap.put(f, pf.topLevelClasses);
           
           LinkedList<String> importedPackageBase = new LinkedList<String>();
           importedPackageBase.add("java.lang");
@@ -591,13 +609,16 @@ public class LanguageLevelConverter {
     /* If there are no errors, perform type-checking on LL files. */
     if (languageLevelVisitorErrors.size() > 0)  _visitorErrors.addAll(languageLevelVisitorErrors);
     else  {
-      /* Perform type-checking on visited LL files and build list of files toAugment. */
+      /* Perform type-checking on visited LL files and build list of files toAugment.  Type checking stays sequential:
+       * the type checkers record errors in the static LanguageLevelVisitor.errors and may add symbols to the shared
+       * symbol table. */
       for (Triple<LanguageLevelVisitor, SourceFile, File> triple: visited) {
         
         LanguageLevelVisitor llv = triple.getFirst();
         SourceFile sf = triple.getSecond();
         File f = triple.getThird();
         
+        if (contextFiles.contains(f)) continue;  // already type checked and converted
         if (isAdvancedFile(f)) { toAugment.addLast(triple); }
         else if (isLanguageLevelFile(f)) {
           // This is a hack to get around the following problem.  Basically, when we autobox in isAssignableTo in 
@@ -658,15 +679,19 @@ public class LanguageLevelConverter {
 //      }
 //  }
     
+    SIGNATURES.save();
+    
     // If there were any errors in the llv pass or the type checking pass, just return them.
     if (_parseExceptions.size() > 0 || _visitorErrors.size() > 0) {
+      if (graph != null) graph.failed(_convertedFiles(parsedFiles, contextFiles));
       return new Pair<LinkedList<JExprParseException>, 
         LinkedList<Pair<String, JExpressionIF>>>(_parseExceptions, _visitorErrors);
     }
 //    Utilities.show("Processed LL files: " + Arrays.toString(files));
 //    Utilities.show("mediator is: " + mediator);
     
-    /* Perform code augmentation. */   
+    /* Perform code augmentation.  Augmentation stays sequential: the Augmentor keeps its input, output, and line 
+     * number map in static fields and mutates the shared SymbolData (anonymous class numbering, added fields). */   
     for (Triple<LanguageLevelVisitor, SourceFile, File> triple: toAugment)  {
       try {
         LanguageLevelVisitor llv = triple.getFirst();
@@ -733,10 +758,173 @@ public class LanguageLevelConverter {
         _addVisitorError(new Pair<String, JExpressionIF>(ioe.getMessage(), new NullLiteral(SourceInfo.NONE)));
       }
     }
+    if (graph != null) {
+      if (_visitorErrors.size() > 0) graph.failed(_convertedFiles(parsedFiles, contextFiles));
+      else graph.converted(_convertedFiles(parsedFiles, contextFiles));
+    }
     return new Pair<LinkedList<JExprParseException>, 
       LinkedList<Pair<String, JExpressionIF>>>(_parseExceptions, _visitorErrors);
   }
   
+  /** The result of reading and parsing a single file in the parsing pass.  Exactly one of the exception fields, 
+    * isEmpty, or sourceFile is set (sourceFile is not set for files that are not Java files). */
+  private static class ParsedFile {
+    public final File file;
+    public boolean isEmpty = false;
+    public SourceFile sourceFile = null;
+    public String packageName = "";
+    public Set<String> topLevelClasses = null;
+    public Set<String> references = null;
+    public IOException ioException = null;
+    public ParseException parseException = null;
+    public Exception exception = null;
+    public Error error = null;
+    public ParsedFile(File f) { file = f; }
+  }
+  
+  /** Sets the number of threads used to parse files; 1 parses them in the calling thread.  Defaults to the number of 
+    * available processors. */
+  public void setParallelism(int parallelism) { _parallelism = Math.max(1, parallelism); }
+  
+  /** Reads and parses the given files, in parallel if more than one thread is allowed.
+    * @return the results, in the same order as files */
+  private ParsedFile[] _parseAll(File[] files) {
+    ParsedFile[] result = new ParsedFile[files.length];
+    ParseTask task = new ParseTask(files, result, 0, files.length);
+    if (_parallelism == 1 || files.length <= 1) task.compute();
+    else {
+      ForkJoinPool pool = new ForkJoinPool(_parallelism);
+      try { pool.invoke(task); }
+      finally { pool.shutdown(); }
+    }
+    return result;
+  }
+  
+  /** Parses the files in files that must be visited to convert the files that are not up to date in graph, recording 
+    * their structure in graph.
+    * @param contextFiles  Filled with the unchanged files that are parsed only for the symbols they define
+    * @return  The parsed files, in the order of files */
+  private ParsedFile[] _parseIncremental(File[] files, DependencyGraph graph, Set<File> contextFiles) {
+    graph.checkOptions(OPT);
+    List<File> candidates = Arrays.asList(files);
+    Map<File, ParsedFile> parsed = new HashMap<File, ParsedFile>();
+    
+    LinkedList<File> changed = new LinkedList<File>();
+    for (File f : files) { if (! graph.isUpToDate(f)) changed.add(f); }
+    Set<String> changedClasses = graph.definedBy(changed);  // classes defined before the change
+    _recordParsed(_parseAll(changed.toArray(new File[changed.size()])), graph, parsed);
+    changedClasses.addAll(graph.definedBy(changed));  // and after
+    
+    Set<File> dirty = graph.dependents(candidates, new HashSet<File>(changed), changedClasses);
+    _recordParsed(_parseAll(_unparsed(dirty, parsed)), graph, parsed);
+    contextFiles.addAll(graph.dependencies(candidates, dirty));
+    _recordParsed(_parseAll(_unparsed(contextFiles, parsed)), graph, parsed);
+    
+    LinkedList<ParsedFile> result = new LinkedList<ParsedFile>();
+    for (File f : files) {
+      if (dirty.contains(f) || contextFiles.contains(f)) result.add(parsed.get(f));
+    }
+    return result.toArray(new ParsedFile[result.size()]);
+  }
+  
+  /** @return  The files in files that are not keys of parsed */
+  private static File[] _unparsed(Set<File> files, Map<File, ParsedFile> parsed) {
+    LinkedList<File> result = new LinkedList<File>();
+    for (File f : files) { if (! parsed.containsKey(f)) result.add(f); }
+    return result.toArray(new File[result.size()]);
+  }
+  
+  /** Records the structure of the successfully parsed files in graph, and marks the others as out of date. */
+  private static void _recordParsed(ParsedFile[] files, DependencyGraph graph, Map<File, ParsedFile> parsed) {
+    for (ParsedFile pf : files) {
+      parsed.put(pf.file, pf);
+      if (pf.sourceFile != null) graph.update(pf.file, pf.packageName, pf.topLevelClasses, pf.references);
+      else if (pf.isEmpty || ! isJavaFile(pf.file)) {
+        graph.update(pf.file, "", Collections.<String>emptySet(), Collections.<String>emptySet());
+      }
+      else graph.invalidate(pf.file);
+    }
+  }
+  
+  /** @return  The files that were converted, rather than just visited as context */
+  private static List<File> _convertedFiles(ParsedFile[] files, Set<File> contextFiles) {
+    List<File> result = new LinkedList<File>();
+    for (ParsedFile pf : files) { if (! contextFiles.contains(pf.file)) result.add(pf.file); }
+    return result;
+  }
+  
+  /** Parses files[start, end) into results[start, end), dividing the range among subtasks. */
+  private static class ParseTask extends RecursiveAction {
+    private final File[] _files;
+    private final ParsedFile[] _results;
+    private final int _start;
+    private final int _end;
+    
+    public ParseTask(File[] files, ParsedFile[] results, int start, int end) {
+      _files = files; _results = results; _start = start; _end = end;
+    }
+    
+    public void compute() {
+      if (_end - _start > 1) {
+        int mid = (_start + _end) >>> 1;
+        invokeAll(new ParseTask(_files, _results, _start, mid), new ParseTask(_files, _results, mid, _end));
+      }
+      else if (_end > _start) _results[_start] = _parse(_files[_start]);
+    }
+  }
+  
+  /** Reads and parses a single file, recording any failure in the result rather than throwing it. */
+  private static ParsedFile _parse(File f) {
+    ParsedFile result = new ParsedFile(f);
+    try {
+      BufferedReader tempBr = new BufferedReader(new FileReader(f));
+      String firstLine = tempBr.readLine();
+      tempBr.close();
+      if (firstLine == null) { result.isEmpty = true; return result; }
+      if (! isJavaFile(f)) return result;
+      
+      JExprParser jep = new JExprParser(f);
+      try {
+        _log.log("Parsing " + f);
+        SourceFile sf = jep.SourceFile();  // Does the SourceFile method parse the file f embedded in jep?  NO!
+        // Parse the classes in sf
+        final Set<String> topLevelClasses = new HashSet<String>();
+        final SourceFile fsf = sf;
+        for (TypeDefBase t: sf.getTypes()) {
+          t.visit(new JExpressionIFAbstractVisitor<Void>() {
+            public Void forClassDef(ClassDef that) {
+              String className = that.getName().getText();
+              _log.log("Class '" + className + "' found in file " + fsf);
+              topLevelClasses.add(className); 
+              return null; 
+            }
+            public Void defaultCase(JExpressionIF that) { return null; }
+          });
+        }
+        DependencyGraph.NameCollector names = new DependencyGraph.NameCollector();
+        sf.visit(names);
+        PackageStatement[] packages = sf.getPackageStatements();
+        if (packages.length > 0) {
+          StringBuilder packageName = new StringBuilder();
+          for (Word w : packages[0].getCWord().getWords()) {
+            if (packageName.length() > 0) packageName.append('.');
+            packageName.append(w.getText());
+          }
+          result.packageName = packageName.toString();
+        }
+        result.sourceFile = sf;
+        result.topLevelClasses = topLevelClasses;
+        result.references = names.names;
+        _log.log("Completed parsing " + f);
+      }
+      catch (ParseException pe) { result.parseException = pe; }
+      catch (Exception e) { result.exception = e; }  // any other Exceptions thrown in parsing
+    }
+    catch (IOException ioe) { result.ioException = ioe; }
+    catch (Error e) { result.error = e; }
+    return result;
+  }
+  
   /** If a file name ends with .dj0, it is an Elementary File*/
   public static boolean isElementaryFile(File f) { return f.getPath().endsWith(".dj0"); } 
   /** If a file name ends with .dj1, it is an Intermediate File*/
@@ -757,7 +945,7 @@ public class LanguageLevelConverter {
     return isLanguageLevelFile(f) || isAdvancedFile(f) || isFullJavaFile(f);
   }
   
-  private static File getJavaForLLFile(File f) {
+  static File getJavaForLLFile(File f) {
     String augmentedFilePath = f.getAbsolutePath();
     int dotPos = augmentedFilePath.lastIndexOf('.');
     augmentedFilePath = augmentedFilePath.substring(0, dotPos); //remove the extension
@@ -1881,7 +1881,7 @@ public class LanguageLevelVisitor extends JExpressionIFPrunableDepthFirstVisitor
     * throw an error, because generated methods cannot be overwritten.
     */
   protected static void addGeneratedMethod(SymbolData sd, MethodData md) {
-    MethodData rmd = SymbolData.repeatedSignature(sd.getMethods(), md);
+    MethodData rmd = sd.repeatedSignature(md);
     if (rmd == null) {
       sd.addMethod(md, true);
       md.setGenerated(true);
@@ -379,6 +379,28 @@ public class SymbolData extends TypeData {
   /* The number of anonymous inner classes, used in naming them. */
   private int _anonymousInnerClassNum;
   
+  /** Incremented whenever a SymbolData (or any Data, which may be part of one) changes in a way that could change the
+    * result of isSubClassOf or getInheritedMethodsNamed; the cached results of those queries are then discarded. */
+  private static int _version = 0;
+  
+  /** The methods of this SymbolData indexed by name; each array holds the overloads in the order they were added.  
+    * Built lazily, and rebuilt if _methods is replaced or modified directly. */
+  private HashMap<String, MethodData[]> _methodsByName;
+  
+  /** The size of _methods when _methodsByName was last updated. */
+  private int _indexedMethodCount;
+  
+  /** The value of _version for which _subClassOf and _inheritedMethods are valid. */
+  private int _cacheVersion = -1;
+  
+  /** Memoized results of isSubClassOf, keyed by the argument. */
+  private IdentityHashMap<SymbolData, Boolean> _subClassOf;
+  
+  /** Memoized results of getInheritedMethodsNamed, keyed by the method name. */
+  private HashMap<String, List<Pair<SymbolData, MethodData>>> _inheritedMethods;
+  
+  private static final MethodData[] NO_METHODS = new MethodData[0];
+  
   /** Constructors */
   
   /** Constructor for SymbolData
@@ -601,6 +623,19 @@ public class SymbolData extends TypeData {
      */
    public boolean isSubClassOf(SymbolData sd) {
     if (sd == null || sd.isPrimitiveType() || this.isPrimitiveType()) return false;
+    if (this == sd) return true;
+    _checkCacheVersion();
+    if (_subClassOf == null) _subClassOf = new IdentityHashMap<SymbolData, Boolean>();
+    Boolean result = _subClassOf.get(sd);
+    if (result == null) {
+      result = _isSubClassOf(sd);
+      _subClassOf.put(sd, result);
+    }
+    return result;
+  }
+  
+  /** Computes isSubClassOf(sd) for a non-null, non-primitive sd. */
+  private boolean _isSubClassOf(SymbolData sd) {
     if (this.equals(sd)) return true;
     if (sd.isInterface()) {
       for (SymbolData i: _interfaces) {
@@ -647,7 +682,10 @@ public class SymbolData extends TypeData {
   public String getPackage() { return _package; }
   
   /** Sets the package to the specified value */
-  public void setPackage(String pkg) { _package = pkg;  }
+  public void setPackage(String pkg) { 
+    changed();
+    _package = pkg;  
+  }
   
   /** @return the generic type parameters */
   public TypeParameter[] getTypeParameters() {
@@ -656,6 +694,7 @@ public class SymbolData extends TypeData {
   
   /**Set the generic type parameters to the specified value*/
   public void setTypeParameters(TypeParameter[] typeParameters) {
+    changed();
     _typeParameters = typeParameters;
   }
   
@@ -665,6 +704,7 @@ public class SymbolData extends TypeData {
   }
   
   public void setInterface(boolean ii) {
+    changed();
     _isInterface = ii;
   }
   
@@ -768,7 +808,10 @@ public class SymbolData extends TypeData {
   
   
   /**Add the specified innerInterface to the list of innerInterfaces*/
-  public void addInnerInterface(SymbolData innerInterface) { _innerInterfaces.addLast(innerInterface); }
+  public void addInnerInterface(SymbolData innerInterface) { 
+    changed();
+    _innerInterfaces.addLast(innerInterface); 
+  }
   
   /**Increment the local class num and return it*/
   public int preincrementLocalClassNum() { return ++_localClassNum; }
@@ -880,42 +923,106 @@ public class SymbolData extends TypeData {
     * @param name  The name of the method to return
     * @return  true if a MethodData is found or false otherwise.
     */
-  public boolean hasMethod(String name) {
-    for (int i = 0; i < _methods.size(); i++) {
-      MethodData currMd = _methods.get(i);
-      if (currMd.getName().equals(name)) return true;
+  public boolean hasMethod(String name) { return _methodIndex().containsKey(name); }
+  
+  /** @return  The methods defined in this SymbolData with the given name, in the order they were added. */
+  public MethodData[] getMethodsNamed(String name) {
+    MethodData[] result = _methodIndex().get(name);
+    return (result == null) ? NO_METHODS : result;
+  }
+  
+  /** Returns the methods with the given name defined in this SymbolData, its super interfaces, and its super class, 
+    * where the methods of each super type are found in the same way (recursively).  This is the order in which method
+    * invocations search for applicable methods.  Results are cached until some SymbolData changes.
+    * @return  Pairs of the SymbolData searched and the matching method found there */
+  public List<Pair<SymbolData, MethodData>> getInheritedMethodsNamed(String name) {
+    _checkCacheVersion();
+    if (_inheritedMethods == null) _inheritedMethods = new HashMap<String, List<Pair<SymbolData, MethodData>>>();
+    List<Pair<SymbolData, MethodData>> result = _inheritedMethods.get(name);
+    if (result == null) {
+      List<Pair<SymbolData, MethodData>> methods = new ArrayList<Pair<SymbolData, MethodData>>();
+      for (MethodData md: getMethodsNamed(name)) methods.add(new Pair<SymbolData, MethodData>(this, md));
+      for (SymbolData sup: _interfaces) { if (sup != null) methods.addAll(sup.getInheritedMethodsNamed(name)); }
+      if (_superClass != null) methods.addAll(_superClass.getInheritedMethodsNamed(name));
+      result = Collections.unmodifiableList(methods);
+      _inheritedMethods.put(name, result);
+    }
+    return result;
+  }
+  
+  /** @return  The index of _methods by name, (re)building it if necessary. */
+  private HashMap<String, MethodData[]> _methodIndex() {
+    if (_methodsByName == null || _indexedMethodCount != _methods.size()) {
+      _methodsByName = new HashMap<String, MethodData[]>();
+      for (MethodData md: _methods) _indexMethod(md);
+      _indexedMethodCount = _methods.size();
+    }
+    return _methodsByName;
+  }
+  
+  /** Adds md to the end of _methods and to the index, if the index is current. */
+  private void _appendMethod(MethodData md) {
+    changed();
+    boolean indexed = _methodsByName != null && _indexedMethodCount == _methods.size();
+    _methods.addLast(md);
+    if (indexed) { 
+      _indexMethod(md);
+      _indexedMethodCount++;
+    }
+  }
+  
+  /** Adds md to the end of the array of methods with its name in _methodsByName. */
+  private void _indexMethod(MethodData md) {
+    MethodData[] overloads = _methodsByName.get(md.getName());
+    if (overloads == null) _methodsByName.put(md.getName(), new MethodData[] { md });
+    else {
+      MethodData[] newOverloads = Arrays.copyOf(overloads, overloads.length + 1);
+      newOverloads[overloads.length] = md;
+      _methodsByName.put(md.getName(), newOverloads);
+    }
+  }
+  
+  /** Discards the cached query results of this SymbolData if any SymbolData has changed since they were computed. */
+  private void _checkCacheVersion() {
+    if (_cacheVersion != _version) {
+      _subClassOf = null;
+      _inheritedMethods = null;
+      _cacheVersion = _version;
     }
-    return false;
   }
   
+  /** Records that some SymbolData may have changed, invalidating all cached query results. */
+  static void changed() { _version++; }
+  
   /** Returns the method with the given name and param types.
     * @param name  The name of the method to return
     * @param paramTypes  Array of the TypeDatas correpsonding to the parameters to the method.
     * @return  The matched MethodData or null if it is not found
     */
   public MethodData getMethod(String name, TypeData[] paramTypes) {
-    for (MethodData currMd: _methods) {
-      if (currMd.getName().equals(name)) {
-        if (paramTypes.length == currMd.getParams().length) {
-          boolean match = true;
-          for (int j = 0; j < paramTypes.length; j++) {  // TODO; clean up this coding!
-            if (paramTypes[j] == null || paramTypes[j].getSymbolData() == null || currMd.getParams()[j].getType() == null)
-              continue;  // prevents a null pointer exception
-            if (! paramTypes[j].getSymbolData().equals(currMd.getParams()[j].getType().getSymbolData())) { 
-              match = false; 
-              break; 
-            }
+    for (MethodData currMd: getMethodsNamed(name)) {
+      if (paramTypes.length == currMd.getParams().length) {
+        boolean match = true;
+        for (int j = 0; j < paramTypes.length; j++) {  // TODO; clean up this coding!
+          if (paramTypes[j] == null || paramTypes[j].getSymbolData() == null || currMd.getParams()[j].getType() == null)
+            continue;  // prevents a null pointer exception
+          if (! paramTypes[j].getSymbolData().equals(currMd.getParams()[j].getType().getSymbolData())) { 
+            match = false; 
+            break; 
           }
-          if (match) return currMd;
         }
+        if (match) return currMd;
       }
     }
     return null;
   }
+
   
   /**Sets the list of methods to the specified one*/
   public void setMethods(LinkedList<MethodData> methods) {
+    changed();
     _methods = methods;
+    _methodsByName = null;
   }
   
   /**Calls repeatedSignature with fromClassFile set to false by default.*/
@@ -933,27 +1040,40 @@ public class SymbolData extends TypeData {
     */
   public static MethodData repeatedSignature(LinkedList<MethodData> listOfMethods, MethodData method, 
                                              boolean fromClassFile) {
-    Iterator<MethodData> iter = listOfMethods.iterator();
-    VariableData[] methodParams = method.getParams();
-    while (iter.hasNext()) {
-      boolean match = true;
-      MethodData currMd = iter.next();
-      // Check if names are the same and if this is called from a class file check if return types are the same.
-      if (currMd.getName().equals(method.getName()) && 
-          (! fromClassFile || currMd.getReturnType() == method.getReturnType())) {
-        VariableData[] currMdParams = currMd.getParams();
-        if (currMdParams.length == methodParams.length) {
-          for (int i = 0; i < currMdParams.length; i++) {
-            if (currMdParams[i].getType() != methodParams[i].getType()) {
-              match = false;
-              break;
-            }
-          }
-          if (match) return currMd;
+    for (MethodData currMd: listOfMethods) {
+      if (_sameSignature(currMd, method, fromClassFile)) return currMd;
+    }
+    return null;
+  }
+  
+  /** Like repeatedSignature(getMethods(), method), but only examines the methods with the same name as method. */
+  public MethodData repeatedSignature(MethodData method) { return repeatedSignature(method, false); }
+  
+  /** Like repeatedSignature(getMethods(), method, fromClassFile), but only examines the methods with the same name as 
+    * method. */
+  public MethodData repeatedSignature(MethodData method, boolean fromClassFile) {
+    for (MethodData currMd: getMethodsNamed(method.getName())) {
+      if (_sameSignature(currMd, method, fromClassFile)) return currMd;
+    }
+    return null;
+  }
+  
+  /** @return true if currMd and method have the same name and parameter types (and, if fromClassFile, the same return
+    *         type). */
+  private static boolean _sameSignature(MethodData currMd, MethodData method, boolean fromClassFile) {
+    // Check if names are the same and if this is called from a class file check if return types are the same.
+    if (currMd.getName().equals(method.getName()) && 
+        (! fromClassFile || currMd.getReturnType() == method.getReturnType())) {
+      VariableData[] currMdParams = currMd.getParams();
+      VariableData[] methodParams = method.getParams();
+      if (currMdParams.length == methodParams.length) {
+        for (int i = 0; i < currMdParams.length; i++) {
+          if (currMdParams[i].getType() != methodParams[i].getType()) return false;
         }
+        return true;
       }
     }
-    return null;
+    return false;
   }
 
   /** @return true if this is a primitive boolean or a Boolean */
@@ -1038,7 +1158,7 @@ public class SymbolData extends TypeData {
     Iterator<SymbolData> iter = enclosingData.iterator();
     while (iter.hasNext()) {
       SymbolData currSd = iter.next();
-      MethodData matchingMd = repeatedSignature(currSd.getMethods(), md);
+      MethodData matchingMd = currSd.repeatedSignature(md);
       if (matchingMd != null) {
         if (matchingMd.hasModifier("private")) return false;
 //        System.err.println("[cdrt] corresponding return types are: " + md.getReturnType() + ", " + matchingMd.getReturnType());
@@ -1147,12 +1267,12 @@ public class SymbolData extends TypeData {
 `    */
   public void addMethod(MethodData method) {
     // Detect repeated methods
-    if (repeatedSignature(_methods, method) != null) {
+    if (repeatedSignature(method) != null) {
       LanguageLevelVisitor.errors.addLast(new Pair<String, JExpressionIF>(_createErrorMessage(method), 
                                                                           method.getJExpression()));
     }
     else {
-      _methods.addLast(method);
+      _appendMethod(method);
 //      System.err.println("*** Adding method " + method.getName() + " to " + this);
     }
   }
@@ -1164,7 +1284,7 @@ public class SymbolData extends TypeData {
     */
   public void addMethod(MethodData method, boolean isAugmentedCode) {
     // Detect if a method was user-defined that matches the signature of an auto-generated method.
-    MethodData md = repeatedSignature(_methods, method);
+    MethodData md = repeatedSignature(method);
     if (md != null) {
       LanguageLevelVisitor.errors.
         addLast(new Pair<String, JExpressionIF>("This method's signature conflicts with an automatically generated "
@@ -1172,7 +1292,7 @@ public class SymbolData extends TypeData {
                                                 md.getJExpression()));
     }
     else {
-        _methods.addLast(method);
+        _appendMethod(method);
     }
   }
   
@@ -1189,7 +1309,7 @@ public class SymbolData extends TypeData {
 //        addLast(new Pair<String, JExpressionIF>(_createErrorMessage(method), md.getJExpression()));
 //    }
 //    else {
-      _methods.addLast(method);
+      _appendMethod(method);
 //    }
   }
 
@@ -1198,11 +1318,15 @@ public class SymbolData extends TypeData {
     return _superClass;
   }
   
-  public void clearSuperClass() { _superClass = null; }
+  public void clearSuperClass() { 
+    changed();
+    _superClass = null; 
+  }
   
   /** Set the super class to the specified value. */
   public void setSuperClass(SymbolData superClass) {
     assert superClass != null;
+    changed();
     _superClass = superClass;
     addEnclosingData(superClass);
   }
@@ -1213,6 +1337,7 @@ public class SymbolData extends TypeData {
   /** Add an interface to the list of interfaces.  TODO: find out where null is being added as an interface! */
   public void addInterface(SymbolData interphace) {
     if (interphace != null) {
+      changed();
       _interfaces.add(interphace);
       addEnclosingData(interphace);
     }
@@ -1221,6 +1346,7 @@ public class SymbolData extends TypeData {
   /**Set the interfaces to be the specified list*/
   public void setInterfaces(ArrayList<SymbolData> interfaces) {
     assert interfaces != null;
+    changed();
     _interfaces = interfaces;
     for (SymbolData sd: interfaces) { if (sd != null) addEnclosingData(sd); }
   }
@@ -1247,6 +1373,7 @@ public class SymbolData extends TypeData {
   
   /**Set the isContinuation flag to the specified value*/
   public void setIsContinuation(boolean isContinuation) {
+    changed();
     _isContinuation = isContinuation;
   }
   
@@ -2140,6 +2267,75 @@ public class SymbolData extends TypeData {
       myData.addInterface(yourData);
       yourData.setIsContinuation(false);
       assertTrue("Should be assignable", myData.isSubClassOf(yourData));
+
+      //Changes to the hierarchy are seen after a query has been cached
+      SymbolData other = new SymbolData("other");
+      other.setIsContinuation(false);
+      assertFalse("other is not related to interface", other.isSubClassOf(yourData));
+      other.addInterface(yourData);
+      assertTrue("other now implements interface", other.isSubClassOf(yourData));
+      assertFalse("other is not related to superC", other.isSubClassOf(superC));
+      other.setSuperClass(_sd);
+      assertTrue("other now extends subClass", other.isSubClassOf(superC));
+    }
+
+    public void testGetMethodsNamed() {
+      _sd = new SymbolData("overloads");
+      MethodData m1 = new MethodData("m", _publicMav, new TypeParameter[0], SymbolData.INT_TYPE,
+                                     new VariableData[0], new String[0], _sd, null);
+      MethodData m2 = new MethodData("m", _publicMav, new TypeParameter[0], SymbolData.INT_TYPE,
+                                     new VariableData[] { new VariableData(SymbolData.INT_TYPE) }, new String[0], _sd,
+                                     null);
+      MethodData n = new MethodData("n", _publicMav, new TypeParameter[0], SymbolData.INT_TYPE,
+                                    new VariableData[0], new String[0], _sd, null);
+      assertFalse("No methods yet", _sd.hasMethod("m"));
+      assertEquals("No methods yet", 0, _sd.getMethodsNamed("m").length);
+      _sd.addMethod(m1);
+      _sd.addMethod(n);
+      assertTrue("m is defined", _sd.hasMethod("m"));
+      _sd.addMethod(m2);
+      assertTrue("Overloads in order", Arrays.equals(new MethodData[] { m1, m2 }, _sd.getMethodsNamed("m")));
+      assertTrue("n alone", Arrays.equals(new MethodData[] { n }, _sd.getMethodsNamed("n")));
+      assertEquals("getMethod finds the right overload", m2,
+                   _sd.getMethod("m", new TypeData[] { SymbolData.INT_TYPE }));
+      assertEquals("repeatedSignature uses the index", m1, _sd.repeatedSignature(m1));
+
+      LinkedList<MethodData> methods = new LinkedList<MethodData>();
+      methods.add(n);
+      _sd.setMethods(methods);
+      assertFalse("m was replaced", _sd.hasMethod("m"));
+      assertTrue("n remains", _sd.hasMethod("n"));
+    }
+
+    public void testGetInheritedMethodsNamed() {
+      SymbolData sup = new SymbolData("Sup");
+      SymbolData iface = new SymbolData("Iface");
+      iface.setInterface(true);
+      _sd = new SymbolData("Sub");
+      _sd.setSuperClass(sup);
+      _sd.addInterface(iface);
+      MethodData supM = new MethodData("m", _publicMav, new TypeParameter[0], SymbolData.INT_TYPE,
+                                       new VariableData[0], new String[0], sup, null);
+      MethodData ifaceM = new MethodData("m", _abstractMav, new TypeParameter[0], SymbolData.INT_TYPE,
+                                         new VariableData[0], new String[0], iface, null);
+      MethodData subM = new MethodData("m", _publicMav, new TypeParameter[0], SymbolData.INT_TYPE,
+                                       new VariableData[] { new VariableData(SymbolData.INT_TYPE) }, new String[0],
+                                       _sd, null);
+      sup.addMethod(supM);
+
+      List<Pair<SymbolData, MethodData>> ms = _sd.getInheritedMethodsNamed("m");
+      assertEquals("Only the super class method", 1, ms.size());
+      assertEquals("Found in Sup", sup, ms.get(0).getFirst());
+      assertEquals("Found in Sup", supM, ms.get(0).getSecond());
+
+      iface.addMethod(ifaceM);
+      _sd.addMethod(subM);
+      ms = _sd.getInheritedMethodsNamed("m");
+      assertEquals("Three methods", 3, ms.size());
+      assertEquals("Own method first", subM, ms.get(0).getSecond());
+      assertEquals("Then interfaces", ifaceM, ms.get(1).getSecond());
+      assertEquals("Then the super class", supM, ms.get(2).getSecond());
+      assertEquals("No such methods", 0, _sd.getInheritedMethodsNamed("q").size());
     }
 
     public void testIsInnerClassOf() {
@@ -36,15 +36,16 @@
 
 package edu.rice.cs.javalanglevels;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** This class is obselescent.  It now has no function.
-  * This class extends Hashtable so that we can have extra functionality in the put function.
-  * A Symboltable is specifically a Hashtable of Strings to SymbolData.  The put function
+  * This class extends ConcurrentHashMap so that we can have extra functionality in the put function.
+  * A Symboltable is specifically a map of Strings to SymbolData.  The put function
   * checks to see if the specified SymbolData is already in the table.  If so, it simply updates its
   * fields.
   */
 
-public class Symboltable extends Hashtable<String, SymbolData> {
+public class Symboltable extends ConcurrentHashMap<String, SymbolData> {
   
 //  /** Augments put function of hash table.  If the specified SymbolData is already in
 //    * the table, simply update its fields.  Otherwise, do a normal put operation.
@@ -333,16 +333,24 @@ public class TypeChecker extends JExpressionIFDepthFirstVisitor<TypeData> implem
   protected Pair<LinkedList<MethodData>, LinkedList<MethodData>> 
     _getMatchingMethods(String methodName, SymbolData enclosingSD, InstanceData[] arguments, JExpression jexpr, 
                         boolean isConstructor, SymbolData thisSD) {
-    LinkedList<MethodData> mds = enclosingSD.getMethods();
-    Iterator<MethodData> iter = mds.iterator();
+    // Constructors must be in enclosingSD; other methods are searched for in its super types as well
+    List<Pair<SymbolData, MethodData>> candidates;
+    if (isConstructor) {
+      candidates = new LinkedList<Pair<SymbolData, MethodData>>();
+      for (MethodData md: enclosingSD.getMethodsNamed(methodName)) {
+        candidates.add(new Pair<SymbolData, MethodData>(enclosingSD, md));
+      }
+    }
+    else candidates = enclosingSD.getInheritedMethodsNamed(methodName);
     LinkedList<MethodData> matching = new LinkedList<MethodData>();
     LinkedList<MethodData> matchingWithAutoboxing = new LinkedList<MethodData>();
 
-    while (iter.hasNext()) {
-      MethodData md = iter.next();
+    for (Pair<SymbolData, MethodData> candidate: candidates) {
+      SymbolData declaringSD = candidate.getFirst();
+      MethodData md = candidate.getSecond();
       
-      // Check that the names match.
-      if (md.getName().equals(methodName) && md.getParams().length == arguments.length) {
+      // Check that the number of parameters matches.
+      if (md.getParams().length == arguments.length) {
         VariableData[] vds = md.getParams();
         int i;
         boolean matches = true;
@@ -359,7 +367,7 @@ public class TypeChecker extends JExpressionIFDepthFirstVisitor<TypeData> implem
         }
         
         // if all arguments checked out, check the access stuff.
-        if (matches && checkAccess(jexpr, md.getMav(), md.getName(), enclosingSD, thisSD, "method")) {
+        if (matches && checkAccess(jexpr, md.getMav(), md.getName(), declaringSD, thisSD, "method")) {
           matching.addLast(md);
         }
         
@@ -371,27 +379,12 @@ public class TypeChecker extends JExpressionIFDepthFirstVisitor<TypeData> implem
         }
         
         // if all arguments checked out, check the access stuff.
-        if (matches && checkAccess(jexpr, md.getMav(), md.getName(), enclosingSD, thisSD, "method")) {
+        if (matches && checkAccess(jexpr, md.getMav(), md.getName(), declaringSD, thisSD, "method")) {
           matchingWithAutoboxing.addLast(md);
         }
       }
     }
 
-    if (! isConstructor) {
-      for (SymbolData sup : enclosingSD.getInterfaces()) {
-        Pair<LinkedList<MethodData>, LinkedList<MethodData>> p = 
-          _getMatchingMethods(methodName, sup, arguments, jexpr, isConstructor, thisSD);
-        matching.addAll(p.getFirst());
-        matchingWithAutoboxing.addAll(p.getSecond());
-      }
-      if (enclosingSD.getSuperClass() != null) {
-        Pair<LinkedList<MethodData>, LinkedList<MethodData>> p = 
-          _getMatchingMethods(methodName, enclosingSD.getSuperClass(), arguments, jexpr, isConstructor, thisSD);
-        matching.addAll(p.getFirst());
-        matchingWithAutoboxing.addAll(p.getSecond());
-      }
-    }
-    
     return new Pair<LinkedList<MethodData>, LinkedList<MethodData>> (matching, matchingWithAutoboxing);
   }
       
@@ -0,0 +1,324 @@
+/*BEGIN_COPYRIGHT_BLOCK*
+
+PLT Utilities BSD License
+
+Copyright (c) 2007-2010 JavaPLT group at Rice University
+All rights reserved.
+
+Developed by:   Java Programming Languages Team
+                Rice University
+                http://www.cs.rice.edu/~javaplt/
+
+Redistribution and use in source and binary forms, with or without modification, are permitted 
+provided that the following conditions are met:
+
+    - Redistributions of source code must retain the above copyright notice, this list of conditions 
+      and the following disclaimer.
+    - Redistributions in binary form must reproduce the above copyright notice, this list of 
+      conditions and the following disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+    - Neither the name of the JavaPLT group, Rice University, nor the names of the library's 
+      contributors may be used to endorse or promote products derived from this software without 
+      specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR 
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND 
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS AND 
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL 
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, 
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT 
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.plt.collect;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import edu.rice.cs.plt.iter.ReadOnlyIterator;
+import edu.rice.cs.plt.object.ObjectUtil;
+
+/**
+ * <p>An immutable map implemented as a hash array mapped trie.  Rather than being mutated, a map is
+ * extended with {@link #with} or {@link #without}, producing a new map that shares most of its structure
+ * with the original; both operations, along with {@link #get}, take time proportional to the depth of the
+ * trie (at most 7 levels, and typically log<sub>32</sub> of the size).  The original map is unchanged,
+ * so this is a good fit for environments in which each scope extends an enclosing scope that must
+ * remain valid, and where copying a {@code HashMap} for each extension would be too expensive.</p>
+ * 
+ * <p>Keys are compared with {@code equals()} and hashed with {@code hashCode()}; {@code null} keys and
+ * values are allowed.  The {@code Map} mutation methods throw an {@code UnsupportedOperationException}.</p>
+ */
+public class PersistentMap<K, V> extends AbstractKeyBasedMap<K, V> implements Serializable {
+  
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  
+  private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<Object, Object>(null, 0);
+  
+  /** The root of the trie, or {@code null} if the map is empty. */
+  private final Node<K, V> _root;
+  private final int _size;
+  
+  private PersistentMap(Node<K, V> root, int size) { _root = root; _size = size; }
+  
+  /** Get an empty map. */
+  @SuppressWarnings("unchecked") public static <K, V> PersistentMap<K, V> empty() {
+    return (PersistentMap<K, V>) (PersistentMap<?, ?>) EMPTY;
+  }
+  
+  /** Create a map containing the entries of {@code m}. */
+  public static <K, V> PersistentMap<K, V> make(Map<? extends K, ? extends V> m) {
+    return PersistentMap.<K, V>empty().withAll(m);
+  }
+  
+  /** Produce a map in which {@code key} is mapped to {@code val}, replacing any previous mapping. */
+  public PersistentMap<K, V> with(K key, V val) {
+    int hash = hash(key);
+    if (_root == null) { return new PersistentMap<K, V>(new Leaf<K, V>(hash, key, val), 1); }
+    Leaf<K, V> old = _root.find(hash, key, 0);
+    if (old != null && old.value == val) { return this; }
+    Node<K, V> newRoot = _root.with(new Leaf<K, V>(hash, key, val), 0);
+    return new PersistentMap<K, V>(newRoot, (old == null) ? _size + 1 : _size);
+  }
+  
+  /** Produce a map with all the entries of this map and of {@code m}, where {@code m} takes precedence. */
+  public PersistentMap<K, V> withAll(Map<? extends K, ? extends V> m) {
+    PersistentMap<K, V> result = this;
+    for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) { result = result.with(e.getKey(), e.getValue()); }
+    return result;
+  }
+  
+  /** Produce a map in which {@code key} is not mapped. */
+  public PersistentMap<K, V> without(Object key) {
+    if (_root == null) { return this; }
+    int hash = hash(key);
+    if (_root.find(hash, key, 0) == null) { return this; }
+    if (_size == 1) { return empty(); }
+    return new PersistentMap<K, V>(_root.without(hash, key, 0), _size - 1);
+  }
+  
+  public V get(Object key) {
+    if (_root == null) { return null; }
+    Leaf<K, V> leaf = _root.find(hash(key), key, 0);
+    return (leaf == null) ? null : leaf.value;
+  }
+  
+  @Override public boolean containsKey(Object key) {
+    return _root != null && _root.find(hash(key), key, 0) != null;
+  }
+  
+  @Override public int size() { return _size; }
+  @Override public boolean isEmpty() { return _size == 0; }
+  
+  public PredicateSet<K> keySet() {
+    return new AbstractPredicateSet<K>() {
+      public boolean contains(Object o) { return containsKey(o); }
+      public Iterator<K> iterator() {
+        final Iterator<Leaf<K, V>> leaves = leaves().iterator();
+        return new ReadOnlyIterator<K>() {
+          public boolean hasNext() { return leaves.hasNext(); }
+          public K next() { return leaves.next().key; }
+        };
+      }
+      @Override public int size() { return _size; }
+      @Override public int size(int bound) { return (_size <= bound) ? _size : bound; }
+      @Override public boolean isEmpty() { return _size == 0; }
+      public boolean isInfinite() { return false; }
+      public boolean hasFixedSize() { return true; }
+      public boolean isStatic() { return true; }
+    };
+  }
+  
+  /** A snapshot of the entries in the trie, in an unspecified order. */
+  private List<Leaf<K, V>> leaves() {
+    List<Leaf<K, V>> result = new ArrayList<Leaf<K, V>>(_size);
+    if (_root != null) { _root.addLeaves(result); }
+    return result;
+  }
+  
+  /** Spreads the hash bits, as in {@link java.util.HashMap}, so that sparse hash codes still branch early. */
+  private static int hash(Object key) {
+    int h = (key == null) ? 0 : key.hashCode();
+    return h ^ (h >>> 16);
+  }
+  
+  /** Allocate an array of leaves; generic arrays can only be created through a raw type. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <K, V> Leaf<K, V>[] leafArray(int length) { return new Leaf[length]; }
+  
+  /** Allocate an array of nodes; generic arrays can only be created through a raw type. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <K, V> Node<K, V>[] nodeArray(int length) { return new Node[length]; }
+  
+  
+  /** A trie node.  Leaves and collision nodes are independent of depth, and can be moved up or down. */
+  private static abstract class Node<K, V> implements Serializable {
+    /** Find the leaf with the given key, or {@code null}. */
+    public abstract Leaf<K, V> find(int hash, Object key, int shift);
+    /** Add or replace the given leaf; {@code shift} is the position of this node's bits in the hash. */
+    public abstract Node<K, V> with(Leaf<K, V> leaf, int shift);
+    /** Remove the given key, which must be present; the result is {@code null} if nothing remains. */
+    public abstract Node<K, V> without(int hash, Object key, int shift);
+    public abstract void addLeaves(List<Leaf<K, V>> result);
+  }
+  
+  /** A node with a single hash value: a leaf or a collision node. */
+  private static abstract class HashedNode<K, V> extends Node<K, V> {
+    public final int hash;
+    protected HashedNode(int h) { hash = h; }
+  }
+  
+  private static final class Leaf<K, V> extends HashedNode<K, V> {
+    public final K key;
+    public final V value;
+    
+    public Leaf(int h, K k, V v) { super(h); key = k; value = v; }
+    
+    public Leaf<K, V> find(int h, Object k, int shift) {
+      return (h == hash && ObjectUtil.equal(key, k)) ? this : null;
+    }
+    
+    public Node<K, V> with(Leaf<K, V> leaf, int shift) {
+      if (leaf.hash != hash) { return BitmapNode.pair(this, leaf, shift); }
+      else if (ObjectUtil.equal(key, leaf.key)) { return leaf; }
+      else {
+        Leaf<K, V>[] leaves = leafArray(2);
+        leaves[0] = this;
+        leaves[1] = leaf;
+        return new CollisionNode<K, V>(hash, leaves);
+      }
+    }
+    
+    public Node<K, V> without(int h, Object k, int shift) { return null; }
+    
+    public void addLeaves(List<Leaf<K, V>> result) { result.add(this); }
+  }
+  
+  /** Two or more leaves whose keys have the same (full) hash value. */
+  private static final class CollisionNode<K, V> extends HashedNode<K, V> {
+    private final Leaf<K, V>[] _leaves;
+    
+    public CollisionNode(int h, Leaf<K, V>[] leaves) { super(h); _leaves = leaves; }
+    
+    public Leaf<K, V> find(int h, Object k, int shift) {
+      if (h == hash) {
+        for (Leaf<K, V> l : _leaves) { if (ObjectUtil.equal(l.key, k)) { return l; } }
+      }
+      return null;
+    }
+    
+    public Node<K, V> with(Leaf<K, V> leaf, int shift) {
+      if (leaf.hash != hash) { return BitmapNode.pair(this, leaf, shift); }
+      for (int i = 0; i < _leaves.length; i++) {
+        if (ObjectUtil.equal(_leaves[i].key, leaf.key)) {
+          Leaf<K, V>[] newLeaves = _leaves.clone();
+          newLeaves[i] = leaf;
+          return new CollisionNode<K, V>(hash, newLeaves);
+        }
+      }
+      Leaf<K, V>[] newLeaves = leafArray(_leaves.length + 1);
+      System.arraycopy(_leaves, 0, newLeaves, 0, _leaves.length);
+      newLeaves[_leaves.length] = leaf;
+      return new CollisionNode<K, V>(hash, newLeaves);
+    }
+    
+    public Node<K, V> without(int h, Object k, int shift) {
+      if (_leaves.length == 2) { return ObjectUtil.equal(_leaves[0].key, k) ? _leaves[1] : _leaves[0]; }
+      Leaf<K, V>[] newLeaves = leafArray(_leaves.length - 1);
+      int j = 0;
+      for (Leaf<K, V> l : _leaves) { if (!ObjectUtil.equal(l.key, k)) { newLeaves[j++] = l; } }
+      return new CollisionNode<K, V>(hash, newLeaves);
+    }
+    
+    public void addLeaves(List<Leaf<K, V>> result) {
+      for (Leaf<K, V> l : _leaves) { result.add(l); }
+    }
+  }
+  
+  /** An interior node with up to 32 children, indexed by 5 bits of the hash. */
+  private static final class BitmapNode<K, V> extends Node<K, V> {
+    private final int _bitmap;
+    private final Node<K, V>[] _children;
+    
+    public BitmapNode(int bitmap, Node<K, V>[] children) { _bitmap = bitmap; _children = children; }
+    
+    /** Create a node (or chain of nodes) containing two nodes with different hashes. */
+    public static <K, V> Node<K, V> pair(HashedNode<K, V> n1, HashedNode<K, V> n2, int shift) {
+      int i1 = (n1.hash >>> shift) & MASK;
+      int i2 = (n2.hash >>> shift) & MASK;
+      if (i1 == i2) {
+        // the hashes differ, so they must eventually differ in some 5-bit (or, at the end, 2-bit) slice
+        Node<K, V>[] children = nodeArray(1);
+        children[0] = pair(n1, n2, shift + BITS);
+        return new BitmapNode<K, V>(1 << i1, children);
+      }
+      else {
+        Node<K, V>[] children = nodeArray(2);
+        children[(i1 < i2) ? 0 : 1] = n1;
+        children[(i1 < i2) ? 1 : 0] = n2;
+        return new BitmapNode<K, V>((1 << i1) | (1 << i2), children);
+      }
+    }
+    
+    private int index(int bit) { return Integer.bitCount(_bitmap & (bit - 1)); }
+    
+    public Leaf<K, V> find(int h, Object k, int shift) {
+      int bit = 1 << ((h >>> shift) & MASK);
+      if ((_bitmap & bit) == 0) { return null; }
+      else { return _children[index(bit)].find(h, k, shift + BITS); }
+    }
+    
+    public Node<K, V> with(Leaf<K, V> leaf, int shift) {
+      int bit = 1 << ((leaf.hash >>> shift) & MASK);
+      int i = index(bit);
+      if ((_bitmap & bit) == 0) {
+        Node<K, V>[] newChildren = nodeArray(_children.length + 1);
+        System.arraycopy(_children, 0, newChildren, 0, i);
+        newChildren[i] = leaf;
+        System.arraycopy(_children, i, newChildren, i + 1, _children.length - i);
+        return new BitmapNode<K, V>(_bitmap | bit, newChildren);
+      }
+      else {
+        Node<K, V>[] newChildren = _children.clone();
+        newChildren[i] = _children[i].with(leaf, shift + BITS);
+        return new BitmapNode<K, V>(_bitmap, newChildren);
+      }
+    }
+    
+    public Node<K, V> without(int h, Object k, int shift) {
+      int bit = 1 << ((h >>> shift) & MASK);
+      int i = index(bit);
+      Node<K, V> newChild = _children[i].without(h, k, shift + BITS);
+      if (newChild == null) {
+        if (_children.length == 1) { return null; }
+        else if (_children.length == 2 && !(_children[1 - i] instanceof BitmapNode<?, ?>)) {
+          // a lone leaf or collision node can move up a level
+          return _children[1 - i];
+        }
+        else {
+          Node<K, V>[] newChildren = nodeArray(_children.length - 1);
+          System.arraycopy(_children, 0, newChildren, 0, i);
+          System.arraycopy(_children, i + 1, newChildren, i, _children.length - i - 1);
+          return new BitmapNode<K, V>(_bitmap & ~bit, newChildren);
+        }
+      }
+      else if (_children.length == 1 && !(newChild instanceof BitmapNode<?, ?>)) { return newChild; }
+      else {
+        Node<K, V>[] newChildren = _children.clone();
+        newChildren[i] = newChild;
+        return new BitmapNode<K, V>(_bitmap, newChildren);
+      }
+    }
+    
+    public void addLeaves(List<Leaf<K, V>> result) {
+      for (Node<K, V> n : _children) { n.addLeaves(result); }
+    }
+  }
+  
+}
@@ -0,0 +1,147 @@
+/*BEGIN_COPYRIGHT_BLOCK*
+
+PLT Utilities BSD License
+
+Copyright (c) 2007-2010 JavaPLT group at Rice University
+All rights reserved.
+
+Developed by:   Java Programming Languages Team
+                Rice University
+                http://www.cs.rice.edu/~javaplt/
+
+Redistribution and use in source and binary forms, with or without modification, are permitted 
+provided that the following conditions are met:
+
+    - Redistributions of source code must retain the above copyright notice, this list of conditions 
+      and the following disclaimer.
+    - Redistributions in binary form must reproduce the above copyright notice, this list of 
+      conditions and the following disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+    - Neither the name of the JavaPLT group, Rice University, nor the names of the library's 
+      contributors may be used to endorse or promote products derived from this software without 
+      specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR 
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND 
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS AND 
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL 
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, 
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT 
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.plt.collect;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class PersistentMapTest extends TestCase {
+  
+  /** A key with a fixed hash code, used to force collisions. */
+  private static class Collider {
+    private final String _name;
+    public Collider(String name) { _name = name; }
+    public boolean equals(Object o) { return (o instanceof Collider) && ((Collider) o)._name.equals(_name); }
+    public int hashCode() { return 42; }
+    public String toString() { return _name; }
+  }
+  
+  public void testEmpty() {
+    PersistentMap<String, Integer> m = PersistentMap.empty();
+    assertEquals(0, m.size());
+    assertTrue(m.isEmpty());
+    assertNull(m.get("a"));
+    assertFalse(m.containsKey("a"));
+    assertSame(m, m.without("a"));
+    assertFalse(m.keySet().iterator().hasNext());
+  }
+  
+  public void testWith() {
+    PersistentMap<String, Integer> m0 = PersistentMap.empty();
+    PersistentMap<String, Integer> m1 = m0.with("a", 1);
+    PersistentMap<String, Integer> m2 = m1.with("b", 2);
+    PersistentMap<String, Integer> m3 = m2.with("a", 3);
+    assertEquals(0, m0.size());
+    assertEquals(1, m1.size());
+    assertEquals(2, m2.size());
+    assertEquals(2, m3.size());
+    assertEquals((Integer) 1, m1.get("a"));
+    assertEquals((Integer) 1, m2.get("a"));
+    assertEquals((Integer) 3, m3.get("a"));
+    assertNull(m1.get("b"));
+    assertSame(m3, m3.with("a", 3));
+    
+    PersistentMap<String, Integer> withNull = m0.with(null, null);
+    assertTrue(withNull.containsKey(null));
+    assertNull(withNull.get(null));
+    assertEquals(1, withNull.size());
+    assertFalse(withNull.containsKey("a"));
+  }
+  
+  public void testWithout() {
+    PersistentMap<String, Integer> m = PersistentMap.<String, Integer>empty().with("a", 1).with("b", 2);
+    PersistentMap<String, Integer> withoutA = m.without("a");
+    assertEquals(1, withoutA.size());
+    assertNull(withoutA.get("a"));
+    assertEquals((Integer) 2, withoutA.get("b"));
+    assertEquals((Integer) 1, m.get("a"));
+    assertSame(m, m.without("c"));
+    assertTrue(withoutA.without("b").isEmpty());
+  }
+  
+  public void testCollisions() {
+    Collider a = new Collider("a");
+    Collider b = new Collider("b");
+    Collider c = new Collider("c");
+    PersistentMap<Object, String> m = PersistentMap.<Object, String>empty().with(a, "a").with(b, "b").with(c, "c");
+    assertEquals(3, m.size());
+    assertEquals("b", m.get(new Collider("b")));
+    m = m.with("other", "other").with(b, "B");
+    assertEquals(4, m.size());
+    assertEquals("B", m.get(b));
+    PersistentMap<Object, String> m2 = m.without(a).without(c);
+    assertEquals(2, m2.size());
+    assertEquals("B", m2.get(b));
+    assertNull(m2.get(a));
+    assertEquals("a", m.get(a));
+    assertEquals(0, m2.without(b).without("other").size());
+  }
+  
+  public void testAgainstHashMap() {
+    Random r = new Random(12345);
+    Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+    PersistentMap<Integer, Integer> actual = PersistentMap.empty();
+    for (int i = 0; i < 20000; i++) {
+      // a small range of keys guarantees many replacements and removals
+      Integer key = r.nextInt(2000) * ((i % 3 == 0) ? 65536 : 1);
+      if (r.nextInt(4) == 0) {
+        expected.remove(key);
+        actual = actual.without(key);
+      }
+      else {
+        expected.put(key, i);
+        actual = actual.with(key, i);
+      }
+      assertEquals(expected.size(), actual.size());
+    }
+    assertEquals(expected, actual);
+    assertEquals(actual, expected);
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(expected.keySet(), actual.keySet());
+    assertEquals(actual, PersistentMap.make(expected));
+  }
+  
+  public void testImmutable() {
+    PersistentMap<String, Integer> m = PersistentMap.<String, Integer>empty().with("a", 1);
+    try { m.put("b", 2); fail("Expected an exception"); }
+    catch (UnsupportedOperationException e) { /* expected */ }
+    try { m.remove("a"); fail("Expected an exception"); }
+    catch (UnsupportedOperationException e) { /* expected */ }
+  }
+  
+}
@@ -35,18 +35,28 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package edu.rice.cs.plt.reflect;
 
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.net.MalformedURLException;
 import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.iter.IterUtil;
-import edu.rice.cs.util.Log;
+import edu.rice.cs.plt.iter.SizedIterable;
+import edu.rice.cs.plt.iter.VersionedIterable;
 
 import static edu.rice.cs.plt.debug.DebugUtil.error;
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
@@ -61,11 +71,17 @@ import static edu.rice.cs.plt.debug.DebugUtil.debug;
   * later transitively resolves the referenced classes, they may no longer exist, or may be
   * shadowed.  This is not a unique problem, however -- the standard system class loader is
   * based on an underlying file system that may also change in arbitrary ways at any time.
+  * <p>Lookups are served from an index of the path that is rebuilt only when the path changes.  If the path is a
+  * {@link VersionedIterable}, a change is detected by comparing versions; otherwise, the path is traversed and
+  * compared to the indexed path on each lookup.  A path element that does not exist when the index is built is
+  * checked again on each lookup, and the path is indexed again once it appears.  Jar files are opened once and 
+  * remain open while they are on the path (a jar whose size or modification time has changed is opened again when
+  * the path is indexed again); each jar's package names are indexed, and the jar (if any) that provides a resource is
+  * remembered, whether or not the resource was found.  Directories are not indexed, since their contents (a build 
+  * directory, for example) typically change while the path does not.</p>
   */
 public class PathClassLoader extends AbstractClassLoader {
   
-  private static final Log _log = new Log("PathClassLoader.txt", true);
-  
   /** Locate a resource in the given path.  Returns {@code null} if the resource is not found.
     * If multiple queries will be performed on the same path, a PathClassLoader instance
     * should be created for better performance.
@@ -99,8 +115,12 @@ public class PathClassLoader extends AbstractClassLoader {
   }
 
   private final Iterable<? extends File> _path;
-  private URLClassLoader _urlLoader;
-  private Iterable<File> _urlLoaderPath;
+  /** Index of the current path.  Accessed only while holding this loader's lock. */
+  private PathIndex _index;
+  /** If {@code _path} is a VersionedIterable, the version of the indexed path. */
+  private long _indexVersion;
+  /** Open jar files, shared between successive indices.  Accessed only while holding this loader's lock. */
+  private final Map<File, JarData> _jars;
 
   /** Create a path class loader with the default parent ({@link ClassLoader#getSystemClassLoader})
     * and the specified path.
@@ -114,7 +134,8 @@ public class PathClassLoader extends AbstractClassLoader {
   public PathClassLoader(Iterable<? extends File> path) {
     super();
     _path = path;
-    updateURLLoader();
+    _jars = new HashMap<File, JarData>();
+    updateIndex();
   }
   
   /** Create a path class loader with the given parent and path */
@@ -124,20 +145,60 @@ public class PathClassLoader extends AbstractClassLoader {
   public PathClassLoader(ClassLoader parent, Iterable<? extends File> path) {
     super(parent);
     _path = path;
-    updateURLLoader();
-    _log.log("Constructing PathClassLoader with parent " + parent + " and path '" + path + "'");
+    _jars = new HashMap<File, JarData>();
+    updateIndex();
+    debug.logValues("Constructing PathClassLoader", new String[]{ "parent", "path" }, parent, path);
   }
 
-  private void updateURLLoader() {
-    _urlLoaderPath = IterUtil.snapshot(_path);
-    List<URL> urls = new LinkedList<URL>();
-    for (File f : _urlLoaderPath) {
-      try { urls.add(f.toURI().toURL()); }
-      catch (IllegalArgumentException e) { error.log(e); }
+  /** Rebuild the index from the current contents of the path.  Assumes this loader's lock is held. */
+  private void updateIndex() {
+    // read the version first: if the path changes during the snapshot, the next lookup will index it again
+    if (_path instanceof VersionedIterable<?>) { _indexVersion = ((VersionedIterable<?>) _path).version(); }
+    Iterable<File> files = IterUtil.snapshot(_path);
+    Map<File, JarData> oldJars = new HashMap<File, JarData>(_jars);
+    _jars.clear();
+    List<Entry> entries = new ArrayList<Entry>();
+    List<File> missing = new ArrayList<File>();
+    Set<File> seen = new HashSet<File>();
+    for (File f : files) { addEntry(f, entries, missing, seen, oldJars); }
+    // Jars dropped from the path are not closed here: a lookup that got its entry from the previous index may 
+    // still be reading from it outside this loader's lock.  They are closed when they are garbage collected.
+    _index = new PathIndex(files, entries.toArray(new Entry[entries.size()]), missing.toArray(new File[missing.size()]));
+  }
+  
+  /** Add an entry for {@code f}, followed by entries for the manifest class path if it is a jar file.  If {@code f}
+    * does not exist, it is added to {@code missing} instead.
+    */
+  private void addEntry(File f, List<Entry> entries, List<File> missing, Set<File> seen, Map<File, JarData> oldJars) {
+    File key = IOUtil.attemptAbsoluteFile(f);
+    if (!seen.add(key)) { return; } // duplicate entries are searched only once
+    if (key.isFile()) {
+      JarData jar = oldJars.remove(key);
+      if (jar != null && !jar.isCurrent(key)) { jar = null; } // the old JarFile is closed when it is collected
+      if (jar == null) {
+        try { jar = new JarData(key); }
+        catch (IOException e) { error.log(e); return; } // just skip the path element if there's an error
+      }
+      _jars.put(key, jar);
+      entries.add(jar);
+      for (File cp : jar.classPath) { addEntry(cp, entries, missing, seen, oldJars); }
+    }
+    else if (!key.exists()) { missing.add(key); }
+    else {
+      try { entries.add(new DirectoryData(key)); }
       catch (MalformedURLException e) { error.log(e); }
-      // just skip the path element if there's an error
     }
-    _urlLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]), EmptyClassLoader.INSTANCE);
+  }
+  
+  /** Get an up-to-date index of the path. */
+  private synchronized PathIndex index() {
+    boolean stale;
+    if (_path instanceof VersionedIterable<?>) { stale = ((VersionedIterable<?>) _path).version() != _indexVersion; }
+    else if (_path instanceof SizedIterable<?> && ((SizedIterable<?>) _path).isStatic()) { stale = false; }
+    else { stale = !IterUtil.isEqual(_path, _index.files); }
+    if (!stale) { stale = _index.missingAppeared(); }
+    if (stale) { updateIndex(); }
+    return _index;
   }
   
 //  /** This override is defined solely to trace calls to this method; it immediately invokes the
@@ -145,41 +206,201 @@ public class PathClassLoader extends AbstractClassLoader {
 //    */
 //  @Override 
 //  protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-//    _log.log("PathClassLoader.loadClass(" + name + ", " + resolve + ") called");
+//    debug.logValues("PathClassLoader.loadClass", new String[]{ "name", "resolve" }, name, resolve);
 //    return super.loadClass(name, resolve);
 //  }
   
   @Override 
   protected Class<?> findClass(String name) throws ClassNotFoundException {
-    _log.log("PathClassLoader.findClass(" + name + ") called");
-    URL resource = findResource(name.replace('.', '/') + ".class");
-    if (resource == null) { throw new ClassNotFoundException(); }
+    debug.logValue("PathClassLoader.findClass", "name", name);
+    String resourceName = name.replace('.', '/') + ".class";
+    Entry e = index().find(resourceName);
+    if (e == null) { throw new ClassNotFoundException(); }
     else {
       try {
-        InputStream stream = resource.openStream();
-        try {
-          byte[] bytes = IOUtil.toByteArray(stream);
-          Class<?> result = defineClass(name, bytes, 0, bytes.length);
-          definePackageForClass(name);
-          return result;
-        }
-        finally { stream.close(); }
+        byte[] bytes = e.read(resourceName);
+        Class<?> result = defineClass(name, bytes, 0, bytes.length);
+        definePackageForClass(name);
+        return result;
       }
-      catch (IOException e) { throw new ClassNotFoundException("Can't access class file", e); }
+      catch (IOException ex) { throw new ClassNotFoundException("Can't access class file", ex); }
     }
   }
   
   @Override 
   protected URL findResource(String name) {
-    _log.log("findResource(" + name + ") called; _path is " + _path);
-    if (!IterUtil.isEqual(_path, _urlLoaderPath)) { updateURLLoader(); }
-    return _urlLoader.findResource(name);
+    debug.logValues("PathClassLoader.findResource", new String[]{ "name", "_path" }, name, _path);
+    Entry e = index().find(name);
+    if (e == null) { return null; }
+    try { return e.url(name); }
+    catch (MalformedURLException ex) { error.log(ex); return null; }
   }
   
   @Override 
   protected Enumeration<URL> findResources(String name) throws IOException {
-    _log.log("findResources(" + name + ") called _path is " + _path);
-    if (!IterUtil.isEqual(_path, _urlLoaderPath)) { updateURLLoader(); }
-    return _urlLoader.findResources(name);
+    debug.logValues("PathClassLoader.findResources", new String[]{ "name", "_path" }, name, _path);
+    List<URL> result = new ArrayList<URL>();
+    for (Entry e : index().entries) {
+      if (e.contains(name)) { result.add(e.url(name)); }
+    }
+    return Collections.enumeration(result);
+  }
+  
+  /** The directory portion of a resource name ({@code "a/b"} for {@code "a/b/C.class"}). */
+  private static String packageOf(String resourceName) {
+    int slash = resourceName.lastIndexOf('/');
+    return (slash < 0) ? "" : resourceName.substring(0, slash);
+  }
+  
+  /** An element of the search path. */
+  private static abstract class Entry {
+    public abstract boolean contains(String name);
+    public abstract URL url(String name) throws MalformedURLException;
+    public abstract byte[] read(String name) throws IOException;
+  }
+  
+  /** A directory in the path.  Its contents are checked on every lookup. */
+  private static class DirectoryData extends Entry {
+    private final File _dir;
+    public DirectoryData(File dir) throws MalformedURLException {
+      _dir = dir;
+      dir.toURI().toURL(); // fail early, as the URLs of the directory's contents are produced by the same means
+    }
+    public boolean contains(String name) { return new File(_dir, name).exists(); }
+    public URL url(String name) throws MalformedURLException { return new File(_dir, name).toURI().toURL(); }
+    public byte[] read(String name) throws IOException { return IOUtil.toByteArray(new File(_dir, name)); }
+  }
+  
+  /** An open jar file in the path, along with the set of packages it contains. */
+  private static class JarData extends Entry {
+    public final JarFile jarFile;
+    public final Set<String> packages;
+    /** The jar's manifest Class-Path entries. */
+    public final List<File> classPath;
+    private final String _urlPrefix;
+    private final long _lastModified;
+    private final long _length;
+    
+    public JarData(File f) throws IOException {
+      // read the file's attributes first: if it changes while being opened, it will be opened again
+      _lastModified = f.lastModified();
+      _length = f.length();
+      jarFile = new JarFile(f);
+      packages = new HashSet<String>();
+      for (Enumeration<JarEntry> es = jarFile.entries(); es.hasMoreElements(); ) {
+        packages.add(packageOf(es.nextElement().getName()));
+      }
+      URL url = f.toURI().toURL();
+      _urlPrefix = "jar:" + url + "!/";
+      classPath = new ArrayList<File>();
+      Manifest m = jarFile.getManifest();
+      String cp = (m == null) ? null : m.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+      if (cp != null) {
+        StringTokenizer tok = new StringTokenizer(cp);
+        while (tok.hasMoreTokens()) {
+          try {
+            URL entry = new URL(url, tok.nextToken());
+            if (entry.getProtocol().equals("file")) { classPath.add(new File(entry.toURI())); }
+          }
+          catch (Exception e) { error.log(e); } // skip malformed entries, as URLClassLoader does
+        }
+      }
+    }
+    
+    /** Whether {@code f} is unchanged since this jar was opened. */
+    public boolean isCurrent(File f) { return f.lastModified() == _lastModified && f.length() == _length; }
+    
+    public boolean contains(String name) {
+      return packages.contains(packageOf(name)) && jarFile.getJarEntry(name) != null;
+    }
+    public URL url(String name) throws MalformedURLException { return new URL(_urlPrefix + name); }
+    public byte[] read(String name) throws IOException {
+      JarEntry e = jarFile.getJarEntry(name);
+      if (e == null) { throw new IOException("Entry " + name + " no longer exists in " + jarFile.getName()); }
+      InputStream stream = jarFile.getInputStream(e);
+      try { return IOUtil.toByteArray(stream); }
+      finally { stream.close(); }
+    }
+  }
+  
+  /** An index over a snapshot of the path.  Maps package names to the jars containing them, and caches the jar 
+    * (if any) in which each resource name was found. 
+    */
+  private static class PathIndex {
+    public final Iterable<File> files;
+    public final Entry[] entries;
+    /** Path elements that did not exist when the index was built. */
+    private final File[] _missing;
+    /** Indices of the directory entries, in path order. */
+    private final int[] _directories;
+    /** Indices, in path order, of the jar entries containing each package. */
+    private final Map<String, int[]> _jarsByPackage;
+    /** Index of the first jar containing each name looked up so far, or -1 if no jar contains it. */
+    private final Map<String, Integer> _jarLookups;
+    
+    public PathIndex(Iterable<File> files, Entry[] entries, File[] missing) {
+      this.files = files;
+      this.entries = entries;
+      _missing = missing;
+      Map<String, List<Integer>> jarsByPackage = new HashMap<String, List<Integer>>();
+      List<Integer> directories = new ArrayList<Integer>();
+      for (int i = 0; i < entries.length; i++) {
+        if (entries[i] instanceof JarData) {
+          for (String p : ((JarData) entries[i]).packages) {
+            List<Integer> l = jarsByPackage.get(p);
+            if (l == null) { l = new ArrayList<Integer>(1); jarsByPackage.put(p, l); }
+            l.add(i);
+          }
+        }
+        else { directories.add(i); }
+      }
+      _directories = toArray(directories);
+      _jarsByPackage = new HashMap<String, int[]>();
+      for (Map.Entry<String, List<Integer>> e : jarsByPackage.entrySet()) {
+        _jarsByPackage.put(e.getKey(), toArray(e.getValue()));
+      }
+      _jarLookups = new HashMap<String, Integer>();
+    }
+    
+    /** Whether any of the path elements that did not exist when the index was built exists now. */
+    public boolean missingAppeared() {
+      for (File f : _missing) {
+        if (f.exists()) { return true; }
+      }
+      return false;
+    }
+    
+    /** Find the first entry containing the given resource, or {@code null} if there is none. */
+    public Entry find(String name) {
+      int jar = firstJar(name);
+      // a directory preceding the jar may contain the resource; since directories change, they are always checked
+      for (int d : _directories) {
+        if (jar >= 0 && d > jar) { break; }
+        if (entries[d].contains(name)) { return entries[d]; }
+      }
+      return (jar < 0) ? null : entries[jar];
+    }
+    
+    private int firstJar(String name) {
+      synchronized(_jarLookups) {
+        Integer cached = _jarLookups.get(name);
+        if (cached != null) { return cached; }
+      }
+      int result = -1;
+      int[] candidates = _jarsByPackage.get(packageOf(name));
+      if (candidates != null) {
+        for (int i : candidates) {
+          if (((JarData) entries[i]).jarFile.getJarEntry(name) != null) { result = i; break; }
+        }
+      }
+      synchronized(_jarLookups) { _jarLookups.put(name, result); }
+      return result;
+    }
+    
+    private static int[] toArray(List<Integer> l) {
+      int[] result = new int[l.size()];
+      for (int i = 0; i < result.length; i++) { result[i] = l.get(i); }
+      return result;
+    }
   }
 }
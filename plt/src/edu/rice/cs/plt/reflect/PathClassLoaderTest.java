@@ -35,6 +35,18 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package edu.rice.cs.plt.reflect;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.iter.VersionedIterable;
 
 public class PathClassLoaderTest extends ClassLoaderTestCase {
   
@@ -121,6 +133,98 @@ public class PathClassLoaderTest extends ClassLoaderTestCase {
     assertCannotGet(lC, "D");
   }
   
+  public void testLoadsFromJars() throws Exception {
+    File intboxJar = makeJar(INTBOX_DIR, "pkg/IntBox.class");
+    File aJar = makeJar(A_DIR, "pkg/A.class");
+    PathClassLoader l = new PathClassLoader(BASE_LOADER, intboxJar, B_DIR, aJar, D_DIR);
+    assertLoadsClassAsLoader(l, "pkg.IntBox");
+    assertLoadsClassAsLoader(l, "pkg.A");
+    assertLoadsClassAsLoader(l, "bpkg.B");
+    assertLoadsClassAsLoader(l, "D");
+    assertDoesNotLoadClass(l, "pkg.C");
+    assertDoesNotLoadClass(l, "pkg.C"); // cached negative lookup
+    assertCanGet(l, "pkg.A", 1);
+    
+    URL url = l.getResource("pkg/A.class");
+    assertNotNull(url);
+    assertEquals("jar", url.getProtocol());
+    assertEquals(IOUtil.toByteArray(new File(A_DIR, "pkg/A.class")).length, IOUtil.toByteArray(url.openStream()).length);
+    assertNull(l.getResource("pkg/Missing.class"));
+    assertEquals(1, Collections.list(l.getResources("pkg/A.class")).size());
+  }
+  
+  public void testDirectoryPrecedesJar() throws Exception {
+    File aJar = makeJar(A_DIR, "pkg/A.class");
+    PathClassLoader l = new PathClassLoader(EmptyClassLoader.INSTANCE, A_DIR, aJar);
+    assertEquals("file", l.getResource("pkg/A.class").getProtocol());
+    assertEquals(2, Collections.list(l.getResources("pkg/A.class")).size());
+    l = new PathClassLoader(EmptyClassLoader.INSTANCE, aJar, A_DIR);
+    assertEquals("jar", l.getResource("pkg/A.class").getProtocol());
+  }
+  
+  public void testVersionedPath() throws Exception {
+    VersionedList path = new VersionedList();
+    PathClassLoader l = new PathClassLoader(BASE_LOADER, path);
+    assertNull(l.getResource("pkg/IntBox.class"));
+    path.add(makeJar(INTBOX_DIR, "pkg/IntBox.class"));
+    assertNotNull(l.getResource("pkg/IntBox.class"));
+    assertNull(l.getResource("pkg/A.class"));
+    path.add(A_DIR);
+    assertNotNull(l.getResource("pkg/A.class"));
+    assertCanGet(l, "pkg.A", 1);
+  }
+  
+  public void testMissingJarAppears() throws Exception {
+    File jar = IOUtil.createAndMarkTempFile("pathclassloader", ".jar");
+    jar.delete();
+    PathClassLoader l = new PathClassLoader(BASE_LOADER, jar);
+    assertNull(l.getResource("pkg/IntBox.class"));
+    writeJar(jar, INTBOX_DIR, "pkg/IntBox.class");
+    assertNotNull(l.getResource("pkg/IntBox.class"));
+  }
+  
+  public void testModifiedJarIsReopened() throws Exception {
+    File jar = makeJar(A_DIR, "pkg/A.class");
+    VersionedList path = new VersionedList();
+    path.add(jar);
+    PathClassLoader l = new PathClassLoader(BASE_LOADER, path);
+    assertNull(l.getResource("pkg/IntBox.class"));
+    writeJar(jar, INTBOX_DIR, "pkg/IntBox.class");
+    jar.setLastModified(jar.lastModified() - 10000);
+    path.add(B_DIR);
+    assertNotNull(l.getResource("pkg/IntBox.class"));
+    assertNull(l.getResource("pkg/A.class"));
+  }
+  
+  /** A list of files that changes its version on each addition. */
+  private static class VersionedList implements VersionedIterable<File> {
+    private final List<File> _files = new ArrayList<File>();
+    private long _version = 0;
+    public void add(File f) { _files.add(f); _version++; }
+    public Iterator<File> iterator() { return _files.iterator(); }
+    public long version() { return _version; }
+  }
+  
+  /** Create a temporary jar containing the given files from {@code dir}. */
+  private static File makeJar(File dir, String... names) throws IOException {
+    File result = IOUtil.createAndMarkTempFile("pathclassloader", ".jar");
+    writeJar(result, dir, names);
+    return result;
+  }
+  
+  /** Write a jar to {@code jar} containing the given files from {@code dir}. */
+  private static void writeJar(File jar, File dir, String... names) throws IOException {
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      for (String name : names) {
+        out.putNextEntry(new JarEntry(name));
+        out.write(IOUtil.toByteArray(new File(dir, name)));
+        out.closeEntry();
+      }
+    }
+    finally { out.close(); }
+  }
+  
   private void assertCanGet(ClassLoader l, String className, int value) throws Exception {
     Class<?> c = l.loadClass(className);
     Object instance = c.newInstance();
@@ -36,7 +36,6 @@ package edu.rice.cs.plt.reflect;
 
 import java.net.URL;
 import edu.rice.cs.plt.iter.IterUtil;
-import edu.rice.cs.util.Log;
 
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
 
@@ -45,8 +44,6 @@ import static edu.rice.cs.plt.debug.DebugUtil.debug;
   */
 public class ShadowingClassLoader extends ClassLoader {
   
-  private static final Log _log = new Log("JUnitTestManager.txt", false);
-  
   private final Iterable<? extends String> _prefixes;
   private final boolean _blackList;
   private final boolean _filterBootClasses;
@@ -94,16 +91,17 @@ public class ShadowingClassLoader extends ClassLoader {
     _blackList = blackList;
     _prefixes = prefixes;
     _filterBootClasses = filterBootClasses;
-    _log.log("Constructing ShadowingClassLoader with parent '" + parent + "' blackList = " + _blackList + " filterBootClasses = " + _filterBootClasses);
+    debug.logValues("Constructing ShadowingClassLoader", new String[]{ "parent", "_blackList", "_filterBootClasses" },
+                    parent, _blackList, _filterBootClasses);
   }
   
   /** If the given class is shadowed, a {@code ClassNotFoundException} will occur; otherwise, the method delegates to 
     * the parent class loader.
     */
   @Override protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-    _log.log("ShadowingClassLoader.loadClass(" + name + ", " + resolve + ") called");
+    debug.logValues("ShadowingClassLoader.loadClass", new String[]{ "name", "resolve" }, name, resolve);
     if ((_filterBootClasses || !isBootClass(name)) && matchesPrefixes(name) == _blackList) {
-      _log.log("Class " + name + " is being shadowed");
+      debug.logValue("Shadowing class", "name", name);
       throw new ClassNotFoundException(name + " is being shadowed");
     }
     else {